@@ -0,0 +1,71 @@
+package project_package;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Throughput of BatchRouter for a fixed batch of seeded queries, one score
+ * per worker count. Divide the score of n threads by the score of one
+ * thread to get the scaling factor.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchRouterBenchmark
+{
+    static final int BATCH = 256;
+
+    @Param({"512"})
+    public int size;
+
+    @Param({"random25", "maze"})
+    public String map;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private BatchRouter router;
+    private List<BatchRouter.Query> queries;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        GridMap grid = SearchEngineBenchmark.createMap(map, size);
+        router = new BatchRouter(grid, Algorithm.A_STAR, threads);
+        int[] starts = new int[BATCH];
+        int[] goals = new int[BATCH];
+        SearchEngineBenchmark.createQueries(grid, starts, goals);
+        queries = new ArrayList<>();
+        for (int i = 0; i < BATCH; i++)
+        {
+            queries.add(new BatchRouter.Query(starts[i], goals[i]));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        router.close();
+    }
+
+    @Benchmark
+    public int[][] route()
+    {
+        return router.route(queries);
+    }
+}
@@ -0,0 +1,76 @@
+package project_package;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of one long query on very large maps with the parallel A star
+ * (HDA*, see ParallelSearch), against plain A star on one thread
+ * (threads = 1). The speedup at n threads is the score at 1 thread divided
+ * by the score at n threads. The "expansionsPerQuery" counter divided by
+ * that of the run at 1 thread is the search overhead: the extra cells the
+ * workers expand because they do not follow the global F order.
+ * A 10000x10000 map takes about 2 GB of heap, e.g.
+ * java -jar benchmarks.jar ParallelSearchBenchmark -p size=20000 -jvmArgs -Xmx8g
+ * for larger maps.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class ParallelSearchBenchmark
+{
+    static final int QUERIES = 8;
+
+    @Param({"10000"})
+    public int size;
+
+    @Param({"random25", "maze"})
+    public String map;
+
+    /**
+     * 1 runs the sequential A star
+     */
+    @Param({"1", "2", "4", "8", "16"})
+    public int threads;
+
+    private PathSearch engine;
+    private int[] starts;
+    private int[] goals;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        GridMap grid = SearchEngineBenchmark.createMap(map, size);
+        engine = (threads == 1) ? new SearchEngine(grid)
+                : new ParallelSearch(grid, Heuristics.OCTILE, 1, threads);
+        starts = new int[QUERIES];
+        goals = new int[QUERIES];
+        SearchEngineBenchmark.createQueries(grid, starts, goals);
+    }
+
+    @Benchmark
+    public int[] findPath(SearchEngineBenchmark.Counters counters)
+    {
+        int i = next;
+        next = (i + 1) % QUERIES;
+        int[] path = engine.findPath(starts[i], goals[i]);
+        counters.add(engine);
+        return path;
+    }
+}
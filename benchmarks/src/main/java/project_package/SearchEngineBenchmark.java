@@ -0,0 +1,163 @@
+package project_package;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.Random;
+
+/**
+ * Throughput of single path queries on the headless search algorithms
+ * (A*, Jump Point Search and bidirectional A*), across grid sizes and map
+ * types. Every map and every query is generated from a fixed seed so runs
+ * can be compared against each other. The "expansionsPerQuery" counter is
+ * the mean number of cells expanded by a query. Run with -prof gc to get the
+ * allocation rate.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchEngineBenchmark
+{
+    static final long SEED = 42;
+    static final int QUERIES = 64;
+
+    @Param({"128", "512", "2048"})
+    public int size;
+
+    /**
+     * random25: 25% walls, like the randomizedGrid() button
+     * maze: perfect maze of one cell wide corridors
+     * open: no walls at all
+     */
+    @Param({"random25", "maze", "open"})
+    public String map;
+
+    @Param({"A_STAR", "JUMP_POINT", "BIDIRECTIONAL"})
+    public String algorithm;
+
+    /**
+     * heuristic of the tunable algorithms, e.g. -p heuristic=EUCLIDEAN to
+     * compare with the octile distance, LANDMARKS for the ALT heuristic
+     * (its tables are built during the setup)
+     */
+    @Param({"OCTILE"})
+    public String heuristic;
+
+    private PathSearch engine;
+    private int[] starts;
+    private int[] goals;
+    private int next;
+
+    /**
+     * Cells expanded by the queries of a measurement iteration, reported as
+     * the mean per query (the public accessor is the counter).
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters
+    {
+        private long expansions;
+        private long queries;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            expansions = 0;
+            queries = 0;
+        }
+
+        void add(PathSearch search)
+        {
+            expansions += search.expansions();
+            queries++;
+        }
+
+        public double expansionsPerQuery()
+        {
+            return (queries == 0) ? 0 : (double) expansions / queries;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        GridMap grid = createMap(map, size);
+        engine = Algorithm.valueOf(algorithm).create(grid, createHeuristic(heuristic, grid), 1);
+        starts = new int[QUERIES];
+        goals = new int[QUERIES];
+        createQueries(grid, starts, goals);
+    }
+
+    @Benchmark
+    public int[] findPath(Counters counters)
+    {
+        int i = next;
+        next = (i + 1) % QUERIES;
+        int[] path = engine.findPath(starts[i], goals[i]);
+        counters.add(engine);
+        return path;
+    }
+
+    static Heuristic createHeuristic(String name, GridMap grid)
+    {
+        if (name.equals("LANDMARKS"))
+        {
+            return LandmarkHeuristic.build(grid, LandmarkHeuristic.DEFAULT_COUNT);
+        }
+        return Heuristics.valueOf(name);
+    }
+
+    /**
+     * Builds one of the benchmark maps, always from the same seed.
+     */
+    static GridMap createMap(String type, int size)
+    {
+        switch (type)
+        {
+            case "random25":
+                return MapGenerator.random(size, size, 0.25, SEED);
+            case "maze":
+                return MapGenerator.maze(size, size, SEED);
+            case "open":
+                return MapGenerator.open(size, size);
+            default:
+                throw new IllegalArgumentException("Unknown map type " + type);
+        }
+    }
+
+    /**
+     * Picks random pairs of free cells, far enough apart (at least half the
+     * map width) to make the searches long.
+     */
+    static void createQueries(GridMap grid, int[] starts, int[] goals)
+    {
+        Random rng = new Random(SEED);
+        int minDistance = grid.width() / 2;
+        for (int i = 0; i < starts.length; i++)
+        {
+            int s;
+            int g;
+            do
+            {
+                s = rng.nextInt(grid.size());
+                g = rng.nextInt(grid.size());
+            }
+            while (grid.isWall(s) || grid.isWall(g)
+                    || Math.abs(grid.x(s) - grid.x(g)) + Math.abs(grid.y(s) - grid.y(g)) < minDistance);
+            starts[i] = s;
+            goals[i] = g;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 module PathFinder {
     requires javafx.fxml;
     requires javafx.controls;
+    requires jdk.jfr;
 
     opens project_package;
 }
\ No newline at end of file
@@ -1,394 +1,976 @@
-/**
- * A_Star class consists exclusively of fields and operations required by the
- * A star algorithm i.e. start and target points, the matrix, open/closed
- * ArrayLists and the current selected node.
- */
-
-package project_package;
-
-import javafx.concurrent.Task;
-import javafx.scene.input.MouseEvent;
-import javafx.scene.layout.Pane;
-import javafx.scene.layout.StackPane;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
-import java.util.ArrayList;
-import java.util.Random;
-
-class A_Star
-{
-    private static int xTarget;
-    private static int yTarget;
-    private static int xStart;
-    private static int yStart;
-    private static Node[][] grid;
-    private ArrayList<Node> open;
-    private ArrayList<Node> closed;
-
-    private Node current;
-    private double gnext, hnext, fnext;
-
-    /**
-     * Node class which consists of properties and operations of every Node
-     * displayed on the screen. Attaches event filters such as drag, primary
-     * press and secondary press.
-     */
-    private class Node extends StackPane
-    {
-        private int x;
-        private int y;
-        private double H;
-        private double G;
-        private double F;
-        private int xParent;
-        private int yParent;
-        private boolean isWall;
-        private Rectangle border;
-
-        private Node(int x, int y)
-        {
-            this.x = x;
-            this.y = y;
-            F = Double.MAX_VALUE;
-            H = 0;
-            G = 0;
-            xParent = -1;
-            yParent = -1;
-            isWall = false;
-            border = new Rectangle(Constant.NODE_SIZE.value, Constant.NODE_SIZE.value );
-            border.setStroke(Color.DIMGRAY);
-            border.setFill(Color.rgb(88, 89, 90));
-            getChildren().addAll(border);
-            setTranslateX(x * Constant.NODE_SIZE.value);
-            setTranslateY(y * Constant.NODE_SIZE.value);
-            border.addEventFilter(MouseEvent.MOUSE_PRESSED, e ->
-            {
-                // secondary click sets target node
-                if (e.isSecondaryButtonDown())
-                {
-                    // grid[...][...] returns a node associated with that index
-                    if (grid[xTarget][yTarget].x == xStart && grid[xTarget][yTarget].y == yStart)
-                    {
-                        grid[xTarget][yTarget].isWall = false;
-                        grid[xTarget][yTarget].border.setFill(Color.rgb(0, 255, 0));
-                    }
-                    else
-                    {
-                        grid[xTarget][yTarget].border.setFill(Color.rgb(88, 89, 90));
-                        grid[xTarget][yTarget].isWall = false;
-                    }
-                    xTarget = this.x;
-                    yTarget = this.y;
-                    this.border.setFill(Color.rgb(0, 0, 255));
-                }
-                // primary click removes wall if it has been previously recorded
-                // as a wall
-                if (isWall && e.isPrimaryButtonDown())
-                {
-                    border.setFill(Color.rgb(88, 89, 90));
-                    isWall = !this.isWall;
-                }
-                // else assigns a wall
-                else if (!isWall && e.isPrimaryButtonDown() && !(this.x == xStart && this.y == yStart) && !(this.x == xTarget && this.y == yTarget))
-                {
-                    this.border.setFill(Color.rgb(37, 37, 37));
-                    this.isWall = !this.isWall;
-                }
-            });
-
-            // dragging on a node sets the start node
-            border.addEventFilter(MouseEvent.MOUSE_DRAGGED, e ->
-            {
-                if (grid[xStart][yStart].x == xTarget && grid[xStart][yStart].y == yTarget)
-                {
-                    grid[xStart][yStart].isWall = false;
-                    grid[xStart][yStart].border.setFill(Color.rgb(0, 0, 255));
-                }
-                else
-                {
-                    grid[xStart][yStart].border.setFill(Color.rgb(88, 89, 90));
-                    grid[xStart][yStart].isWall = false;
-                }
-
-                xStart = this.x;
-                yStart = this.y;
-                border.setFill(Color.rgb(0, 255, 0));
-            });
-        }
-        // accessor and mutator methods
-        void setBorder(Color c)
-        {
-            this.border.setFill(c);
-        }
-
-        void setG(double g)
-        {
-            this.G = g;
-        }
-
-        void setH(double h)
-        {
-            this.H = h;
-        }
-
-        void setF(double f) {
-            this.F = f;
-        }
-
-        int getX()
-        {
-            return this.x;
-        }
-
-        int getY()
-        {
-            return this.y;
-        }
-
-        double getG()
-        {
-            return this.G;
-        }
-
-        double getF() {
-            return this.F;
-        }
-
-        boolean isWall() {
-            return this.isWall;
-        }
-    }
-
-    /**
-     * Constructor that initialises the A_Star class variables
-     */
-    A_Star()
-    {
-        xTarget = Constant.X_NODES.value - 1;
-        yTarget = Constant.Y_NODES.value - 1;
-        xStart = 0;
-        yStart = 0;
-        grid = new Node[Constant.X_NODES.value][Constant.Y_NODES.value];
-        open = new ArrayList<>();
-        closed = new ArrayList<>();
-    }
-
-    /**
-     * aStarSearch() is the implementation of the A star algorithm, which uses
-     * heuristics to guide the algorithm to find the shortest path.
-     */
-    void aStarSearch(State state, Task task)
-    {
-        if (!state.isRunning) {
-            return;
-        }
-        if (xStart == xTarget && yStart == yTarget)
-        {
-            AlertBox.display("---", "Already at target", 280, 140);
-            return;
-        }
-        grid[xStart][yStart].setF(0);
-        grid[xStart][yStart].setG(0);
-        grid[xStart][yStart].setH(0);
-        grid[xStart][yStart].xParent = xStart;
-        grid[xStart][yStart].yParent = yStart;
-
-        // add starting index to the open ArrayList
-        open.add(grid[xStart][yStart]);
-
-        int[][] succ = {{-1, 0}, {1, 0}, {0, 1}, {0, -1}, {-1, 1}, {1, -1}, {-1, -1}, {1, 1}};
-
-        while (!open.isEmpty()) {
-            int fIndex = smallestFIndex();
-            current = open.get(fIndex);
-
-            // remove current node from the open ArrayList
-            open.remove(fIndex);
-            // add current node to the closed ArrayList
-            closed.add(current);
-            if (current.getX() == xStart && current.getY() == yStart) {
-                current.setBorder(Color.rgb(0, 255, 0));
-            } else {
-                current.setBorder(Color.ORANGE);
-            }
-            //neighbours
-            for (int i = 0; i < succ.length; i++) {
-                if (isValid(current.getX() + succ[i][0], current.getY() + succ[i][1])) {
-                    if (isDest(current.getX() + succ[i][0], current.getY() + succ[i][1])) {
-                        grid[current.getX() + succ[i][0]][current.getY() + succ[i][1]].xParent = current.getX();
-                        grid[current.getX() + succ[i][0]][current.getY() + succ[i][1]].yParent = current.getY();
-                        displayPath();
-                        AlertBox.display("Success", "Target was found, press reset", 280, 140);
-                        return;
-                    }
-                    if (succ[i][0] == 0 || succ[i][1] == 0)
-                        updateNeighbour(current.getX() + succ[i][0], current.getY() + succ[i][1], false);
-                    else
-                        updateNeighbour(current.getX() + succ[i][0], current.getY() + succ[i][1], true);
-                }
-            }
-            try {
-                Thread.sleep(10);
-            } catch (InterruptedException e) {
-                task.cancel();
-            }
-        }
-        return;
-    }
-
-    /**
-     * Calculates the new G, H and F values of the neighbouring node and if the
-     * new F value is smaller than the previously recorded F, then replace all
-     * of the values.
-     * @param x : x value of the node we are checking
-     * @param y : y value of the node we are checking
-     * @param diag : if the neighbouring node is diagnally away (true) use the value
-     *               sqrt(2) else use 1.0.
-     */
-    private void updateNeighbour(int x, int y, boolean diag)
-    {
-        if (!closed.contains(grid[x][y]) && !grid[x][y].isWall())
-        {
-            grid[x][y].setBorder(Color.rgb(255, 242, 82));
-            gnext = grid[current.getX()][current.getY()].getG() + ((diag) ? Math.sqrt(2) : 1);
-            hnext = euclideanDistance(grid[x][y]);
-            fnext = gnext + hnext;
-            if (grid[x][y].getF() == Double.MAX_VALUE || grid[x][y].getF() > fnext)
-            {
-                open.add(grid[x][y]);
-                grid[x][y].setF(fnext);
-                grid[x][y].setG(gnext);
-                grid[x][y].setH(hnext);
-                grid[x][y].xParent = current.getX();
-                grid[x][y].yParent = current.getY();
-            }
-        }
-    }
-
-    /**
-     * Heuristic function which calculates the euclidean distance from a given
-     * node to the target.
-     */
-    private double euclideanDistance(Node n)
-    {
-        return Math.sqrt(Math.pow(n.getX() - xTarget, 2) + Math.pow(n.getY() - yTarget, 2));
-    }
-
-    /**
-     * Once algorithm is ran and the shortest path has been found we trace back
-     * all parent nodes until we detect the starting point. Start tracing
-     * back from the target node.
-     */
-    private void displayPath()
-    {
-        Node tmp = grid[xTarget][yTarget];
-        tmp = grid[tmp.xParent][tmp.yParent];
-        while (!(tmp.getX() == xStart && tmp.getY() == yStart))
-        {
-            tmp.setBorder(Color.CRIMSON);
-            tmp = grid[tmp.xParent][tmp.yParent];
-        }
-    }
-
-    /**
-     * Returns the index of the smallest F value in the open ArrayList.
-     */
-    private int smallestFIndex ()
-    {
-        int fIndex = 0;
-        double f = Double.MAX_VALUE;
-        for (int i = 0; i < open.size(); i++)
-        {
-            if (open.get(i).getF() < f)
-            {
-                f = open.get(i).getF();
-                fIndex = i;
-            }
-        }
-        return fIndex;
-    }
-
-    /**
-     * Returns true if the current node is the target node
-     * @param x : the x value on a 2D plane
-     * @param y : the y value on a 2D plane
-     */
-    private boolean isDest(int x, int y)
-    {
-        if (x == xTarget && y == yTarget)
-        {
-            return true;
-        }
-        return false;
-    }
-
-    /**
-     * Returns true if the row and column values are within the range of the
-     * matrix else returns false.
-     * @param row : the x value on a 2D plane
-     * @param col : the y value on a 2D plane
-     */
-    private boolean isValid(int row, int col)
-    {
-        return (row >= 0) && (row < Constant.X_NODES.value) &&
-                (col >= 0) && (col < Constant.Y_NODES.value);
-    }
-
-    /**
-     * Clears all previously set walls, and sets random walls throughout the
-     * grid as long as they are not the start or target node. 20% of the matrix
-     * will be walls.
-     */
-    public void randomizedGrid()
-    {
-        Random rng = new Random();
-        // clears previous walls
-        for (int i = 0; i < Constant.X_NODES.value; i++)
-        {
-            for (int j = 0; j < Constant.Y_NODES.value; j++)
-            {
-                if (!(i == xStart && j == yStart) && !(i == xTarget && j == yTarget))
-                {
-                    grid[i][j].isWall = false;
-                    grid[i][j].setBorder(Color.rgb(88, 89, 90));
-                }
-            }
-        }
-        // sets new walls
-        for (int i = 0; i < Constant.X_NODES.value; i++)
-        {
-            for (int j = 0; j < Constant.Y_NODES.value; j++)
-            {
-                if (!(i == xStart && j == yStart) && !(i == xTarget && j == yTarget))
-                {
-                    grid[i][j].isWall = (rng.nextInt(4) == 1) ? true : false;
-                    if (grid[i][j].isWall)
-                    {
-                        grid[i][j].setBorder(Color.rgb(37, 37, 37));
-                    }
-                }
-            }
-        }
-    }
-
-    /**
-     * Creates a node object for every element in the 2D matrix and adds this
-     * new node to a set consisting of the children of a Pane object (root).
-     * @param root : Pane object
-     */
-    void populateGrid(Pane root)
-    {
-        for (int i = 0; i < Constant.X_NODES.value; i++)
-        {
-            for (int j = 0; j < Constant.Y_NODES.value; j++)
-            {
-                grid[i][j] = new Node(i, j);
-                root.getChildren().add(grid[i][j]);
-            }
-        }
-        // sets the color of the target node
-        grid[xTarget][yTarget].setBorder(Color.rgb(0, 0, 255));
-        // sets the color of the starting node
-        grid[xStart][yStart].setBorder(Color.rgb(0, 255, 0));
-    }
-}
\ No newline at end of file
+/**
+ * A_Star class connects the grid displayed on the screen to the search
+ * engine i.e. start and target points, the canvas the grid is drawn on, the
+ * map of walls that is handed to the SearchEngine and the ring of events the
+ * search publishes for the playback. Searches run on a lane of a
+ * SearchScheduler: starting a search or editing the grid pre-empts the one
+ * running, and comparisons of several algorithms run on lanes of their own.
+ * The FX thread never waits for a search to stop: an edit is painted at
+ * once, but only applied to the map (whose listeners update the searches)
+ * once every search reading it has stopped, and the searches started
+ * afterwards wait for the edits made before them.
+ */
+
+package project_package;
+
+import javafx.application.Platform;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+class A_Star
+{
+    private int xTarget;
+    private int yTarget;
+    private int xStart;
+    private int yStart;
+    private final GridMap map;
+    private final int cellSize;
+    private GridCanvas canvas;
+    private final EventRing ring;
+    private SearchPlayback playback;
+    private volatile boolean maxSpeed;
+    private volatile int eventsPerFrame;
+    private volatile int[] lastPath;
+    // search that produced lastPath, and whether its outcome is displayed
+    private volatile PathCache lastSearch;
+    private volatile Algorithm lastAlgorithm;
+    private volatile boolean finished;
+    private volatile Algorithm algorithm;
+    // settings of the tunable algorithms
+    private volatile Heuristic heuristic = Heuristics.OCTILE;
+    private volatile float weight = 1;
+    // search currently running and its algorithm, null when idle
+    private volatile PathCache running;
+    private volatile Algorithm runningAlgorithm;
+    // metrics of the last query that finished
+    private volatile SearchMetrics metrics;
+    // one search per algorithm, kept so that searches with a precomputed
+    // state (HPA) are only built once and then follow the wall edits, each
+    // behind a cache of the paths already found
+    private final Map<Algorithm, PathCache> searches = new EnumMap<>(Algorithm.class);
+    private final SearchScheduler scheduler;
+    // lane of the search displayed on the grid
+    private final SearchScheduler.Lane lane;
+    // lane preparing the heuristic (the landmark tables) after edits
+    private final SearchScheduler.Lane preparation;
+    // last repair of an incremental search submitted to the lane
+    private volatile SearchScheduler.Job repair;
+    // edits of the map made so far, completed once they are all applied,
+    // FX thread only
+    private CompletableFuture<Void> edits = CompletableFuture.completedFuture(null);
+    // one lane per algorithm compared, guarded by itself
+    private final Map<Algorithm, SearchScheduler.Lane> comparisons = new EnumMap<>(Algorithm.class);
+    // search of each comparison lane, kept like the displayed ones and only
+    // used by the jobs of its lane, guarded by searches
+    private final Map<Algorithm, PathSearch> compared = new EnumMap<>(Algorithm.class);
+    // components of the free cells, follows the walls
+    private final ConnectivityIndex connectivity;
+    // file the displayed searches are recorded to, null when not recording
+    private volatile Path traceFile;
+    // recorded search being replayed, FX thread only
+    private TracePlayback replay;
+
+    /**
+     * Constructor that initialises the A_Star class variables
+     * @param columns : number of nodes in the x-direction
+     * @param rows : number of nodes in the y-direction
+     * @param cellSize : initial size of a node on the screen in pixels
+     * @param scheduler : the scheduler the searches run on
+     */
+    A_Star(int columns, int rows, int cellSize, SearchScheduler scheduler)
+    {
+        this(new GridMap(columns, rows), cellSize, scheduler);
+    }
+
+    /**
+     * Displays an existing map, e.g. one loaded from a file. The start and
+     * target nodes (top left and bottom right corners) are cleared of walls.
+     * @param map : the map to display and search
+     * @param cellSize : initial size of a node on the screen in pixels
+     * @param scheduler : the scheduler the searches run on
+     */
+    A_Star(GridMap map, int cellSize, SearchScheduler scheduler)
+    {
+        xTarget = map.width() - 1;
+        yTarget = map.height() - 1;
+        xStart = 0;
+        yStart = 0;
+        this.cellSize = cellSize;
+        this.map = map;
+        map.setWall(map.index(xStart, yStart), false);
+        map.setWall(map.index(xTarget, yTarget), false);
+        ring = new EventRing(1 << 16);
+        eventsPerFrame = 20;
+        algorithm = Algorithm.A_STAR;
+        this.scheduler = scheduler;
+        lane = scheduler.lane();
+        preparation = scheduler.lane();
+        connectivity = new ConnectivityIndex(map);
+        map.addListener(connectivity);
+    }
+
+    /**
+     * Returns the map being displayed, e.g. to save it.
+     */
+    GridMap map()
+    {
+        return map;
+    }
+
+    /**
+     * Selects the algorithm used by the next search.
+     */
+    void setAlgorithm(Algorithm algorithm)
+    {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Sets the heuristic of the tunable algorithms, their searches are
+     * created again with it.
+     */
+    void setHeuristic(Heuristic heuristic)
+    {
+        this.heuristic = heuristic;
+        dropSearches(true);
+        prepareHeuristic();
+    }
+
+    /**
+     * Builds the tables of the landmark heuristic, if selected, on a lane of
+     * its own once the edits made so far are applied. The searches do not
+     * wait for them, they use the estimates the heuristic can give without
+     * them meanwhile (see LandmarkHeuristic).
+     */
+    private void prepareHeuristic()
+    {
+        if (heuristic instanceof LandmarkHeuristic)
+        {
+            LandmarkHeuristic landmarks = (LandmarkHeuristic) heuristic;
+            preparation.submit(job -> landmarks.prepare(), edits);
+        }
+    }
+
+    /**
+     * Sets the weight of the heuristic (the initial one for the anytime
+     * search, never below its default), 1 for shortest paths.
+     */
+    void setWeight(float weight)
+    {
+        this.weight = weight;
+        dropSearches(true);
+    }
+
+    /**
+     * In max speed mode the search is not animated, only its final state is
+     * painted once it is over.
+     */
+    void setMaxSpeed(boolean maxSpeed)
+    {
+        this.maxSpeed = maxSpeed;
+    }
+
+    /**
+     * Sets the number of search events painted on every frame.
+     */
+    void setEventsPerFrame(int eventsPerFrame)
+    {
+        this.eventsPerFrame = eventsPerFrame;
+        if (playback != null)
+        {
+            playback.setEventsPerFrame(eventsPerFrame);
+        }
+    }
+
+    /**
+     * Records every search displayed on the grid to a trace file, each one
+     * replacing the trace of the previous one (see TraceRecorder).
+     * @param file : the trace file, null to stop recording
+     */
+    void setTraceFile(Path file)
+    {
+        traceFile = file;
+    }
+
+    /**
+     * Stops the searches and the frame timers of the playback and the
+     * canvas, called before the window is rebuilt.
+     */
+    void dispose()
+    {
+        stopSearches();
+        if (playback != null)
+        {
+            playback.stop();
+        }
+        if (canvas != null)
+        {
+            canvas.dispose();
+        }
+        edit(() ->
+        {
+            dropSearches(false);
+            map.removeListener(connectivity);
+        });
+        // the tables are of no use any more
+        preparation.cancel();
+    }
+
+    /**
+     * Forgets the searches created so far and stops them following the
+     * walls, they are created again on their next use.
+     * @param tunableOnly : only drop the searches of the tunable algorithms
+     */
+    private void dropSearches(boolean tunableOnly)
+    {
+        synchronized (searches)
+        {
+            Iterator<Map.Entry<Algorithm, PathCache>> it = searches.entrySet().iterator();
+            while (it.hasNext())
+            {
+                Map.Entry<Algorithm, PathCache> entry = it.next();
+                if (tunableOnly && !entry.getKey().isTunable())
+                {
+                    continue;
+                }
+                PathCache cache = entry.getValue();
+                map.removeListener(cache);
+                release(cache.search());
+                it.remove();
+            }
+            Iterator<Map.Entry<Algorithm, PathSearch>> comparing = compared.entrySet().iterator();
+            while (comparing.hasNext())
+            {
+                Map.Entry<Algorithm, PathSearch> entry = comparing.next();
+                if (!tunableOnly || entry.getKey().isTunable())
+                {
+                    release(entry.getValue());
+                    comparing.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops a search that follows the wall edits (HPA, D* Lite, flow field)
+     * from listening to the map.
+     */
+    private void release(PathSearch search)
+    {
+        if (search instanceof MapListener)
+        {
+            map.removeListener((MapListener) search);
+        }
+    }
+
+    /**
+     * Starts a search on the grid as it is now, pre-empting the one running
+     * (if any). The nodes painted by the previous search are erased first.
+     */
+    void startSearch()
+    {
+        stopReplay();
+        repair = null;
+        submit(this::aStarSearch);
+    }
+
+    /**
+     * Submits a job to the lane of the displayed search, it starts once the
+     * edits made so far are applied. A job that fails is reported, and the
+     * playback stops waiting for the end of its search.
+     */
+    private SearchScheduler.Job submit(SearchScheduler.SearchTask task)
+    {
+        SearchScheduler.Job job = lane.submit(task, edits);
+        job.finished().whenComplete((v, e) ->
+        {
+            if (e != null)
+            {
+                // on the FX thread, which submits the jobs: a job that is
+                // not cancelled is still the last one and the playback its
+                // own
+                Platform.runLater(() ->
+                {
+                    if (!job.isCancelled())
+                    {
+                        playback.abandon();
+                    }
+                    AlertBox.display("Error", "The search failed:\n" + e, 420, 160);
+                });
+            }
+        });
+        return job;
+    }
+
+    /**
+     * Applies an edit of the map once the searches running now (which are
+     * cancelled) and the edits made before have stopped, straight away when
+     * none is running. The caller does not wait for it: the grid is painted
+     * by the caller, and the searches submitted after the edit wait for it.
+     * The heuristic is then prepared for the new walls.
+     * @param change : the edit, run on the FX thread or a scheduler thread
+     */
+    private void edit(Runnable change)
+    {
+        List<CompletableFuture<Void>> stopped = new ArrayList<>();
+        stopped.add(edits.exceptionally(e -> null));
+        stopped.add(lane.cancel());
+        stopped.add(preparation.cancel());
+        synchronized (comparisons)
+        {
+            comparisons.values().forEach(comparison -> stopped.add(comparison.cancel()));
+        }
+        edits = CompletableFuture.allOf(stopped.toArray(new CompletableFuture<?>[0])).thenRun(change);
+        prepareHeuristic();
+    }
+
+    /**
+     * Replays a recorded search on the grid, paused at its first event: the
+     * running search is stopped, the nodes painted by the previous one are
+     * erased and the start and target are moved to those of the recording.
+     * Starting a search or editing the grid ends the replay.
+     * @param trace : the search recorded, on a grid of the same size
+     * @return the playback of the trace
+     */
+    TracePlayback replay(SearchTrace trace)
+    {
+        stopSearches();
+        playback.abandon();
+        eraseSearch();
+        canvas.paint(map.index(xStart, yStart), GridCanvas.EMPTY);
+        canvas.paint(map.index(xTarget, yTarget), GridCanvas.EMPTY);
+        edit(() ->
+        {
+            map.setWall(trace.start(), false);
+            map.setWall(trace.goal(), false);
+        });
+        xStart = map.x(trace.start());
+        yStart = map.y(trace.start());
+        xTarget = map.x(trace.goal());
+        yTarget = map.y(trace.goal());
+        canvas.paint(trace.goal(), GridCanvas.TARGET);
+        canvas.paint(trace.start(), GridCanvas.START);
+        // at the speed of the live playback
+        replay = new TracePlayback(trace, canvas, eventsPerFrame * 60.0);
+        replay.start();
+        return replay;
+    }
+
+    /**
+     * Ends the replay of a recorded search, if any, the grid keeps what it
+     * shows.
+     */
+    void stopReplay()
+    {
+        TracePlayback stopped = replay;
+        replay = null;
+        if (stopped != null)
+        {
+            stopped.close();
+        }
+    }
+
+    /**
+     * Stops the running search, the nodes it painted so far stay on the grid
+     * and its remaining events are dropped.
+     */
+    void cancelSearch()
+    {
+        lane.cancel();
+        synchronized (comparisons)
+        {
+            comparisons.values().forEach(SearchScheduler.Lane::cancel);
+        }
+        if (playback != null)
+        {
+            playback.abandon();
+        }
+    }
+
+    /**
+     * Returns true while a search runs or its events are being played back.
+     */
+    boolean isSearching()
+    {
+        return lane.isRunning() || (playback != null && playback.isPending());
+    }
+
+    /**
+     * Cancels every search, the displayed one and the comparisons, without
+     * waiting for them to stop: the edit that follows goes through edit,
+     * which applies it once they have. A replayed search is ended as well,
+     * and so is the repair of a path.
+     * @return true if the displayed search was running or being played
+     *         back, a repair does not count
+     */
+    private boolean stopSearches()
+    {
+        stopReplay();
+        SearchScheduler.Job repairing = repair;
+        boolean active = isSearching() && (repairing == null || repairing.isDone());
+        synchronized (comparisons)
+        {
+            comparisons.values().forEach(SearchScheduler.Lane::cancel);
+        }
+        lane.cancel();
+        return active;
+    }
+
+    /**
+     * aStarSearch() runs the selected algorithm (A star by default) at full
+     * speed. Unless max speed mode is on, every opened node (yellow), jump
+     * point (purple), expanded node (orange) and finally the shortest path
+     * (crimson) is published to the event ring and played back on the FX
+     * thread. The search only waits when the playback falls a whole ring
+     * behind. A query already answered on the same walls comes from the
+     * cache and only paints its path, one whose target is walled off is
+     * rejected without searching. While recording, the events also go to the
+     * trace file.
+     * @param job : the job running the search, it is abandoned as soon as
+     *              the job is cancelled
+     */
+    private void aStarSearch(SearchScheduler.Job job)
+    {
+        int epoch = playback.begin(this::eraseSearch);
+        if (xStart == xTarget && yStart == yTarget)
+        {
+            Platform.runLater(() -> AlertBox.display("---", "Already at target", 280, 140));
+            ring.put(EventRing.event(EventRing.DONE, epoch, 0));
+            return;
+        }
+        if (!connectivity.isConnected(map.index(xStart, yStart), map.index(xTarget, yTarget)))
+        {
+            Platform.runLater(() -> AlertBox.display("No path", "The target cannot be reached from the start", 320, 140));
+            ring.put(EventRing.event(EventRing.DONE, epoch, 0));
+            return;
+        }
+        PathCache engine = search(algorithm);
+        boolean animate = !maxSpeed;
+        SearchListener listener = null;
+        if (animate)
+        {
+            listener = new SearchListener()
+            {
+                @Override
+                public void cellOpened(int cell)
+                {
+                    publish(EventRing.OPEN, cell, job, epoch);
+                }
+
+                @Override
+                public void cellClosed(int cell)
+                {
+                    publish(EventRing.CLOSE, cell, job, epoch);
+                }
+
+                @Override
+                public void jumpPoint(int cell)
+                {
+                    publish(EventRing.JUMP, cell, job, epoch);
+                }
+            };
+        }
+        TraceRecorder recorder = record(listener);
+        engine.setListener((recorder != null) ? recorder : listener);
+        int[] path;
+        try
+        {
+            path = search(engine, algorithm);
+            if (recorder != null && path != null)
+            {
+                recorder.path(path);
+            }
+        }
+        finally
+        {
+            if (recorder != null)
+            {
+                closeTrace(recorder, job);
+            }
+        }
+        if (job.isCancelled())
+        {
+            return;
+        }
+        if (!animate)
+        {
+            displayFinalState(engine);
+        }
+        if (path != null)
+        {
+            displayPath(path, animate, job, epoch);
+        }
+        lastPath = path;
+        lastAlgorithm = algorithm;
+        lastSearch = engine;
+        // also sent in max speed mode, the playback then only reports the
+        // outcome
+        ring.put(EventRing.event(EventRing.DONE, epoch, 0));
+    }
+
+    /**
+     * Opens the trace the search about to run is recorded to, when recording.
+     * @param listener : the listener the recorder passes the events on to,
+     *                   may be null
+     * @return the recorder, null when not recording or the trace file could
+     *         not be created
+     */
+    private TraceRecorder record(SearchListener listener)
+    {
+        Path file = traceFile;
+        if (file == null)
+        {
+            return null;
+        }
+        try
+        {
+            TraceRecorder recorder = new TraceRecorder(file, map, map.index(xStart, yStart), map.index(xTarget, yTarget));
+            recorder.setListener(listener);
+            return recorder;
+        }
+        catch (IOException e)
+        {
+            Platform.runLater(() -> AlertBox.display("Error", "Could not record the search:\n" + e.getMessage(), 420, 160));
+            return null;
+        }
+    }
+
+    /**
+     * Closes a trace, also when the search was cancelled: the trace then
+     * holds the events up to the cancellation, and a failure to write it
+     * is not reported.
+     */
+    private void closeTrace(TraceRecorder recorder, SearchScheduler.Job job)
+    {
+        try
+        {
+            recorder.close();
+        }
+        catch (IOException e)
+        {
+            if (job.isCancelled())
+            {
+                return;
+            }
+            Platform.runLater(() -> AlertBox.display("Error", "Could not record the search:\n" + e.getMessage(), 420, 160));
+        }
+    }
+
+    /**
+     * Erases the nodes painted by the previous search so that another one
+     * can run on the same grid, the searches themselves need no reset.
+     */
+    private void eraseSearch()
+    {
+        finished = false;
+        lastSearch = null;
+        lastPath = null;
+        for (int cell = 0; cell < map.size(); cell++)
+        {
+            byte code = canvas.codeOf(cell);
+            if (code == GridCanvas.OPEN || code == GridCanvas.CLOSED || code == GridCanvas.JUMP || code == GridCanvas.PATH)
+            {
+                canvas.paint(cell, GridCanvas.EMPTY);
+            }
+        }
+    }
+
+    /**
+     * Runs the same query (start to target node) with several algorithms
+     * side by side, each on a lane of its own and with a search of its own,
+     * nothing is painted. The searches are kept for the next comparison like
+     * the displayed ones, so HPA is built once and the incremental searches
+     * repair their previous answer. At most as many searches as the
+     * scheduler has threads run at the same time, a comparison still
+     * running when another one starts or the grid is edited is cancelled.
+     * @param algorithms : the algorithms to compare
+     * @return the metrics of every algorithm, in the same order, completed
+     *         exceptionally if the comparison was cancelled or failed
+     */
+    CompletableFuture<List<SearchMetrics>> compare(List<Algorithm> algorithms)
+    {
+        int start = map.index(xStart, yStart);
+        int goal = map.index(xTarget, yTarget);
+        List<CompletableFuture<SearchMetrics>> results = new ArrayList<>();
+        for (Algorithm a : algorithms)
+        {
+            SearchScheduler.Lane comparison;
+            synchronized (comparisons)
+            {
+                comparison = comparisons.computeIfAbsent(a, k -> scheduler.lane());
+            }
+            CompletableFuture<SearchMetrics> result = new CompletableFuture<>();
+            SearchScheduler.Job job = comparison.submit(j ->
+            {
+                PathSearch search = comparedSearch(a);
+                int[] path = SearchEvent.search(search, a.toString(), map, start, goal);
+                result.complete(SearchMetrics.of(a.toString(), search, map, path));
+            }, edits);
+            // a cancelled job never completes its result
+            job.finished().whenComplete((v, e) ->
+            {
+                if (e != null)
+                {
+                    result.completeExceptionally(e);
+                }
+                else
+                {
+                    result.cancel(false);
+                }
+            });
+            results.add(result);
+        }
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> results.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Runs a query from the start to the target node, recorded as a JFR
+     * event (see SearchEvent) and with its metrics kept for the overlay.
+     */
+    private int[] search(PathCache engine, Algorithm algorithm)
+    {
+        runningAlgorithm = algorithm;
+        running = engine;
+        try
+        {
+            int[] path = SearchEvent.search(engine, algorithm.toString(), map,
+                    map.index(xStart, yStart), map.index(xTarget, yTarget));
+            metrics = SearchMetrics.of(algorithm.toString(), engine, map, path);
+            return path;
+        }
+        finally
+        {
+            running = null;
+        }
+    }
+
+    /**
+     * Returns the metrics of the running search, approximate as they are
+     * read while it runs, or else of the last query, null before the first
+     * one.
+     */
+    SearchMetrics metrics()
+    {
+        PathCache engine = running;
+        Algorithm algorithm = runningAlgorithm;
+        if (engine != null && algorithm != null)
+        {
+            return SearchMetrics.live(algorithm.toString(), engine);
+        }
+        return metrics;
+    }
+
+    private static boolean isIncremental(PathCache search)
+    {
+        return search != null && (search.search() instanceof DStarLiteSearch || search.search() instanceof FlowField);
+    }
+
+    /**
+     * Returns the search of an algorithm, created on its first use.
+     */
+    private PathCache search(Algorithm algorithm)
+    {
+        synchronized (searches)
+        {
+            return searches.computeIfAbsent(algorithm,
+                    a -> new PathCache(a.create(map, heuristic, weight), map, PathCache.DEFAULT_CAPACITY));
+        }
+    }
+
+    /**
+     * Returns the search of an algorithm on its comparison lane, created on
+     * its first use.
+     */
+    private PathSearch comparedSearch(Algorithm algorithm)
+    {
+        synchronized (searches)
+        {
+            return compared.computeIfAbsent(algorithm, a -> a.create(map, heuristic, weight));
+        }
+    }
+
+    /**
+     * Publishes an event for the playback, events of the start and target
+     * nodes are skipped so their colours are kept. Once the job is cancelled
+     * the events are dropped, the search stops at its next checkpoint.
+     */
+    private void publish(int type, int cell, SearchScheduler.Job job, int epoch)
+    {
+        if (isEndpoint(cell) || job.isCancelled())
+        {
+            return;
+        }
+        ring.put(EventRing.event(type, epoch, cell));
+    }
+
+    /**
+     * Paints every node touched by a search that was not animated.
+     */
+    private void displayFinalState(PathSearch engine)
+    {
+        for (int cell = 0; cell < map.size(); cell++)
+        {
+            if (engine.isReached(cell) && !isEndpoint(cell))
+            {
+                canvas.paint(cell, engine.isClosed(cell) ? GridCanvas.CLOSED : GridCanvas.OPEN);
+            }
+        }
+    }
+
+    /**
+     * Tells the user the outcome of the search once it is displayed.
+     */
+    private void searchFinished(boolean found)
+    {
+        finished = true;
+        if (found && isIncremental(lastSearch))
+        {
+            Platform.runLater(() -> AlertBox.display("Success", "Target was found, edit the grid to replan", 280, 140));
+        }
+        else if (found)
+        {
+            Platform.runLater(() -> AlertBox.display("Success", "Target was found, press start to search again", 320, 140));
+        }
+    }
+
+    /**
+     * Once an incremental search is over, every change of the walls, start
+     * or target repairs its path and the new path replaces the old one on
+     * the grid. A repair usually only updates the part of the search tree
+     * the change affects, but a new target makes D* Lite search from
+     * scratch and the flow field rebuild its whole field, so it runs on the
+     * lane like a search and the next change pre-empts it.
+     */
+    private void replan()
+    {
+        PathCache search = lastSearch;
+        if (!finished || !isIncremental(search))
+        {
+            return;
+        }
+        Algorithm algorithm = lastAlgorithm;
+        repair = submit(job -> repair(job, search, algorithm));
+    }
+
+    /**
+     * Repairs the path of an incremental search and paints it in place of
+     * the old one. A repair cancelled by the next change leaves the grid as
+     * it is, the next repair carries on with both changes.
+     */
+    private void repair(SearchScheduler.Job job, PathCache search, Algorithm algorithm)
+    {
+        search.setListener(null);
+        int[] path = null;
+        if (connectivity.isConnected(map.index(xStart, yStart), map.index(xTarget, yTarget)))
+        {
+            path = search(search, algorithm);
+        }
+        if (job.isCancelled())
+        {
+            return;
+        }
+        int[] old = lastPath;
+        if (old != null)
+        {
+            for (int cell : old)
+            {
+                if (!isEndpoint(cell) && !map.isWall(cell))
+                {
+                    canvas.paint(cell, GridCanvas.CLOSED);
+                }
+            }
+        }
+        if (path != null)
+        {
+            displayPath(path, false, null, 0);
+        }
+        lastPath = path;
+    }
+
+    /**
+     * Once algorithm is ran and the shortest path has been found we colour
+     * every node between the start and the target.
+     * @param path : the cells of the path, start and target included
+     * @param animate : publish the path to the playback instead of painting
+     *                  it straight away
+     * @param job : the job running the search when animated
+     * @param epoch : the epoch of the search when animated
+     */
+    private void displayPath(int[] path, boolean animate, SearchScheduler.Job job, int epoch)
+    {
+        for (int i = 1; i < path.length - 1; i++)
+        {
+            if (animate)
+            {
+                publish(EventRing.PATH, path[i], job, epoch);
+            }
+            else
+            {
+                canvas.paint(path[i], GridCanvas.PATH);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the cell is the start or the target node, whose colours
+     * are never overwritten by the search.
+     */
+    private boolean isEndpoint(int cell)
+    {
+        return cell == map.index(xStart, yStart) || cell == map.index(xTarget, yTarget);
+    }
+
+    /**
+     * Sets or clears the wall of a cell and paints it accordingly.
+     */
+    private void setWall(int cell, boolean wall)
+    {
+        map.setWall(cell, wall);
+        canvas.paint(cell, wall ? GridCanvas.WALL : GridCanvas.EMPTY);
+    }
+
+    /**
+     * Returns true if the grid shows a wall in the cell, which the map may
+     * not have yet while the edit is pending.
+     */
+    private boolean isWallShown(int cell)
+    {
+        return canvas.codeOf(cell) == GridCanvas.WALL;
+    }
+
+    /**
+     * Called after every change of the walls, start or target: a search
+     * that was running (stopped by stopSearches before the change) starts
+     * again on the new grid, a finished incremental search repairs its path.
+     * @param active : a search was running or being played back
+     */
+    private void gridChanged(boolean active)
+    {
+        if (active)
+        {
+            startSearch();
+        }
+        else
+        {
+            replan();
+        }
+    }
+
+    /**
+     * Secondary click sets the target node, primary click sets or removes a
+     * wall as long as the node is not the start or target node.
+     */
+    private void cellPressed(int cell, MouseEvent e)
+    {
+        int start = map.index(xStart, yStart);
+        int target = map.index(xTarget, yTarget);
+        if (e.isSecondaryButtonDown())
+        {
+            boolean active = stopSearches();
+            canvas.paint(target, (target == start) ? GridCanvas.START : GridCanvas.EMPTY);
+            edit(() -> map.setWall(cell, false));
+            xTarget = map.x(cell);
+            yTarget = map.y(cell);
+            canvas.paint(cell, GridCanvas.TARGET);
+            gridChanged(active);
+        }
+        else if (e.isPrimaryButtonDown() && cell != start && cell != target)
+        {
+            boolean active = stopSearches();
+            boolean wall = !isWallShown(cell);
+            canvas.paint(cell, wall ? GridCanvas.WALL : GridCanvas.EMPTY);
+            edit(() -> map.setWall(cell, wall));
+            gridChanged(active);
+        }
+    }
+
+    /**
+     * Dragging with the primary button moves the start node to the node under
+     * the cursor.
+     */
+    private void cellDragged(int cell, MouseEvent e)
+    {
+        int start = map.index(xStart, yStart);
+        if (!e.isPrimaryButtonDown() || cell == start)
+        {
+            return;
+        }
+        int target = map.index(xTarget, yTarget);
+        boolean active = stopSearches();
+        canvas.paint(start, (start == target) ? GridCanvas.TARGET : GridCanvas.EMPTY);
+        edit(() -> map.setWall(cell, false));
+        xStart = map.x(cell);
+        yStart = map.y(cell);
+        canvas.paint(cell, GridCanvas.START);
+        gridChanged(active);
+    }
+
+    /**
+     * Clears all previously set walls, and sets random walls throughout the
+     * grid as long as they are not the start or target node. 25% of the matrix
+     * will be walls. A running search starts again on the new grid, the walls
+     * are set as one edit, painted as they are set.
+     */
+    public void randomizedGrid()
+    {
+        boolean active = stopSearches();
+        int start = map.index(xStart, yStart);
+        int target = map.index(xTarget, yTarget);
+        edit(() ->
+        {
+            // relabelled once on the next query rather than after every wall
+            connectivity.invalidate();
+            Random rng = new Random();
+            for (int cell = 0; cell < map.size(); cell++)
+            {
+                if (cell != start && cell != target)
+                {
+                    setWall(cell, rng.nextInt(4) == 1);
+                }
+            }
+        });
+        if (active)
+        {
+            startSearch();
+        }
+    }
+
+    /**
+     * Creates the canvas the grid is drawn on, sized to the viewport, paints
+     * the walls the map already has and adds it to the children of a Pane
+     * object (root).
+     * @param root : Pane object
+     */
+    void populateGrid(Pane root)
+    {
+        canvas = new GridCanvas(map.width(), map.height(), cellSize,
+                Constant.PANE_WIDTH.value, Constant.PANE_HEIGHT.value);
+        canvas.setOnCellPressed(this::cellPressed);
+        canvas.setOnCellDragged(this::cellDragged);
+        root.getChildren().add(canvas.getCanvas());
+        playback = new SearchPlayback(ring, canvas, eventsPerFrame);
+        playback.setOnFinished(() -> searchFinished(lastPath != null));
+        playback.start();
+        for (int cell = 0; cell < map.size(); cell++)
+        {
+            if (map.isWall(cell))
+            {
+                canvas.paint(cell, GridCanvas.WALL);
+            }
+        }
+        // sets the color of the target node
+        canvas.paint(map.index(xTarget, yTarget), GridCanvas.TARGET);
+        // sets the color of the starting node
+        canvas.paint(map.index(xStart, yStart), GridCanvas.START);
+    }
+}
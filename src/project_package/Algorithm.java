@@ -0,0 +1,138 @@
+package project_package;
+
+/**
+ * The path-finding algorithms that can be selected in the UI. Every constant
+ * creates the PathSearch implementing it for a given map. All of them return
+ * shortest paths except HPA, whose paths are near-optimal, and the tunable
+ * ones when their heuristic is weighted (or not admissible). The anytime
+ * search starts with a weight and improves its path while its time budget
+ * lasts.
+ */
+
+enum Algorithm
+{
+    A_STAR("A*", true)
+    {
+        @Override
+        PathSearch create(GridMap map, Heuristic heuristic, float weight)
+        {
+            return new SearchEngine(map, heuristic, weight);
+        }
+    },
+    JUMP_POINT("Jump Point Search", true)
+    {
+        @Override
+        PathSearch create(GridMap map, Heuristic heuristic, float weight)
+        {
+            return new JumpPointSearch(map, heuristic, weight);
+        }
+    },
+    BIDIRECTIONAL("Bidirectional A*", false)
+    {
+        @Override
+        PathSearch create(GridMap map, Heuristic heuristic, float weight)
+        {
+            return new BidirectionalSearch(map, false);
+        }
+    },
+    BIDIRECTIONAL_PARALLEL("Bidirectional A* (2 threads)", false)
+    {
+        @Override
+        PathSearch create(GridMap map, Heuristic heuristic, float weight)
+        {
+            return new BidirectionalSearch(map, true);
+        }
+    },
+    PARALLEL("Parallel A* (HDA*)", true)
+    {
+        @Override
+        PathSearch create(GridMap map, Heuristic heuristic, float weight)
+        {
+            return new ParallelSearch(map, heuristic, weight, ParallelSearch.DEFAULT_THREADS);
+        }
+    },
+    HPA("HPA* (hierarchical)", false)
+    {
+        @Override
+        PathSearch create(GridMap map, Heuristic heuristic, float weight)
+        {
+            return new HierarchicalSearch(map, HierarchicalSearch.DEFAULT_CLUSTER_SIZE);
+        }
+    },
+    D_STAR_LITE("D* Lite (incremental)", false)
+    {
+        @Override
+        PathSearch create(GridMap map, Heuristic heuristic, float weight)
+        {
+            return new DStarLiteSearch(map);
+        }
+    },
+    FLOW_FIELD("Flow field (one target)", false)
+    {
+        @Override
+        PathSearch create(GridMap map, Heuristic heuristic, float weight)
+        {
+            return new FlowField(map);
+        }
+    },
+    ANYTIME("ARA* (anytime)", true)
+    {
+        @Override
+        PathSearch create(GridMap map)
+        {
+            return create(map, Heuristics.OCTILE, AnytimeSearch.DEFAULT_WEIGHT);
+        }
+
+        @Override
+        PathSearch create(GridMap map, Heuristic heuristic, float weight)
+        {
+            // started with the shortest path weight it would be plain A*
+            return new AnytimeSearch(map, heuristic, Math.max(weight, AnytimeSearch.DEFAULT_WEIGHT),
+                    AnytimeSearch.DEFAULT_STEP, AnytimeSearch.DEFAULT_BUDGET_NANOS);
+        }
+    };
+
+    private final String label;
+    private final boolean tunable;
+
+    Algorithm(String label, boolean tunable)
+    {
+        this.label = label;
+        this.tunable = tunable;
+    }
+
+    /**
+     * Creates the search with its default settings (octile distance, no
+     * weight).
+     */
+    PathSearch create(GridMap map)
+    {
+        return create(map, Heuristics.OCTILE, 1);
+    }
+
+    /**
+     * Creates the search with a given heuristic and weight, the algorithms
+     * that are not tunable ignore both.
+     * @param map : the map to search
+     * @param heuristic : estimate of the distance to the goal
+     * @param weight : factor applied to the heuristic, the initial one for
+     *                 the anytime search, which starts at no less than
+     *                 AnytimeSearch.DEFAULT_WEIGHT
+     */
+    abstract PathSearch create(GridMap map, Heuristic heuristic, float weight);
+
+    /**
+     * Returns true if the search uses the heuristic and weight it is
+     * created with.
+     */
+    boolean isTunable()
+    {
+        return tunable;
+    }
+
+    @Override
+    public String toString()
+    {
+        return label;
+    }
+}
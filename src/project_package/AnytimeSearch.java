@@ -0,0 +1,336 @@
+package project_package;
+
+import java.util.Arrays;
+
+/**
+ * AnytimeSearch implements ARA* (anytime repairing A star). The first
+ * iteration is a weighted A star with a large weight, which finds a path
+ * quickly, then the weight is lowered step by step and every iteration
+ * improves the path by only re-expanding the cells whose G value dropped
+ * since they were expanded (kept aside in the INCONS list instead of being
+ * reopened within an iteration). Each path comes with a bound: its cost is
+ * at most bound() times the cost of the shortest path. The search returns
+ * the best path found once the bound reaches 1 (the path is a shortest path)
+ * or the time budget runs out, the first path is always completed whatever
+ * the budget.
+ */
+
+class AnytimeSearch implements PathSearch
+{
+    static final float DEFAULT_WEIGHT = 3;
+    static final float DEFAULT_STEP = 0.5f;
+    static final long DEFAULT_BUDGET_NANOS = 100_000_000L;
+    // expansions between two reads of the clock
+    private static final int CLOCK_MASK = 63;
+
+    private final GridMap map;
+    private final Heuristic heuristic;
+    private final float initialWeight;
+    private final float step;
+    private final long budgetNanos;
+    private final SearchContext context;
+    private final OpenSet open;
+    // iteration in which each cell was last expanded, or added to INCONS
+    private final int[] closedIn;
+    private final int[] inconsIn;
+    private int iteration;
+    private int[] incons = new int[64];
+    private int inconsCount;
+    private int[] drained = new int[64];
+    private SearchListener listener;
+    private final SearchCounters counters = new SearchCounters();
+    private int goal;
+    private int xTarget;
+    private int yTarget;
+    private float weight;
+    private float bound = Float.POSITIVE_INFINITY;
+    private int iterations;
+
+    /**
+     * @param map : the map to search, walls may change between searches
+     * @param heuristic : estimate of the distance to the goal, consistent
+     *                    for the bounds to hold
+     * @param initialWeight : weight of the heuristic in the first iteration
+     * @param step : amount the weight is lowered by after every iteration
+     * @param budgetNanos : time after which the best path so far is
+     *                      returned, counted from the start of the query
+     */
+    AnytimeSearch(GridMap map, Heuristic heuristic, float initialWeight, float step, long budgetNanos)
+    {
+        if (!(initialWeight >= 1) || !(step > 0) || budgetNanos < 0)
+        {
+            throw new IllegalArgumentException("Invalid anytime search settings");
+        }
+        this.map = map;
+        this.heuristic = heuristic;
+        this.initialWeight = initialWeight;
+        this.step = step;
+        this.budgetNanos = budgetNanos;
+        context = new SearchContext(map.size());
+        open = new BinaryHeapOpenSet(map.size());
+        closedIn = new int[map.size()];
+        inconsIn = new int[map.size()];
+    }
+
+    @Override
+    public void setListener(SearchListener listener)
+    {
+        this.listener = listener;
+    }
+
+    @Override
+    public int[] findPath(int start, int goal)
+    {
+        long begin = System.nanoTime();
+        long deadline = begin + budgetNanos;
+        counters.reset();
+        context.next();
+        open.clear();
+        inconsCount = 0;
+        nextIteration();
+        iterations = 0;
+        bound = Float.POSITIVE_INFINITY;
+        if (map.isWall(start) || map.isWall(goal))
+        {
+            return null;
+        }
+        if (start == goal)
+        {
+            bound = 1;
+            return new int[]{start};
+        }
+        this.goal = goal;
+        xTarget = map.x(goal);
+        yTarget = map.y(goal);
+        weight = initialWeight;
+        context.setG(start, 0);
+        context.setParent(start, start);
+        push(start);
+        counters.generated = 1;
+        long searching = System.nanoTime();
+        counters.setupNanos = searching - begin;
+
+        int[] best = null;
+        while (improvePath(deadline, best == null))
+        {
+            float cost = context.g(goal);
+            if (cost == Float.POSITIVE_INFINITY)
+            {
+                break;
+            }
+            long building = System.nanoTime();
+            best = buildPath(start, goal);
+            counters.pathNanos += System.nanoTime() - building;
+            iterations++;
+            // the cheapest unexpanded cell bounds the cost of a shortest path
+            int n = drainOpen();
+            float lower = Float.POSITIVE_INFINITY;
+            for (int i = 0; i < n; i++)
+            {
+                lower = Math.min(lower, context.g(drained[i]) + heuristic(drained[i]));
+            }
+            for (int i = 0; i < inconsCount; i++)
+            {
+                lower = Math.min(lower, context.g(incons[i]) + heuristic(incons[i]));
+            }
+            bound = Math.max(1, Math.min(weight, cost / lower));
+            if (bound <= 1 || System.nanoTime() - deadline >= 0)
+            {
+                break;
+            }
+            // queuing the open cells again takes a while on large maps
+            SearchScheduler.checkpoint();
+            // next iteration: lower weight, the INCONS cells are queued again
+            // and every key is recomputed with the new weight
+            weight = Math.max(1, weight - step);
+            nextIteration();
+            for (int i = 0; i < n; i++)
+            {
+                push(drained[i]);
+            }
+            for (int i = 0; i < inconsCount; i++)
+            {
+                push(incons[i]);
+            }
+            inconsCount = 0;
+        }
+        counters.searchNanos = System.nanoTime() - searching - counters.pathNanos;
+        return best;
+    }
+
+    /**
+     * Expands cells until the goal has the smallest key. Unless the
+     * iteration must finish, it is abandoned once the deadline has passed.
+     * @return false if the iteration was abandoned
+     */
+    private boolean improvePath(long deadline, boolean mustFinish)
+    {
+        int expanded = 0;
+        while (!open.isEmpty() && context.g(goal) > open.peekF())
+        {
+            if (!mustFinish && (++expanded & CLOCK_MASK) == 0 && System.nanoTime() - deadline >= 0)
+            {
+                return false;
+            }
+            int current = open.pop();
+            closedIn[current] = iteration;
+            context.close(current);
+            counters.expanded++;
+            SearchScheduler.checkpoint(counters.expanded);
+            if (listener != null)
+            {
+                listener.cellClosed(current);
+            }
+            expand(current);
+        }
+        return true;
+    }
+
+    private void expand(int current)
+    {
+        int x = map.x(current);
+        int y = map.y(current);
+        float gcurrent = context.g(current);
+        for (int[] s : GridMap.SUCC)
+        {
+            int nx = x + s[0];
+            int ny = y + s[1];
+            if (!map.isValid(nx, ny))
+            {
+                continue;
+            }
+            int next = map.index(nx, ny);
+            if (map.isWall(next))
+            {
+                continue;
+            }
+            float gnext = gcurrent + ((s[0] == 0 || s[1] == 0) ? 1 : SearchEngine.SQRT2);
+            float gold = context.g(next);
+            if (gnext >= gold)
+            {
+                continue;
+            }
+            if (gold == Float.POSITIVE_INFINITY)
+            {
+                counters.generated++;
+            }
+            context.setG(next, gnext);
+            context.setParent(next, current);
+            if (closedIn[next] != iteration)
+            {
+                push(next);
+                if (listener != null)
+                {
+                    listener.cellOpened(next);
+                }
+            }
+            else if (inconsIn[next] != iteration)
+            {
+                // expanded in this iteration already, it waits for the next
+                inconsIn[next] = iteration;
+                counters.reopened++;
+                if (inconsCount == incons.length)
+                {
+                    incons = Arrays.copyOf(incons, inconsCount * 2);
+                }
+                incons[inconsCount++] = next;
+            }
+        }
+    }
+
+    private void push(int cell)
+    {
+        float h = heuristic(cell);
+        open.push(cell, context.g(cell) + weight * h, h);
+        counters.open(open.size());
+    }
+
+    /**
+     * Empties the open set into the drained array.
+     * @return the number of cells drained
+     */
+    private int drainOpen()
+    {
+        int n = 0;
+        while (!open.isEmpty())
+        {
+            if (n == drained.length)
+            {
+                drained = Arrays.copyOf(drained, n * 2);
+            }
+            drained[n++] = open.pop();
+        }
+        return n;
+    }
+
+    /**
+     * Starts a new iteration, no cell is closed or inconsistent in it yet.
+     */
+    private void nextIteration()
+    {
+        if (++iteration == Integer.MAX_VALUE)
+        {
+            Arrays.fill(closedIn, 0);
+            Arrays.fill(inconsIn, 0);
+            iteration = 1;
+        }
+    }
+
+    private float heuristic(int cell)
+    {
+        counters.heuristicEvaluations++;
+        return heuristic.estimate(cell, goal, Math.abs(map.x(cell) - xTarget), Math.abs(map.y(cell) - yTarget));
+    }
+
+    private int[] buildPath(int start, int goal)
+    {
+        int length = 1;
+        for (int c = goal; c != start; c = context.parent(c))
+        {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int c = goal, i = length - 1; i >= 0; c = context.parent(c), i--)
+        {
+            path[i] = c;
+        }
+        return path;
+    }
+
+    /**
+     * Returns the suboptimality bound of the last path returned: its cost is
+     * at most bound() times the cost of a shortest path. Infinity when no
+     * path was found.
+     */
+    float bound()
+    {
+        return bound;
+    }
+
+    /**
+     * Returns the number of paths the last query found, one per completed
+     * iteration.
+     */
+    int iterations()
+    {
+        return iterations;
+    }
+
+    @Override
+    public boolean isReached(int cell)
+    {
+        return context.isReached(cell);
+    }
+
+    @Override
+    public boolean isClosed(int cell)
+    {
+        return context.isClosed(cell);
+    }
+
+    @Override
+    public SearchCounters counters()
+    {
+        return counters;
+    }
+}
@@ -0,0 +1,166 @@
+package project_package;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * BatchRouter solves many (start, goal) queries on the same static map in
+ * parallel. The router searches a private snapshot of the map, so the map
+ * it was built from can keep being edited. The queries are split over the
+ * workers of a ForkJoinPool and every worker thread keeps its own search
+ * object (and thereby its own scratch arrays) for all the queries it runs.
+ * Results come back in the order of the queries, every query searched is
+ * recorded as a SearchEvent. The queries whose goal cannot be reached from
+ * their start are filtered out with a ConnectivityIndex of the snapshot
+ * before the others are dispatched, they cost no search at all. A router is
+ * thread safe, close() releases its threads.
+ */
+
+class BatchRouter implements AutoCloseable
+{
+    /**
+     * A single path query, cells are map indices (x * height + y).
+     */
+    static final class Query
+    {
+        final int start;
+        final int goal;
+
+        Query(int start, int goal)
+        {
+            this.start = start;
+            this.goal = goal;
+        }
+    }
+
+    private final GridMap map;
+    private final Algorithm algorithm;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<PathSearch> engines;
+    private final ConnectivityIndex connectivity;
+
+    /**
+     * @param map : the map to route on, a snapshot is taken
+     * @param algorithm : algorithm used for every query
+     * @param threads : number of worker threads
+     */
+    BatchRouter(GridMap map, Algorithm algorithm, int threads)
+    {
+        this.map = map.copy();
+        this.algorithm = algorithm;
+        pool = new ForkJoinPool(threads);
+        engines = ThreadLocal.withInitial(() -> algorithm.create(this.map));
+        connectivity = new ConnectivityIndex(this.map);
+    }
+
+    /**
+     * Uses the A star engine and one worker per available core.
+     */
+    BatchRouter(GridMap map)
+    {
+        this(map, Algorithm.A_STAR, Runtime.getRuntime().availableProcessors());
+    }
+
+    GridMap map()
+    {
+        return map;
+    }
+
+    /**
+     * Returns the components of the snapshot, e.g. to filter or group
+     * queries before routing them.
+     */
+    ConnectivityIndex connectivity()
+    {
+        return connectivity;
+    }
+
+    /**
+     * Returns true if the goal of the query can be reached from its start.
+     */
+    boolean isReachable(Query query)
+    {
+        return connectivity.isConnected(query.start, query.goal);
+    }
+
+    /**
+     * Solves every query.
+     * @param queries : the queries to solve
+     * @return the path of each query (see PathSearch.findPath) at the index
+     *         of the query, null for the queries without a path
+     */
+    int[][] route(List<Query> queries)
+    {
+        int[][] paths = new int[queries.size()][];
+        // indices of the reachable queries, the others stay null
+        int[] reachable = new int[queries.size()];
+        int n = 0;
+        for (int i = 0; i < queries.size(); i++)
+        {
+            if (isReachable(queries.get(i)))
+            {
+                reachable[n++] = i;
+            }
+        }
+        if (n == 0)
+        {
+            return paths;
+        }
+        // a few chunks per worker so idle workers can steal the rest
+        int chunk = Math.max(1, n / (pool.getParallelism() * 8));
+        pool.invoke(new Chunk(queries, reachable, paths, 0, n, chunk));
+        return paths;
+    }
+
+    @Override
+    public void close()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Solves the queries reachable[from, to), splitting the range in two
+     * until it holds at most threshold queries.
+     */
+    private class Chunk extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Query> queries;
+        private final int[] reachable;
+        private final int[][] paths;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        private Chunk(List<Query> queries, int[] reachable, int[][] paths, int from, int to, int threshold)
+        {
+            this.queries = queries;
+            this.reachable = reachable;
+            this.paths = paths;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > threshold)
+            {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Chunk(queries, reachable, paths, from, middle, threshold),
+                        new Chunk(queries, reachable, paths, middle, to, threshold));
+                return;
+            }
+            PathSearch engine = engines.get();
+            for (int k = from; k < to; k++)
+            {
+                int i = reachable[k];
+                Query q = queries.get(i);
+                paths[i] = SearchEvent.search(engine, algorithm.toString(), map, q.start, q.goal);
+            }
+        }
+    }
+}
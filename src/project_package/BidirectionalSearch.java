@@ -0,0 +1,398 @@
+package project_package;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BidirectionalSearch runs one A star frontier forward from the start and a
+ * second one backward from the goal. Both frontiers use the average of the
+ * two octile distance heuristics as their potential,
+ * (h(v, goal) - h(v, start)) / 2 forward and its opposite backward, which
+ * keeps the reduced costs of both directions identical and non-negative.
+ * Every time a frontier reaches a cell already reached by the other one, the
+ * joined path becomes a candidate and the best candidate cost (mu) is kept.
+ * The search stops as soon as the smallest keys of the two frontiers add up
+ * to mu or more: no unexplored path can beat mu any more, so the path is
+ * optimal for the octile cost model of SearchEngine, and the frontiers meet
+ * around the middle of the path.
+ * In parallel mode each frontier runs on its own thread, the G values the
+ * other thread reads are then published with volatile array accesses (see
+ * SearchContext). The backward frontier runs on a helper thread kept by the
+ * search for its next queries and released once idle.
+ */
+
+class BidirectionalSearch implements PathSearch
+{
+    private final GridMap map;
+    private final boolean parallel;
+    private final Frontier forward;
+    private final Frontier backward;
+    private SearchListener listener;
+    // best meeting cell and the cost of the path through it, guarded by this
+    private volatile float mu;
+    private int meet;
+    private volatile boolean stop;
+    // thread of the backward frontier in parallel mode, null otherwise
+    private final ThreadPoolExecutor helper;
+    // timings of the whole search
+    private long setupNanos;
+    private long searchNanos;
+    private long pathNanos;
+
+    /**
+     * @param map : the map to search, walls may change between searches
+     * @param parallel : run the backward frontier on a second thread
+     */
+    BidirectionalSearch(GridMap map, boolean parallel)
+    {
+        this.map = map;
+        this.parallel = parallel;
+        forward = new Frontier();
+        backward = new Frontier();
+        forward.other = backward;
+        backward.other = forward;
+        if (parallel)
+        {
+            helper = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r ->
+            {
+                Thread thread = new Thread(r, "bidirectional-backward");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // an idle search costs no thread
+            helper.allowCoreThreadTimeOut(true);
+        }
+        else
+        {
+            helper = null;
+        }
+    }
+
+    @Override
+    public void setListener(SearchListener listener)
+    {
+        this.listener = listener;
+    }
+
+    @Override
+    public int[] findPath(int start, int goal)
+    {
+        long begin = System.nanoTime();
+        setupNanos = 0;
+        searchNanos = 0;
+        pathNanos = 0;
+        forward.reset(start, goal);
+        backward.reset(goal, start);
+        mu = Float.POSITIVE_INFINITY;
+        meet = -1;
+        stop = false;
+        if (map.isWall(start) || map.isWall(goal))
+        {
+            return null;
+        }
+        if (start == goal)
+        {
+            return new int[]{start};
+        }
+        forward.listener = backward.listener = parallel && listener != null ? synchronize(listener) : listener;
+        long searching = System.nanoTime();
+        setupNanos = searching - begin;
+
+        if (parallel)
+        {
+            Future<?> running = helper.submit(backward::run);
+            try
+            {
+                forward.run();
+            }
+            finally
+            {
+                // only the calling thread sees a cancellation, the helper
+                // has to be stopped before the frontiers can be reused
+                stop = true;
+                awaitUninterruptibly(running);
+            }
+        }
+        else
+        {
+            // expand the smaller frontier first, it is the cheaper one to grow
+            while (!forward.open.isEmpty() && !backward.open.isEmpty() && !stop)
+            {
+                if (forward.open.peekF() + backward.open.peekF() >= mu)
+                {
+                    break;
+                }
+                Frontier side = (forward.open.size() <= backward.open.size()) ? forward : backward;
+                side.expand(side.open.pop());
+            }
+        }
+        long found = System.nanoTime();
+        searchNanos = found - searching;
+        int[] path = (meet < 0) ? null : buildPath();
+        pathNanos = System.nanoTime() - found;
+        return path;
+    }
+
+    /**
+     * Waits for the backward frontier, a failure of its thread is thrown on
+     * the calling one.
+     */
+    private static void awaitUninterruptibly(Future<?> running)
+    {
+        boolean interrupted = false;
+        Throwable failure = null;
+        while (true)
+        {
+            try
+            {
+                running.get();
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+            catch (ExecutionException e)
+            {
+                failure = e.getCause();
+                break;
+            }
+        }
+        if (interrupted)
+        {
+            // the cancellation of the query, seen by its next checkpoint
+            Thread.currentThread().interrupt();
+        }
+        if (failure instanceof RuntimeException)
+        {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error)
+        {
+            throw (Error) failure;
+        }
+    }
+
+    /**
+     * Records a path through cell if it is cheaper than the best one so far.
+     */
+    private synchronized void offer(int cell, float cost)
+    {
+        if (cost < mu)
+        {
+            mu = cost;
+            meet = cell;
+        }
+    }
+
+    /**
+     * Joins the forward parents from the meeting cell back to the start and
+     * the backward parents from the meeting cell on to the goal.
+     */
+    private int[] buildPath()
+    {
+        int length = 0;
+        for (int c = meet; ; c = forward.context.parent(c))
+        {
+            length++;
+            if (forward.context.parent(c) == c)
+            {
+                break;
+            }
+        }
+        int head = length;
+        for (int c = meet; backward.context.parent(c) != c; c = backward.context.parent(c))
+        {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int c = meet, i = head - 1; i >= 0; c = forward.context.parent(c), i--)
+        {
+            path[i] = c;
+        }
+        for (int c = backward.context.parent(meet), i = head; i < length; c = backward.context.parent(c), i++)
+        {
+            path[i] = c;
+        }
+        return path;
+    }
+
+    /**
+     * Serialises the callbacks of the two frontier threads, listeners are
+     * written for a single search thread.
+     */
+    private static SearchListener synchronize(SearchListener listener)
+    {
+        return new SearchListener()
+        {
+            @Override
+            public synchronized void cellOpened(int cell)
+            {
+                listener.cellOpened(cell);
+            }
+
+            @Override
+            public synchronized void cellClosed(int cell)
+            {
+                listener.cellClosed(cell);
+            }
+        };
+    }
+
+    @Override
+    public boolean isReached(int cell)
+    {
+        return forward.context.isReached(cell) || backward.context.isReached(cell);
+    }
+
+    @Override
+    public boolean isClosed(int cell)
+    {
+        return forward.context.isClosed(cell) || backward.context.isClosed(cell);
+    }
+
+    /**
+     * Returns the sum of the counters of both frontiers, a new object on
+     * every call: the metrics overlay reads them while the search thread
+     * fills in its own.
+     */
+    @Override
+    public SearchCounters counters()
+    {
+        SearchCounters counters = new SearchCounters();
+        counters.add(forward.counters);
+        counters.add(backward.counters);
+        counters.setupNanos = setupNanos;
+        counters.searchNanos = searchNanos;
+        counters.pathNanos = pathNanos;
+        return counters;
+    }
+
+    /**
+     * One direction of the search: an A star frontier from its own source
+     * towards its own target.
+     */
+    private class Frontier
+    {
+        private final SearchContext context = new SearchContext(map.size(), parallel);
+        private final OpenSet open = new BinaryHeapOpenSet(map.size());
+        private Frontier other;
+        private SearchListener listener;
+        private int xSource;
+        private int ySource;
+        private int xTarget;
+        private int yTarget;
+        private final SearchCounters counters = new SearchCounters();
+        // key of the last expanded cell, a lower bound of every key left in
+        // the open set that the other thread can read in parallel mode
+        private volatile double top;
+
+        private void reset(int source, int target)
+        {
+            context.next();
+            open.clear();
+            counters.reset();
+            top = Double.NEGATIVE_INFINITY;
+            xSource = map.x(source);
+            ySource = map.y(source);
+            xTarget = map.x(target);
+            yTarget = map.y(target);
+            context.setParent(source, source);
+            context.setG(source, 0);
+            float p = potential(xSource, ySource);
+            open.push(source, p, p);
+            counters.generated = 1;
+            counters.peakOpen = 1;
+        }
+
+        /**
+         * Expands cells until the two frontiers can no longer improve mu,
+         * used by the thread of this frontier in parallel mode.
+         */
+        private void run()
+        {
+            while (!stop && !open.isEmpty() && open.peekF() + other.top < mu)
+            {
+                top = open.peekF();
+                expand(open.pop());
+            }
+            // the other frontier can stop as well: either mu is proven or
+            // this frontier ran out of cells
+            stop = true;
+        }
+
+        private void expand(int current)
+        {
+            context.close(current);
+            counters.expanded++;
+            SearchScheduler.checkpoint(counters.expanded);
+            if (listener != null)
+            {
+                listener.cellClosed(current);
+            }
+            int x = map.x(current);
+            int y = map.y(current);
+            float gcurrent = context.g(current);
+            for (int[] s : GridMap.SUCC)
+            {
+                int nx = x + s[0];
+                int ny = y + s[1];
+                if (!map.isValid(nx, ny))
+                {
+                    continue;
+                }
+                int next = map.index(nx, ny);
+                if (context.isClosed(next) || map.isWall(next))
+                {
+                    continue;
+                }
+                float gnext = gcurrent + ((s[0] == 0 || s[1] == 0) ? 1 : SearchEngine.SQRT2);
+                float gold = context.g(next);
+                if (gnext < gold)
+                {
+                    if (gold == Float.POSITIVE_INFINITY)
+                    {
+                        counters.generated++;
+                    }
+                    else if (context.isClosed(next))
+                    {
+                        counters.reopened++;
+                    }
+                    context.setParent(next, current);
+                    context.setG(next, gnext);
+                    gold = gnext;
+                    float pnext = potential(nx, ny);
+                    open.push(next, gnext + pnext, pnext);
+                    counters.open(open.size());
+                    if (listener != null)
+                    {
+                        listener.cellOpened(next);
+                    }
+                }
+                float gother = other.context.g(next);
+                if (gother != Float.POSITIVE_INFINITY && gold + gother < mu)
+                {
+                    offer(next, gold + gother);
+                }
+            }
+        }
+
+        /**
+         * Average potential of the cell: half the octile distance to the
+         * target of this frontier minus half the distance to its source.
+         */
+        private float potential(int x, int y)
+        {
+            counters.heuristicEvaluations++;
+            return (distance(x - xTarget, y - yTarget) - distance(x - xSource, y - ySource)) / 2;
+        }
+
+        private float distance(int dx, int dy)
+        {
+            return Heuristics.OCTILE.estimate(Math.abs(dx), Math.abs(dy));
+        }
+    }
+}
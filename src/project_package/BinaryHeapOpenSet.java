@@ -0,0 +1,211 @@
+package project_package;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary min-heap implementation of OpenSet. The heap is stored in
+ * parallel arrays (cell, F, H) and every cell remembers its slot in the heap,
+ * which gives O(log n) push, pop and decrease-key without ever scanning the
+ * queue or holding duplicates.
+ */
+
+class BinaryHeapOpenSet implements OpenSet
+{
+    private int[] cells;
+    private double[] f;
+    private double[] h;
+    private int size;
+    // slot of every grid cell in the heap, -1 when the cell is not queued
+    private final int[] slot;
+
+    /**
+     * @param cellCount : number of cells in the grid, cell indices passed to
+     *                    the heap must lie in [0, cellCount)
+     */
+    BinaryHeapOpenSet(int cellCount)
+    {
+        int capacity = Math.max(16, Math.min(cellCount, 1024));
+        cells = new int[capacity];
+        f = new double[capacity];
+        h = new double[capacity];
+        slot = new int[cellCount];
+        Arrays.fill(slot, -1);
+        size = 0;
+    }
+
+    @Override
+    public void push(int cell, double f, double h)
+    {
+        int i = slot[cell];
+        if (i < 0)
+        {
+            if (size == cells.length)
+            {
+                grow();
+            }
+            i = size++;
+            set(i, cell, f, h);
+            siftUp(i);
+            return;
+        }
+        boolean smaller = less(f, h, this.f[i], this.h[i]);
+        this.f[i] = f;
+        this.h[i] = h;
+        if (smaller)
+        {
+            siftUp(i);
+        }
+        else
+        {
+            siftDown(i);
+        }
+    }
+
+    @Override
+    public int pop()
+    {
+        int top = cells[0];
+        slot[top] = -1;
+        size--;
+        if (size > 0)
+        {
+            set(0, cells[size], f[size], h[size]);
+            siftDown(0);
+        }
+        return top;
+    }
+
+    @Override
+    public int peek()
+    {
+        return cells[0];
+    }
+
+    @Override
+    public double peekF()
+    {
+        return f[0];
+    }
+
+    @Override
+    public void remove(int cell)
+    {
+        int i = slot[cell];
+        if (i < 0)
+        {
+            return;
+        }
+        slot[cell] = -1;
+        size--;
+        if (i == size)
+        {
+            return;
+        }
+        // the last entry fills the hole and moves up or down from there
+        set(i, cells[size], f[size], h[size]);
+        if (i > 0 && less(f[i], h[i], f[(i - 1) >>> 1], h[(i - 1) >>> 1]))
+        {
+            siftUp(i);
+        }
+        else
+        {
+            siftDown(i);
+        }
+    }
+
+    @Override
+    public boolean contains(int cell)
+    {
+        return slot[cell] >= 0;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public void clear()
+    {
+        // only the queued cells need their slot reset
+        for (int i = 0; i < size; i++)
+        {
+            slot[cells[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int i)
+    {
+        int cell = cells[i];
+        double cf = f[i];
+        double ch = h[i];
+        while (i > 0)
+        {
+            int parent = (i - 1) >>> 1;
+            if (!less(cf, ch, f[parent], h[parent]))
+            {
+                break;
+            }
+            set(i, cells[parent], f[parent], h[parent]);
+            i = parent;
+        }
+        set(i, cell, cf, ch);
+    }
+
+    private void siftDown(int i)
+    {
+        int cell = cells[i];
+        double cf = f[i];
+        double ch = h[i];
+        int half = size >>> 1;
+        while (i < half)
+        {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && less(f[right], h[right], f[child], h[child]))
+            {
+                child = right;
+            }
+            if (!less(f[child], h[child], cf, ch))
+            {
+                break;
+            }
+            set(i, cells[child], f[child], h[child]);
+            i = child;
+        }
+        set(i, cell, cf, ch);
+    }
+
+    private void set(int i, int cell, double f, double h)
+    {
+        cells[i] = cell;
+        this.f[i] = f;
+        this.h[i] = h;
+        slot[cell] = i;
+    }
+
+    /**
+     * Returns true if key (f1, h1) orders before key (f2, h2): smaller F
+     * first, then smaller H.
+     */
+    private static boolean less(double f1, double h1, double f2, double h2)
+    {
+        return f1 < f2 || (f1 == f2 && h1 < h2);
+    }
+
+    private void grow()
+    {
+        int capacity = Math.min(cells.length * 2, slot.length);
+        cells = Arrays.copyOf(cells, capacity);
+        f = Arrays.copyOf(f, capacity);
+        h = Arrays.copyOf(h, capacity);
+    }
+}
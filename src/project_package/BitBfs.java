@@ -0,0 +1,294 @@
+package project_package;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * BitBfs is a breadth first search over the free cells of a map that works
+ * on 64 cells at once. It keeps its own copy of the walls as a bitmap of the
+ * free cells, column by column like GridMap, where every column is padded
+ * to a whole number of longs with a wall row above and below it, and a wall
+ * column is added on each side of the map. The neighbours of a cell are then
+ * always inside the bitmap and never need a bounds check.
+ * A level of the search is a bitmap of the frontier, only the words holding
+ * frontier cells are kept. The next level is the frontier grown by one cell
+ * in every direction (8-connected, the moves of GridMap.SUCC), i.e. shifted
+ * by one bit up and down inside its column, then or-ed into the columns on
+ * each side, and masked with the free cells not yet visited: one word of the
+ * frontier reaches the 64 cells of up to 9 words with a few shifts, ors and
+ * ands. The levels are unit-cost distances (hops, every move counts 1), a
+ * lower bound of the path costs, used to pick landmarks (see
+ * LandmarkHeuristic) and to check reachability on large maps.
+ * The bitmap is a snapshot of the walls when the search is created, not
+ * thread safe.
+ */
+
+class BitBfs
+{
+    private final int height;
+    // longs per padded column, at least height + 2 bits
+    private final int stride;
+    // free cells, (width + 2) padded columns of stride longs
+    private final long[] free;
+    private final long[] visited;
+    // cells reached from the frontier, not masked yet
+    private final long[] reach;
+    // the frontier: indices of its words and their bits
+    private int[] words = new int[256];
+    private long[] bits = new long[256];
+    private int count;
+    // the next frontier, and the words of reach set during a level
+    private int[] nextWords = new int[256];
+    private long[] nextBits = new long[256];
+    private int nextCount;
+    private int[] touched = new int[256];
+    private int touchedCount;
+
+    /**
+     * @param map : the map to search, its walls are copied
+     */
+    BitBfs(GridMap map)
+    {
+        int width = map.width();
+        height = map.height();
+        stride = (height + 2 + 63) >>> 6;
+        int n = (width + 2) * stride;
+        free = new long[n];
+        visited = new long[n];
+        reach = new long[n];
+        LongBuffer walls = map.walls();
+        for (int x = 0; x < width; x++)
+        {
+            int column = (x + 1) * stride;
+            long base = (long) x * height;
+            for (int y = 0; y < height; y += 64)
+            {
+                long w = ~read(walls, base + y);
+                if (height - y < 64)
+                {
+                    w &= (1L << (height - y)) - 1;
+                }
+                // cell y is padded bit y + 1, 1 + a multiple of 64
+                free[column + (y >>> 6)] |= w << 1;
+                free[column + (y >>> 6) + 1] |= w >>> 63;
+            }
+        }
+    }
+
+    /**
+     * Returns the 64 bits of the bitmap starting at a given bit.
+     */
+    private static long read(LongBuffer walls, long bit)
+    {
+        int i = (int) (bit >>> 6);
+        int shift = (int) (bit & 63);
+        long w = walls.get(i) >>> shift;
+        if (shift != 0 && i + 1 < walls.limit())
+        {
+            w |= walls.get(i + 1) << (64 - shift);
+        }
+        return w;
+    }
+
+    /**
+     * Computes the number of moves from a cell to every cell of the map.
+     * @param source : index of the cell the search starts from
+     * @param distance : filled with the distance of every cell (indexed as
+     *        in GridMap), -1 for the cells that cannot be reached and walls
+     * @return the distance of the farthest cell reached, -1 if the source
+     *         is a wall
+     */
+    int distances(int source, int[] distance)
+    {
+        Arrays.fill(distance, -1);
+        if (!start(source))
+        {
+            return -1;
+        }
+        int level = 0;
+        while (true)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                int word = words[i];
+                long b = bits[i];
+                int cell = (word / stride - 1) * height + (word % stride) * 64 - 1;
+                while (b != 0)
+                {
+                    distance[cell + Long.numberOfTrailingZeros(b)] = level;
+                    b &= b - 1;
+                }
+            }
+            if (!step())
+            {
+                return level;
+            }
+            level++;
+        }
+    }
+
+    /**
+     * Returns true if a path links two cells. No distances are needed, so
+     * the search does not go level by level: the cells reached in a word
+     * are grown at once along their runs of free cells, and a word goes
+     * back onto a stack every time cells are added to it, until the goal is
+     * reached or the stack is empty.
+     */
+    boolean isReachable(int start, int goal)
+    {
+        int x = goal / height + 1;
+        int y = goal % height + 1;
+        int target = x * stride + (y >>> 6);
+        long bit = 1L << y;
+        if ((free[target] & bit) == 0 || !start(start))
+        {
+            return false;
+        }
+        // the frontier arrays hold the stack
+        while (count > 0 && (visited[target] & bit) == 0)
+        {
+            int word = words[--count];
+            long v = visited[word];
+            long column = v | (v << 1) | (v >>> 1);
+            long up = v << 63;
+            long down = v >>> 63;
+            for (int w = word - stride; w <= word + stride; w += stride)
+            {
+                fill(w, column);
+                if (up != 0)
+                {
+                    fill(w - 1, up);
+                }
+                if (down != 0)
+                {
+                    fill(w + 1, down);
+                }
+            }
+        }
+        return (visited[target] & bit) != 0;
+    }
+
+    /**
+     * Visits the free cells of a word that are in the given bits and the
+     * runs of free cells they belong to, and pushes the word if any cell
+     * was added.
+     */
+    private void fill(int word, long b)
+    {
+        long m = free[word];
+        long s = b & m & ~visited[word];
+        if (s == 0)
+        {
+            return;
+        }
+        // adding the seeds to the free cells carries through the cells of
+        // their runs above them, the same on the reversed bits fills below
+        long above = (((m + s) ^ m) & m) | s;
+        long rm = Long.reverse(m);
+        long rs = Long.reverse(s);
+        long below = Long.reverse((((rm + rs) ^ rm) & rm) | rs);
+        visited[word] |= above | below;
+        if (count == words.length)
+        {
+            words = Arrays.copyOf(words, count * 2);
+            bits = Arrays.copyOf(bits, count * 2);
+        }
+        words[count++] = word;
+    }
+
+    /**
+     * Makes a cell the only cell of the frontier.
+     * @return false if the cell is a wall
+     */
+    private boolean start(int source)
+    {
+        Arrays.fill(visited, 0);
+        count = 0;
+        int x = source / height + 1;
+        int y = source % height + 1;
+        int word = x * stride + (y >>> 6);
+        long bit = 1L << y;
+        if ((free[word] & bit) == 0)
+        {
+            return false;
+        }
+        visited[word] = bit;
+        words[0] = word;
+        bits[0] = bit;
+        count = 1;
+        return true;
+    }
+
+    /**
+     * Replaces the frontier by the free cells next to it that were not
+     * visited yet.
+     * @return false once the frontier is empty
+     */
+    private boolean step()
+    {
+        touchedCount = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int word = words[i];
+            long f = bits[i];
+            // the cell itself and its neighbours above and below, in the
+            // same word, then the bits that cross into the words around
+            long column = f | (f << 1) | (f >>> 1);
+            long up = f << 63;
+            long down = f >>> 63;
+            for (int w = word - stride; w <= word + stride; w += stride)
+            {
+                // the padding keeps w - 1 and w + 1 within the bitmap: the
+                // first and last bits of a column are walls, never in f
+                add(w, column);
+                if (up != 0)
+                {
+                    add(w - 1, up);
+                }
+                if (down != 0)
+                {
+                    add(w + 1, down);
+                }
+            }
+        }
+        nextCount = 0;
+        for (int i = 0; i < touchedCount; i++)
+        {
+            int word = touched[i];
+            long n = reach[word] & free[word] & ~visited[word];
+            reach[word] = 0;
+            if (n != 0)
+            {
+                visited[word] |= n;
+                if (nextCount == nextWords.length)
+                {
+                    nextWords = Arrays.copyOf(nextWords, nextCount * 2);
+                    nextBits = Arrays.copyOf(nextBits, nextCount * 2);
+                }
+                nextWords[nextCount] = word;
+                nextBits[nextCount++] = n;
+            }
+        }
+        int[] w = words;
+        words = nextWords;
+        nextWords = w;
+        long[] b = bits;
+        bits = nextBits;
+        nextBits = b;
+        count = nextCount;
+        return count > 0;
+    }
+
+    private void add(int word, long b)
+    {
+        if (reach[word] == 0)
+        {
+            if (touchedCount == touched.length)
+            {
+                touched = Arrays.copyOf(touched, touchedCount * 2);
+            }
+            touched[touchedCount++] = word;
+        }
+        reach[word] |= b;
+    }
+}
@@ -0,0 +1,473 @@
+package project_package;
+
+import java.util.Arrays;
+
+/**
+ * ConnectivityIndex labels the connected components of the free cells of a
+ * map (8-connected, the moves of GridMap.SUCC), so that a query whose goal
+ * cannot be reached from its start is answered in O(1) instead of by a
+ * search that exhausts the whole component of the start.
+ * Every free cell holds the id of a component and the ids are merged with a
+ * union-find: clearing a wall only unions the ids of its neighbours. Setting
+ * a wall can split a component, the free neighbours of the new wall are
+ * first checked for a connection around it (the common case, nothing to
+ * do), otherwise a breadth first search is run from each separated group of
+ * neighbours in lockstep. The searches that meet are parts of the same
+ * piece, those that run out of cells have found a piece that broke off and
+ * give it a new id, so the cost is that of the smaller pieces. A split that
+ * would take too long (e.g. while a whole grid is being randomized) marks
+ * the index dirty instead and it is rebuilt on its next query.
+ * The index follows the walls of the map once listening to it, all methods
+ * are synchronized.
+ */
+
+class ConnectivityIndex implements MapListener
+{
+    // component id of a wall
+    static final int NONE = -1;
+    // the 8 neighbours in order around a cell, consecutive ones are adjacent
+    private static final int[][] RING = {{-1, -1}, {0, -1}, {1, -1}, {1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}};
+
+    private final GridMap map;
+    // raw component id of every cell, NONE for walls
+    private final int[] label;
+    // union-find over the component ids, parent and rank of every id
+    private int[] parent;
+    private int[] rank;
+    private int ids;
+    private boolean dirty;
+    // scratch of the splits: the search that visited every cell, stamped
+    private final int[] seen;
+    private int stamp;
+    private final int[][] queues = new int[4][64];
+    private final int[] queued = new int[4];
+    private final int[] heads = new int[4];
+    private final int[] owner = new int[4];
+    private final boolean[] active = new boolean[4];
+    // cells a split may visit before the index falls back to a rebuild
+    private final int budget;
+
+    /**
+     * Builds the index of a map, it does not follow the edits of the map
+     * until it is registered as one of its listeners.
+     * @param map : the map to index
+     */
+    ConnectivityIndex(GridMap map)
+    {
+        this.map = map;
+        label = new int[map.size()];
+        seen = new int[map.size()];
+        budget = Math.max(4096, map.size() / 16);
+        rebuild();
+    }
+
+    /**
+     * Returns true if the goal can be reached from the start, false if
+     * either is a wall.
+     */
+    synchronized boolean isConnected(int start, int goal)
+    {
+        int a = component(start);
+        return a != NONE && a == component(goal);
+    }
+
+    /**
+     * Returns the id of the component of a cell, NONE for a wall. Two cells
+     * are connected if and only if they have the same id, ids change when
+     * the map does.
+     */
+    synchronized int component(int cell)
+    {
+        if (dirty)
+        {
+            rebuild();
+        }
+        int id = label[cell];
+        return (id == NONE) ? NONE : find(id);
+    }
+
+    /**
+     * Returns the component of every cell, NONE for walls, as a snapshot
+     * that does not follow later edits. Reading it takes no lock, for the
+     * readers of a map that no longer changes: two cells are connected if
+     * and only if they have the same id.
+     */
+    synchronized int[] components()
+    {
+        int[] components = new int[label.length];
+        for (int cell = 0; cell < label.length; cell++)
+        {
+            components[cell] = component(cell);
+        }
+        return components;
+    }
+
+    /**
+     * Labels every component from scratch, a union-find pass over the cells
+     * in index order that links every free cell to its free neighbours
+     * already visited.
+     */
+    synchronized void rebuild()
+    {
+        int height = map.height();
+        // first pass: union-find over the cells, seen holds the parents
+        for (int cell = 0; cell < label.length; cell++)
+        {
+            if (map.isWall(cell))
+            {
+                seen[cell] = NONE;
+                continue;
+            }
+            seen[cell] = cell;
+            int x = map.x(cell);
+            int y = map.y(cell);
+            if (y > 0)
+            {
+                linkCells(cell, cell - 1);
+            }
+            if (x > 0)
+            {
+                linkCells(cell, cell - height);
+                if (y > 0)
+                {
+                    linkCells(cell, cell - height - 1);
+                }
+                if (y < height - 1)
+                {
+                    linkCells(cell, cell - height + 1);
+                }
+            }
+        }
+        // second pass: one id per root, roots come first in index order
+        ids = 0;
+        for (int cell = 0; cell < label.length; cell++)
+        {
+            if (seen[cell] == NONE)
+            {
+                label[cell] = NONE;
+            }
+            else
+            {
+                int root = findCell(cell);
+                label[cell] = (root == cell) ? ids++ : label[root];
+            }
+        }
+        parent = new int[Math.max(16, ids * 2)];
+        rank = new int[parent.length];
+        for (int id = 0; id < ids; id++)
+        {
+            parent[id] = id;
+        }
+        Arrays.fill(seen, 0);
+        stamp = 0;
+        dirty = false;
+    }
+
+    /**
+     * Drops the labels, they are rebuilt on the next query. Meant for bulk
+     * edits of the map, which then cost nothing to the index.
+     */
+    synchronized void invalidate()
+    {
+        dirty = true;
+    }
+
+    @Override
+    public synchronized void wallChanged(int cell, boolean wall)
+    {
+        if (dirty)
+        {
+            return;
+        }
+        if (!wall)
+        {
+            cleared(cell);
+        }
+        else
+        {
+            label[cell] = NONE;
+            if (!split(cell))
+            {
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * A cleared cell joins the components of its free neighbours.
+     */
+    private void cleared(int cell)
+    {
+        int x = map.x(cell);
+        int y = map.y(cell);
+        int id = NONE;
+        for (int[] s : GridMap.SUCC)
+        {
+            int nx = x + s[0];
+            int ny = y + s[1];
+            if (!map.isValid(nx, ny) || map.isWall(nx, ny))
+            {
+                continue;
+            }
+            int other = find(label[map.index(nx, ny)]);
+            id = (id == NONE) ? other : union(id, other);
+        }
+        label[cell] = (id == NONE) ? newId() : id;
+    }
+
+    /**
+     * Gives a new id to every piece the component of a new wall broke into,
+     * but the last one found.
+     * @return false if the split was abandoned because it went over budget
+     */
+    private boolean split(int cell)
+    {
+        int x = map.x(cell);
+        int y = map.y(cell);
+        // groups of free neighbours connected without the cell: consecutive
+        // neighbours around it touch, and so do two side neighbours next to
+        // the same corner (diagonally)
+        int[] group = new int[RING.length];
+        for (int i = 0; i < RING.length; i++)
+        {
+            group[i] = isFree(x + RING[i][0], y + RING[i][1]) ? i : NONE;
+        }
+        for (int i = 0; i < RING.length; i++)
+        {
+            joinGroups(group, i, (i + 1) % RING.length);
+            if (i % 2 == 1)
+            {
+                joinGroups(group, i, (i + 2) % RING.length);
+            }
+        }
+        int[] seeds = new int[4];
+        int groups = 0;
+        for (int i = 0; i < RING.length; i++)
+        {
+            if (group[i] == i)
+            {
+                seeds[groups++] = map.index(x + RING[i][0], y + RING[i][1]);
+            }
+        }
+        return groups <= 1 || separate(seeds, groups);
+    }
+
+    private static void joinGroups(int[] group, int i, int j)
+    {
+        if (group[i] == NONE || group[j] == NONE)
+        {
+            return;
+        }
+        int a = group[i];
+        int b = group[j];
+        if (a != b)
+        {
+            int low = Math.min(a, b);
+            int high = Math.max(a, b);
+            for (int k = 0; k < group.length; k++)
+            {
+                if (group[k] == high)
+                {
+                    group[k] = low;
+                }
+            }
+        }
+    }
+
+    private boolean isFree(int x, int y)
+    {
+        return map.isValid(x, y) && !map.isWall(x, y);
+    }
+
+    /**
+     * Runs one breadth first search per seed in lockstep until only one of
+     * them is left running.
+     */
+    private boolean separate(int[] seeds, int groups)
+    {
+        if (stamp > Integer.MAX_VALUE - 8)
+        {
+            Arrays.fill(seen, 0);
+            stamp = 0;
+        }
+        int base = stamp + 1;
+        stamp += 4;
+        for (int i = 0; i < groups; i++)
+        {
+            queues[i][0] = seeds[i];
+            queued[i] = 1;
+            heads[i] = 0;
+            owner[i] = i;
+            active[i] = true;
+            seen[seeds[i]] = base + i;
+        }
+        int running = groups;
+        int visited = groups;
+        while (running > 1)
+        {
+            for (int i = 0; i < groups && running > 1; i++)
+            {
+                if (!active[i])
+                {
+                    continue;
+                }
+                if (heads[i] == queued[i])
+                {
+                    // a piece that broke off, with the searches merged into it
+                    int id = newId();
+                    for (int j = 0; j < groups; j++)
+                    {
+                        if (root(j) == i)
+                        {
+                            for (int k = 0; k < queued[j]; k++)
+                            {
+                                label[queues[j][k]] = id;
+                            }
+                        }
+                    }
+                    active[i] = false;
+                    running--;
+                    continue;
+                }
+                int current = queues[i][heads[i]++];
+                int cx = map.x(current);
+                int cy = map.y(current);
+                for (int[] s : GridMap.SUCC)
+                {
+                    int nx = cx + s[0];
+                    int ny = cy + s[1];
+                    if (!map.isValid(nx, ny) || map.isWall(nx, ny))
+                    {
+                        continue;
+                    }
+                    int next = map.index(nx, ny);
+                    int by = seen[next] - base;
+                    if (by >= 0 && by < groups)
+                    {
+                        int other = root(by);
+                        if (other != i)
+                        {
+                            // same piece as another search, which goes on
+                            // with the cells this one has not expanded yet
+                            owner[i] = other;
+                            active[i] = false;
+                            running--;
+                            for (int k = heads[i] - 1; k < queued[i]; k++)
+                            {
+                                enqueue(other, queues[i][k]);
+                            }
+                            break;
+                        }
+                        continue;
+                    }
+                    seen[next] = base + i;
+                    enqueue(i, next);
+                    if (++visited > budget)
+                    {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private void enqueue(int search, int cell)
+    {
+        if (queued[search] == queues[search].length)
+        {
+            queues[search] = Arrays.copyOf(queues[search], queued[search] * 2);
+        }
+        queues[search][queued[search]++] = cell;
+    }
+
+    /**
+     * Returns the search a search was merged into, itself if it still runs
+     * or ran out of cells.
+     */
+    private int root(int search)
+    {
+        while (owner[search] != search)
+        {
+            search = owner[search];
+        }
+        return search;
+    }
+
+    private int newId()
+    {
+        if (ids == parent.length)
+        {
+            if (ids >= 2 * label.length)
+            {
+                // too many dead ids, compact them on the next query
+                dirty = true;
+            }
+            parent = Arrays.copyOf(parent, ids * 2);
+            rank = Arrays.copyOf(rank, ids * 2);
+        }
+        parent[ids] = ids;
+        rank[ids] = 0;
+        return ids++;
+    }
+
+    private int find(int id)
+    {
+        while (parent[id] != id)
+        {
+            // path halving
+            parent[id] = parent[parent[id]];
+            id = parent[id];
+        }
+        return id;
+    }
+
+    /**
+     * Unions two roots by rank.
+     * @return the root of the union
+     */
+    private int union(int a, int b)
+    {
+        if (a == b)
+        {
+            return a;
+        }
+        if (rank[a] < rank[b])
+        {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        parent[b] = a;
+        if (rank[a] == rank[b])
+        {
+            rank[a]++;
+        }
+        return a;
+    }
+
+    private void linkCells(int cell, int other)
+    {
+        if (seen[other] == NONE)
+        {
+            return;
+        }
+        int a = findCell(cell);
+        int b = findCell(other);
+        if (a != b)
+        {
+            // the smaller index becomes the root, it is labelled first
+            seen[Math.max(a, b)] = Math.min(a, b);
+        }
+    }
+
+    private int findCell(int cell)
+    {
+        while (seen[cell] != cell)
+        {
+            seen[cell] = seen[seen[cell]];
+            cell = seen[cell];
+        }
+        return cell;
+    }
+}
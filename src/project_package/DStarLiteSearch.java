@@ -0,0 +1,423 @@
+package project_package;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * DStarLiteSearch is an incremental search (D* Lite, the moving-start
+ * variant of LPA*). It searches backward from the goal and keeps its G and
+ * RHS values from one query to the next: RHS is the one step lookahead
+ * min(G(succ) + cost), a cell is consistent when both are equal. Wall changes
+ * are queued as the map reports them and the next query only updates the
+ * cells around the changed ones, then expands the inconsistent cells that can
+ * affect the path from the start. Moving the start keeps the whole search
+ * tree as well (the key offset km makes up for the heuristic changing), only
+ * a new goal starts the search from scratch, in O(1): the values of the old
+ * tree are stamped with an older generation and read as infinity. The
+ * heuristic is the octile distance to the start, which is consistent for the
+ * octile move costs of SearchEngine, so every path returned is a shortest
+ * path.
+ */
+
+class DStarLiteSearch implements PathSearch, MapListener
+{
+    // G values are summed in double precision and the heuristic is shrunk a
+    // little, so rounding can never make a cell on the shortest path look
+    // worse than the start and end the search too early
+    private static final double SHRINK = 1 - 1e-5;
+    private static final double SQRT2 = Math.sqrt(2);
+
+    private final GridMap map;
+    private final double[] g;
+    private final double[] rhs;
+    // G and RHS are only valid for the cells stamped with the current
+    // generation, the others are read as infinity (see SearchContext)
+    private final int[] stamp;
+    // the stamps start at 0, older than the first generation
+    private int generation = 1;
+    // key of every queued cell, (k1, k2) is pushed as (F, H) so that the open
+    // set orders them lexicographically
+    private final double[] k1;
+    private final double[] k2;
+    private final OpenSet open;
+    private SearchListener listener;
+    private int start = -1;
+    private int goal = -1;
+    private double km;
+    // cells whose wall changed since the last query
+    private final BitSet changed;
+    private int[] pending = new int[16];
+    private int pendingCount;
+    private final SearchCounters counters = new SearchCounters();
+
+    /**
+     * Creates the search and starts listening to the walls of the map.
+     * @param map : the map to search
+     */
+    DStarLiteSearch(GridMap map)
+    {
+        this.map = map;
+        g = new double[map.size()];
+        rhs = new double[map.size()];
+        stamp = new int[map.size()];
+        k1 = new double[map.size()];
+        k2 = new double[map.size()];
+        open = new BinaryHeapOpenSet(map.size());
+        changed = new BitSet(map.size());
+        map.addListener(this);
+    }
+
+    @Override
+    public void setListener(SearchListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Queues the changed cell, the search tree is repaired by the next query.
+     */
+    @Override
+    public synchronized void wallChanged(int cell, boolean wall)
+    {
+        if (goal < 0 || changed.get(cell))
+        {
+            return;
+        }
+        changed.set(cell);
+        if (pendingCount == pending.length)
+        {
+            pending = Arrays.copyOf(pending, pendingCount * 2);
+        }
+        pending[pendingCount++] = cell;
+    }
+
+    @Override
+    public synchronized int[] findPath(int start, int goal)
+    {
+        long begin = System.nanoTime();
+        counters.reset();
+        if (goal != this.goal)
+        {
+            initialise(start, goal);
+        }
+        else if (start != this.start)
+        {
+            km += heuristic(this.start, start);
+            this.start = start;
+        }
+        if (map.isWall(start) || map.isWall(goal))
+        {
+            return null;
+        }
+        if (start == goal)
+        {
+            return new int[]{start};
+        }
+        applyChanges();
+        long searching = System.nanoTime();
+        counters.setupNanos = searching - begin;
+        computeShortestPath();
+        long found = System.nanoTime();
+        counters.searchNanos = found - searching;
+        int[] path = (g(start) == Double.POSITIVE_INFINITY) ? null : buildPath();
+        counters.pathNanos = System.nanoTime() - found;
+        return path;
+    }
+
+    /**
+     * Forgets the previous search tree and seeds a new one at the goal.
+     */
+    private void initialise(int start, int goal)
+    {
+        if (++generation == Integer.MAX_VALUE)
+        {
+            Arrays.fill(stamp, 0);
+            generation = 2;
+        }
+        open.clear();
+        clearChanges();
+        this.start = start;
+        this.goal = goal;
+        km = 0;
+        setRhs(goal, 0);
+        push(goal);
+    }
+
+    /**
+     * Updates the cells whose edges changed: the changed cells themselves and
+     * all their neighbours.
+     */
+    private void applyChanges()
+    {
+        for (int i = 0; i < pendingCount; i++)
+        {
+            int cell = pending[i];
+            update(cell);
+            int x = map.x(cell);
+            int y = map.y(cell);
+            for (int[] s : GridMap.SUCC)
+            {
+                if (map.isValid(x + s[0], y + s[1]))
+                {
+                    update(map.index(x + s[0], y + s[1]));
+                }
+            }
+        }
+        clearChanges();
+    }
+
+    private void clearChanges()
+    {
+        for (int i = 0; i < pendingCount; i++)
+        {
+            changed.clear(pending[i]);
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * Expands inconsistent cells until the start is consistent and no queued
+     * key is smaller than the key of the start.
+     */
+    private void computeShortestPath()
+    {
+        while (!open.isEmpty())
+        {
+            int u = open.peek();
+            // the heuristic of the start to itself is 0
+            double startK2 = Math.min(g(start), rhs(start));
+            double startK1 = startK2 + km;
+            if (!less(k1[u], k2[u], startK1, startK2) && g(start) == rhs(start))
+            {
+                break;
+            }
+            counters.expanded++;
+            // a cancelled query stops here, where the tree is consistent,
+            // the next query carries on from it
+            SearchScheduler.checkpoint(counters.expanded);
+            double m = Math.min(g(u), rhs(u));
+            double newK1 = m + heuristic(u) + km;
+            if (less(k1[u], k2[u], newK1, m))
+            {
+                // the key is out of date since the start moved
+                push(u);
+            }
+            else if (g(u) > rhs(u))
+            {
+                setG(u, rhs(u));
+                open.remove(u);
+                if (listener != null)
+                {
+                    listener.cellClosed(u);
+                }
+                updateNeighbours(u);
+            }
+            else
+            {
+                // the cell got more expensive, it is opened again
+                counters.reopened++;
+                setG(u, Double.POSITIVE_INFINITY);
+                update(u);
+                updateNeighbours(u);
+            }
+        }
+    }
+
+    private void updateNeighbours(int cell)
+    {
+        int x = map.x(cell);
+        int y = map.y(cell);
+        for (int[] s : GridMap.SUCC)
+        {
+            int nx = x + s[0];
+            int ny = y + s[1];
+            if (map.isValid(nx, ny) && !map.isWall(nx, ny))
+            {
+                update(map.index(nx, ny));
+            }
+        }
+    }
+
+    /**
+     * Recomputes the RHS value of a cell and queues it if it is inconsistent.
+     */
+    private void update(int cell)
+    {
+        if (cell != goal)
+        {
+            setRhs(cell, map.isWall(cell) ? Double.POSITIVE_INFINITY : lookahead(cell));
+        }
+        if (g(cell) != rhs(cell))
+        {
+            push(cell);
+        }
+        else
+        {
+            open.remove(cell);
+        }
+    }
+
+    /**
+     * Returns min(G(succ) + cost(cell, succ)) over the free neighbours.
+     */
+    private double lookahead(int cell)
+    {
+        int x = map.x(cell);
+        int y = map.y(cell);
+        double best = Double.POSITIVE_INFINITY;
+        for (int[] s : GridMap.SUCC)
+        {
+            int nx = x + s[0];
+            int ny = y + s[1];
+            if (!map.isValid(nx, ny) || map.isWall(nx, ny))
+            {
+                continue;
+            }
+            double cost = g(map.index(nx, ny)) + ((s[0] == 0 || s[1] == 0) ? 1 : SQRT2);
+            if (cost < best)
+            {
+                best = cost;
+            }
+        }
+        return best;
+    }
+
+    private void push(int cell)
+    {
+        boolean queued = open.contains(cell);
+        double m = Math.min(g(cell), rhs(cell));
+        k1[cell] = m + heuristic(cell) + km;
+        k2[cell] = m;
+        open.push(cell, k1[cell], k2[cell]);
+        counters.open(open.size());
+        if (queued)
+        {
+            return;
+        }
+        counters.generated++;
+        if (listener != null)
+        {
+            listener.cellOpened(cell);
+        }
+    }
+
+    /**
+     * Walks from the start to the goal, always to the neighbour with the
+     * smallest G + cost.
+     */
+    private int[] buildPath()
+    {
+        int[] path = new int[64];
+        int length = 0;
+        int current = start;
+        path[length++] = current;
+        while (current != goal && length <= map.size())
+        {
+            int x = map.x(current);
+            int y = map.y(current);
+            int next = -1;
+            double best = Double.POSITIVE_INFINITY;
+            for (int[] s : GridMap.SUCC)
+            {
+                int nx = x + s[0];
+                int ny = y + s[1];
+                if (!map.isValid(nx, ny) || map.isWall(nx, ny))
+                {
+                    continue;
+                }
+                int cell = map.index(nx, ny);
+                double cost = g(cell) + ((s[0] == 0 || s[1] == 0) ? 1 : SQRT2);
+                if (cost < best)
+                {
+                    best = cost;
+                    next = cell;
+                }
+            }
+            if (next < 0)
+            {
+                return null;
+            }
+            if (length == path.length)
+            {
+                path = Arrays.copyOf(path, length * 2);
+            }
+            path[length++] = next;
+            current = next;
+        }
+        return (current == goal) ? Arrays.copyOf(path, length) : null;
+    }
+
+    private double heuristic(int cell)
+    {
+        return heuristic(cell, start);
+    }
+
+    /**
+     * Octile distance between two cells.
+     */
+    private double heuristic(int a, int b)
+    {
+        counters.heuristicEvaluations++;
+        int dx = Math.abs(map.x(a) - map.x(b));
+        int dy = Math.abs(map.y(a) - map.y(b));
+        return (Math.max(dx, dy) + (SQRT2 - 1) * Math.min(dx, dy)) * SHRINK;
+    }
+
+    private double g(int cell)
+    {
+        return (stamp[cell] == generation) ? g[cell] : Double.POSITIVE_INFINITY;
+    }
+
+    private double rhs(int cell)
+    {
+        return (stamp[cell] == generation) ? rhs[cell] : Double.POSITIVE_INFINITY;
+    }
+
+    private void setG(int cell, double value)
+    {
+        touch(cell);
+        g[cell] = value;
+    }
+
+    private void setRhs(int cell, double value)
+    {
+        touch(cell);
+        rhs[cell] = value;
+    }
+
+    /**
+     * Resets a cell last touched by an older generation.
+     */
+    private void touch(int cell)
+    {
+        if (stamp[cell] != generation)
+        {
+            stamp[cell] = generation;
+            g[cell] = Double.POSITIVE_INFINITY;
+            rhs[cell] = Double.POSITIVE_INFINITY;
+        }
+    }
+
+    private static boolean less(double a1, double a2, double b1, double b2)
+    {
+        return a1 < b1 || (a1 == b1 && a2 < b2);
+    }
+
+    @Override
+    public synchronized boolean isReached(int cell)
+    {
+        return rhs(cell) != Double.POSITIVE_INFINITY || g(cell) != Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public synchronized boolean isClosed(int cell)
+    {
+        return g(cell) != Double.POSITIVE_INFINITY && g(cell) == rhs(cell);
+    }
+
+    @Override
+    public SearchCounters counters()
+    {
+        return counters;
+    }
+}
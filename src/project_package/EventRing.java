@@ -0,0 +1,152 @@
+package project_package;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * EventRing is a bounded, lock-free, single producer / single consumer ring
+ * buffer of search events. The search thread publishes the cells it opens,
+ * closes and finally the path, the FX thread drains them at its own pace.
+ * Every event is packed in a long: the epoch of the search that published
+ * it in the upper 24 bits (so that the events of a search that was
+ * cancelled can be told apart from those of the next one), the event type in
+ * the next 8 bits and the cell index in the lower 32 bits.
+ */
+
+class EventRing
+{
+    // event types
+    static final int OPEN = 1;
+    static final int CLOSE = 2;
+    static final int PATH = 3;
+    static final int DONE = 4;
+    static final int JUMP = 5;
+
+    private final long[] buffer;
+    private final int mask;
+    // next slot to read, only advanced by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // next slot to write, only advanced by the producer
+    private final AtomicLong tail = new AtomicLong();
+    // producer's last view of head, saves a volatile read on most offers
+    private long cachedHead;
+
+    /**
+     * @param capacity : maximum number of pending events, rounded up to a
+     *                   power of two
+     */
+    EventRing(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        buffer = new long[size];
+        mask = size - 1;
+    }
+
+    // epochs wrap around, only the lower 24 bits are stored
+    static final int EPOCH_MASK = 0xFFFFFF;
+
+    static long event(int type, int epoch, int cell)
+    {
+        return ((long) (epoch & EPOCH_MASK) << 40) | ((long) (type & 0xFF) << 32) | (cell & 0xFFFFFFFFL);
+    }
+
+    static int type(long event)
+    {
+        return (int) (event >>> 32) & 0xFF;
+    }
+
+    static int epoch(long event)
+    {
+        return (int) (event >>> 40);
+    }
+
+    static int cell(long event)
+    {
+        return (int) event;
+    }
+
+    /**
+     * Publishes an event if there is room for it. Producer thread only.
+     * @return false if the ring is full
+     */
+    boolean offer(long event)
+    {
+        long t = tail.get();
+        if (t - cachedHead >= buffer.length)
+        {
+            cachedHead = head.get();
+            if (t - cachedHead >= buffer.length)
+            {
+                return false;
+            }
+        }
+        buffer[(int) t & mask] = event;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Publishes an event, waiting for the consumer while the ring is full.
+     * Producer thread only.
+     * @return false if the thread was interrupted while waiting, the event
+     *         is then dropped and the interrupt status is kept
+     */
+    boolean put(long event)
+    {
+        while (!offer(event))
+        {
+            if (Thread.currentThread().isInterrupted())
+            {
+                return false;
+            }
+            LockSupport.parkNanos(100_000);
+        }
+        return true;
+    }
+
+    /**
+     * Moves up to max pending events into out. Consumer thread only.
+     * @return the number of events copied
+     */
+    int drain(long[] out, int max)
+    {
+        long h = head.get();
+        int n = (int) Math.min(Math.min(tail.get() - h, max), out.length);
+        for (int i = 0; i < n; i++)
+        {
+            out[i] = buffer[(int) (h + i) & mask];
+        }
+        head.lazySet(h + n);
+        return n;
+    }
+
+    /**
+     * Moves up to max pending events of the given epoch into out, dropping
+     * those of other epochs on the way. Consumer thread only.
+     * @param epoch : the epoch of the events to keep
+     * @return the number of events copied
+     */
+    int drain(long[] out, int max, int epoch)
+    {
+        long h = head.get();
+        long t = tail.get();
+        int limit = Math.min(max, out.length);
+        int n = 0;
+        while (h < t && n < limit)
+        {
+            long event = buffer[(int) h & mask];
+            h++;
+            if (epoch(event) == (epoch & EPOCH_MASK))
+            {
+                out[n++] = event;
+            }
+        }
+        head.lazySet(h);
+        return n;
+    }
+
+    boolean isEmpty()
+    {
+        return head.get() == tail.get();
+    }
+}
@@ -0,0 +1,391 @@
+package project_package;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * FlowField answers every query towards the same goal from a single search:
+ * a Dijkstra search run backward from the goal over the whole map stores,
+ * for every cell, its distance to the goal and the direction of the next
+ * step of a shortest path (a byte, the index of the move in GridMap.SUCC).
+ * Once the field of a goal is built, the path of any start is read by
+ * following the directions, in O(path length) and without any search, so
+ * any number of agents heading to the same goal share the cost of one
+ * search. A new goal builds a new field.
+ * The field follows the walls incrementally: the changes are queued as the
+ * map reports them and the next query repairs the field. A new wall
+ * invalidates the cells whose direction led through it (the subtree of the
+ * wall), which are seeded again from their valid neighbours, a cleared wall
+ * is seeded from its neighbours, and a Dijkstra search from the seeds
+ * updates only the cells whose distance changed. A bulk edit (e.g. a random
+ * grid) rebuilds the field instead.
+ */
+
+class FlowField implements PathSearch, MapListener
+{
+    // direction of the cells without a path to the goal, and of the goal
+    static final byte NONE = -1;
+    private static final float SQRT2 = (float) Math.sqrt(2);
+
+    private final GridMap map;
+    // distance to the goal, infinity without a path
+    private final float[] distance;
+    // index in GridMap.SUCC of the next step towards the goal
+    private final byte[] direction;
+    // query in which each cell was last updated
+    private final int[] updatedIn;
+    private int query;
+    private final OpenSet open;
+    private SearchListener listener;
+    private int goal = -1;
+    // the field has to be built again from scratch
+    private boolean stale = true;
+    // cells whose wall changed since the last query
+    private final BitSet changed;
+    private int[] pending = new int[16];
+    private int pendingCount;
+    private int[] invalid = new int[64];
+    private final SearchCounters counters = new SearchCounters();
+
+    /**
+     * Creates the field and starts listening to the walls of the map, no
+     * field is built before the first query.
+     * @param map : the map to search
+     */
+    FlowField(GridMap map)
+    {
+        this.map = map;
+        distance = new float[map.size()];
+        direction = new byte[map.size()];
+        updatedIn = new int[map.size()];
+        open = new BinaryHeapOpenSet(map.size());
+        changed = new BitSet(map.size());
+        map.addListener(this);
+    }
+
+    @Override
+    public void setListener(SearchListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Queues the changed cell, the field is repaired by the next query.
+     */
+    @Override
+    public synchronized void wallChanged(int cell, boolean wall)
+    {
+        if (stale || changed.get(cell))
+        {
+            return;
+        }
+        if (cell == goal || pendingCount > map.size() / 16)
+        {
+            // cheaper to build the field again
+            stale = true;
+            clearChanges();
+            return;
+        }
+        changed.set(cell);
+        if (pendingCount == pending.length)
+        {
+            pending = Arrays.copyOf(pending, pendingCount * 2);
+        }
+        pending[pendingCount++] = cell;
+    }
+
+    @Override
+    public synchronized int[] findPath(int start, int goal)
+    {
+        update(goal);
+        long found = System.nanoTime();
+        int[] path = map.isWall(start) ? null : follow(start);
+        counters.pathNanos = System.nanoTime() - found;
+        return path;
+    }
+
+    /**
+     * Builds the field of a goal, or brings the field of the current goal up
+     * to date with the walls. distance() and direction() then describe the
+     * paths to that goal.
+     * @param goal : index of the target cell
+     */
+    synchronized void update(int goal)
+    {
+        long begin = System.nanoTime();
+        counters.reset();
+        if (++query == Integer.MAX_VALUE)
+        {
+            Arrays.fill(updatedIn, 0);
+            query = 1;
+        }
+        if (goal != this.goal || stale)
+        {
+            // a cancelled build leaves the field stale
+            stale = true;
+            this.goal = goal;
+            clearChanges();
+            Arrays.fill(distance, Float.POSITIVE_INFINITY);
+            Arrays.fill(direction, NONE);
+            open.clear();
+            if (!map.isWall(goal))
+            {
+                distance[goal] = 0;
+                push(goal);
+            }
+        }
+        else
+        {
+            // a cancelled repair leaves the field stale as well
+            stale = true;
+            applyChanges();
+        }
+        long searching = System.nanoTime();
+        counters.setupNanos = searching - begin;
+        propagate();
+        stale = false;
+        counters.searchNanos = System.nanoTime() - searching;
+    }
+
+    /**
+     * Returns the distance from a cell to the goal of the field, infinity
+     * when the goal cannot be reached from it.
+     */
+    synchronized float distance(int cell)
+    {
+        return distance[cell];
+    }
+
+    /**
+     * Returns the index in GridMap.SUCC of the first step from a cell
+     * towards the goal of the field, NONE for the goal itself and the cells
+     * without a path to it.
+     */
+    synchronized int direction(int cell)
+    {
+        return direction[cell];
+    }
+
+    /**
+     * Invalidates the subtrees of the new walls, then seeds the invalidated
+     * and the cleared cells from their neighbours.
+     */
+    private void applyChanges()
+    {
+        int n = 0;
+        for (int i = 0; i < pendingCount; i++)
+        {
+            int cell = pending[i];
+            if (map.isWall(cell) && distance[cell] != Float.POSITIVE_INFINITY)
+            {
+                n = invalidate(cell, n);
+            }
+        }
+        // breadth first walk of the subtrees, the invalid array is the queue
+        // and keeps every cell for the seeding below
+        for (int k = 0; k < n; k++)
+        {
+            int cell = invalid[k];
+            int x = map.x(cell);
+            int y = map.y(cell);
+            for (int i = 0; i < GridMap.SUCC.length; i++)
+            {
+                int nx = x + GridMap.SUCC[i][0];
+                int ny = y + GridMap.SUCC[i][1];
+                if (!map.isValid(nx, ny))
+                {
+                    continue;
+                }
+                int next = map.index(nx, ny);
+                // the neighbour steps onto the cell: the moves of SUCC come in
+                // pairs of opposites, i ^ 1 is the move back
+                if (direction[next] == (i ^ 1))
+                {
+                    n = invalidate(next, n);
+                }
+            }
+        }
+        for (int k = 0; k < n; k++)
+        {
+            if (!map.isWall(invalid[k]))
+            {
+                seed(invalid[k]);
+            }
+        }
+        for (int i = 0; i < pendingCount; i++)
+        {
+            if (!map.isWall(pending[i]))
+            {
+                seed(pending[i]);
+            }
+        }
+        clearChanges();
+    }
+
+    private int invalidate(int cell, int n)
+    {
+        distance[cell] = Float.POSITIVE_INFINITY;
+        direction[cell] = NONE;
+        if (n == invalid.length)
+        {
+            invalid = Arrays.copyOf(invalid, n * 2);
+        }
+        invalid[n] = cell;
+        return n + 1;
+    }
+
+    /**
+     * Sets the distance of a cell to the best of its free neighbours plus
+     * the cost of the move, and queues it.
+     */
+    private void seed(int cell)
+    {
+        int x = map.x(cell);
+        int y = map.y(cell);
+        for (int i = 0; i < GridMap.SUCC.length; i++)
+        {
+            int[] s = GridMap.SUCC[i];
+            int nx = x + s[0];
+            int ny = y + s[1];
+            if (!map.isValid(nx, ny) || map.isWall(nx, ny))
+            {
+                continue;
+            }
+            float d = distance[map.index(nx, ny)] + ((s[0] == 0 || s[1] == 0) ? 1 : SQRT2);
+            if (d < distance[cell])
+            {
+                distance[cell] = d;
+                direction[cell] = (byte) i;
+            }
+        }
+        if (distance[cell] != Float.POSITIVE_INFINITY)
+        {
+            push(cell);
+        }
+    }
+
+    /**
+     * Dijkstra search from the queued cells: every cell popped has its final
+     * distance and lowers the distance of its neighbours, pointing them at
+     * itself.
+     */
+    private void propagate()
+    {
+        while (!open.isEmpty())
+        {
+            int current = open.pop();
+            updatedIn[current] = query;
+            counters.expanded++;
+            SearchScheduler.checkpoint(counters.expanded);
+            if (listener != null)
+            {
+                listener.cellClosed(current);
+            }
+            int x = map.x(current);
+            int y = map.y(current);
+            float dcurrent = distance[current];
+            for (int i = 0; i < GridMap.SUCC.length; i++)
+            {
+                int[] s = GridMap.SUCC[i];
+                int nx = x + s[0];
+                int ny = y + s[1];
+                if (!map.isValid(nx, ny))
+                {
+                    continue;
+                }
+                int next = map.index(nx, ny);
+                if (map.isWall(next))
+                {
+                    continue;
+                }
+                float d = dcurrent + ((s[0] == 0 || s[1] == 0) ? 1 : SQRT2);
+                float old = distance[next];
+                if (d >= old)
+                {
+                    continue;
+                }
+                if (old == Float.POSITIVE_INFINITY)
+                {
+                    counters.generated++;
+                }
+                else
+                {
+                    counters.reopened++;
+                }
+                distance[next] = d;
+                // the move back from the neighbour to the current cell
+                direction[next] = (byte) (i ^ 1);
+                push(next);
+                if (listener != null)
+                {
+                    listener.cellOpened(next);
+                }
+            }
+        }
+    }
+
+    private void push(int cell)
+    {
+        updatedIn[cell] = query;
+        open.push(cell, distance[cell], 0);
+        counters.open(open.size());
+    }
+
+    /**
+     * Follows the directions from a cell to the goal.
+     * @return the cells of the path, null if the goal cannot be reached
+     */
+    private int[] follow(int start)
+    {
+        if (distance[start] == Float.POSITIVE_INFINITY)
+        {
+            return null;
+        }
+        int[] path = new int[64];
+        int length = 0;
+        int current = start;
+        path[length++] = current;
+        while (current != goal)
+        {
+            int[] s = GridMap.SUCC[direction[current]];
+            current = map.index(map.x(current) + s[0], map.y(current) + s[1]);
+            if (length == path.length)
+            {
+                path = Arrays.copyOf(path, length * 2);
+            }
+            path[length++] = current;
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    private void clearChanges()
+    {
+        for (int i = 0; i < pendingCount; i++)
+        {
+            changed.clear(pending[i]);
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * Returns true if the last query updated the cell, every cell that can
+     * reach the goal when the field was built.
+     */
+    @Override
+    public boolean isReached(int cell)
+    {
+        return updatedIn[cell] == query;
+    }
+
+    @Override
+    public boolean isClosed(int cell)
+    {
+        return updatedIn[cell] == query;
+    }
+
+    @Override
+    public SearchCounters counters()
+    {
+        return counters;
+    }
+}
@@ -0,0 +1,310 @@
+package project_package;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.paint.Color;
+import java.util.BitSet;
+
+/**
+ * GridCanvas draws the whole grid on a single Canvas instead of one scene
+ * graph node per cell. Every cell only stores a one byte colour code, cells
+ * whose code changes are marked dirty and repainted on the next frame. The
+ * view can be panned (middle-drag) and zoomed (scroll wheel), and a single
+ * mouse handler maps pixels back to cells.
+ */
+
+class GridCanvas
+{
+    // colour codes of the cells
+    static final byte EMPTY = 0;
+    static final byte WALL = 1;
+    static final byte START = 2;
+    static final byte TARGET = 3;
+    static final byte OPEN = 4;
+    static final byte CLOSED = 5;
+    static final byte PATH = 6;
+    static final byte JUMP = 7;
+
+    private static final Color[] COLORS = {
+            Color.rgb(88, 89, 90),
+            Color.rgb(37, 37, 37),
+            Color.rgb(0, 255, 0),
+            Color.rgb(0, 0, 255),
+            Color.rgb(255, 242, 82),
+            Color.ORANGE,
+            Color.CRIMSON,
+            Color.MEDIUMPURPLE
+    };
+    private static final Color BACKGROUND = Color.rgb(20, 20, 20);
+    // below this many pixels per cell the grid is drawn pixel by pixel
+    private static final double PIXEL_SCALE = 4;
+    private static final double MIN_SCALE = 0.05;
+    private static final double MAX_SCALE = 64;
+
+    /**
+     * Receives the mouse events of the canvas together with the cell under
+     * the cursor.
+     */
+    interface CellHandler
+    {
+        void handle(int cell, MouseEvent e);
+    }
+
+    private final Canvas canvas;
+    private final GraphicsContext gc;
+    private final int columns;
+    private final int rows;
+    private final byte[] cells;
+    private final BitSet dirty;
+    private boolean fullRepaint;
+    private double scale;
+    private double offsetX;
+    private double offsetY;
+    private double dragX;
+    private double dragY;
+    private int[] pixels;
+    private CellHandler onPressed;
+    private CellHandler onDragged;
+    private final AnimationTimer timer;
+
+    /**
+     * @param columns : number of cells in the x-direction
+     * @param rows : number of cells in the y-direction
+     * @param cellSize : initial size of a cell in pixels
+     * @param width : width of the viewport in pixels
+     * @param height : height of the viewport in pixels
+     */
+    GridCanvas(int columns, int rows, double cellSize, double width, double height)
+    {
+        this.columns = columns;
+        this.rows = rows;
+        cells = new byte[columns * rows];
+        dirty = new BitSet(cells.length);
+        canvas = new Canvas(width, height);
+        gc = canvas.getGraphicsContext2D();
+        scale = cellSize;
+        fullRepaint = true;
+
+        canvas.addEventHandler(MouseEvent.MOUSE_PRESSED, e ->
+        {
+            dragX = e.getX();
+            dragY = e.getY();
+            dispatch(onPressed, e);
+        });
+        canvas.addEventHandler(MouseEvent.MOUSE_DRAGGED, e ->
+        {
+            if (e.getButton() == MouseButton.MIDDLE || e.isMiddleButtonDown())
+            {
+                pan(dragX - e.getX(), dragY - e.getY());
+                dragX = e.getX();
+                dragY = e.getY();
+                return;
+            }
+            dispatch(onDragged, e);
+        });
+        canvas.addEventHandler(ScrollEvent.SCROLL, e ->
+        {
+            if (e.getDeltaY() != 0)
+            {
+                zoom(e.getDeltaY() > 0 ? 1.25 : 0.8, e.getX(), e.getY());
+            }
+        });
+
+        timer = new AnimationTimer()
+        {
+            @Override
+            public void handle(long now)
+            {
+                repaint();
+            }
+        };
+        timer.start();
+    }
+
+    /**
+     * Stops repainting, the canvas can not be used afterwards.
+     */
+    void dispose()
+    {
+        timer.stop();
+    }
+
+    Canvas getCanvas()
+    {
+        return canvas;
+    }
+
+    void setOnCellPressed(CellHandler handler)
+    {
+        onPressed = handler;
+    }
+
+    void setOnCellDragged(CellHandler handler)
+    {
+        onDragged = handler;
+    }
+
+    /**
+     * Sets the colour code of a cell, the cell is repainted on the next frame.
+     * Safe to call from any thread.
+     * @param cell : index of the cell (x * rows + y)
+     * @param code : one of the colour codes declared above
+     */
+    synchronized void paint(int cell, byte code)
+    {
+        if (cells[cell] != code)
+        {
+            cells[cell] = code;
+            dirty.set(cell);
+        }
+    }
+
+    synchronized byte codeOf(int cell)
+    {
+        return cells[cell];
+    }
+
+    /**
+     * Moves the viewport by the given amount of pixels.
+     */
+    void pan(double dx, double dy)
+    {
+        offsetX += dx;
+        offsetY += dy;
+        clampOffsets();
+        invalidate();
+    }
+
+    /**
+     * Multiplies the size of a cell by factor, keeping the cell under the
+     * pixel (px, py) in place.
+     */
+    void zoom(double factor, double px, double py)
+    {
+        double next = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+        offsetX = (offsetX + px) * next / scale - px;
+        offsetY = (offsetY + py) * next / scale - py;
+        scale = next;
+        clampOffsets();
+        invalidate();
+    }
+
+    private synchronized void invalidate()
+    {
+        fullRepaint = true;
+    }
+
+    private void clampOffsets()
+    {
+        double maxX = Math.max(0, columns * scale - canvas.getWidth());
+        double maxY = Math.max(0, rows * scale - canvas.getHeight());
+        offsetX = Math.max(0, Math.min(maxX, offsetX));
+        offsetY = Math.max(0, Math.min(maxY, offsetY));
+    }
+
+    /**
+     * Maps a mouse event to the cell under the cursor and hands both to the
+     * handler, events outside the grid are ignored.
+     */
+    private void dispatch(CellHandler handler, MouseEvent e)
+    {
+        if (handler == null)
+        {
+            return;
+        }
+        int x = (int) Math.floor((e.getX() + offsetX) / scale);
+        int y = (int) Math.floor((e.getY() + offsetY) / scale);
+        if (x >= 0 && x < columns && y >= 0 && y < rows)
+        {
+            handler.handle(x * rows + y, e);
+        }
+    }
+
+    /**
+     * Called once per frame on the FX thread, repaints the dirty cells or the
+     * whole viewport after a pan or zoom.
+     */
+    private synchronized void repaint()
+    {
+        if (!fullRepaint && dirty.isEmpty())
+        {
+            return;
+        }
+        if (scale < PIXEL_SCALE)
+        {
+            // small cells: recompute every pixel of the viewport at once
+            paintPixels();
+        }
+        else if (fullRepaint)
+        {
+            gc.setFill(BACKGROUND);
+            gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+            int x0 = (int) (offsetX / scale);
+            int y0 = (int) (offsetY / scale);
+            int x1 = Math.min(columns - 1, (int) ((offsetX + canvas.getWidth()) / scale));
+            int y1 = Math.min(rows - 1, (int) ((offsetY + canvas.getHeight()) / scale));
+            for (int x = x0; x <= x1; x++)
+            {
+                for (int y = y0; y <= y1; y++)
+                {
+                    paintCell(x, y);
+                }
+            }
+        }
+        else
+        {
+            for (int cell = dirty.nextSetBit(0); cell >= 0; cell = dirty.nextSetBit(cell + 1))
+            {
+                paintCell(cell / rows, cell % rows);
+            }
+        }
+        dirty.clear();
+        fullRepaint = false;
+    }
+
+    private void paintCell(int x, int y)
+    {
+        double px = x * scale - offsetX;
+        double py = y * scale - offsetY;
+        if (px + scale < 0 || py + scale < 0 || px > canvas.getWidth() || py > canvas.getHeight())
+        {
+            return;
+        }
+        gc.setFill(COLORS[cells[x * rows + y]]);
+        gc.fillRect(px, py, scale, scale);
+        gc.setStroke(Color.DIMGRAY);
+        gc.strokeRect(px + 0.5, py + 0.5, scale - 1, scale - 1);
+    }
+
+    private void paintPixels()
+    {
+        int w = (int) canvas.getWidth();
+        int h = (int) canvas.getHeight();
+        if (pixels == null)
+        {
+            pixels = new int[w * h];
+        }
+        int[] argb = new int[COLORS.length];
+        for (int i = 0; i < argb.length; i++)
+        {
+            Color c = COLORS[i];
+            argb[i] = 0xFF000000 | ((int) (c.getRed() * 255) << 16) | ((int) (c.getGreen() * 255) << 8) | (int) (c.getBlue() * 255);
+        }
+        int background = 0xFF141414;
+        for (int px = 0; px < w; px++)
+        {
+            int x = (int) ((px + offsetX) / scale);
+            for (int py = 0; py < h; py++)
+            {
+                int y = (int) ((py + offsetY) / scale);
+                pixels[py * w + px] = (x < columns && y < rows) ? argb[cells[x * rows + y]] : background;
+            }
+        }
+        gc.getPixelWriter().setPixels(0, 0, w, h, PixelFormat.getIntArgbPreInstance(), pixels, 0, w);
+    }
+}
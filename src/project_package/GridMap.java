@@ -0,0 +1,295 @@
+package project_package;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32C;
+
+/**
+ * GridMap holds the walls of the grid as a bitmap, one bit per cell, without
+ * any JavaFX state attached to it. Cells are numbered column by column, i.e.
+ * the cell (x, y) has the index x * height + y and its wall is bit
+ * (index % 64) of the long at index / 64, so a whole map can be searched
+ * from any thread without a running FX toolkit. The bitmap and the optional
+ * cost layer are buffers, either on the heap or mapped straight from a map
+ * file (see MapFile). Every wall change bumps the version of the map and is
+ * reported to the registered MapListeners.
+ */
+
+class GridMap
+{
+    // the 8 moves allowed from every cell, straight moves first, in pairs of
+    // opposite moves (SUCC[i ^ 1] undoes SUCC[i])
+    static final int[][] SUCC = {{-1, 0}, {1, 0}, {0, 1}, {0, -1}, {-1, 1}, {1, -1}, {-1, -1}, {1, 1}};
+
+    private final int width;
+    private final int height;
+    private final int size;
+    private LongBuffer walls;
+    // backing array of walls when it is on the heap, read directly on the
+    // hot path, null for a mapped bitmap
+    private long[] bits;
+    // optional move cost of every cell (1..255), null when all costs are 1
+    private final ByteBuffer costs;
+    private final List<MapListener> listeners = new CopyOnWriteArrayList<>();
+    // bumped by every wall change
+    private long version;
+    // version of the last change that cleared a wall, 0 if none did
+    private long cleared;
+    // checksum of the walls and the version it was computed at, guarded by
+    // this
+    private long checksum;
+    private long checksumVersion = -1;
+
+    /**
+     * Creates an empty (wall free) map.
+     * @param width : number of cells in the x-direction
+     * @param height : number of cells in the y-direction
+     */
+    GridMap(int width, int height)
+    {
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Invalid grid size " + width + " x " + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.size = width * height;
+        this.walls = LongBuffer.allocate(words(size));
+        this.bits = walls.array();
+        this.costs = null;
+    }
+
+    /**
+     * Creates a map on existing buffers, e.g. regions of a mapped file.
+     * @param walls : the wall bitmap, at least words(width * height) longs
+     * @param costs : one cost byte per cell, or null
+     */
+    GridMap(int width, int height, LongBuffer walls, ByteBuffer costs)
+    {
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Invalid grid size " + width + " x " + height);
+        }
+        if (walls.capacity() < words(width * height) || (costs != null && costs.capacity() < width * height))
+        {
+            throw new IllegalArgumentException("Buffers too small for a " + width + " x " + height + " grid");
+        }
+        this.width = width;
+        this.height = height;
+        this.size = width * height;
+        this.walls = walls;
+        this.bits = (walls.hasArray() && walls.arrayOffset() == 0 && !walls.isReadOnly()) ? walls.array() : null;
+        this.costs = costs;
+    }
+
+    /**
+     * Returns the number of longs holding the bitmap of a map of n cells.
+     */
+    static int words(int n)
+    {
+        return (int) (((long) n + 63) >>> 6);
+    }
+
+    /**
+     * Returns an independent copy of the map, e.g. a snapshot that several
+     * threads can search while the original keeps being edited. Listeners
+     * are not copied.
+     */
+    GridMap copy()
+    {
+        LongBuffer bits = LongBuffer.allocate(words(size));
+        bits.put(walls.duplicate().clear().limit(bits.capacity())).clear();
+        ByteBuffer cellCosts = null;
+        if (costs != null)
+        {
+            cellCosts = ByteBuffer.allocate(size);
+            cellCosts.put(costs.duplicate().clear().limit(size)).clear();
+        }
+        return new GridMap(width, height, bits, cellCosts);
+    }
+
+    int width()
+    {
+        return width;
+    }
+
+    int height()
+    {
+        return height;
+    }
+
+    /**
+     * Returns the number of cells in the map.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the index of the cell (x, y).
+     * @param x : the x value on a 2D plane
+     * @param y : the y value on a 2D plane
+     */
+    int index(int x, int y)
+    {
+        return x * height + y;
+    }
+
+    int x(int cell)
+    {
+        return cell / height;
+    }
+
+    int y(int cell)
+    {
+        return cell % height;
+    }
+
+    /**
+     * Returns true if (x, y) lies within the map.
+     * @param x : the x value on a 2D plane
+     * @param y : the y value on a 2D plane
+     */
+    boolean isValid(int x, int y)
+    {
+        return (x >= 0) && (x < width) && (y >= 0) && (y < height);
+    }
+
+    boolean isWall(int cell)
+    {
+        long word = (bits != null) ? bits[cell >>> 6] : walls.get(cell >>> 6);
+        return (word & (1L << cell)) != 0;
+    }
+
+    boolean isWall(int x, int y)
+    {
+        return isWall(x * height + y);
+    }
+
+    /**
+     * Returns true if the map has a cost layer.
+     */
+    boolean hasCosts()
+    {
+        return costs != null;
+    }
+
+    /**
+     * Returns the cost layer value of a cell, 1 for maps without one. The
+     * searches move at uniform cost, the layer is kept with the map so that
+     * it survives loading and saving.
+     */
+    int cost(int cell)
+    {
+        return (costs == null) ? 1 : costs.get(cell) & 0xFF;
+    }
+
+    /**
+     * Returns the wall bitmap, read only.
+     */
+    LongBuffer walls()
+    {
+        return walls.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the cost layer, read only, or null.
+     */
+    ByteBuffer costs()
+    {
+        return (costs == null) ? null : costs.asReadOnlyBuffer();
+    }
+
+    /**
+     * Sets or clears the wall of a cell, listeners are only told about
+     * actual changes. The first edit of a map whose bitmap is read only
+     * (mapped from a file) copies the bitmap onto the heap.
+     */
+    void setWall(int cell, boolean wall)
+    {
+        if (isWall(cell) == wall)
+        {
+            return;
+        }
+        if (bits == null)
+        {
+            // first edit of a read only (mapped) bitmap: edit a heap copy
+            LongBuffer copy = LongBuffer.allocate(words(size));
+            copy.put(walls.duplicate().clear().limit(copy.capacity())).clear();
+            walls = copy;
+            bits = copy.array();
+        }
+        bits[cell >>> 6] ^= 1L << cell;
+        version++;
+        if (!wall)
+        {
+            cleared = version;
+        }
+        for (MapListener listener : listeners)
+        {
+            listener.wallChanged(cell, wall);
+        }
+    }
+
+    /**
+     * Returns the number of wall changes made so far, two equal versions of
+     * the same map have the same walls.
+     */
+    long version()
+    {
+        return version;
+    }
+
+    /**
+     * Returns the version of the last change that cleared a wall, 0 if none
+     * did. From any version at or after it walls were only added, so no
+     * distance has become shorter since.
+     */
+    long clearedVersion()
+    {
+        return cleared;
+    }
+
+    /**
+     * Returns a CRC32C of the wall bitmap, to tell whether a file saved for
+     * a map (landmark tables, search traces) belongs to it. The checksum is
+     * computed once per version of the map.
+     */
+    synchronized long checksum()
+    {
+        if (checksumVersion != version)
+        {
+            CRC32C crc = new CRC32C();
+            LongBuffer bitmap = walls();
+            ByteBuffer chunk = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            int words = words(size);
+            for (int word = 0; word < words; word++)
+            {
+                if (!chunk.hasRemaining())
+                {
+                    crc.update(chunk.flip());
+                    chunk.clear();
+                }
+                chunk.putLong(bitmap.get(word));
+            }
+            crc.update(chunk.flip());
+            checksum = crc.getValue();
+            checksumVersion = version;
+        }
+        return checksum;
+    }
+
+    void addListener(MapListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    void removeListener(MapListener listener)
+    {
+        listeners.remove(listener);
+    }
+}
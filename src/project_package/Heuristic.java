@@ -0,0 +1,51 @@
+package project_package;
+
+/**
+ * Heuristic estimates the cost of the cheapest path between two cells from
+ * their offsets alone. Estimates are computed for every generated cell, so
+ * implementations only use a few integer and float operations (see
+ * Heuristics for the usual distances). Heuristics precomputed for a map
+ * (see LandmarkHeuristic) also look at the cells themselves.
+ */
+
+interface Heuristic
+{
+    /**
+     * @param dx : absolute difference of the x coordinates
+     * @param dy : absolute difference of the y coordinates
+     * @return the estimated cost of moving dx cells horizontally and dy
+     *         cells vertically
+     */
+    float estimate(int dx, int dy);
+
+    /**
+     * Estimates the cost from a cell to the goal of a query, the searches
+     * call this one. Only the offsets are used unless overridden.
+     * @param cell : index of the cell
+     * @param goal : index of the goal
+     * @param dx : absolute difference of the x coordinates
+     * @param dy : absolute difference of the y coordinates
+     */
+    default float estimate(int cell, int goal, int dx, int dy)
+    {
+        return estimate(dx, dy);
+    }
+
+    /**
+     * Returns true if the estimate never exceeds the cost of the octile
+     * moves of SearchEngine (straight 1, diagonal sqrt(2)), in which case A
+     * star returns shortest paths with it.
+     */
+    boolean isAdmissible();
+
+    /**
+     * Returns true if the estimate never drops by more than the cost of a
+     * move, in which case a cell expanded by A star never needs to be
+     * expanded again. An admissible heuristic that is not consistent makes
+     * the searches reopen closed cells to keep their paths shortest.
+     */
+    default boolean isConsistent()
+    {
+        return isAdmissible();
+    }
+}
@@ -0,0 +1,74 @@
+package project_package;
+
+/**
+ * The distances that can be used as the heuristic of a search. Octile
+ * distance is the exact cost of the 8-connected moves on an empty grid, the
+ * tightest of the admissible ones and the default. Chebyshev and Euclidean
+ * are admissible but weaker, so A star expands more cells with them.
+ * Manhattan overestimates diagonal moves: it is not admissible and the paths
+ * found with it can be longer than the shortest ones.
+ */
+
+enum Heuristics implements Heuristic
+{
+    OCTILE("Octile")
+    {
+        @Override
+        public float estimate(int dx, int dy)
+        {
+            return (dx > dy) ? dx + DIAGONAL * dy : dy + DIAGONAL * dx;
+        }
+    },
+    CHEBYSHEV("Chebyshev")
+    {
+        @Override
+        public float estimate(int dx, int dy)
+        {
+            return Math.max(dx, dy);
+        }
+    },
+    MANHATTAN("Manhattan")
+    {
+        @Override
+        public float estimate(int dx, int dy)
+        {
+            return dx + dy;
+        }
+
+        @Override
+        public boolean isAdmissible()
+        {
+            return false;
+        }
+    },
+    EUCLIDEAN("Euclidean")
+    {
+        @Override
+        public float estimate(int dx, int dy)
+        {
+            return (float) Math.sqrt(dx * dx + dy * dy);
+        }
+    };
+
+    // extra cost of a diagonal move over a straight one, sqrt(2) - 1
+    private static final float DIAGONAL = SearchEngine.SQRT2 - 1;
+
+    private final String label;
+
+    Heuristics(String label)
+    {
+        this.label = label;
+    }
+
+    @Override
+    public boolean isAdmissible()
+    {
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return label;
+    }
+}
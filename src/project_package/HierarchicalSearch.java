@@ -0,0 +1,907 @@
+package project_package;
+
+import java.util.Arrays;
+
+/**
+ * HierarchicalSearch implements HPA*: the map is split into square clusters,
+ * the open cells on both sides of every cluster border are grouped into
+ * entrances and the distances between the entrances of a cluster are
+ * precomputed. A query only connects its start and goal to the entrances of
+ * their own clusters, searches the small abstract graph of entrances and
+ * refines every abstract edge into cells with a search bounded to a single
+ * cluster. A start and goal in the same or neighbouring clusters are also
+ * linked directly, by a search bounded to the clusters around them, so
+ * that short paths do not detour through the entrances. Paths are
+ * near-optimal: they are optimal on the abstract graph but may be slightly
+ * longer than the A star path.
+ * Wall changes only mark the clusters around the edited cell, which are
+ * rebuilt before the next query. The abstraction reports its build time and
+ * an estimate of its memory footprint so that cluster sizes can be tuned.
+ */
+
+class HierarchicalSearch implements PathSearch, MapListener
+{
+    static final int DEFAULT_CLUSTER_SIZE = 16;
+    // border segments longer than this get an entrance at both ends
+    private static final int MAX_SINGLE_ENTRANCE = 6;
+    // borders owned by every cluster: east, south, south-east and north-east
+    private static final int EAST = 0;
+    private static final int SOUTH = 1;
+    private static final int SOUTH_EAST = 2;
+    private static final int NORTH_EAST = 3;
+    private static final int[] NO_PAIRS = new int[0];
+
+    private final GridMap map;
+    private final int size;
+    private final int clustersX;
+    private final int clustersY;
+
+    // transitions of the borders owned by each cluster, as pairs of cells
+    // (cell of the owner, cell of the neighbour)
+    private final int[][][] borders;
+    // entrance cells of each cluster, sorted
+    private final int[][] entrances;
+    // distances between the entrances of each cluster, row-major n x n
+    private final float[][] intra;
+    // cells and move costs across the borders, per entrance of each cluster
+    private final int[][][] partners;
+    private final float[][][] partnerCosts;
+    private final boolean[] dirtyBorders;
+    private final boolean[] dirtyIntra;
+    private boolean dirty;
+
+    // dense numbering of the abstract nodes, rebuilt with the abstraction
+    private int[] base;
+    private int[] cellOf;
+    private int[] clusterOf;
+    private int nodeCount;
+
+    // scratch of the searches bounded to one cluster, or to the 2 x 2
+    // clusters around a start and goal in neighbouring clusters
+    private final float[] localG;
+    private final int[] localParent;
+    private final OpenSet localOpen;
+    // first column and row, and height, of the area of the last one
+    private int areaX;
+    private int areaY;
+    private int areaHeight;
+
+    // scratch of the abstract search, grown with the abstract graph
+    private SearchContext abstractContext;
+    private OpenSet abstractOpen;
+
+    private SearchListener listener;
+    // start cell of the last query, the source node of its abstract search
+    private int startCell = -1;
+    private final SearchCounters counters = new SearchCounters();
+    private long buildNanos;
+    private long lastRebuildNanos;
+
+    /**
+     * Builds the abstraction of a map and starts listening to its walls.
+     * @param map : the map to search
+     * @param clusterSize : width and height of a cluster in cells
+     */
+    HierarchicalSearch(GridMap map, int clusterSize)
+    {
+        if (clusterSize < 2)
+        {
+            throw new IllegalArgumentException("Cluster size must be at least 2");
+        }
+        this.map = map;
+        this.size = clusterSize;
+        clustersX = (map.width() + size - 1) / size;
+        clustersY = (map.height() + size - 1) / size;
+        int clusters = clustersX * clustersY;
+        borders = new int[clusters][4][];
+        entrances = new int[clusters][];
+        intra = new float[clusters][];
+        partners = new int[clusters][][];
+        partnerCosts = new float[clusters][][];
+        dirtyBorders = new boolean[clusters];
+        dirtyIntra = new boolean[clusters];
+        localG = new float[4 * size * size];
+        localParent = new int[4 * size * size];
+        localOpen = new BinaryHeapOpenSet(4 * size * size);
+
+        long begin = System.nanoTime();
+        Arrays.fill(dirtyBorders, true);
+        Arrays.fill(dirtyIntra, true);
+        dirty = true;
+        rebuild();
+        buildNanos = System.nanoTime() - begin;
+        map.addListener(this);
+    }
+
+    @Override
+    public void setListener(SearchListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Marks the clusters whose abstraction depends on the edited cell: its
+     * own cluster and, for cells on a cluster border, the neighbouring
+     * clusters sharing that border.
+     */
+    @Override
+    public synchronized void wallChanged(int cell, boolean wall)
+    {
+        int x = map.x(cell);
+        int y = map.y(cell);
+        int cluster = clusterOf(x, y);
+        dirtyIntra[cluster] = true;
+        int lx = x % size;
+        int ly = y % size;
+        if (lx == 0 || lx == size - 1 || ly == 0 || ly == size - 1)
+        {
+            dirtyBorders[cluster] = true;
+        }
+        dirty = true;
+    }
+
+    /**
+     * Returns the time spent building the whole abstraction, in nanoseconds.
+     */
+    long buildNanos()
+    {
+        return buildNanos;
+    }
+
+    /**
+     * Returns the time spent by the last incremental rebuild, in nanoseconds.
+     */
+    synchronized long lastRebuildNanos()
+    {
+        return lastRebuildNanos;
+    }
+
+    /**
+     * Returns the number of entrances (abstract nodes) of the abstraction.
+     */
+    synchronized int nodeCount()
+    {
+        rebuild();
+        return nodeCount;
+    }
+
+    /**
+     * Returns an estimate, in bytes, of the memory held by the abstraction
+     * (borders, entrances and distance tables, without the search scratch).
+     */
+    synchronized long memoryBytes()
+    {
+        rebuild();
+        long bytes = 0;
+        for (int k = 0; k < entrances.length; k++)
+        {
+            for (int[] pairs : borders[k])
+            {
+                bytes += 16 + 4L * pairs.length;
+            }
+            bytes += 16 + 4L * entrances[k].length;
+            bytes += 16 + 4L * intra[k].length;
+            for (int i = 0; i < partners[k].length; i++)
+            {
+                bytes += 32 + 8L * partners[k][i].length;
+            }
+        }
+        bytes += 12L * (nodeCount + 2) + 4L * base.length;
+        return bytes;
+    }
+
+    @Override
+    public synchronized int[] findPath(int start, int goal)
+    {
+        int[] waypoints = findWaypoints(start, goal);
+        if (waypoints == null)
+        {
+            return null;
+        }
+        long refining = System.nanoTime();
+        int[][] segments = new int[waypoints.length - 1][];
+        int length = 1;
+        for (int i = 0; i < segments.length; i++)
+        {
+            segments[i] = refine(waypoints[i], waypoints[i + 1]);
+            length += segments[i].length - 1;
+        }
+        int[] path = new int[length];
+        path[0] = start;
+        int n = 1;
+        for (int[] segment : segments)
+        {
+            System.arraycopy(segment, 1, path, n, segment.length - 1);
+            n += segment.length - 1;
+        }
+        counters.pathNanos = System.nanoTime() - refining;
+        return path;
+    }
+
+    /**
+     * Searches the abstract graph only (the counters are those of the
+     * abstract search, the setup time includes any pending rebuild and the
+     * connection of start and goal). The consecutive waypoints returned
+     * are either in the same cluster or adjacent across a border, callers
+     * that move along the path can refine them lazily, one pair at a time,
+     * with refine().
+     * @return the start, the entrances crossed and the goal, or null if the
+     *         goal cannot be reached
+     */
+    synchronized int[] findWaypoints(int start, int goal)
+    {
+        long begin = System.nanoTime();
+        counters.reset();
+        rebuild();
+        abstractContext.next();
+        abstractOpen.clear();
+        startCell = start;
+        if (map.isWall(start) || map.isWall(goal))
+        {
+            return null;
+        }
+        if (start == goal)
+        {
+            return new int[]{start};
+        }
+        int sx = map.x(start);
+        int sy = map.y(start);
+        int gx = map.x(goal);
+        int gy = map.y(goal);
+        int startCluster = clusterOf(sx, sy);
+        int goalCluster = clusterOf(gx, gy);
+
+        // connect the start and the goal to the entrances of their clusters
+        localSearch(startCluster, start, -1);
+        float[] fromStart = entranceDistances(startCluster);
+        localSearch(goalCluster, goal, -1);
+        float[] toGoal = entranceDistances(goalCluster);
+        // and to each other when they are close, the shortest path may then
+        // cross a border where there is no entrance, or no border at all
+        float direct = Float.POSITIVE_INFINITY;
+        if (areNeighbours(startCluster, goalCluster))
+        {
+            pairSearch(startCluster, goalCluster, start, goal);
+            direct = localG[local(goal)];
+        }
+
+        int source = nodeCount;
+        int target = nodeCount + 1;
+        abstractContext.setG(source, 0);
+        abstractContext.setParent(source, source);
+        abstractOpen.push(source, Heuristics.OCTILE.estimate(Math.abs(sx - gx), Math.abs(sy - gy)), 0);
+        counters.generated = 1;
+        counters.peakOpen = 1;
+        counters.heuristicEvaluations = 1;
+        long searching = System.nanoTime();
+        counters.setupNanos = searching - begin;
+
+        while (!abstractOpen.isEmpty())
+        {
+            int u = abstractOpen.pop();
+            if (u == target)
+            {
+                counters.searchNanos = System.nanoTime() - searching;
+                return waypoints(source, target, start, goal);
+            }
+            abstractContext.close(u);
+            counters.expanded++;
+            SearchScheduler.checkpoint(counters.expanded);
+            int ucell = (u == source) ? start : cellOf[u];
+            if (listener != null)
+            {
+                listener.cellClosed(ucell);
+            }
+            if (u == source)
+            {
+                int[] cells = entrances[startCluster];
+                for (int j = 0; j < cells.length; j++)
+                {
+                    relax(u, base[startCluster] + j, fromStart[j], gx, gy);
+                }
+                relax(u, target, direct, gx, gy);
+                continue;
+            }
+            int k = clusterOf[u];
+            int i = u - base[k];
+            int n = entrances[k].length;
+            float gu = abstractContext.g(u);
+            for (int j = 0; j < n; j++)
+            {
+                if (j != i)
+                {
+                    relax(u, base[k] + j, gu + intra[k][i * n + j], gx, gy);
+                }
+            }
+            for (int p = 0; p < partners[k][i].length; p++)
+            {
+                relax(u, nodeOf(partners[k][i][p]), gu + partnerCosts[k][i][p], gx, gy);
+            }
+            if (k == goalCluster)
+            {
+                relax(u, target, gu + toGoal[i], gx, gy);
+            }
+        }
+        counters.searchNanos = System.nanoTime() - searching;
+        return null;
+    }
+
+    /**
+     * Turns two consecutive waypoints into cells.
+     * @return the cells from a to b, both included
+     */
+    synchronized int[] refine(int a, int b)
+    {
+        int ax = map.x(a);
+        int ay = map.y(a);
+        int bx = map.x(b);
+        int by = map.y(b);
+        int cluster = clusterOf(ax, ay);
+        int other = clusterOf(bx, by);
+        if (a == b)
+        {
+            return new int[]{a};
+        }
+        if (cluster == other)
+        {
+            localSearch(cluster, a, b);
+        }
+        else if (Math.abs(ax - bx) <= 1 && Math.abs(ay - by) <= 1)
+        {
+            // an edge across a border
+            return new int[]{a, b};
+        }
+        else
+        {
+            // the direct edge of a start and goal in neighbouring clusters
+            pairSearch(cluster, other, a, b);
+        }
+        int length = 1;
+        for (int l = local(b); localParent[l] != l; l = localParent[l])
+        {
+            length++;
+        }
+        int[] cells = new int[length];
+        for (int l = local(b), i = length - 1; i >= 0; l = localParent[l], i--)
+        {
+            cells[i] = map.index(areaX + l / areaHeight, areaY + l % areaHeight);
+        }
+        return cells;
+    }
+
+    private void relax(int u, int v, float gv, int gx, int gy)
+    {
+        float gold = abstractContext.g(v);
+        if (gv >= gold || abstractContext.isClosed(v))
+        {
+            return;
+        }
+        if (gold == Float.POSITIVE_INFINITY)
+        {
+            counters.generated++;
+        }
+        abstractContext.setG(v, gv);
+        abstractContext.setParent(v, u);
+        int cell = cellOf[v];
+        float h = 0;
+        if (v < nodeCount)
+        {
+            h = Heuristics.OCTILE.estimate(Math.abs(map.x(cell) - gx), Math.abs(map.y(cell) - gy));
+            counters.heuristicEvaluations++;
+        }
+        abstractOpen.push(v, gv + h, h);
+        counters.open(abstractOpen.size());
+        if (v < nodeCount && listener != null)
+        {
+            listener.cellOpened(cell);
+        }
+    }
+
+    private int[] waypoints(int source, int target, int start, int goal)
+    {
+        int length = 1;
+        for (int v = target; v != source; v = abstractContext.parent(v))
+        {
+            length++;
+        }
+        int[] nodes = new int[length];
+        for (int v = target, i = length - 1; i >= 0; v = abstractContext.parent(v), i--)
+        {
+            nodes[i] = (v == source) ? start : (v == target) ? goal : cellOf[v];
+        }
+        // the start or goal may be an entrance themselves
+        int n = 1;
+        for (int i = 1; i < nodes.length; i++)
+        {
+            if (nodes[i] != nodes[n - 1])
+            {
+                nodes[n++] = nodes[i];
+            }
+        }
+        return Arrays.copyOf(nodes, n);
+    }
+
+    /**
+     * Reads the distances from the last local search to every entrance of
+     * the cluster.
+     */
+    private float[] entranceDistances(int cluster)
+    {
+        int[] cells = entrances[cluster];
+        float[] distances = new float[cells.length];
+        for (int j = 0; j < cells.length; j++)
+        {
+            distances[j] = localG[local(cells[j])];
+        }
+        return distances;
+    }
+
+    /**
+     * Brings the dirty parts of the abstraction up to date: transitions of
+     * the borders touching a dirty cluster, then entrances and distances of
+     * every cluster whose transitions may have changed.
+     */
+    private void rebuild()
+    {
+        if (!dirty)
+        {
+            return;
+        }
+        long begin = System.nanoTime();
+        for (int k = 0; k < dirtyBorders.length; k++)
+        {
+            if (!dirtyBorders[k])
+            {
+                continue;
+            }
+            // a border cell can be an end or a corner detour of the borders
+            // owned by any of the surrounding clusters
+            int cx = k / clustersY;
+            int cy = k % clustersY;
+            for (int dx = -1; dx <= 1; dx++)
+            {
+                for (int dy = -1; dy <= 1; dy++)
+                {
+                    computeBorders(cx + dx, cy + dy);
+                }
+            }
+            dirtyBorders[k] = false;
+        }
+        for (int k = 0; k < dirtyIntra.length; k++)
+        {
+            if (dirtyIntra[k])
+            {
+                computeEntrances(k);
+                dirtyIntra[k] = false;
+            }
+        }
+        number();
+        dirty = false;
+        lastRebuildNanos = System.nanoTime() - begin;
+    }
+
+    /**
+     * Finds the transitions of the four borders owned by cluster (cx, cy).
+     * Open cells facing each other form segments with one or two straight
+     * transitions, diagonal transitions are only added where no straight
+     * one connects the same cells, so every path across a border survives.
+     */
+    private void computeBorders(int cx, int cy)
+    {
+        if (!isCluster(cx, cy))
+        {
+            return;
+        }
+        int k = cx * clustersY + cy;
+        int x0 = cx * size;
+        int y0 = cy * size;
+        int x1 = Math.min(map.width(), x0 + size) - 1;
+        int y1 = Math.min(map.height(), y0 + size) - 1;
+        IntList pairs = new IntList();
+
+        if (cx + 1 < clustersX)
+        {
+            borderLine(pairs, x1, y0, x1 + 1, y0, 0, 1, y1 - y0 + 1);
+        }
+        setBorder(cx, cy, EAST, cx + 1, cy, pairs);
+        if (cy + 1 < clustersY)
+        {
+            borderLine(pairs, x0, y1, x0, y1 + 1, 1, 0, x1 - x0 + 1);
+        }
+        setBorder(cx, cy, SOUTH, cx, cy + 1, pairs);
+        if (cx + 1 < clustersX && cy + 1 < clustersY)
+        {
+            corner(pairs, x1, y1, 1);
+        }
+        setBorder(cx, cy, SOUTH_EAST, cx + 1, cy + 1, pairs);
+        if (cx + 1 < clustersX && cy > 0)
+        {
+            corner(pairs, x1, y0, -1);
+        }
+        setBorder(cx, cy, NORTH_EAST, cx + 1, cy - 1, pairs);
+    }
+
+    /**
+     * Stores the transitions of a border and marks the entrances of the two
+     * clusters it separates as dirty when they changed.
+     */
+    private void setBorder(int cx, int cy, int border, int nx, int ny, IntList pairs)
+    {
+        int k = cx * clustersY + cy;
+        int[] transitions = pairs.toArray();
+        pairs.clear();
+        if (Arrays.equals(borders[k][border], transitions))
+        {
+            return;
+        }
+        borders[k][border] = transitions;
+        dirtyIntra[k] = true;
+        if (isCluster(nx, ny))
+        {
+            dirtyIntra[nx * clustersY + ny] = true;
+        }
+    }
+
+    /**
+     * Adds the transitions of a straight border between the cells (ax, ay)
+     * and (bx, by), walking length cells in the direction (dx, dy).
+     */
+    private void borderLine(IntList pairs, int ax, int ay, int bx, int by, int dx, int dy, int length)
+    {
+        boolean[] open = new boolean[length];
+        for (int i = 0; i < length; i++)
+        {
+            open[i] = walkable(ax + i * dx, ay + i * dy) && walkable(bx + i * dx, by + i * dy);
+        }
+        int i = 0;
+        while (i < length)
+        {
+            if (!open[i])
+            {
+                i++;
+                continue;
+            }
+            int first = i;
+            while (i < length && open[i])
+            {
+                i++;
+            }
+            int last = i - 1;
+            if (last - first + 1 > MAX_SINGLE_ENTRANCE)
+            {
+                pairs.add(map.index(ax + first * dx, ay + first * dy), map.index(bx + first * dx, by + first * dy));
+                pairs.add(map.index(ax + last * dx, ay + last * dy), map.index(bx + last * dx, by + last * dy));
+            }
+            else
+            {
+                int middle = (first + last) / 2;
+                pairs.add(map.index(ax + middle * dx, ay + middle * dy), map.index(bx + middle * dx, by + middle * dy));
+            }
+        }
+        for (i = 0; i + 1 < length; i++)
+        {
+            if (open[i] || open[i + 1])
+            {
+                continue;
+            }
+            if (walkable(ax + i * dx, ay + i * dy) && walkable(bx + (i + 1) * dx, by + (i + 1) * dy))
+            {
+                pairs.add(map.index(ax + i * dx, ay + i * dy), map.index(bx + (i + 1) * dx, by + (i + 1) * dy));
+            }
+            if (walkable(ax + (i + 1) * dx, ay + (i + 1) * dy) && walkable(bx + i * dx, by + i * dy))
+            {
+                pairs.add(map.index(ax + (i + 1) * dx, ay + (i + 1) * dy), map.index(bx + i * dx, by + i * dy));
+            }
+        }
+    }
+
+    /**
+     * Adds the diagonal transition from the corner cell (x, y) to the cell
+     * (x + 1, y + dy) of the diagonal cluster, unless a detour through one of
+     * the two other clusters exists.
+     */
+    private void corner(IntList pairs, int x, int y, int dy)
+    {
+        if (walkable(x, y) && walkable(x + 1, y + dy) && !walkable(x + 1, y) && !walkable(x, y + dy))
+        {
+            pairs.add(map.index(x, y), map.index(x + 1, y + dy));
+        }
+    }
+
+    /**
+     * Collects the entrances of a cluster from the transitions of the borders
+     * around it and computes the distances between them.
+     */
+    private void computeEntrances(int k)
+    {
+        int cx = k / clustersY;
+        int cy = k % clustersY;
+        IntList mine = new IntList();
+        // borders owned by this cluster: first cell of each pair is ours
+        for (int[] pairs : borders[k])
+        {
+            for (int p = 0; p < pairs.length; p += 2)
+            {
+                mine.add(pairs[p], pairs[p + 1]);
+            }
+        }
+        // borders owned by the clusters west, north, north-west, south-west
+        addOwnedBy(mine, cx - 1, cy, EAST);
+        addOwnedBy(mine, cx, cy - 1, SOUTH);
+        addOwnedBy(mine, cx - 1, cy - 1, SOUTH_EAST);
+        addOwnedBy(mine, cx - 1, cy + 1, NORTH_EAST);
+
+        int[] pairs = mine.toArray();
+        int[] cells = new int[pairs.length / 2];
+        for (int p = 0; p < cells.length; p++)
+        {
+            cells[p] = pairs[2 * p];
+        }
+        Arrays.sort(cells);
+        int n = 0;
+        for (int i = 0; i < cells.length; i++)
+        {
+            if (n == 0 || cells[i] != cells[n - 1])
+            {
+                cells[n++] = cells[i];
+            }
+        }
+        cells = Arrays.copyOf(cells, n);
+        entrances[k] = cells;
+
+        int[] counts = new int[n];
+        for (int p = 0; p < pairs.length; p += 2)
+        {
+            counts[Arrays.binarySearch(cells, pairs[p])]++;
+        }
+        partners[k] = new int[n][];
+        partnerCosts[k] = new float[n][];
+        for (int i = 0; i < n; i++)
+        {
+            partners[k][i] = new int[counts[i]];
+            partnerCosts[k][i] = new float[counts[i]];
+            counts[i] = 0;
+        }
+        for (int p = 0; p < pairs.length; p += 2)
+        {
+            int i = Arrays.binarySearch(cells, pairs[p]);
+            int other = pairs[p + 1];
+            boolean diagonal = map.x(other) != map.x(pairs[p]) && map.y(other) != map.y(pairs[p]);
+            partners[k][i][counts[i]] = other;
+            partnerCosts[k][i][counts[i]++] = diagonal ? SearchEngine.SQRT2 : 1;
+        }
+
+        float[] distances = new float[n * n];
+        for (int i = 0; i < n; i++)
+        {
+            localSearch(k, cells[i], -1);
+            for (int j = 0; j < n; j++)
+            {
+                distances[i * n + j] = localG[local(cells[j])];
+            }
+        }
+        intra[k] = distances;
+    }
+
+    private void addOwnedBy(IntList mine, int cx, int cy, int border)
+    {
+        if (!isCluster(cx, cy))
+        {
+            return;
+        }
+        int[] pairs = borders[cx * clustersY + cy][border];
+        for (int p = 0; p < pairs.length; p += 2)
+        {
+            mine.add(pairs[p + 1], pairs[p]);
+        }
+    }
+
+    /**
+     * Numbers the entrances of all clusters 0..nodeCount-1 and makes sure the
+     * abstract search scratch can hold them plus the start and goal nodes.
+     */
+    private void number()
+    {
+        if (base == null)
+        {
+            base = new int[entrances.length];
+        }
+        nodeCount = 0;
+        for (int k = 0; k < entrances.length; k++)
+        {
+            base[k] = nodeCount;
+            nodeCount += entrances[k].length;
+        }
+        if (cellOf == null || cellOf.length < nodeCount + 2)
+        {
+            int capacity = nodeCount + nodeCount / 4 + 2;
+            cellOf = new int[capacity];
+            clusterOf = new int[capacity];
+            abstractContext = new SearchContext(capacity);
+            abstractOpen = new BinaryHeapOpenSet(capacity);
+        }
+        for (int k = 0; k < entrances.length; k++)
+        {
+            for (int j = 0; j < entrances[k].length; j++)
+            {
+                cellOf[base[k] + j] = entrances[k][j];
+                clusterOf[base[k] + j] = k;
+            }
+        }
+    }
+
+    private int nodeOf(int cell)
+    {
+        int k = clusterOf(map.x(cell), map.y(cell));
+        return base[k] + Arrays.binarySearch(entrances[k], cell);
+    }
+
+    /**
+     * Dijkstra's algorithm restricted to one cluster, from source until
+     * target is expanded (or the whole cluster if target is -1). Distances
+     * and parents are left in localG and localParent, by local index.
+     */
+    private void localSearch(int cluster, int source, int target)
+    {
+        int x0 = (cluster / clustersY) * size;
+        int y0 = (cluster % clustersY) * size;
+        boundedSearch(x0, y0, Math.min(size, map.width() - x0), Math.min(size, map.height() - y0), source, target);
+    }
+
+    /**
+     * Dijkstra's algorithm from source to target restricted to the clusters
+     * of the two cells and the clusters between them, i.e. the rectangle of
+     * at most 2 x 2 clusters covering two neighbouring clusters.
+     */
+    private void pairSearch(int a, int b, int source, int target)
+    {
+        int x0 = Math.min(a / clustersY, b / clustersY) * size;
+        int y0 = Math.min(a % clustersY, b % clustersY) * size;
+        int x1 = Math.min(map.width(), (Math.max(a / clustersY, b / clustersY) + 1) * size);
+        int y1 = Math.min(map.height(), (Math.max(a % clustersY, b % clustersY) + 1) * size);
+        boundedSearch(x0, y0, x1 - x0, y1 - y0, source, target);
+    }
+
+    /**
+     * Dijkstra's algorithm restricted to the cw x ch cells from (x0, y0),
+     * from source until target is expanded (or every cell if target is -1).
+     * Distances and parents are left in localG and localParent, by local
+     * index.
+     */
+    private void boundedSearch(int x0, int y0, int cw, int ch, int source, int target)
+    {
+        areaX = x0;
+        areaY = y0;
+        areaHeight = ch;
+        Arrays.fill(localG, 0, cw * ch, Float.POSITIVE_INFINITY);
+        localOpen.clear();
+        int s = (map.x(source) - x0) * ch + (map.y(source) - y0);
+        int t = (target < 0) ? -1 : (map.x(target) - x0) * ch + (map.y(target) - y0);
+        localG[s] = 0;
+        localParent[s] = s;
+        localOpen.push(s, 0, 0);
+        while (!localOpen.isEmpty())
+        {
+            int l = localOpen.pop();
+            if (l == t)
+            {
+                return;
+            }
+            int lx = l / ch;
+            int ly = l % ch;
+            for (int[] d : GridMap.SUCC)
+            {
+                int nx = lx + d[0];
+                int ny = ly + d[1];
+                if (nx < 0 || nx >= cw || ny < 0 || ny >= ch || map.isWall(x0 + nx, y0 + ny))
+                {
+                    continue;
+                }
+                int next = nx * ch + ny;
+                float gnext = localG[l] + ((d[0] == 0 || d[1] == 0) ? 1 : SearchEngine.SQRT2);
+                if (gnext < localG[next])
+                {
+                    localG[next] = gnext;
+                    localParent[next] = l;
+                    localOpen.push(next, gnext, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the local index of a cell in the area of the last bounded
+     * search.
+     */
+    private int local(int cell)
+    {
+        return (map.x(cell) - areaX) * areaHeight + (map.y(cell) - areaY);
+    }
+
+    /**
+     * Returns true if two clusters are the same or touch, by a side or a
+     * corner.
+     */
+    private boolean areNeighbours(int a, int b)
+    {
+        return Math.abs(a / clustersY - b / clustersY) <= 1 && Math.abs(a % clustersY - b % clustersY) <= 1;
+    }
+
+    private int clusterOf(int x, int y)
+    {
+        return (x / size) * clustersY + y / size;
+    }
+
+    private boolean isCluster(int cx, int cy)
+    {
+        return cx >= 0 && cx < clustersX && cy >= 0 && cy < clustersY;
+    }
+
+    private boolean walkable(int x, int y)
+    {
+        return map.isValid(x, y) && !map.isWall(x, y);
+    }
+
+    @Override
+    public synchronized boolean isReached(int cell)
+    {
+        int v = entranceNode(cell);
+        return (v >= 0 && abstractContext.isReached(v)) || isClosed(cell);
+    }
+
+    @Override
+    public synchronized boolean isClosed(int cell)
+    {
+        if (cell == startCell && abstractContext.isClosed(nodeCount))
+        {
+            return true;
+        }
+        int v = entranceNode(cell);
+        return v >= 0 && abstractContext.isClosed(v);
+    }
+
+    /**
+     * Returns the abstract node of an entrance cell, -1 for the other cells.
+     */
+    private int entranceNode(int cell)
+    {
+        int k = clusterOf(map.x(cell), map.y(cell));
+        int j = Arrays.binarySearch(entrances[k], cell);
+        return (j < 0) ? -1 : base[k] + j;
+    }
+
+    @Override
+    public SearchCounters counters()
+    {
+        return counters;
+    }
+
+    /**
+     * Minimal growable list of ints used while building the abstraction.
+     */
+    private static final class IntList
+    {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int a, int b)
+        {
+            if (size + 2 > values.length)
+            {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = a;
+            values[size++] = b;
+        }
+
+        void clear()
+        {
+            size = 0;
+        }
+
+        int[] toArray()
+        {
+            return (size == 0) ? NO_PAIRS : Arrays.copyOf(values, size);
+        }
+    }
+}
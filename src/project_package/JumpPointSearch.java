@@ -0,0 +1,209 @@
+package project_package;
+
+/**
+ * JumpPointSearch is A star with Jump Point Search successor pruning, for the
+ * uniform-cost 8-connected grid (straight moves cost 1, diagonal moves cost
+ * sqrt(2), diagonal moves are allowed past the corners of walls). Instead of
+ * queueing every neighbour it jumps along straight and diagonal lines until
+ * it reaches a cell with a forced neighbour (a jump point) or the goal, so
+ * symmetric paths are never expanded. The paths found have the same cost as
+ * the paths of SearchEngine.
+ */
+
+class JumpPointSearch extends SearchEngine
+{
+    /**
+     * @param map : the map to search, walls may change between searches
+     */
+    JumpPointSearch(GridMap map)
+    {
+        super(map);
+    }
+
+    /**
+     * @param map : the map to search, walls may change between searches
+     * @param heuristic : estimate of the distance to the goal
+     * @param weight : factor applied to the heuristic, 1 for plain A star
+     */
+    JumpPointSearch(GridMap map, Heuristic heuristic, float weight)
+    {
+        super(map, heuristic, weight);
+    }
+
+    /**
+     * Jumps from the expanded cell in every direction that is not pruned and
+     * queues the jump points that are found.
+     * @param current : index of the cell being expanded
+     */
+    @Override
+    void expand(int current)
+    {
+        int x = map.x(current);
+        int y = map.y(current);
+        int p = context.parent(current);
+        if (p == current)
+        {
+            // the start cell has no parent, every direction is searched
+            for (int[] s : GridMap.SUCC)
+            {
+                jumpFrom(current, x, y, s[0], s[1]);
+            }
+            return;
+        }
+        int dx = Integer.signum(x - map.x(p));
+        int dy = Integer.signum(y - map.y(p));
+        if (dx != 0 && dy != 0)
+        {
+            // diagonal move: natural neighbours then forced neighbours
+            jumpFrom(current, x, y, 0, dy);
+            jumpFrom(current, x, y, dx, 0);
+            jumpFrom(current, x, y, dx, dy);
+            if (!walkable(x - dx, y))
+            {
+                jumpFrom(current, x, y, -dx, dy);
+            }
+            if (!walkable(x, y - dy))
+            {
+                jumpFrom(current, x, y, dx, -dy);
+            }
+        }
+        else if (dx == 0)
+        {
+            jumpFrom(current, x, y, 0, dy);
+            if (!walkable(x + 1, y))
+            {
+                jumpFrom(current, x, y, 1, dy);
+            }
+            if (!walkable(x - 1, y))
+            {
+                jumpFrom(current, x, y, -1, dy);
+            }
+        }
+        else
+        {
+            jumpFrom(current, x, y, dx, 0);
+            if (!walkable(x, y + 1))
+            {
+                jumpFrom(current, x, y, dx, 1);
+            }
+            if (!walkable(x, y - 1))
+            {
+                jumpFrom(current, x, y, dx, -1);
+            }
+        }
+    }
+
+    /**
+     * Jumps from (x, y) in the direction (dx, dy) and queues the jump point
+     * found, if any, with current as its parent.
+     */
+    private void jumpFrom(int current, int x, int y, int dx, int dy)
+    {
+        int next = jump(x + dx, y + dy, dx, dy);
+        // with a weighted (or inconsistent) heuristic a jump point can be
+        // expanded before its best parent is known, the directions pruned
+        // from the wrong parent would never be searched, so it is reopened
+        // when its path improves
+        boolean reopenJump = weight > 1 || !heuristic.isConsistent();
+        if (next < 0 || (!reopenJump && context.isClosed(next)))
+        {
+            return;
+        }
+        int nx = map.x(next);
+        int ny = map.y(next);
+        // a jump is straight or diagonal, the octile distance is its cost
+        float jumpCost = Heuristics.OCTILE.estimate(Math.abs(nx - x), Math.abs(ny - y));
+        if (relax(current, next, nx, ny, context.g(current) + jumpCost) && listener != null)
+        {
+            listener.jumpPoint(next);
+        }
+    }
+
+    /**
+     * Walks from (x, y) in the direction (dx, dy) and returns the first jump
+     * point: the goal, a cell with a forced neighbour or, on a diagonal, a
+     * cell from which a straight jump succeeds.
+     * @return the index of the jump point, -1 if a wall or the edge of the
+     *         map is hit first
+     */
+    private int jump(int x, int y, int dx, int dy)
+    {
+        while (walkable(x, y))
+        {
+            int cell = map.index(x, y);
+            if (cell == goal)
+            {
+                return cell;
+            }
+            if (dx != 0 && dy != 0)
+            {
+                if ((walkable(x - dx, y + dy) && !walkable(x - dx, y))
+                        || (walkable(x + dx, y - dy) && !walkable(x, y - dy)))
+                {
+                    return cell;
+                }
+                if (jump(x + dx, y, dx, 0) >= 0 || jump(x, y + dy, 0, dy) >= 0)
+                {
+                    return cell;
+                }
+            }
+            else if (dx != 0)
+            {
+                if ((walkable(x + dx, y + 1) && !walkable(x, y + 1))
+                        || (walkable(x + dx, y - 1) && !walkable(x, y - 1)))
+                {
+                    return cell;
+                }
+            }
+            else
+            {
+                if ((walkable(x + 1, y + dy) && !walkable(x + 1, y))
+                        || (walkable(x - 1, y + dy) && !walkable(x - 1, y)))
+                {
+                    return cell;
+                }
+            }
+            x += dx;
+            y += dy;
+        }
+        return -1;
+    }
+
+    /**
+     * The parents of a jump point path are jump points, the cells in between
+     * are filled in so the returned path is made of single moves.
+     */
+    @Override
+    int[] buildPath(int start, int goal)
+    {
+        int[] jumps = super.buildPath(start, goal);
+        int length = 1;
+        for (int i = 1; i < jumps.length; i++)
+        {
+            length += Math.max(Math.abs(map.x(jumps[i]) - map.x(jumps[i - 1])),
+                    Math.abs(map.y(jumps[i]) - map.y(jumps[i - 1])));
+        }
+        int[] path = new int[length];
+        path[0] = start;
+        int n = 1;
+        for (int i = 1; i < jumps.length; i++)
+        {
+            int x = map.x(jumps[i - 1]);
+            int y = map.y(jumps[i - 1]);
+            int tx = map.x(jumps[i]);
+            int ty = map.y(jumps[i]);
+            while (x != tx || y != ty)
+            {
+                x += Integer.signum(tx - x);
+                y += Integer.signum(ty - y);
+                path[n++] = map.index(x, y);
+            }
+        }
+        return path;
+    }
+
+    private boolean walkable(int x, int y)
+    {
+        return map.isValid(x, y) && !map.isWall(x, y);
+    }
+}
@@ -0,0 +1,559 @@
+package project_package;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.stream.IntStream;
+
+/**
+ * LandmarkHeuristic is the ALT heuristic (A star, landmarks and the triangle
+ * inequality) of a given map. A few landmark cells are picked far apart and
+ * the exact distance from every landmark to every cell is precomputed, the
+ * distance between two cells is then at least the difference of their
+ * distances to any landmark. Unlike the geometric distances this bound sees
+ * the walls, so on maps full of obstacles A star expands a fraction of the
+ * cells it expands with the octile distance (which is still used when it is
+ * the larger of the two).
+ * The landmarks are chosen by farthest point selection on hop counts (every
+ * landmark is the cell farthest from those already chosen), then the tables
+ * are filled by one Dijkstra search per landmark, run in parallel. Distances
+ * are quantized to 16 bits per landmark and cell, stored cell by cell so an
+ * estimate reads a single cache line per cell. The quantization keeps the
+ * bound admissible but not quite consistent, the searches reopen cells when
+ * needed (see Heuristic.isConsistent).
+ * The tables are built by prepare, or loaded from a file saved next to the
+ * map (see EXTENSION), which is written after the first build (the checksum
+ * of the walls it holds tells whether it fits the map it is loaded for).
+ * Editing the map makes the tables stale. An estimate never builds them, a
+ * search would wait for eight Dijkstra searches over the whole map after
+ * every edit: until prepare runs again (off the query path, like A_Star
+ * does after an edit) stale tables are still used as long as walls were
+ * only added since they were built, which only makes the distances longer,
+ * and the octile distance is used otherwise and before the first build.
+ * A build checks the interrupt flag of the thread running prepare every
+ * BATCH cells, so a job of the SearchScheduler can cancel it.
+ * File format, little endian:
+ *   0  magic "PFAL"
+ *   4  format version (short)
+ *   6  number of landmarks (short)
+ *   8  width (int)
+ *  12  height (int)
+ *  16  checksum of the wall bitmap (long, CRC32C)
+ *  24  reserved, 0
+ *  32  landmark cells (int), then their scales (float), then the
+ *      quantized distances (char) to every landmark, cell by cell
+ */
+
+class LandmarkHeuristic implements Heuristic
+{
+    static final int DEFAULT_COUNT = 8;
+    static final String EXTENSION = ".pfalt";
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    private static final int MAGIC = 'P' | 'F' << 8 | 'A' << 16 | 'L' << 24;
+    // quantized distance of the cells a landmark cannot reach
+    private static final char UNREACHED = 0xFFFF;
+    // largest table, in distances, that fits in an array
+    private static final int MAX_TABLE_SIZE = Integer.MAX_VALUE - 8;
+
+    private final GridMap map;
+    private final int count;
+    private final Path file;
+    private volatile Tables tables;
+
+    /**
+     * Creates the heuristic, the tables are only built (or loaded) by
+     * prepare, the estimates are octile distances until then.
+     * @param map : the map the tables are computed on
+     * @param count : number of landmarks, each costs 2 bytes per cell
+     * @param file : file the tables are loaded from if it matches the map,
+     *               and saved to otherwise, may be null
+     * @throws IllegalArgumentException if the tables of the map would not
+     *         fit in an array (see fits)
+     */
+    LandmarkHeuristic(GridMap map, int count, Path file)
+    {
+        if (count <= 0 || count > Short.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Invalid number of landmarks " + count);
+        }
+        if (!fits(map, count))
+        {
+            throw new IllegalArgumentException("A " + map.width() + " x " + map.height() + " map has too many cells for "
+                    + count + " landmarks, their table would hold more than " + MAX_TABLE_SIZE + " distances");
+        }
+        this.map = map;
+        this.count = count;
+        this.file = file;
+    }
+
+    /**
+     * Returns true if the tables of a map, one distance per cell and
+     * landmark, fit in an array, every cell index times the number of
+     * landmarks is then an int.
+     */
+    static boolean fits(GridMap map, int count)
+    {
+        return (long) map.size() * count <= MAX_TABLE_SIZE;
+    }
+
+    /**
+     * Builds the tables of a map straight away.
+     */
+    static LandmarkHeuristic build(GridMap map, int count)
+    {
+        LandmarkHeuristic heuristic = new LandmarkHeuristic(map, count, null);
+        heuristic.prepare();
+        return heuristic;
+    }
+
+    /**
+     * Returns the file the tables of a map file are saved to.
+     */
+    static Path fileFor(Path mapFile)
+    {
+        return mapFile.resolveSibling(mapFile.getFileName() + EXTENSION);
+    }
+
+    /**
+     * The octile distance, for the callers that only know the offsets.
+     */
+    @Override
+    public float estimate(int dx, int dy)
+    {
+        return Heuristics.OCTILE.estimate(dx, dy);
+    }
+
+    @Override
+    public float estimate(int cell, int goal, int dx, int dy)
+    {
+        Tables t = tables;
+        // tables built before a wall was cleared may overestimate
+        if (t == null || t.version < map.clearedVersion())
+        {
+            return Heuristics.OCTILE.estimate(dx, dy);
+        }
+        char[] table = t.table;
+        float[] scales = t.scales;
+        int a = cell * count;
+        int b = goal * count;
+        float best = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int da = table[a + i];
+            int db = table[b + i];
+            if (da == UNREACHED || db == UNREACHED)
+            {
+                continue;
+            }
+            // each quantized distance is off by half a step at most
+            float bound = (Math.abs(da - db) - 1) * scales[i];
+            if (bound > best)
+            {
+                best = bound;
+            }
+        }
+        return Math.max(best, Heuristics.OCTILE.estimate(dx, dy));
+    }
+
+    @Override
+    public boolean isAdmissible()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean isConsistent()
+    {
+        return false;
+    }
+
+    /**
+     * Returns the landmark cells, building the tables if needed.
+     */
+    int[] landmarks()
+    {
+        return current().landmarks.clone();
+    }
+
+    /**
+     * Builds or loads the tables unless they are up to date with the map,
+     * and the estimates use them from then on. Run before the first search
+     * and after edits, on a thread that does not search.
+     * @throws CancellationException if the thread is interrupted during the
+     *         build, the tables are then left as they were
+     */
+    void prepare()
+    {
+        current();
+    }
+
+    /**
+     * Returns true if the tables are up to date with the map.
+     */
+    boolean isPrepared()
+    {
+        Tables t = tables;
+        return t != null && t.version == map.version();
+    }
+
+    private synchronized Tables current()
+    {
+        Tables t = tables;
+        if (t != null && t.version == map.version())
+        {
+            return t;
+        }
+        long version = map.version();
+        if (t == null && file != null && Files.exists(file))
+        {
+            try
+            {
+                t = read(file, version);
+            }
+            catch (IOException e)
+            {
+                // not the tables of this map, built again below
+                t = null;
+            }
+        }
+        else
+        {
+            t = null;
+        }
+        if (t == null)
+        {
+            boolean first = tables == null;
+            t = compute(version);
+            if (file != null && first)
+            {
+                try
+                {
+                    write(t, file);
+                }
+                catch (IOException e)
+                {
+                    // the tables are only cached on a best effort basis
+                }
+            }
+        }
+        tables = t;
+        return t;
+    }
+
+    /**
+     * Saves the tables, building them first if needed.
+     * @throws IOException if the file cannot be written
+     */
+    void save(Path file) throws IOException
+    {
+        write(current(), file);
+    }
+
+    /**
+     * Picks the landmarks and fills their tables.
+     */
+    private Tables compute(long version)
+    {
+        int[] landmarks = select();
+        char[] table = new char[map.size() * count];
+        float[] scales = new float[count];
+        // one Dijkstra search per landmark, each writes its own column; the
+        // searches run on the threads of the stream, but stop when the
+        // thread that asked for the tables is interrupted
+        Thread owner = Thread.currentThread();
+        IntStream.range(0, count).parallel().forEach(i -> scales[i] = fill(landmarks[i], i, table, owner));
+        return new Tables(landmarks, scales, table, version);
+    }
+
+    /**
+     * Throws if the thread the tables are built for was interrupted, checked
+     * once every BATCH cells.
+     */
+    private static void checkpoint(int cells, Thread owner)
+    {
+        if ((cells & (SearchScheduler.BATCH - 1)) == 0 && owner.isInterrupted())
+        {
+            throw new CancellationException("Landmark tables cancelled");
+        }
+    }
+
+    /**
+     * Farthest point selection on hop counts: the first landmark is the cell
+     * farthest from a free cell near the centre, every next one the cell
+     * farthest from all the landmarks chosen so far. Only the component of
+     * the first free cell is considered, a map without free cells gets
+     * landmarks that reach nothing. The hops are counted by a bit-parallel
+     * breadth first search (see BitBfs).
+     */
+    private int[] select()
+    {
+        int[] landmarks = new int[count];
+        int seed = centre();
+        if (seed < 0)
+        {
+            return landmarks;
+        }
+        BitBfs bfs = new BitBfs(map);
+        int[] nearest = new int[map.size()];
+        Arrays.fill(nearest, Integer.MAX_VALUE);
+        int[] hops = new int[map.size()];
+        bfs.distances(seed, hops);
+        int farthest = farthest(hops, null);
+        for (int i = 0; i < count; i++)
+        {
+            SearchScheduler.checkpoint();
+            landmarks[i] = farthest;
+            bfs.distances(farthest, hops);
+            farthest = farthest(hops, nearest);
+        }
+        return landmarks;
+    }
+
+    /**
+     * Returns the reached cell with the most hops, or with the most hops
+     * from all the sources so far when nearest is given.
+     * @param hops : the hops of every cell from the last source, -1 when
+     *        not reached
+     * @param nearest : if not null, lowered to the hops of every cell
+     */
+    private static int farthest(int[] hops, int[] nearest)
+    {
+        int farthest = -1;
+        int best = -1;
+        for (int cell = 0; cell < hops.length; cell++)
+        {
+            if (hops[cell] < 0)
+            {
+                continue;
+            }
+            int distance = hops[cell];
+            if (nearest != null)
+            {
+                distance = Math.min(nearest[cell], distance);
+                nearest[cell] = distance;
+            }
+            if (distance > best)
+            {
+                best = distance;
+                farthest = cell;
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * Returns the free cell closest to the centre of the map, -1 if there
+     * is none.
+     */
+    private int centre()
+    {
+        int cx = map.width() / 2;
+        int cy = map.height() / 2;
+        int best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        for (int cell = 0; cell < map.size(); cell++)
+        {
+            if (map.isWall(cell))
+            {
+                continue;
+            }
+            long dx = map.x(cell) - cx;
+            long dy = map.y(cell) - cy;
+            if (dx * dx + dy * dy < bestDistance)
+            {
+                bestDistance = dx * dx + dy * dy;
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Runs a Dijkstra search from a landmark and stores the quantized
+     * distances in its column of the table.
+     * @param owner : the thread the tables are built for
+     * @return the scale of the column, distance per quantization step
+     */
+    private float fill(int landmark, int column, char[] table, Thread owner)
+    {
+        float[] distance = new float[map.size()];
+        Arrays.fill(distance, Float.POSITIVE_INFINITY);
+        float max = 0;
+        if (!map.isWall(landmark))
+        {
+            OpenSet open = new BinaryHeapOpenSet(map.size());
+            distance[landmark] = 0;
+            open.push(landmark, 0, 0);
+            int closed = 0;
+            while (!open.isEmpty())
+            {
+                checkpoint(++closed, owner);
+                int cell = open.pop();
+                float d = distance[cell];
+                max = d;
+                int x = map.x(cell);
+                int y = map.y(cell);
+                for (int[] s : GridMap.SUCC)
+                {
+                    int nx = x + s[0];
+                    int ny = y + s[1];
+                    if (!map.isValid(nx, ny) || map.isWall(nx, ny))
+                    {
+                        continue;
+                    }
+                    int next = map.index(nx, ny);
+                    float dnext = d + ((s[0] == 0 || s[1] == 0) ? 1 : SearchEngine.SQRT2);
+                    if (dnext < distance[next])
+                    {
+                        distance[next] = dnext;
+                        open.push(next, dnext, 0);
+                    }
+                }
+            }
+        }
+        // the largest distance maps to the largest step below UNREACHED
+        float scale = (max > 0) ? max / (UNREACHED - 1) : 1;
+        for (int cell = 0; cell < map.size(); cell++)
+        {
+            float d = distance[cell];
+            table[cell * count + column] = (d == Float.POSITIVE_INFINITY)
+                    ? UNREACHED : (char) Math.min(UNREACHED - 1, Math.round(d / scale));
+        }
+        return scale;
+    }
+
+    private void write(Tables t, Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE + 8 * count).order(ByteOrder.LITTLE_ENDIAN);
+            head.putInt(MAGIC)
+                    .putShort((short) VERSION)
+                    .putShort((short) count)
+                    .putInt(map.width())
+                    .putInt(map.height())
+                    .putLong(map.checksum())
+                    .putLong(0);
+            for (int landmark : t.landmarks)
+            {
+                head.putInt(landmark);
+            }
+            for (float scale : t.scales)
+            {
+                head.putFloat(scale);
+            }
+            writeFully(channel, head.flip());
+            ByteBuffer chunk = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            for (int from = 0; from < t.table.length; from += chunk.capacity() / 2)
+            {
+                int to = Math.min(t.table.length, from + chunk.capacity() / 2);
+                chunk.clear();
+                chunk.asCharBuffer().put(t.table, from, to - from);
+                chunk.limit(2 * (to - from));
+                writeFully(channel, chunk);
+            }
+        }
+    }
+
+    /**
+     * Reads saved tables.
+     * @throws IOException if the file cannot be read or does not hold the
+     *         tables of this map with this number of landmarks
+     */
+    private Tables read(Path file, long version) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            int headLength = HEADER_SIZE + 8 * count;
+            if (channel.size() != headLength + 2L * map.size() * count)
+            {
+                throw new IOException(file + " does not hold the landmarks of this map");
+            }
+            ByteBuffer bytes = ByteBuffer.allocate(headLength).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, bytes, 0);
+            if (bytes.getInt(0) != MAGIC || bytes.getShort(4) != VERSION || bytes.getShort(6) != count
+                    || bytes.getInt(8) != map.width() || bytes.getInt(12) != map.height()
+                    || bytes.getLong(16) != map.checksum())
+            {
+                throw new IOException(file + " does not hold the landmarks of this map");
+            }
+            int[] landmarks = new int[count];
+            float[] scales = new float[count];
+            bytes.position(HEADER_SIZE);
+            for (int i = 0; i < count; i++)
+            {
+                landmarks[i] = bytes.getInt();
+            }
+            for (int i = 0; i < count; i++)
+            {
+                scales[i] = bytes.getFloat();
+            }
+            // the table can be larger than a mapping, it is read in chunks
+            char[] table = new char[map.size() * count];
+            ByteBuffer chunk = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            long position = headLength;
+            for (int from = 0; from < table.length; from += chunk.capacity() / 2)
+            {
+                int to = Math.min(table.length, from + chunk.capacity() / 2);
+                chunk.clear().limit(2 * (to - from));
+                readFully(channel, chunk, position);
+                chunk.flip().asCharBuffer().get(table, from, to - from);
+                position += 2L * (to - from);
+            }
+            return new Tables(landmarks, scales, table, version);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+            {
+                throw new IOException("Unexpected end of the landmark file");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Landmarks (ALT)";
+    }
+
+    /**
+     * The landmarks and distance tables, valid for one version of the map.
+     */
+    private static final class Tables
+    {
+        private final int[] landmarks;
+        private final float[] scales;
+        // quantized distance of cell c to landmark i at c * count + i
+        private final char[] table;
+        private final long version;
+
+        private Tables(int[] landmarks, float[] scales, char[] table, long version)
+        {
+            this.landmarks = landmarks;
+            this.scales = scales;
+            this.table = table;
+            this.version = version;
+        }
+    }
+}
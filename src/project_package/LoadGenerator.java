@@ -0,0 +1,326 @@
+package project_package;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LoadGenerator measures a running PathServer: it opens a number of
+ * connections, sends random queries between free cells of the same map as
+ * the server on each of them, keeping up to depth requests in flight per
+ * connection, and reports the throughput and the latency percentiles of the
+ * replies (time from writing a request to reading its reply). A warm-up run
+ * is made first so the percentiles are those of compiled code. Options:
+ *   --port=N                      port of the server, required
+ *   --host=name                   host of the server, default the loopback
+ *   --map=file or --cols=N ...    the map of the server, see PathServer
+ *   --connections=N               default 4
+ *   --depth=N                     requests in flight per connection, default 16
+ *   --requests=N                  requests measured, default 100000
+ *   --warmup=N                    requests of the warm-up run, default 20000
+ *   --query-seed=S                seed of the queries, default 42
+ */
+
+public class LoadGenerator
+{
+    private final Connection[] connections;
+    private final int[] free;
+    private final int height;
+    private final Random random;
+
+    private LoadGenerator(Connection[] connections, GridMap map, long seed)
+    {
+        this.connections = connections;
+        height = map.height();
+        random = new Random(seed);
+        int n = 0;
+        int[] cells = new int[map.size()];
+        for (int cell = 0; cell < map.size(); cell++)
+        {
+            if (!map.isWall(cell))
+            {
+                cells[n++] = cell;
+            }
+        }
+        if (n == 0)
+        {
+            throw new IllegalArgumentException("The map has no free cell");
+        }
+        free = Arrays.copyOf(cells, n);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        Map<String, String> options = PathServer.parseOptions(args);
+        if (!options.containsKey("port"))
+        {
+            throw new IllegalArgumentException("--port is required");
+        }
+        GridMap map = PathServer.loadMap(options);
+        String host = options.getOrDefault("host", "localhost");
+        int port = Integer.parseInt(options.get("port"));
+        int count = Integer.parseInt(options.getOrDefault("connections", "4"));
+        int depth = Integer.parseInt(options.getOrDefault("depth", "16"));
+        int requests = Integer.parseInt(options.getOrDefault("requests", "100000"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "20000"));
+        long seed = Long.parseLong(options.getOrDefault("query-seed", "42"));
+        if (count <= 0 || depth <= 0 || requests <= 0 || warmup < 0)
+        {
+            throw new IllegalArgumentException("--connections, --depth and --requests must be positive");
+        }
+        System.out.println(measure(host, port, map, count, depth, requests, warmup, seed));
+    }
+
+    /**
+     * Runs the warm-up and the measured run against a server.
+     * @param map : the map of the server, the queries are between its free
+     *              cells
+     * @param count : number of connections
+     * @param depth : requests in flight per connection
+     * @param requests : requests measured
+     * @param warmup : requests of the warm-up run, 0 for none
+     * @param seed : seed of the queries
+     * @return the report of the measured run
+     */
+    static String measure(String host, int port, GridMap map, int count, int depth, int requests, int warmup,
+            long seed) throws IOException, InterruptedException
+    {
+        Connection[] connections = new Connection[count];
+        try
+        {
+            for (int i = 0; i < count; i++)
+            {
+                connections[i] = new Connection(new Socket(host, port), depth);
+            }
+            LoadGenerator generator = new LoadGenerator(connections, map, seed);
+            if (warmup > 0)
+            {
+                generator.run(warmup);
+            }
+            return generator.run(requests).report(count, depth);
+        }
+        finally
+        {
+            for (Connection connection : connections)
+            {
+                if (connection != null)
+                {
+                    connection.socket.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends requests queries spread over the connections and waits for all
+     * the replies.
+     */
+    private Result run(int requests) throws InterruptedException
+    {
+        int[][] queries = new int[connections.length][];
+        for (int i = 0; i < connections.length; i++)
+        {
+            // the first connections take the remainder
+            int n = requests / connections.length + ((i < requests % connections.length) ? 1 : 0);
+            queries[i] = new int[n * 2];
+            for (int k = 0; k < queries[i].length; k++)
+            {
+                queries[i][k] = free[random.nextInt(free.length)];
+            }
+        }
+        Thread[] threads = new Thread[connections.length * 2];
+        long begin = System.nanoTime();
+        for (int i = 0; i < connections.length; i++)
+        {
+            Connection connection = connections[i];
+            connection.start(queries[i].length / 2);
+            int[] batch = queries[i];
+            threads[2 * i] = new Thread(() -> connection.send(batch, height), "send-" + i);
+            threads[2 * i + 1] = new Thread(connection::receive, "receive-" + i);
+        }
+        for (Thread thread : threads)
+        {
+            thread.start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        Result result = new Result(requests, elapsed);
+        int n = 0;
+        for (Connection connection : connections)
+        {
+            if (connection.failure != null)
+            {
+                throw connection.failure;
+            }
+            for (int k = 0; k < connection.latencies.length(); k++)
+            {
+                result.latencies[n++] = connection.latencies.get(k);
+            }
+            result.unreachable += connection.unreachable.get();
+            result.errors += connection.errors.get();
+        }
+        Arrays.sort(result.latencies);
+        return result;
+    }
+
+    /**
+     * A connection to the server, a sender and a receiver thread share it
+     * during a run. Request ids are the indices of the queries of the run.
+     */
+    private static final class Connection
+    {
+        private final Socket socket;
+        private final Writer out;
+        private final BufferedReader in;
+        private final Semaphore window;
+        private final AtomicInteger unreachable = new AtomicInteger();
+        private final AtomicInteger errors = new AtomicInteger();
+        // time each request was sent and the latency of its reply
+        private AtomicLongArray sent;
+        private AtomicLongArray latencies;
+        private volatile UncheckedIOException failure;
+
+        private Connection(Socket socket, int depth) throws IOException
+        {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII), 1 << 16);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII), 1 << 16);
+            window = new Semaphore(depth);
+        }
+
+        private void start(int requests)
+        {
+            sent = new AtomicLongArray(requests);
+            latencies = new AtomicLongArray(requests);
+            unreachable.set(0);
+            errors.set(0);
+        }
+
+        /**
+         * Writes the queries, the output is flushed before waiting for room
+         * in the window so the requests written so far reach the server.
+         */
+        private void send(int[] queries, int height)
+        {
+            try
+            {
+                for (int id = 0; id < sent.length(); id++)
+                {
+                    if (!window.tryAcquire())
+                    {
+                        out.flush();
+                        window.acquireUninterruptibly();
+                    }
+                    int start = queries[2 * id];
+                    int goal = queries[2 * id + 1];
+                    sent.set(id, System.nanoTime());
+                    out.write(id + " " + start / height + " " + start % height + " "
+                            + goal / height + " " + goal % height + "\n");
+                }
+                out.flush();
+            }
+            catch (IOException e)
+            {
+                failure = new UncheckedIOException(e);
+                try
+                {
+                    // unblock the receiver
+                    socket.close();
+                }
+                catch (IOException ignored)
+                {
+                }
+            }
+        }
+
+        /**
+         * Reads one reply per request sent.
+         */
+        private void receive()
+        {
+            try
+            {
+                for (int k = 0; k < sent.length(); k++)
+                {
+                    String reply = in.readLine();
+                    long now = System.nanoTime();
+                    if (reply == null)
+                    {
+                        throw new IOException("The server closed the connection");
+                    }
+                    int space = reply.indexOf(' ');
+                    int id = Integer.parseInt(reply.substring(0, space));
+                    latencies.set(id, now - sent.get(id));
+                    if (reply.startsWith("none", space + 1))
+                    {
+                        unreachable.incrementAndGet();
+                    }
+                    else if (reply.startsWith("error", space + 1))
+                    {
+                        errors.incrementAndGet();
+                    }
+                    window.release();
+                }
+            }
+            catch (IOException e)
+            {
+                failure = new UncheckedIOException(e);
+                // unblock the sender
+                window.release(sent.length());
+            }
+        }
+    }
+
+    /**
+     * The replies of a run, latencies sorted.
+     */
+    private static final class Result
+    {
+        private final long[] latencies;
+        private final long elapsed;
+        private int unreachable;
+        private int errors;
+
+        private Result(int requests, long elapsed)
+        {
+            latencies = new long[requests];
+            this.elapsed = elapsed;
+        }
+
+        private long percentile(double p)
+        {
+            return latencies[(int) Math.min(latencies.length - 1, Math.ceil(p * latencies.length) - 1)];
+        }
+
+        private String report(int connections, int depth)
+        {
+            return String.format(Locale.ROOT,
+                    "%d requests over %d connections, %d in flight each, in %.2f s%n"
+                    + "throughput %.0f queries/s%n"
+                    + "latency p50 %.3f ms, p99 %.3f ms, p999 %.3f ms, max %.3f ms%n"
+                    + "unreachable %d, errors %d",
+                    latencies.length, connections, depth, elapsed / 1e9,
+                    latencies.length / (elapsed / 1e9),
+                    percentile(0.5) / 1e6, percentile(0.99) / 1e6, percentile(0.999) / 1e6,
+                    latencies[latencies.length - 1] / 1e6,
+                    unreachable, errors);
+        }
+    }
+}
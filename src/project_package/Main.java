@@ -1,126 +1,408 @@
-/**
- * This is a graphical path-finder (using the A star algorithm) which displays
- * a grid (900 x 600) that you can interact with to generate/remove walls, set
- * the starting node, set the destination node and finally displays the shortest
- * path from the starting node to the destination node. The A star algorithm
- * uses the idea of a heuristic function which estimates the displacement from
- * the target node.
- * @author Rigved Deglurkar
- */
-
-package project_package;
-
-import javafx.application.Application;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
-import javafx.scene.control.Button;
-import javafx.scene.layout.Pane;
-import javafx.stage.Stage;
-
-import javafx.concurrent.Task;
-
-public class Main extends Application
-{
-    private A_Star star = new A_Star();
-    private Stage window;
-    State state = new State();
-    private Pane root = new Pane();
-    public Task<Void> astar = new Task<>() {
-        @Override protected Void call() throws Exception {
-            state.isRunning = true;
-            star.aStarSearch(state, this);
-            return null;
-        }
-    };
-    public Thread thread = new Thread(astar);
-
-    public static void main(String[] args)
-    {
-        launch(args);
-    }
-    /**
-     * Configures and displays the window when this function is invoked.
-     */
-    @Override
-    public void start(Stage primaryStage)
-    {
-        window = primaryStage;
-        window.setWidth(Constant.PANE_WIDTH.value + 1);
-        window.setHeight(Constant.PANE_HEIGHT.value + 65);
-        Scene scene = new Scene(display_content());
-        window.resizableProperty().setValue(Boolean.FALSE);
-        window.setScene(scene);
-        window.setTitle("PathFinder");
-        window.show();
-    }
-
-    /**
-     * Configures a Pane object (root). Generates 4 buttons for starting the
-     * search, displaying instructions for the program, generating random grids and
-     * restarting the program after every search. These 4 buttons are added to
-     * a set containing all of the root's children, allowing them to be
-     * displayed on the scene.
-     */
-    private Parent display_content ()
-    {
-        thread.setDaemon(true);
-        root.setPrefSize(Constant.PANE_WIDTH.value - 10, Constant.PANE_HEIGHT.value + 30);
-        star.populateGrid(root);
-        Button start = new Button("Start");
-        setUpButton(start, Constant.PANE_WIDTH.value - Constant.PANE_WIDTH.value/4, Constant.PANE_HEIGHT.value + 7);
-        start.setOnAction(e -> start_Search());
-        Button info = new Button("Info");
-        setUpButton(info, Constant.PANE_WIDTH.value/8, Constant.PANE_HEIGHT.value + 7);
-        info.setOnAction(e -> AlertBox.display("Info", "Instructions: \nRight-click on tile to set target(red block)\nleft-click on tile to set/remove wall\nleft-drag on tile to set start(green block)\nTrivial paths won't be displayed\nYou can't set a wall on the target nor the start\n\nKey:\nCrimson red: shortest path\nOrange: nodes that have been fully explored\nYellow: nodes that weren't feasible to check \n\nAuthor: \nRigved Deglurkar", 370, 400));
-        Button reset = new Button("Reset");
-        setUpButton(reset, Constant.PANE_WIDTH.value - Constant.PANE_WIDTH.value/8, Constant.PANE_HEIGHT.value + 7);
-        reset.setOnAction(event -> {
-            if (astar.isCancelled() || astar.isDone()) {
-                astar = null;
-                state.isRunning = false;
-                window.close();
-                Main program = new Main();
-                program.start(window);
-                return;
-            }
-            astar.cancel();
-        });
-        Button genRandGrid = new Button("Generate Random Grid");
-        setUpButton(genRandGrid, Constant.PANE_WIDTH.value/4, Constant.PANE_HEIGHT.value + 7);
-        genRandGrid.setOnAction(e -> randomize_grid());
-        root.getChildren().addAll(start, info, reset, genRandGrid);
-        return root;
-    }
-
-    /**
-     * Sets the width and height of a given button.
-     * @param b : button whose width and height need to be set
-     * @param w : the width of the button as a floating point number
-     * @param h : the height of the button as a floating point number
-     */
-    private void setUpButton(Button b, double w, double h)
-    {
-        b.setLayoutX(w);
-        b.setLayoutY(h);
-    }
-
-    /**
-     * starts searching for the target node and ensures that if the start
-     * button was pressed in a running instance you wont be able to press
-     * start until you press reset, which will reduce the chances of any
-     * null-pointer exceptions being thrown
-     */
-    private void start_Search ()
-    {
-        if (!state.isRunning)
-        {
-            thread.start();
-        }
-    }
-
-    private void randomize_grid () {
-        if (!state.isRunning) {
-            star.randomizedGrid();
-        }
-    }
-}
+/**
+ * This is a graphical path-finder (using the A star algorithm) which displays
+ * a grid (45 x 30 nodes by default, drawn in a 900 x 600 viewport that can be
+ * panned and zoomed) that you can interact with to generate/remove walls, set
+ * the starting node, set the destination node and finally displays the shortest
+ * path from the starting node to the destination node. The A star algorithm
+ * uses the idea of a heuristic function which estimates the displacement from
+ * the target node. The size of the grid can be set at launch with the named
+ * parameters --cols, --rows and --cell (size of a node in pixels).
+ * @author Rigved Deglurkar
+ */
+
+package project_package;
+
+import javafx.application.Application;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Control;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.Pane;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+
+import javafx.application.Platform;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+
+public class Main extends Application
+{
+    private A_Star star;
+    private int columns = Constant.X_NODES.value;
+    private int rows = Constant.Y_NODES.value;
+    private int cellSize = Constant.NODE_SIZE.value;
+    // map file the grid was loaded from, reloaded by reset, null for an
+    // empty grid
+    private Path mapFile;
+    private Stage window;
+    private StatsOverlay overlay;
+    // runs the searches, kept when the window is rebuilt
+    private SearchScheduler scheduler;
+    private Pane root = new Pane();
+
+    public static void main(String[] args)
+    {
+        launch(args);
+    }
+
+    /**
+     * Configures and displays the window when this function is invoked.
+     */
+    @Override
+    public void start(Stage primaryStage)
+    {
+        window = primaryStage;
+        if (getParameters() != null)
+        {
+            readParameters(getParameters().getNamed());
+        }
+        if (scheduler == null)
+        {
+            // at least two threads, so a comparison never holds up the search
+            // displayed on the grid for long
+            scheduler = new SearchScheduler(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        }
+        star = createStar();
+        window.setWidth(Constant.PANE_WIDTH.value + 1);
+        window.setHeight(Constant.PANE_HEIGHT.value + 120);
+        Scene scene = new Scene(display_content());
+        window.resizableProperty().setValue(Boolean.FALSE);
+        window.setScene(scene);
+        window.setTitle("PathFinder");
+        window.show();
+    }
+
+    /**
+     * Creates the grid, loaded from mapFile if one was chosen. A file that
+     * cannot be read is reported and replaced by an empty grid.
+     */
+    private A_Star createStar()
+    {
+        if (mapFile != null)
+        {
+            try
+            {
+                return new A_Star(MapFile.open(mapFile), cellSize, scheduler);
+            }
+            catch (IOException | IllegalArgumentException e)
+            {
+                AlertBox.display("Error", "Could not load the map:\n" + e.getMessage(), 420, 160);
+                mapFile = null;
+            }
+        }
+        return new A_Star(columns, rows, cellSize, scheduler);
+    }
+
+    /**
+     * Reads the grid dimensions from the named launch parameters, e.g.
+     * --cols=2000 --rows=2000 --cell=2, or the map to open, --map=file.
+     * Missing parameters keep the defaults declared in Constant.
+     * @param named : the named parameters the application was launched with
+     */
+    private void readParameters(Map<String, String> named)
+    {
+        columns = Integer.parseInt(named.getOrDefault("cols", String.valueOf(columns)));
+        rows = Integer.parseInt(named.getOrDefault("rows", String.valueOf(rows)));
+        cellSize = Integer.parseInt(named.getOrDefault("cell", String.valueOf(cellSize)));
+        if (columns <= 0 || rows <= 0 || cellSize <= 0)
+        {
+            throw new IllegalArgumentException("--cols, --rows and --cell must be positive");
+        }
+        if (named.containsKey("map"))
+        {
+            mapFile = Path.of(named.get("map"));
+        }
+    }
+
+    /**
+     * Configures a Pane object (root). Generates 4 buttons for starting the
+     * search, displaying instructions for the program, generating random
+     * grids and restarting the program after every search, plus a max speed
+     * check box, a playback speed slider, the choice of algorithm, heuristic
+     * and heuristic weight, buttons to load and save maps, to compare every
+     * algorithm on the current query, to record searches and replay them and
+     * the metrics of the last search. These controls are added to a set
+     * containing all of the root's children, allowing them to be displayed
+     * on the scene.
+     */
+    private Parent display_content ()
+    {
+        root.setPrefSize(Constant.PANE_WIDTH.value - 10, Constant.PANE_HEIGHT.value + 85);
+        star.populateGrid(root);
+        Button start = new Button("Start");
+        setUpButton(start, Constant.PANE_WIDTH.value - Constant.PANE_WIDTH.value/4, Constant.PANE_HEIGHT.value + 7);
+        start.setOnAction(e -> start_Search());
+        Button info = new Button("Info");
+        setUpButton(info, Constant.PANE_WIDTH.value/8, Constant.PANE_HEIGHT.value + 7);
+        info.setOnAction(e -> AlertBox.display("Info", "Instructions: \nRight-click on tile to set target(red block)\nleft-click on tile to set/remove wall\nleft-drag on tile to set start(green block)\nmiddle-drag to pan, scroll to zoom\nTrivial paths won't be displayed\nYou can't set a wall on the target nor the start\n\nKey:\nCrimson red: shortest path\nOrange: nodes that have been fully explored\nYellow: nodes that weren't feasible to check \nPurple: jump points (Jump Point Search)\n\nWith D* Lite or the flow field, editing the grid\nafter the search repairs the path instead of searching again\n\nAuthor: \nRigved Deglurkar", 370, 480));
+        Button reset = new Button("Reset");
+        setUpButton(reset, Constant.PANE_WIDTH.value - Constant.PANE_WIDTH.value/8, Constant.PANE_HEIGHT.value + 7);
+        reset.setOnAction(event -> {
+            if (star.isSearching()) {
+                star.cancelSearch();
+                return;
+            }
+            restart(mapFile);
+        });
+        Button genRandGrid = new Button("Generate Random Grid");
+        setUpButton(genRandGrid, Constant.PANE_WIDTH.value/4, Constant.PANE_HEIGHT.value + 7);
+        genRandGrid.setOnAction(e -> randomize_grid());
+        CheckBox maxSpeed = new CheckBox("Max speed");
+        setUpButton(maxSpeed, Constant.PANE_WIDTH.value * 0.44, Constant.PANE_HEIGHT.value + 11);
+        maxSpeed.setTooltip(new Tooltip("Skip the animation and only show the final state"));
+        maxSpeed.selectedProperty().addListener((o, old, selected) -> star.setMaxSpeed(selected));
+        Slider speed = new Slider(1, 500, 20);
+        speed.setPrefWidth(150);
+        setUpButton(speed, Constant.PANE_WIDTH.value * 0.56, Constant.PANE_HEIGHT.value + 12);
+        speed.setTooltip(new Tooltip("Search events painted per frame"));
+        speed.valueProperty().addListener((o, old, value) -> star.setEventsPerFrame(value.intValue()));
+        ChoiceBox<Algorithm> algorithm = new ChoiceBox<>();
+        algorithm.getItems().addAll(Algorithm.values());
+        algorithm.setValue(Algorithm.A_STAR);
+        setUpButton(algorithm, Constant.PANE_WIDTH.value/8, Constant.PANE_HEIGHT.value + 37);
+        algorithm.valueProperty().addListener((o, old, selected) -> star.setAlgorithm(selected));
+        ChoiceBox<Heuristic> heuristic = new ChoiceBox<>();
+        heuristic.getItems().addAll(Heuristics.values());
+        // the landmark tables are built in the background once selected and
+        // after every edit, and kept next to the map file if there is one,
+        // maps too large for them go without
+        if (LandmarkHeuristic.fits(star.map(), LandmarkHeuristic.DEFAULT_COUNT))
+        {
+            heuristic.getItems().add(new LandmarkHeuristic(star.map(), LandmarkHeuristic.DEFAULT_COUNT,
+                    (mapFile == null) ? null : LandmarkHeuristic.fileFor(mapFile)));
+        }
+        heuristic.setValue(Heuristics.OCTILE);
+        heuristic.setTooltip(new Tooltip("Heuristic of A*, Jump Point Search and ARA*\n"
+                + "Landmarks (ALT) knows the walls, it is precomputed in the background once selected"));
+        setUpButton(heuristic, Constant.PANE_WIDTH.value * 0.68, Constant.PANE_HEIGHT.value + 37);
+        heuristic.valueProperty().addListener((o, old, selected) -> star.setHeuristic(selected));
+        Spinner<Double> weight = new Spinner<>(1.0, 10.0, 1.0, 0.1);
+        weight.setPrefWidth(75);
+        weight.setEditable(true);
+        weight.setTooltip(new Tooltip("Heuristic weight (epsilon): paths at most this many times longer\n"
+                + "than the shortest ones, in exchange for a faster search.\n"
+                + "ARA* starts with it (3 at least) and lowers it by 0.5 while its 100 ms budget lasts"));
+        setUpButton(weight, Constant.PANE_WIDTH.value * 0.82, Constant.PANE_HEIGHT.value + 37);
+        weight.valueProperty().addListener((o, old, value) -> star.setWeight(value.floatValue()));
+        Button load = new Button("Load Map");
+        setUpButton(load, Constant.PANE_WIDTH.value * 0.44, Constant.PANE_HEIGHT.value + 37);
+        load.setOnAction(e -> load_Map());
+        Button save = new Button("Save Map");
+        setUpButton(save, Constant.PANE_WIDTH.value * 0.56, Constant.PANE_HEIGHT.value + 37);
+        save.setOnAction(e -> save_Map());
+        Button compare = new Button("Compare");
+        setUpButton(compare, Constant.PANE_WIDTH.value * 0.31, Constant.PANE_HEIGHT.value + 37);
+        compare.setTooltip(new Tooltip("Run every algorithm on the current query side by side"));
+        compare.setOnAction(e -> compare_Algorithms());
+        CheckBox record = new CheckBox("Record");
+        setUpButton(record, 10, Constant.PANE_HEIGHT.value + 11);
+        record.setTooltip(new Tooltip("Record every search displayed on the grid to a trace file"));
+        record.setOnAction(e -> record_Searches(record));
+        Button replay = new Button("Replay");
+        setUpButton(replay, 10, Constant.PANE_HEIGHT.value + 37);
+        replay.setTooltip(new Tooltip("Replay a recorded search, at any speed and from any point"));
+        replay.setOnAction(e -> replay_Search());
+        Label stats = new Label("No search yet");
+        stats.setPrefWidth(Constant.PANE_WIDTH.value - 20);
+        setUpButton(stats, 10, Constant.PANE_HEIGHT.value + 67);
+        stats.setTooltip(new Tooltip("Metrics of the running or last search"));
+        overlay = new StatsOverlay(star, stats);
+        overlay.start();
+        root.getChildren().addAll(start, info, reset, genRandGrid, maxSpeed, speed, algorithm, heuristic, weight,
+                load, save, compare, record, replay, stats);
+        return root;
+    }
+
+    /**
+     * Sets the layout position of a given button or control.
+     * @param b : control whose position needs to be set
+     * @param w : the x position of the control as a floating point number
+     * @param h : the y position of the control as a floating point number
+     */
+    private void setUpButton(Control b, double w, double h)
+    {
+        b.setLayoutX(w);
+        b.setLayoutY(h);
+    }
+
+    /**
+     * starts searching for the target node. The nodes painted by the
+     * previous search are erased and a new search runs on the same grid
+     * (with the start, target and walls as they are now), no reset needed.
+     * Pressing start while a search is running restarts it.
+     */
+    private void start_Search ()
+    {
+        star.startSearch();
+    }
+
+    /**
+     * Runs every algorithm on the current query and shows their metrics
+     * once they are all done, unless the comparison was cancelled. A search
+     * that failed is reported instead.
+     */
+    private void compare_Algorithms ()
+    {
+        star.compare(List.of(Algorithm.values())).whenComplete((metrics, e) ->
+        {
+            if (metrics != null)
+            {
+                String text = metrics.stream().map(SearchMetrics::toString).collect(Collectors.joining("\n"));
+                Platform.runLater(() -> AlertBox.display("Comparison", text, 760, 60 + 22 * metrics.size()));
+                return;
+            }
+            Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+            if (!(cause instanceof CancellationException))
+            {
+                Platform.runLater(() -> AlertBox.display("Error", "The comparison failed:\n" + cause, 420, 160));
+            }
+        });
+    }
+
+    /**
+     * Rebuilds the window from scratch with the same settings, on the grid
+     * stored in file (or an empty grid if file is null).
+     */
+    private void restart(Path file)
+    {
+        overlay.stop();
+        star.dispose();
+        window.close();
+        Main program = new Main();
+        program.columns = columns;
+        program.rows = rows;
+        program.cellSize = cellSize;
+        program.mapFile = file;
+        program.scheduler = scheduler;
+        program.start(window);
+    }
+
+    /**
+     * Lets the user pick a map file (binary PathFinder map or Moving AI
+     * .map) and restarts on it, the running search is cancelled.
+     */
+    private void load_Map ()
+    {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Load Map");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Maps", "*" + MapFile.EXTENSION, "*" + MovingAiMap.EXTENSION),
+                new FileChooser.ExtensionFilter("PathFinder maps", "*" + MapFile.EXTENSION),
+                new FileChooser.ExtensionFilter("Moving AI maps", "*" + MovingAiMap.EXTENSION));
+        File file = chooser.showOpenDialog(window);
+        if (file != null)
+        {
+            restart(file.toPath());
+        }
+    }
+
+    /**
+     * Saves the walls of the grid to a binary PathFinder map file.
+     */
+    private void save_Map ()
+    {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Save Map");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PathFinder maps", "*" + MapFile.EXTENSION));
+        File file = chooser.showSaveDialog(window);
+        if (file == null)
+        {
+            return;
+        }
+        Path path = file.toPath();
+        if (!path.toString().endsWith(MapFile.EXTENSION))
+        {
+            path = path.resolveSibling(path.getFileName() + MapFile.EXTENSION);
+        }
+        try
+        {
+            MapFile.write(star.map(), path);
+        }
+        catch (IOException e)
+        {
+            AlertBox.display("Error", "Could not save the map:\n" + e.getMessage(), 420, 160);
+        }
+    }
+
+    /**
+     * Asks for the trace file when recording is turned on, every search
+     * displayed on the grid is then recorded to it, replacing the previous
+     * one.
+     */
+    private void record_Searches (CheckBox record)
+    {
+        if (!record.isSelected())
+        {
+            star.setTraceFile(null);
+            return;
+        }
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Record Searches");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Search traces", "*" + TraceRecorder.EXTENSION));
+        File file = chooser.showSaveDialog(window);
+        if (file == null)
+        {
+            record.setSelected(false);
+            return;
+        }
+        Path path = file.toPath();
+        if (!path.toString().endsWith(TraceRecorder.EXTENSION))
+        {
+            path = path.resolveSibling(path.getFileName() + TraceRecorder.EXTENSION);
+        }
+        star.setTraceFile(path);
+    }
+
+    /**
+     * Lets the user pick a recorded search and replays it on the grid, which
+     * must have the size of the grid it was recorded on.
+     */
+    private void replay_Search ()
+    {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Replay");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Search traces", "*" + TraceRecorder.EXTENSION));
+        File file = chooser.showOpenDialog(window);
+        if (file == null)
+        {
+            return;
+        }
+        SearchTrace trace;
+        try
+        {
+            trace = SearchTrace.read(file.toPath());
+        }
+        catch (IOException e)
+        {
+            AlertBox.display("Error", "Could not read the trace:\n" + e.getMessage(), 420, 160);
+            return;
+        }
+        GridMap map = star.map();
+        if (trace.width() != map.width() || trace.height() != map.height())
+        {
+            AlertBox.display("Error", "The search was recorded on a " + trace.width() + " x " + trace.height()
+                    + " grid", 420, 140);
+            return;
+        }
+        if (!trace.matches(map))
+        {
+            AlertBox.display("Warning", "The walls differ from those the search was recorded on", 420, 140);
+        }
+        ReplayWindow.show(star.replay(trace), window, star::stopReplay);
+    }
+
+    private void randomize_grid () {
+        star.randomizedGrid();
+    }
+}
@@ -0,0 +1,192 @@
+package project_package;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MapFile reads and writes maps in the binary PathFinder format. A file is a
+ * 32 byte header followed by the wall bitmap and, optionally, one cost byte
+ * per cell:
+ *   0  magic "PFMP"
+ *   4  format version (short)
+ *   6  flags (short), bit 0 set when a cost layer follows the bitmap
+ *   8  width (int)
+ *  12  height (int)
+ *  16  length of the bitmap in bytes (long), a multiple of 8
+ *  24  reserved, 0
+ *  32  bitmap: longs of 64 cells, cell i is bit (i % 64) of long i / 64
+ * All numbers are little endian and cells are numbered like in GridMap.
+ * Reading maps the file instead of parsing it, the map is built on views of
+ * the mapped bitmap and cost layer, so opening even a very large map only
+ * costs the page faults of the cells the searches touch. The mapping is read
+ * only: the first edit of a loaded map copies its bitmap onto the heap (see
+ * GridMap.setWall), edits are never written back to the file.
+ */
+
+class MapFile
+{
+    static final String EXTENSION = ".pfmap";
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    private static final int MAGIC = 'P' | 'F' << 8 | 'M' << 16 | 'P' << 24;
+    private static final int FLAG_COSTS = 1;
+    // size of the chunks written at a time when saving
+    private static final int CHUNK = 1 << 20;
+
+    private MapFile()
+    {
+    }
+
+    /**
+     * Reads a binary PathFinder map, or imports a Moving AI .map file.
+     * @param file : the file to read, picked by its extension
+     * @throws IOException if the file cannot be read or is not a valid map
+     */
+    static GridMap open(Path file) throws IOException
+    {
+        if (file.toString().endsWith(MovingAiMap.EXTENSION))
+        {
+            return MovingAiMap.read(file);
+        }
+        return read(file);
+    }
+
+    /**
+     * Maps a map file into memory.
+     * @param file : the file to read
+     * @return a map whose walls (and costs) are backed by the file
+     * @throws IOException if the file cannot be read or is not a valid map
+     */
+    static GridMap read(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long length = channel.size();
+            if (length < HEADER_SIZE)
+            {
+                throw new IOException(file + " is not a PathFinder map file");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC)
+            {
+                throw new IOException(file + " is not a PathFinder map file");
+            }
+            int version = header.getShort(4);
+            if (version != VERSION)
+            {
+                throw new IOException(file + " has the unsupported format version " + version);
+            }
+            boolean hasCosts = (header.getShort(6) & FLAG_COSTS) != 0;
+            int width = header.getInt(8);
+            int height = header.getInt(12);
+            long bitmapLength = header.getLong(16);
+            if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE
+                    || bitmapLength != 8L * GridMap.words(width * height))
+            {
+                throw new IOException(file + " has an invalid header");
+            }
+            long costLength = hasCosts ? (long) width * height : 0;
+            if (length < HEADER_SIZE + bitmapLength + costLength)
+            {
+                throw new IOException(file + " is truncated");
+            }
+            MappedByteBuffer bitmap = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, bitmapLength);
+            LongBuffer walls = bitmap.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            ByteBuffer costs = null;
+            if (hasCosts)
+            {
+                costs = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + bitmapLength, costLength);
+            }
+            // the mappings stay valid once the channel is closed
+            return new GridMap(width, height, walls, costs);
+        }
+    }
+
+    /**
+     * Writes a map, with its cost layer if it has one. The map is written to a
+     * temporary file next to the target, which then replaces it: a loaded map
+     * still reads the file it was mapped from, saving it over that file must
+     * not truncate the bitmap it is being copied from. A failed save leaves
+     * the previous file as it was.
+     * @param map : the map to save
+     * @param file : the file to write, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    static void write(GridMap map, Path file) throws IOException
+    {
+        Path target = file.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try
+        {
+            writeTo(map, temp);
+            try
+            {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeTo(GridMap map, Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            int words = GridMap.words(map.size());
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC)
+                    .putShort((short) VERSION)
+                    .putShort((short) (map.hasCosts() ? FLAG_COSTS : 0))
+                    .putInt(map.width())
+                    .putInt(map.height())
+                    .putLong(8L * words)
+                    .putLong(0)
+                    .flip();
+            writeFully(channel, header);
+
+            ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+            LongBuffer walls = map.walls();
+            for (int word = 0; word < words; word++)
+            {
+                if (!chunk.hasRemaining())
+                {
+                    writeFully(channel, chunk.flip());
+                    chunk.clear();
+                }
+                chunk.putLong(walls.get(word));
+            }
+            writeFully(channel, chunk.flip());
+
+            ByteBuffer costs = map.costs();
+            if (costs != null)
+            {
+                writeFully(channel, costs.clear().limit(map.size()));
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package project_package;
+
+import java.util.Random;
+
+/**
+ * MapGenerator builds reproducible maps for benchmarks and headless runs.
+ * Every generator takes a seed so the same map is produced on every run.
+ */
+
+class MapGenerator
+{
+    private MapGenerator()
+    {
+    }
+
+    /**
+     * Returns a map where every cell is a wall with the given probability,
+     * randomizedGrid() in the UI uses a density of 0.25.
+     * @param density : probability of a cell being a wall, between 0 and 1
+     */
+    static GridMap random(int width, int height, double density, long seed)
+    {
+        GridMap map = new GridMap(width, height);
+        Random rng = new Random(seed);
+        for (int cell = 0; cell < map.size(); cell++)
+        {
+            map.setWall(cell, rng.nextDouble() < density);
+        }
+        return map;
+    }
+
+    /**
+     * Returns a map without any wall.
+     */
+    static GridMap open(int width, int height)
+    {
+        return new GridMap(width, height);
+    }
+
+    /**
+     * Returns a perfect maze carved by a randomized depth-first search:
+     * corridors run along even coordinates and are one cell wide, so using
+     * straight moves there is exactly one path between any two corridor cells.
+     */
+    static GridMap maze(int width, int height, long seed)
+    {
+        GridMap map = new GridMap(width, height);
+        for (int cell = 0; cell < map.size(); cell++)
+        {
+            map.setWall(cell, true);
+        }
+        Random rng = new Random(seed);
+        int columns = (width + 1) / 2;
+        int rows = (height + 1) / 2;
+        int[] stack = new int[columns * rows];
+        boolean[] visited = new boolean[columns * rows];
+        int[][] moves = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+        int top = 0;
+        stack[top++] = 0;
+        visited[0] = true;
+        map.setWall(map.index(0, 0), false);
+        while (top > 0)
+        {
+            int current = stack[top - 1];
+            int cx = current / rows;
+            int cy = current % rows;
+            // pick a random unvisited neighbour, backtrack when there is none
+            int next = -1;
+            int nx = 0;
+            int ny = 0;
+            int options = 0;
+            for (int[] m : moves)
+            {
+                int x = cx + m[0];
+                int y = cy + m[1];
+                if (x >= 0 && x < columns && y >= 0 && y < rows && !visited[x * rows + y]
+                        && rng.nextInt(++options) == 0)
+                {
+                    next = x * rows + y;
+                    nx = x;
+                    ny = y;
+                }
+            }
+            if (next < 0)
+            {
+                top--;
+                continue;
+            }
+            visited[next] = true;
+            map.setWall(map.index(cx + nx, cy + ny), false);
+            map.setWall(map.index(2 * nx, 2 * ny), false);
+            stack[top++] = next;
+        }
+        return map;
+    }
+}
@@ -0,0 +1,17 @@
+package project_package;
+
+/**
+ * Is told about every wall that is set or cleared on a GridMap, so that data
+ * derived from the walls (abstractions, caches, indices...) can be updated
+ * incrementally instead of being rebuilt. Callbacks are made on the thread
+ * editing the map.
+ */
+
+interface MapListener
+{
+    /**
+     * @param cell : index of the cell whose wall changed
+     * @param wall : true if the cell became a wall, false if it was cleared
+     */
+    void wallChanged(int cell, boolean wall);
+}
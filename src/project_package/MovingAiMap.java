@@ -0,0 +1,89 @@
+package project_package;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * MovingAiMap imports the ASCII .map format of the Moving AI grid benchmarks:
+ * a "type octile" line, "height H", "width W" and "map" lines, then H rows of
+ * W characters. '.', 'G' and 'S' are passable terrain, every other character
+ * ('@', 'O', 'T', 'W'...) is a wall. Row y, column x of the file becomes the
+ * cell (x, y).
+ */
+
+class MovingAiMap
+{
+    static final String EXTENSION = ".map";
+
+    private MovingAiMap()
+    {
+    }
+
+    /**
+     * Reads a .map file into a new map.
+     * @param file : the file to read
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    static GridMap read(Path file) throws IOException
+    {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII))
+        {
+            int width = -1;
+            int height = -1;
+            String line;
+            while ((line = reader.readLine()) != null && !line.trim().equals("map"))
+            {
+                String[] words = line.trim().split("\\s+");
+                if (words.length == 2 && words[0].equals("width"))
+                {
+                    width = parse(words[1], file);
+                }
+                else if (words.length == 2 && words[0].equals("height"))
+                {
+                    height = parse(words[1], file);
+                }
+            }
+            if (line == null || width <= 0 || height <= 0)
+            {
+                throw new IOException(file + " has no valid width, height and map lines");
+            }
+            GridMap map = new GridMap(width, height);
+            for (int y = 0; y < height; y++)
+            {
+                line = reader.readLine();
+                if (line == null || line.length() < width)
+                {
+                    throw new IOException(file + " is truncated at row " + y);
+                }
+                for (int x = 0; x < width; x++)
+                {
+                    if (!isPassable(line.charAt(x)))
+                    {
+                        map.setWall(map.index(x, y), true);
+                    }
+                }
+            }
+            return map;
+        }
+    }
+
+    private static boolean isPassable(char c)
+    {
+        return c == '.' || c == 'G' || c == 'S';
+    }
+
+    private static int parse(String value, Path file) throws IOException
+    {
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException(file + " has an invalid size " + value, e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package project_package;
+
+/**
+ * OpenSet is the priority queue of cells that are waiting to be expanded by
+ * the search. Cells are identified by their index in the grid
+ * (x * Y_NODES + y) and are ordered by their F value, ties being broken by
+ * the smaller H value. Every cell is held at most once, pushing a cell that
+ * is already queued moves it to its new key instead of adding a duplicate.
+ * Implementations are free to choose the underlying structure (binary heap,
+ * bucket queue, radix queue...).
+ */
+
+interface OpenSet
+{
+    /**
+     * Inserts a cell, or moves it to its new key if it is already queued.
+     * @param cell : index of the cell in the grid
+     * @param f : the F value (G + H) of the cell
+     * @param h : the H value of the cell, used to break ties on F
+     */
+    void push(int cell, double f, double h);
+
+    /**
+     * Removes and returns the cell with the smallest F (then H) value.
+     */
+    int pop();
+
+    /**
+     * Returns the cell pop() would return without removing it, the open set
+     * must not be empty.
+     */
+    int peek();
+
+    /**
+     * Returns the F value of the cell pop() would return, the open set must
+     * not be empty.
+     */
+    double peekF();
+
+    /**
+     * Removes a cell from the open set, does nothing if it is not queued.
+     * @param cell : index of the cell in the grid
+     */
+    void remove(int cell);
+
+    /**
+     * Returns true if the cell is currently queued.
+     * @param cell : index of the cell in the grid
+     */
+    boolean contains(int cell);
+
+    boolean isEmpty();
+
+    int size();
+
+    /**
+     * Removes every queued cell.
+     */
+    void clear();
+}
@@ -0,0 +1,806 @@
+package project_package;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ParallelSearch runs a single A star query on several threads with hash
+ * distributed A star (HDA*). Every cell is owned by one worker, chosen by
+ * hashing the 8x8 block the cell lies in (whole blocks keep most successors
+ * with the worker that generated them). A worker only expands the cells it
+ * owns, from its own open list, and sends the successors owned by other
+ * workers to them in batches, through lock-free per-worker inboxes. The
+ * owner of a cell is the only thread that reads or writes its G value and
+ * parent, so the shared SearchContext needs no synchronization.
+ * Workers do not expand in global F order, a cell can be expanded before
+ * its G value is final and is then expanded again when a better path
+ * reaches it (counted as reopened): the extra expansions are the search
+ * overhead of HDA*. To keep it low, every worker publishes the F value at
+ * the top of its open list (and the F values of the batches waiting in its
+ * inbox) and pauses while its own is well above the lowest one, so the
+ * workers stay close to the global F order.
+ * The cost of the best path to the goal found so far (the incumbent) prunes
+ * every cell whose F value is not below it. The search is over when every
+ * worker is idle (nothing left below the incumbent) and no batch is in
+ * flight: both counts live in a single atomic word, so a worker observing
+ * "all idle, nothing in flight" sees a state no worker can leave, since
+ * only a batch wakes a worker up and only an active worker sends batches.
+ * The thread calling findPath is one of the workers, the others run on
+ * threads of the search, released when idle.
+ */
+
+class ParallelSearch implements PathSearch
+{
+    static final int DEFAULT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    // successors sent to another worker at once
+    private static final int BATCH_SIZE = 128;
+    // expansions between two flushes of the outgoing batches
+    private static final int FLUSH_INTERVAL = 64;
+    // cells of a block are owned by the same worker, 8x8 blocks
+    private static final int BLOCK_SHIFT = 3;
+    // the state word: idle workers in the low bits, batches in flight above
+    private static final long IN_FLIGHT = 1L << 16;
+    private static final int SPINS = 64;
+    private static final long PARK_NANOS = 200_000;
+    // how far ahead of the others a worker may run, see isAhead()
+    private static final float SLACK = 0.5f;
+    private static final float G_SLACK = 4;
+    private static final float TIE = 1e-3f;
+    // relative error of G values summed in float precision
+    private static final float ROUNDING = 1e-5f;
+    // pauses in a row after which a worker expands anyway, the fronts it
+    // waits on may be out of date
+    private static final int MAX_PAUSES = 256;
+    private static final long PAUSE_NANOS = 20_000;
+    private static final int INFINITY = Float.floatToIntBits(Float.POSITIVE_INFINITY);
+
+    private final GridMap map;
+    private final Heuristic heuristic;
+    private final float weight;
+    private final SearchContext context;
+    private final Worker[] workers;
+    private final ThreadPoolExecutor helpers;
+    private final Future<?>[] running;
+    private final SearchCounters counters = new SearchCounters();
+    // listener calls are serialized, listeners expect a single thread
+    private final Object listenerLock = new Object();
+    private volatile SearchListener listener;
+    // query state, published to the helpers when they are submitted
+    private int goal;
+    private int xTarget;
+    private int yTarget;
+    private final AtomicLong state = new AtomicLong();
+    private volatile float incumbent;
+    private volatile boolean stop;
+
+    /**
+     * @param map : the map to search, walls may change between searches
+     * @param heuristic : estimate of the distance to the goal
+     * @param weight : factor applied to the heuristic, 1 for shortest paths
+     * @param threads : number of workers, the calling thread included
+     */
+    ParallelSearch(GridMap map, Heuristic heuristic, float weight, int threads)
+    {
+        if (!(weight >= 1))
+        {
+            throw new IllegalArgumentException("Invalid heuristic weight " + weight);
+        }
+        if (threads < 1 || threads >= IN_FLIGHT)
+        {
+            throw new IllegalArgumentException("Invalid number of threads " + threads);
+        }
+        this.map = map;
+        this.heuristic = heuristic;
+        this.weight = weight;
+        context = new SearchContext(map.size());
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++)
+        {
+            workers[i] = new Worker(i);
+        }
+        AtomicInteger count = new AtomicInteger();
+        int pool = Math.max(1, threads - 1);
+        helpers = new ThreadPoolExecutor(pool, pool, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r ->
+        {
+            Thread thread = new Thread(r, "hda-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // idle threads are released, an unused search costs no thread
+        helpers.allowCoreThreadTimeOut(true);
+        running = new Future<?>[threads];
+    }
+
+    @Override
+    public void setListener(SearchListener listener)
+    {
+        this.listener = listener;
+    }
+
+    @Override
+    public int[] findPath(int start, int goal)
+    {
+        long begin = System.nanoTime();
+        counters.reset();
+        context.next();
+        if (map.isWall(start) || map.isWall(goal))
+        {
+            return null;
+        }
+        if (start == goal)
+        {
+            return new int[]{start};
+        }
+        this.goal = goal;
+        xTarget = map.x(goal);
+        yTarget = map.y(goal);
+        state.set(0);
+        incumbent = Float.POSITIVE_INFINITY;
+        stop = false;
+        for (Worker worker : workers)
+        {
+            worker.reset();
+        }
+        workers[owner(start)].relax(start, 0, start);
+        long searching = System.nanoTime();
+        counters.setupNanos = searching - begin;
+        try
+        {
+            for (int i = 1; i < workers.length; i++)
+            {
+                running[i] = helpers.submit(workers[i]);
+            }
+            workers[0].run();
+        }
+        finally
+        {
+            // on cancellation as well: the helpers must be done with the
+            // context before another query reuses it
+            halt();
+            awaitHelpers();
+        }
+        for (Worker worker : workers)
+        {
+            counters.add(worker.counters);
+        }
+        long found = System.nanoTime();
+        counters.searchNanos = found - searching;
+        int[] path = (context.g(goal) == Float.POSITIVE_INFINITY) ? null : buildPath(start, goal);
+        counters.pathNanos = System.nanoTime() - found;
+        return path;
+    }
+
+    private void awaitHelpers()
+    {
+        boolean interrupted = false;
+        Throwable failure = null;
+        for (int i = 1; i < workers.length; i++)
+        {
+            while (running[i] != null)
+            {
+                try
+                {
+                    running[i].get();
+                    running[i] = null;
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
+                {
+                    failure = e.getCause();
+                    running[i] = null;
+                }
+                catch (CancellationException e)
+                {
+                    running[i] = null;
+                }
+            }
+        }
+        if (interrupted)
+        {
+            // the cancellation of the query, seen by its next checkpoint
+            Thread.currentThread().interrupt();
+        }
+        if (failure instanceof RuntimeException)
+        {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error)
+        {
+            throw (Error) failure;
+        }
+    }
+
+    /**
+     * Stops every worker and wakes up the sleeping ones.
+     */
+    private void halt()
+    {
+        stop = true;
+        for (Worker worker : workers)
+        {
+            Thread thread = worker.thread;
+            if (thread != null)
+            {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    /**
+     * Returns the worker owning a cell, from a hash of its block.
+     */
+    private int owner(int cell)
+    {
+        int h = (map.x(cell) >> BLOCK_SHIFT) * 0x9E3779B1 ^ (map.y(cell) >> BLOCK_SHIFT) * 0x85EBCA6B;
+        h ^= h >>> 15;
+        h *= 0x2C1B3C6D;
+        h ^= h >>> 12;
+        return (h >>> 1) % workers.length;
+    }
+
+    private float heuristic(int cell)
+    {
+        return heuristic.estimate(cell, goal, Math.abs(map.x(cell) - xTarget), Math.abs(map.y(cell) - yTarget));
+    }
+
+    private int[] buildPath(int start, int goal)
+    {
+        int length = 1;
+        for (int c = goal; c != start; c = context.parent(c))
+        {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int c = goal, i = length - 1; i >= 0; c = context.parent(c), i--)
+        {
+            path[i] = c;
+        }
+        return path;
+    }
+
+    /**
+     * Returns the number of workers of a query.
+     */
+    int threads()
+    {
+        return workers.length;
+    }
+
+    @Override
+    public boolean isReached(int cell)
+    {
+        return context.isReached(cell);
+    }
+
+    @Override
+    public boolean isClosed(int cell)
+    {
+        return context.isClosed(cell);
+    }
+
+    /**
+     * The counters of the workers are summed once the query is over, they
+     * read 0 while it runs.
+     */
+    @Override
+    public SearchCounters counters()
+    {
+        return counters;
+    }
+
+    /**
+     * Successors sent to a worker: cells, their G values and parents.
+     */
+    private static final class Batch
+    {
+        private final int[] cells = new int[BATCH_SIZE];
+        private final float[] g = new float[BATCH_SIZE];
+        private final int[] parents = new int[BATCH_SIZE];
+        private int size;
+        private float front = Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * A worker: its open list, its inbox and the batches it is filling for
+     * the other workers.
+     */
+    private final class Worker implements Runnable
+    {
+        private final int id;
+        private int pauses;
+        // highest F value the worker may expand until it looks at the other
+        // workers again
+        private float limit;
+        private final OpenList open = new OpenList();
+        private final ConcurrentLinkedQueue<Batch> inbox = new ConcurrentLinkedQueue<>();
+        private final Batch[] outbox;
+        private final SearchCounters counters = new SearchCounters();
+        private volatile Thread thread;
+        private volatile boolean sleeping;
+        // F and G values at the top of the open list, F is infinity when
+        // the worker is idle
+        private volatile float front;
+        private volatile float frontG;
+        // lower bound of the F values of the batches in the inbox, as float
+        // bits (the order of the bits is that of the positive floats)
+        private final AtomicInteger pendingFront = new AtomicInteger(INFINITY);
+
+        private Worker(int id)
+        {
+            this.id = id;
+            outbox = new Batch[workers.length];
+        }
+
+        private void reset()
+        {
+            open.clear();
+            inbox.clear();
+            front = Float.POSITIVE_INFINITY;
+            pendingFront.set(INFINITY);
+            Arrays.fill(outbox, null);
+            counters.reset();
+        }
+
+        @Override
+        public void run()
+        {
+            thread = Thread.currentThread();
+            try
+            {
+                search();
+            }
+            finally
+            {
+                thread = null;
+            }
+        }
+
+        private void search()
+        {
+            while (!stop)
+            {
+                receive();
+                if (!open.isEmpty() && open.peekF() < incumbent)
+                {
+                    frontG = open.peekG();
+                    front = open.peekF();
+                    if (isAhead())
+                    {
+                        if (++pauses < MAX_PAUSES)
+                        {
+                            flush();
+                            pause();
+                            continue;
+                        }
+                        // the fronts waited on may be out of date
+                        limit = front;
+                    }
+                    pauses = 0;
+                    expand();
+                    continue;
+                }
+                front = Float.POSITIVE_INFINITY;
+                open.clear();
+                flush();
+                if (inbox.isEmpty() && !idle())
+                {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Returns true if the top of the open list comes well after the top
+         * of another worker: an F value more than SLACK above the lowest
+         * one, or the lowest F value with a G value more than G_SLACK below
+         * the deepest cell at that F (ties go to the larger G, as in A*).
+         */
+        private boolean isAhead()
+        {
+            float lowest = Float.POSITIVE_INFINITY;
+            for (Worker worker : workers)
+            {
+                lowest = Math.min(lowest, Math.min(worker.front, Float.intBitsToFloat(worker.pendingFront.get())));
+            }
+            limit = lowest + SLACK;
+            if (front > limit)
+            {
+                return true;
+            }
+            if (front > lowest + TIE)
+            {
+                return false;
+            }
+            float deepest = frontG;
+            for (Worker worker : workers)
+            {
+                if (worker.front <= lowest + TIE)
+                {
+                    deepest = Math.max(deepest, worker.frontG);
+                }
+            }
+            return frontG + G_SLACK < deepest;
+        }
+
+        /**
+         * Lets the workers behind catch up.
+         */
+        private void pause()
+        {
+            if (id == 0)
+            {
+                SearchScheduler.checkpoint();
+            }
+            if (pauses % SPINS != 0)
+            {
+                // the workers behind may be waiting for a core
+                Thread.yield();
+                return;
+            }
+            LockSupport.parkNanos(PAUSE_NANOS);
+        }
+
+        /**
+         * Waits for a batch as an idle worker.
+         * @return false once the search is over
+         */
+        private boolean idle()
+        {
+            state.incrementAndGet();
+            int spins = 0;
+            while (true)
+            {
+                if (state.get() == workers.length)
+                {
+                    // all idle and nothing in flight: the search is over
+                    halt();
+                    return false;
+                }
+                // nothing to receive: a bound left over from the last drain
+                // would hold the other workers back, a batch queued from now
+                // on lowers it again
+                pendingFront.set(INFINITY);
+                if (!inbox.isEmpty())
+                {
+                    // active again before the batch is taken
+                    state.decrementAndGet();
+                    return true;
+                }
+                if (stop)
+                {
+                    return false;
+                }
+                if (id == 0)
+                {
+                    SearchScheduler.checkpoint();
+                }
+                if (++spins < SPINS)
+                {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                sleeping = true;
+                if (inbox.isEmpty() && state.get() != workers.length && !stop)
+                {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+                sleeping = false;
+            }
+        }
+
+        /**
+         * Takes in every batch waiting in the inbox.
+         */
+        private void receive()
+        {
+            pendingFront.set(INFINITY);
+            Batch batch;
+            while ((batch = inbox.poll()) != null)
+            {
+                for (int i = 0; i < batch.size; i++)
+                {
+                    relax(batch.cells[i], batch.g[i], batch.parents[i]);
+                }
+                // only once its cells are queued, see idle()
+                state.addAndGet(-IN_FLIGHT);
+            }
+        }
+
+        /**
+         * Expands up to FLUSH_INTERVAL cells, then sends the successors
+         * found for the other workers.
+         */
+        private void expand()
+        {
+            for (int k = 0; k < FLUSH_INTERVAL && !open.isEmpty() && open.peekF() < incumbent && open.peekF() <= limit; k++)
+            {
+                float f = open.peekF();
+                float g = open.peekG();
+                int current = open.pop();
+                if (g > context.g(current))
+                {
+                    // a better path reached the cell since it was queued
+                    continue;
+                }
+                if (current == goal)
+                {
+                    continue;
+                }
+                context.close(current);
+                counters.expanded++;
+                if (id == 0)
+                {
+                    SearchScheduler.checkpoint(counters.expanded);
+                }
+                SearchListener l = listener;
+                if (l != null)
+                {
+                    synchronized (listenerLock)
+                    {
+                        l.cellClosed(current);
+                    }
+                }
+                int x = map.x(current);
+                int y = map.y(current);
+                for (int[] s : GridMap.SUCC)
+                {
+                    int nx = x + s[0];
+                    int ny = y + s[1];
+                    if (!map.isValid(nx, ny))
+                    {
+                        continue;
+                    }
+                    int next = map.index(nx, ny);
+                    if (map.isWall(next))
+                    {
+                        continue;
+                    }
+                    float gnext = g + ((s[0] == 0 || s[1] == 0) ? 1 : SearchEngine.SQRT2);
+                    if (gnext >= incumbent)
+                    {
+                        continue;
+                    }
+                    int owner = owner(next);
+                    if (owner == id)
+                    {
+                        relax(next, gnext, current);
+                    }
+                    else
+                    {
+                        send(owner, next, gnext, current, f);
+                    }
+                }
+            }
+            flush();
+        }
+
+        /**
+         * Queues a cell owned by this worker if the path is better than
+         * the one it had.
+         */
+        private void relax(int cell, float g, int parent)
+        {
+            float old = context.g(cell);
+            if (g >= old)
+            {
+                return;
+            }
+            if (old == Float.POSITIVE_INFINITY)
+            {
+                counters.generated++;
+            }
+            else if (context.isClosed(cell))
+            {
+                if (g > old * (1 - ROUNDING))
+                {
+                    // the same cost summed in another order, reopening the
+                    // cell would expand its whole subtree again for nothing
+                    return;
+                }
+                counters.reopened++;
+            }
+            context.setG(cell, g);
+            context.setParent(cell, parent);
+            if (cell == goal)
+            {
+                // only the owner of the goal writes the incumbent
+                incumbent = g;
+                return;
+            }
+            counters.heuristicEvaluations++;
+            float f = g + weight * heuristic(cell);
+            if (f >= incumbent)
+            {
+                return;
+            }
+            open.push(cell, f, g);
+            counters.open(open.size());
+            SearchListener l = listener;
+            if (l != null)
+            {
+                synchronized (listenerLock)
+                {
+                    l.cellOpened(cell);
+                }
+            }
+        }
+
+        /**
+         * Adds a successor to the batch of its owner.
+         * @param f : F value of the cell expanded, with a consistent
+         *            heuristic a lower bound of the F value of the successor
+         */
+        private void send(int owner, int cell, float g, int parent, float f)
+        {
+            Batch batch = outbox[owner];
+            if (batch == null)
+            {
+                batch = new Batch();
+                outbox[owner] = batch;
+            }
+            batch.front = Math.min(batch.front, f);
+            batch.cells[batch.size] = cell;
+            batch.g[batch.size] = g;
+            batch.parents[batch.size] = parent;
+            if (++batch.size == BATCH_SIZE)
+            {
+                post(owner, batch);
+            }
+        }
+
+        /**
+         * Sends every batch that holds successors.
+         */
+        private void flush()
+        {
+            for (int owner = 0; owner < outbox.length; owner++)
+            {
+                if (outbox[owner] != null && outbox[owner].size > 0)
+                {
+                    post(owner, outbox[owner]);
+                }
+            }
+        }
+
+        private void post(int owner, Batch batch)
+        {
+            outbox[owner] = null;
+            // counted in flight before it can be seen, see receive()
+            state.addAndGet(IN_FLIGHT);
+            Worker target = workers[owner];
+            // before the batch is queued, so no batch in an inbox is missed
+            // by its bound, the bound may only stay too low until the
+            // receiver drains its inbox again
+            int bits = Float.floatToIntBits(batch.front);
+            target.pendingFront.accumulateAndGet(bits, Math::min);
+            target.inbox.add(batch);
+            if (target.sleeping)
+            {
+                Thread thread = target.thread;
+                if (thread != null)
+                {
+                    LockSupport.unpark(thread);
+                }
+            }
+        }
+    }
+
+    /**
+     * The open list of a worker, a binary heap of (F, G, cell) entries that
+     * may hold several entries of the same cell: an entry whose G value is
+     * no longer that of its cell is skipped when popped. Ties on F go to the
+     * larger G (the smaller H). It grows as needed and, unlike the OpenSet
+     * of the sequential searches, costs nothing per cell of the map.
+     */
+    private static final class OpenList
+    {
+        private float[] f = new float[256];
+        private float[] g = new float[256];
+        private int[] cells = new int[256];
+        private int size;
+
+        private boolean isEmpty()
+        {
+            return size == 0;
+        }
+
+        private int size()
+        {
+            return size;
+        }
+
+        private void clear()
+        {
+            size = 0;
+        }
+
+        private float peekF()
+        {
+            return f[0];
+        }
+
+        private float peekG()
+        {
+            return g[0];
+        }
+
+        private void push(int cell, float fv, float gv)
+        {
+            if (size == cells.length)
+            {
+                f = Arrays.copyOf(f, size * 2);
+                g = Arrays.copyOf(g, size * 2);
+                cells = Arrays.copyOf(cells, size * 2);
+            }
+            int i = size++;
+            while (i > 0)
+            {
+                int parent = (i - 1) >>> 1;
+                if (!before(fv, gv, f[parent], g[parent]))
+                {
+                    break;
+                }
+                set(i, f[parent], g[parent], cells[parent]);
+                i = parent;
+            }
+            set(i, fv, gv, cell);
+        }
+
+        private int pop()
+        {
+            int top = cells[0];
+            size--;
+            if (size > 0)
+            {
+                float fv = f[size];
+                float gv = g[size];
+                int cell = cells[size];
+                int i = 0;
+                while (true)
+                {
+                    int child = 2 * i + 1;
+                    if (child >= size)
+                    {
+                        break;
+                    }
+                    if (child + 1 < size && before(f[child + 1], g[child + 1], f[child], g[child]))
+                    {
+                        child++;
+                    }
+                    if (!before(f[child], g[child], fv, gv))
+                    {
+                        break;
+                    }
+                    set(i, f[child], g[child], cells[child]);
+                    i = child;
+                }
+                set(i, fv, gv, cell);
+            }
+            return top;
+        }
+
+        private static boolean before(float f1, float g1, float f2, float g2)
+        {
+            return f1 < f2 || (f1 == f2 && g1 > g2);
+        }
+
+        private void set(int i, float fv, float gv, int cell)
+        {
+            f[i] = fv;
+            g[i] = gv;
+            cells[i] = cell;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package project_package;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * PathCache remembers the results of a PathSearch for repeated (start, goal)
+ * queries on a map that does not change in between. Entries are stamped with
+ * the version of the map they are valid for and the least recently used one
+ * is evicted once the cache is full. Edits only drop the entries they can
+ * affect: a new wall invalidates the paths running through it, a cleared
+ * wall the paths it could shorten (those whose cost is more than the octile
+ * distance from start to goal through the cleared cell) and every cached
+ * "no path". All other entries are re-stamped with the new version.
+ * A cache is itself a PathSearch, it can stand in for the search it wraps.
+ */
+
+class PathCache implements PathSearch, MapListener
+{
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private final PathSearch search;
+    private final GridMap map;
+    private final int capacity;
+    private final LinkedHashMap<Long, Entry> entries;
+    private boolean lastHit;
+    private final SearchCounters hitCounters = new SearchCounters();
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Wraps a search and starts listening to the walls of its map.
+     * @param search : the search answering the queries that miss
+     * @param map : the map the search runs on
+     * @param capacity : maximum number of cached queries
+     */
+    PathCache(PathSearch search, GridMap map, int capacity)
+    {
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("Invalid cache capacity " + capacity);
+        }
+        this.search = search;
+        this.map = map;
+        this.capacity = capacity;
+        // access ordered, so the eldest entry is the least recently used one
+        entries = new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest)
+            {
+                if (size() > PathCache.this.capacity)
+                {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        map.addListener(this);
+    }
+
+    /**
+     * Returns the search the cache wraps.
+     */
+    PathSearch search()
+    {
+        return search;
+    }
+
+    /**
+     * Answers from the cache or runs the wrapped search. The lock is not
+     * held during the search, so edits are never blocked by a long search
+     * (the UI thread edits the map while the search thread may be waiting
+     * for the UI), a result is only stored if the map did not change
+     * meanwhile.
+     */
+    @Override
+    public int[] findPath(int start, int goal)
+    {
+        Long key = ((long) start << 32) | goal;
+        long version;
+        synchronized (this)
+        {
+            Entry entry = entries.get(key);
+            version = map.version();
+            if (entry != null && entry.version == version)
+            {
+                hits++;
+                lastHit = true;
+                return (entry.path == null) ? null : entry.path.clone();
+            }
+            misses++;
+            lastHit = false;
+        }
+        int[] path = search.findPath(start, goal);
+        synchronized (this)
+        {
+            if (map.version() == version)
+            {
+                entries.put(key, new Entry(path, map, version));
+            }
+        }
+        return (path == null) ? null : path.clone();
+    }
+
+    /**
+     * Drops the entries the wall change can affect and re-stamps the others.
+     */
+    @Override
+    public synchronized void wallChanged(int cell, boolean wall)
+    {
+        long version = map.version();
+        int x = map.x(cell);
+        int y = map.y(cell);
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext())
+        {
+            Entry entry = it.next();
+            if (wall ? entry.contains(cell, x, y) : entry.couldUse(x, y))
+            {
+                it.remove();
+                invalidations++;
+            }
+            else
+            {
+                entry.version = version;
+            }
+        }
+    }
+
+    /**
+     * Removes every entry, the counters are kept.
+     */
+    synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    synchronized int size()
+    {
+        return entries.size();
+    }
+
+    synchronized long hits()
+    {
+        return hits;
+    }
+
+    synchronized long misses()
+    {
+        return misses;
+    }
+
+    synchronized long evictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of entries dropped because of a wall change.
+     */
+    synchronized long invalidations()
+    {
+        return invalidations;
+    }
+
+    @Override
+    public void setListener(SearchListener listener)
+    {
+        search.setListener(listener);
+    }
+
+    /**
+     * Nothing was reached by a query answered from the cache.
+     */
+    @Override
+    public synchronized boolean isReached(int cell)
+    {
+        return !lastHit && search.isReached(cell);
+    }
+
+    @Override
+    public synchronized boolean isClosed(int cell)
+    {
+        return !lastHit && search.isClosed(cell);
+    }
+
+    /**
+     * Returns the counters of the wrapped search, all 0 for a hit.
+     */
+    @Override
+    public synchronized SearchCounters counters()
+    {
+        return lastHit ? hitCounters : search.counters();
+    }
+
+    /**
+     * A cached result, with the bounding box of its path so that most edits
+     * can be ruled out without scanning the path.
+     */
+    private static final class Entry
+    {
+        private final int[] path;
+        private final double cost;
+        private final int xStart;
+        private final int yStart;
+        private final int xGoal;
+        private final int yGoal;
+        private int xMin = Integer.MAX_VALUE;
+        private int yMin = Integer.MAX_VALUE;
+        private int xMax = Integer.MIN_VALUE;
+        private int yMax = Integer.MIN_VALUE;
+        private long version;
+
+        private Entry(int[] path, GridMap map, long version)
+        {
+            this.path = path;
+            this.version = version;
+            if (path == null)
+            {
+                cost = Double.POSITIVE_INFINITY;
+                xStart = yStart = xGoal = yGoal = 0;
+                return;
+            }
+            double sum = 0;
+            for (int i = 0; i < path.length; i++)
+            {
+                int x = map.x(path[i]);
+                int y = map.y(path[i]);
+                xMin = Math.min(xMin, x);
+                yMin = Math.min(yMin, y);
+                xMax = Math.max(xMax, x);
+                yMax = Math.max(yMax, y);
+                if (i > 0)
+                {
+                    boolean diagonal = x != map.x(path[i - 1]) && y != map.y(path[i - 1]);
+                    sum += diagonal ? Math.sqrt(2) : 1;
+                }
+            }
+            cost = sum;
+            xStart = map.x(path[0]);
+            yStart = map.y(path[0]);
+            xGoal = map.x(path[path.length - 1]);
+            yGoal = map.y(path[path.length - 1]);
+        }
+
+        /**
+         * Returns true if the path runs through the cell (x, y).
+         */
+        private boolean contains(int cell, int x, int y)
+        {
+            if (path == null || x < xMin || x > xMax || y < yMin || y > yMax)
+            {
+                return false;
+            }
+            for (int c : path)
+            {
+                if (c == cell)
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns true if a path through the cleared cell (x, y) could be
+         * shorter than the cached one.
+         */
+        private boolean couldUse(int x, int y)
+        {
+            if (path == null)
+            {
+                return true;
+            }
+            // a tiny margin keeps paths of equal cost from being dropped
+            double through = (double) Heuristics.OCTILE.estimate(Math.abs(x - xStart), Math.abs(y - yStart))
+                    + Heuristics.OCTILE.estimate(Math.abs(xGoal - x), Math.abs(yGoal - y));
+            return through < cost - 1e-6;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package project_package;
+
+/**
+ * PathSearch is the common interface of the path-finding algorithms that can
+ * be selected in the UI (see Algorithm). A search object belongs to one map
+ * and can be reused for any number of queries, but is not thread safe.
+ */
+
+interface PathSearch
+{
+    /**
+     * Finds the shortest path between two cells of the map.
+     * @param start : index of the starting cell
+     * @param goal : index of the target cell
+     * @return the cells of the path from start to goal (both included), or
+     *         null if the goal cannot be reached
+     */
+    int[] findPath(int start, int goal);
+
+    /**
+     * Attaches a listener that is told about the progress of every search,
+     * null detaches it.
+     */
+    void setListener(SearchListener listener);
+
+    /**
+     * Returns true if the last search reached (opened) the cell.
+     */
+    boolean isReached(int cell);
+
+    /**
+     * Returns true if the last search expanded the cell.
+     */
+    boolean isClosed(int cell);
+
+    /**
+     * Returns the work counters of the last search (or of the running one).
+     */
+    SearchCounters counters();
+
+    /**
+     * Returns the number of cells expanded by the last search.
+     */
+    default int expansions()
+    {
+        return counters().expanded;
+    }
+}
@@ -0,0 +1,442 @@
+package project_package;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PathServer is the headless entry point: it loads a map and answers path
+ * queries read from stdin, or from the clients of a TCP socket bound to the
+ * loopback interface, without ever touching JavaFX. The protocol is one line
+ * of ASCII per request and per reply:
+ *   request  <id> <sx> <sy> <gx> <gy>
+ *   reply    <id> <cost> <x0> <y0> <x1> <y1> ...   the cells of the path
+ *            <id> <cost> <cells>                   with --paths=false
+ *            <id> none                             the goal cannot be reached
+ *            <id> error <message>                  a malformed request
+ * The id is any token chosen by the client and is echoed in the reply.
+ * Requests are pipelined: a client can send many of them without waiting,
+ * they are solved by a pool of worker threads and replies come back as soon
+ * as they are ready, so possibly out of order. When the workers are all busy
+ * and their queue is full the reader of a connection waits for room in it,
+ * which stops it reading and pushes back on the client. Only the workers
+ * search, each with a search object of its own, so the server holds as many
+ * of them as it has workers whatever the number of clients. Queries whose
+ * goal is walled off are answered from the components of the map (see
+ * ConnectivityIndex) without any search and every search is recorded as a
+ * SearchEvent. At most --clients connections are read at a time, the next
+ * ones wait to be accepted. Options:
+ *   --map=file                    map to load (.pfmap or Moving AI .map), or
+ *   --cols=N --rows=N             a generated map, random with
+ *   --density=D --seed=S          a share D of walls (default 0.25)
+ *   --port=N                      TCP port, stdin/stdout when absent
+ *   --threads=N                   worker threads, default one per core
+ *   --clients=N                   connections read at a time, default 64
+ *   --algorithm=A_STAR            any Algorithm constant
+ *   --paths=false                 reply with the cost and length only
+ */
+
+public class PathServer implements AutoCloseable
+{
+    // requests waiting for a worker, per worker thread
+    private static final int QUEUE_PER_THREAD = 256;
+    static final int DEFAULT_CLIENTS = 64;
+
+    private final GridMap map;
+    private final Algorithm algorithm;
+    private final boolean paths;
+    private final ThreadPoolExecutor workers;
+    // requests handed to the workers and not answered yet, bounded by the
+    // room in their queue so that a hand-off is never rejected
+    private final Semaphore handedOff;
+    private final ThreadLocal<PathSearch> engines;
+    // component of every cell, the map does not change
+    private final int[] components;
+
+    /**
+     * @param map : the map to answer queries on, it must not change
+     * @param algorithm : algorithm used for every query
+     * @param threads : number of worker threads
+     * @param paths : true to reply with the cells of the paths
+     */
+    PathServer(GridMap map, Algorithm algorithm, int threads, boolean paths)
+    {
+        if (threads <= 0)
+        {
+            throw new IllegalArgumentException("--threads must be positive");
+        }
+        this.map = map;
+        this.algorithm = algorithm;
+        this.paths = paths;
+        AtomicInteger count = new AtomicInteger();
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD), r ->
+        {
+            Thread thread = new Thread(r, "query-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // one request running per worker, the others queued
+        handedOff = new Semaphore(threads * (QUEUE_PER_THREAD + 1));
+        engines = ThreadLocal.withInitial(() -> algorithm.create(map));
+        components = new ConnectivityIndex(map).components();
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        Map<String, String> options = parseOptions(args);
+        GridMap map = loadMap(options);
+        Algorithm algorithm = Algorithm.valueOf(options.getOrDefault("algorithm", Algorithm.A_STAR.name()));
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        boolean paths = Boolean.parseBoolean(options.getOrDefault("paths", "true"));
+        int clients = Integer.parseInt(options.getOrDefault("clients", String.valueOf(DEFAULT_CLIENTS)));
+        try (PathServer server = new PathServer(map, algorithm, threads, paths))
+        {
+            if (options.containsKey("port"))
+            {
+                try (ServerSocket socket = new ServerSocket(Integer.parseInt(options.get("port")), 50,
+                        InetAddress.getLoopbackAddress()))
+                {
+                    System.err.println("Listening on " + socket.getLocalSocketAddress());
+                    server.listen(socket, clients);
+                }
+            }
+            else
+            {
+                server.serve(System.in, System.out);
+            }
+        }
+    }
+
+    /**
+     * Reads the named options of a command line, e.g. --cols=2000.
+     * Arguments that do not start with -- are ignored.
+     */
+    static Map<String, String> parseOptions(String[] args)
+    {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args)
+        {
+            if (!arg.startsWith("--"))
+            {
+                continue;
+            }
+            int equals = arg.indexOf('=');
+            if (equals < 0)
+            {
+                options.put(arg.substring(2), "true");
+            }
+            else
+            {
+                options.put(arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Loads the map named by --map, or generates the random map described
+     * by --cols, --rows, --density and --seed.
+     */
+    static GridMap loadMap(Map<String, String> options) throws IOException
+    {
+        if (options.containsKey("map"))
+        {
+            return MapFile.open(Path.of(options.get("map")));
+        }
+        int columns = Integer.parseInt(options.getOrDefault("cols", "1024"));
+        int rows = Integer.parseInt(options.getOrDefault("rows", "1024"));
+        double density = Double.parseDouble(options.getOrDefault("density", "0.25"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        if (columns <= 0 || rows <= 0)
+        {
+            throw new IllegalArgumentException("--cols and --rows must be positive");
+        }
+        return MapGenerator.random(columns, rows, density, seed);
+    }
+
+    /**
+     * Accepts clients until the thread is interrupted or the socket closed,
+     * every client is read by a thread of its own. Once clients connections
+     * are being read the next one is only accepted when one of them ends.
+     * @param server : the socket to accept the clients on
+     * @param clients : maximum number of connections read at a time
+     */
+    void listen(ServerSocket server, int clients) throws IOException
+    {
+        if (clients <= 0)
+        {
+            throw new IllegalArgumentException("--clients must be positive");
+        }
+        Semaphore readers = new Semaphore(clients);
+        while (!Thread.currentThread().isInterrupted())
+        {
+            readers.acquireUninterruptibly();
+            Socket socket;
+            try
+            {
+                socket = server.accept();
+                socket.setTcpNoDelay(true);
+            }
+            catch (IOException e)
+            {
+                readers.release();
+                throw e;
+            }
+            Thread reader = new Thread(() ->
+            {
+                try (socket)
+                {
+                    serve(socket.getInputStream(), socket.getOutputStream());
+                }
+                catch (IOException e)
+                {
+                    // the client went away, its pending replies are lost
+                }
+                finally
+                {
+                    readers.release();
+                }
+            }, "client-" + socket.getPort());
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    /**
+     * Answers the requests of one client until the end of its input, then
+     * waits for the replies still being computed.
+     * @param in : the requests
+     * @param out : where the replies are written
+     */
+    void serve(InputStream in, OutputStream out) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+        Client client = new Client(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII), 1 << 16));
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+            if (line.isBlank())
+            {
+                continue;
+            }
+            client.pending.incrementAndGet();
+            Request request = Request.parse(line);
+            if (request.error != null)
+            {
+                client.reply(request.id + " error " + request.error);
+            }
+            else
+            {
+                handOff(client, request);
+            }
+        }
+        client.awaitReplies();
+    }
+
+    /**
+     * Hands a request over to the workers, waiting for room in their queue
+     * when it is full. The request is answered with an error when the
+     * server is closed.
+     */
+    private void handOff(Client client, Request request)
+    {
+        handedOff.acquireUninterruptibly();
+        try
+        {
+            workers.execute(() ->
+            {
+                try
+                {
+                    client.reply(answer(request));
+                }
+                finally
+                {
+                    handedOff.release();
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            handedOff.release();
+            client.reply(request.id + " error the server is closed");
+        }
+    }
+
+    /**
+     * Solves a request and formats its reply.
+     */
+    private String answer(Request request)
+    {
+        if (!map.isValid(request.sx, request.sy) || !map.isValid(request.gx, request.gy))
+        {
+            return request.id + " error outside the map";
+        }
+        int start = map.index(request.sx, request.sy);
+        int goal = map.index(request.gx, request.gy);
+        if (components[start] == ConnectivityIndex.NONE || components[start] != components[goal])
+        {
+            return request.id + " none";
+        }
+        int[] path;
+        try
+        {
+            path = SearchEvent.search(engines.get(), algorithm.toString(), map, start, goal);
+        }
+        catch (RuntimeException e)
+        {
+            return request.id + " error " + e;
+        }
+        if (path == null)
+        {
+            return request.id + " none";
+        }
+        StringBuilder reply = new StringBuilder(request.id.length() + 16 + (paths ? path.length * 10 : 0));
+        reply.append(request.id).append(' ');
+        reply.append(String.format(Locale.ROOT, "%.3f", SearchMetrics.cost(map, path)));
+        if (!paths)
+        {
+            return reply.append(' ').append(path.length).toString();
+        }
+        for (int cell : path)
+        {
+            reply.append(' ').append(map.x(cell)).append(' ').append(map.y(cell));
+        }
+        return reply.toString();
+    }
+
+    /**
+     * Stops the workers, the requests they have not started are dropped.
+     */
+    @Override
+    public void close()
+    {
+        workers.shutdownNow();
+    }
+
+    /**
+     * The replies of a client, written by the workers. The output is only
+     * flushed once no reply of the client is being computed any more, so
+     * the replies to a pipelined burst of requests leave together.
+     */
+    private static final class Client
+    {
+        private final Writer out;
+        private final AtomicInteger pending = new AtomicInteger();
+        private IOException failure;
+
+        private Client(Writer out)
+        {
+            this.out = out;
+        }
+
+        private synchronized void reply(String reply)
+        {
+            try
+            {
+                if (failure == null)
+                {
+                    out.write(reply);
+                    out.write('\n');
+                    if (pending.get() == 1)
+                    {
+                        out.flush();
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                failure = e;
+            }
+            finally
+            {
+                if (pending.decrementAndGet() == 0)
+                {
+                    notifyAll();
+                }
+            }
+        }
+
+        private synchronized void awaitReplies() throws IOException
+        {
+            boolean interrupted = false;
+            while (pending.get() > 0)
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null)
+            {
+                throw failure;
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * A parsed request line, error is set when the line is malformed.
+     */
+    private static final class Request
+    {
+        private String id;
+        private int sx;
+        private int sy;
+        private int gx;
+        private int gy;
+        private String error;
+
+        private static Request parse(String line)
+        {
+            Request request = new Request();
+            String[] tokens = line.trim().split("\\s+");
+            request.id = tokens[0];
+            if (tokens.length != 5)
+            {
+                request.error = "expected: id sx sy gx gy";
+                return request;
+            }
+            try
+            {
+                request.sx = Integer.parseInt(tokens[1]);
+                request.sy = Integer.parseInt(tokens[2]);
+                request.gx = Integer.parseInt(tokens[3]);
+                request.gy = Integer.parseInt(tokens[4]);
+            }
+            catch (NumberFormatException e)
+            {
+                request.error = "coordinates must be integers";
+            }
+            return request;
+        }
+    }
+}
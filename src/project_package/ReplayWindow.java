@@ -0,0 +1,111 @@
+package project_package;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import java.util.Locale;
+
+/**
+ * The class below (ReplayWindow) consists of a single method, show(), which
+ * opens the controls of a replayed search next to the grid.
+ */
+
+class ReplayWindow
+{
+    // speed slider range, a power of ten of events per second
+    private static final double MIN_SPEED = 0;
+    private static final double MAX_SPEED = 6;
+    private static final double INITIAL_SPEED = 3;
+
+    private ReplayWindow()
+    {
+    }
+
+    /**
+     * show() opens a window that plays, pauses and scrubs through a replayed
+     * search (the position slider) and sets its speed, from 1 to a million
+     * events per second. The grid stays usable, closing the window ends the
+     * replay and closing the replay closes the window.
+     * @param playback : the playback controlled
+     * @param owner : the main window
+     * @param onClose : run when the user closes the window
+     */
+    static void show(TracePlayback playback, Stage owner, Runnable onClose)
+    {
+        Stage window = new Stage();
+        window.initOwner(owner);
+        window.setTitle("Replay");
+        window.resizableProperty().setValue(Boolean.FALSE);
+
+        Label position = new Label();
+        Slider scrub = new Slider(0, Math.max(1, playback.size()), 0);
+        scrub.setPrefWidth(420);
+        Button play = new Button("Play");
+        Button first = new Button("|<");
+        Button back = new Button("<");
+        Button forward = new Button(">");
+        Button end = new Button(">|");
+        Label speedLabel = new Label();
+        Slider speed = new Slider(MIN_SPEED, MAX_SPEED, INITIAL_SPEED);
+        speed.setPrefWidth(200);
+
+        // true while the playback moves the slider, not the user
+        boolean[] updating = new boolean[1];
+        Runnable refresh = () ->
+        {
+            updating[0] = true;
+            scrub.setValue(playback.position());
+            updating[0] = false;
+            position.setText("Event " + playback.position() + " / " + playback.size());
+            play.setText(playback.isPlaying() ? "Pause" : "Play");
+        };
+        playback.setOnProgress(refresh);
+        playback.setOnClosed(window::close);
+        scrub.valueProperty().addListener((o, old, value) ->
+        {
+            if (!updating[0])
+            {
+                playback.seek(value.intValue());
+            }
+        });
+        play.setOnAction(e ->
+        {
+            if (playback.isPlaying())
+            {
+                playback.pause();
+            }
+            else
+            {
+                playback.play();
+            }
+            refresh.run();
+        });
+        first.setOnAction(e -> playback.seek(0));
+        back.setOnAction(e -> playback.seek(playback.position() - 1));
+        forward.setOnAction(e -> playback.seek(playback.position() + 1));
+        end.setOnAction(e -> playback.seek(playback.size()));
+        Runnable setSpeed = () ->
+        {
+            double eventsPerSecond = Math.pow(10, speed.getValue());
+            playback.setEventsPerSecond(eventsPerSecond);
+            speedLabel.setText(String.format(Locale.ROOT, "%.0f events/s", eventsPerSecond));
+        };
+        speed.valueProperty().addListener((o, old, value) -> setSpeed.run());
+        setSpeed.run();
+        refresh.run();
+
+        HBox buttons = new HBox(8.0D, first, back, play, forward, end, speed, speedLabel);
+        buttons.setAlignment(Pos.CENTER_LEFT);
+        VBox layout = new VBox(10.0D, position, scrub, buttons);
+        layout.setPadding(new Insets(12));
+        window.setScene(new Scene(layout));
+        window.setOnHidden(e -> onClose.run());
+        window.show();
+    }
+}
@@ -0,0 +1,147 @@
+package project_package;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * SearchContext holds the per-cell scratch state of a search (G value,
+ * parent and closed flag) so that it can be reused for any number of
+ * queries without ever being cleared. Every cell is stamped with the
+ * generation of the search that last touched it, next() starts a new
+ * generation and the values of older generations are read as unvisited, so
+ * starting a query costs O(1) whatever the size of the map. Generations go
+ * up by 2: a cell stamped with the current generation has been reached, one
+ * stamped with the generation + 1 has been expanded as well. The stamps are
+ * only reset when the generation counter wraps around, once every billion
+ * searches.
+ * A shared context publishes its G values with volatile accesses, for a
+ * search whose G values are read by another thread (see BidirectionalSearch).
+ */
+
+class SearchContext
+{
+    private static final VarHandle FLOATS = MethodHandles.arrayElementVarHandle(float[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final float[] g;
+    private final int[] parent;
+    private final int[] stamp;
+    private final boolean shared;
+    // the stamps start at 0, older than the first generation
+    private int generation = 2;
+
+    /**
+     * @param cellCount : number of cells, the cells passed to the context
+     *                    must lie in [0, cellCount)
+     * @param shared : the G values are read by another thread while the
+     *                 search runs
+     */
+    SearchContext(int cellCount, boolean shared)
+    {
+        g = new float[cellCount];
+        parent = new int[cellCount];
+        stamp = new int[cellCount];
+        this.shared = shared;
+    }
+
+    SearchContext(int cellCount)
+    {
+        this(cellCount, false);
+    }
+
+    int size()
+    {
+        return stamp.length;
+    }
+
+    /**
+     * Starts a new search, every cell is unvisited again.
+     */
+    void next()
+    {
+        if (generation >= Integer.MAX_VALUE - 3)
+        {
+            Arrays.fill(stamp, 0);
+            generation = 2;
+        }
+        generation += 2;
+    }
+
+    /**
+     * Sets the generation of the current search, so that a test can bring
+     * the wrap around within a few searches.
+     * @param generation : an even generation, at least 2
+     */
+    void setGeneration(int generation)
+    {
+        this.generation = generation;
+    }
+
+    /**
+     * Returns the G value of a cell, infinity if it was not reached by the
+     * current search.
+     */
+    float g(int cell)
+    {
+        if (shared)
+        {
+            // the stamp is written after the G value, see setG
+            return ((int) INTS.getVolatile(stamp, cell) >= generation)
+                    ? (float) FLOATS.getVolatile(g, cell) : Float.POSITIVE_INFINITY;
+        }
+        return (stamp[cell] >= generation) ? g[cell] : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Sets the G value of a cell, which is reached from now on.
+     */
+    void setG(int cell, float value)
+    {
+        if (shared)
+        {
+            FLOATS.setVolatile(g, cell, value);
+            if ((int) INTS.getVolatile(stamp, cell) < generation)
+            {
+                INTS.setVolatile(stamp, cell, generation);
+            }
+            return;
+        }
+        g[cell] = value;
+        if (stamp[cell] < generation)
+        {
+            stamp[cell] = generation;
+        }
+    }
+
+    /**
+     * Returns the parent of a reached cell, undefined for the other cells.
+     */
+    int parent(int cell)
+    {
+        return parent[cell];
+    }
+
+    void setParent(int cell, int parent)
+    {
+        this.parent[cell] = parent;
+    }
+
+    boolean isReached(int cell)
+    {
+        return stamp[cell] >= generation;
+    }
+
+    boolean isClosed(int cell)
+    {
+        return stamp[cell] == generation + 1;
+    }
+
+    /**
+     * Marks a reached cell as expanded.
+     */
+    void close(int cell)
+    {
+        stamp[cell] = generation + 1;
+    }
+}
@@ -0,0 +1,69 @@
+package project_package;
+
+/**
+ * SearchCounters hold the work done by the last query of a PathSearch. The
+ * searches bump the fields inline, the same way they always counted their
+ * expansions, so keeping them costs a few integer additions per expanded
+ * cell and three clock reads per query. A counter that does not apply to an
+ * algorithm stays at 0. Reading the counters from another thread while a
+ * query runs gives approximate, live values.
+ */
+
+class SearchCounters
+{
+    // cells expanded (closed)
+    int expanded;
+    // cells pushed on the open set for the first time
+    int generated;
+    // cells pushed on the open set again after they had been expanded
+    int reopened;
+    // largest size of the open set
+    int peakOpen;
+    int heuristicEvaluations;
+    // time spent resetting and seeding the search
+    long setupNanos;
+    // time spent in the main loop
+    long searchNanos;
+    // time spent building the path once the goal was reached
+    long pathNanos;
+
+    void reset()
+    {
+        expanded = 0;
+        generated = 0;
+        reopened = 0;
+        peakOpen = 0;
+        heuristicEvaluations = 0;
+        setupNanos = 0;
+        searchNanos = 0;
+        pathNanos = 0;
+    }
+
+    /**
+     * Records the size of the open set after a push.
+     */
+    void open(int size)
+    {
+        if (size > peakOpen)
+        {
+            peakOpen = size;
+        }
+    }
+
+    /**
+     * Adds the counters of another part of the same search (e.g. the second
+     * frontier of a bidirectional search), the peaks are summed as both open
+     * sets are alive at the same time.
+     */
+    void add(SearchCounters other)
+    {
+        expanded += other.expanded;
+        generated += other.generated;
+        reopened += other.reopened;
+        peakOpen += other.peakOpen;
+        heuristicEvaluations += other.heuristicEvaluations;
+        setupNanos += other.setupNanos;
+        searchNanos += other.searchNanos;
+        pathNanos += other.pathNanos;
+    }
+}
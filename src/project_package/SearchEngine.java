@@ -0,0 +1,248 @@
+package project_package;
+
+/**
+ * SearchEngine is a headless implementation of the A star algorithm over a
+ * GridMap. All of the search data lives in flat arrays indexed by cell
+ * (G values, parents and the closed set, see SearchContext) instead of on
+ * scene-graph nodes, so the engine runs on any thread and its memory grows
+ * with a handful of bytes per cell. An engine can be reused for any number
+ * of searches over the same map, starting a search does not depend on the
+ * size of the map and allocates nothing but the path, but it is not thread
+ * safe. Subclasses change the way successors are generated (see
+ * JumpPointSearch). The heuristic is pluggable (octile distance by default)
+ * and can be weighted: with a weight w > 1 cells are ordered by G + w * H,
+ * which expands far fewer cells and returns paths at most w times longer
+ * than the shortest ones (weighted A star). With an admissible heuristic
+ * that is not consistent (see LandmarkHeuristic) closed cells are reopened
+ * when their path improves, so the paths stay shortest.
+ */
+
+class SearchEngine implements PathSearch
+{
+    static final float SQRT2 = (float) Math.sqrt(2);
+
+    final GridMap map;
+    final SearchContext context;
+    final OpenSet open;
+    SearchListener listener;
+    int goal;
+    int xTarget;
+    int yTarget;
+    final SearchCounters counters = new SearchCounters();
+    final Heuristic heuristic;
+    final float weight;
+    // closed cells may be expanded again
+    final boolean reopen;
+
+    /**
+     * A star with the octile distance heuristic.
+     * @param map : the map to search, walls may change between searches
+     */
+    SearchEngine(GridMap map)
+    {
+        this(map, Heuristics.OCTILE, 1);
+    }
+
+    /**
+     * @param map : the map to search, walls may change between searches
+     * @param heuristic : estimate of the distance to the goal
+     * @param weight : factor applied to the heuristic, 1 for plain A star
+     */
+    SearchEngine(GridMap map, Heuristic heuristic, float weight)
+    {
+        if (!(weight >= 1))
+        {
+            throw new IllegalArgumentException("Invalid heuristic weight " + weight);
+        }
+        this.map = map;
+        this.heuristic = heuristic;
+        this.weight = weight;
+        reopen = weight == 1 && heuristic.isAdmissible() && !heuristic.isConsistent();
+        context = new SearchContext(map.size());
+        open = new BinaryHeapOpenSet(map.size());
+    }
+
+    @Override
+    public void setListener(SearchListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Finds the shortest path between two cells, moving in 8 directions with
+     * a cost of 1 for straight moves and sqrt(2) for diagonal moves (a
+     * bounded suboptimal one when the heuristic is weighted or not
+     * admissible).
+     * @param start : index of the starting cell
+     * @param goal : index of the target cell
+     * @return the cells of the path from start to goal (both included), or
+     *         null if the goal cannot be reached
+     */
+    @Override
+    public int[] findPath(int start, int goal)
+    {
+        long begin = System.nanoTime();
+        reset();
+        if (map.isWall(start) || map.isWall(goal))
+        {
+            return null;
+        }
+        this.goal = goal;
+        xTarget = map.x(goal);
+        yTarget = map.y(goal);
+        context.setG(start, 0);
+        context.setParent(start, start);
+        float h = heuristic(start, map.x(start), map.y(start));
+        open.push(start, weight * h, h);
+        counters.generated = 1;
+        counters.peakOpen = 1;
+        long searching = System.nanoTime();
+        counters.setupNanos = searching - begin;
+
+        while (!open.isEmpty())
+        {
+            int current = open.pop();
+            if (current == goal)
+            {
+                long found = System.nanoTime();
+                counters.searchNanos = found - searching;
+                int[] path = buildPath(start, goal);
+                counters.pathNanos = System.nanoTime() - found;
+                return path;
+            }
+            context.close(current);
+            counters.expanded++;
+            SearchScheduler.checkpoint(counters.expanded);
+            if (listener != null)
+            {
+                listener.cellClosed(current);
+            }
+            expand(current);
+        }
+        counters.searchNanos = System.nanoTime() - searching;
+        return null;
+    }
+
+    /**
+     * Relaxes every neighbour of an expanded cell, updating the G value,
+     * parent and open set entry of each neighbour whose path improves.
+     * @param current : index of the cell being expanded
+     */
+    void expand(int current)
+    {
+        int x = map.x(current);
+        int y = map.y(current);
+        for (int[] s : GridMap.SUCC)
+        {
+            int nx = x + s[0];
+            int ny = y + s[1];
+            if (!map.isValid(nx, ny))
+            {
+                continue;
+            }
+            int next = map.index(nx, ny);
+            if ((!reopen && context.isClosed(next)) || map.isWall(next))
+            {
+                continue;
+            }
+            if (relax(current, next, nx, ny, context.g(current) + ((s[0] == 0 || s[1] == 0) ? 1 : SQRT2)))
+            {
+                if (listener != null)
+                {
+                    listener.cellOpened(next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records current as the parent of next and queues next if gnext improves
+     * on the best known G value of next.
+     * @param x : the x value of next
+     * @param y : the y value of next
+     * @return true if next was queued
+     */
+    boolean relax(int current, int next, int x, int y, float gnext)
+    {
+        float gold = context.g(next);
+        if (gnext >= gold)
+        {
+            return false;
+        }
+        if (gold == Float.POSITIVE_INFINITY)
+        {
+            counters.generated++;
+        }
+        else if (context.isClosed(next))
+        {
+            counters.reopened++;
+        }
+        float hnext = heuristic(next, x, y);
+        context.setG(next, gnext);
+        context.setParent(next, current);
+        open.push(next, gnext + weight * hnext, hnext);
+        counters.open(open.size());
+        return true;
+    }
+
+    /**
+     * Heuristic estimate of the distance from a given cell to the target.
+     */
+    float heuristic(int cell, int x, int y)
+    {
+        counters.heuristicEvaluations++;
+        return heuristic.estimate(cell, goal, Math.abs(x - xTarget), Math.abs(y - yTarget));
+    }
+
+    /**
+     * Traces back the parents from the goal until the start is reached.
+     */
+    int[] buildPath(int start, int goal)
+    {
+        int length = 1;
+        for (int c = goal; c != start; c = context.parent(c))
+        {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int c = goal, i = length - 1; i >= 0; c = context.parent(c), i--)
+        {
+            path[i] = c;
+        }
+        return path;
+    }
+
+    private void reset()
+    {
+        context.next();
+        open.clear();
+        counters.reset();
+    }
+
+    /**
+     * Returns the G value recorded for a cell by the last search, infinity if
+     * the cell was never reached.
+     */
+    float g(int cell)
+    {
+        return context.g(cell);
+    }
+
+    @Override
+    public boolean isReached(int cell)
+    {
+        return context.isReached(cell);
+    }
+
+    @Override
+    public boolean isClosed(int cell)
+    {
+        return context.isClosed(cell);
+    }
+
+    @Override
+    public SearchCounters counters()
+    {
+        return counters;
+    }
+}
@@ -0,0 +1,108 @@
+package project_package;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * SearchEvent is the Java Flight Recorder event of a path query, recorded
+ * with the metrics of the query (see SearchMetrics). When no recording is
+ * running, or the event is disabled in it, the event object is all that a
+ * query costs: the fields are only filled in and the path cost computed when
+ * the event will be committed. Record with e.g.
+ * -XX:StartFlightRecording=filename=search.jfr and read the events with
+ * jfr print --events pathfinder.Search search.jfr.
+ */
+
+@Name("pathfinder.Search")
+@Label("Path Search")
+@Category("PathFinder")
+@Description("A path query and the work it took")
+class SearchEvent extends Event
+{
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("Start")
+    int start;
+
+    @Label("Goal")
+    int goal;
+
+    @Label("Found")
+    boolean found;
+
+    @Label("Expanded")
+    int expanded;
+
+    @Label("Generated")
+    int generated;
+
+    @Label("Reopened")
+    int reopened;
+
+    @Label("Peak Open Set Size")
+    int peakOpen;
+
+    @Label("Heuristic Evaluations")
+    int heuristicEvaluations;
+
+    @Label("Path Length")
+    @Description("Cells of the path, start and goal included")
+    int pathLength;
+
+    @Label("Path Cost")
+    double pathCost;
+
+    @Label("Setup Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long setupNanos;
+
+    @Label("Search Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long searchNanos;
+
+    @Label("Path Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long pathNanos;
+
+    /**
+     * Runs a query and records it if the event is enabled.
+     * @param search : the search that runs the query
+     * @param algorithm : name of the algorithm, as recorded
+     * @param map : the map the search runs on
+     * @param start : index of the starting cell
+     * @param goal : index of the target cell
+     * @return the path found, see PathSearch.findPath
+     */
+    static int[] search(PathSearch search, String algorithm, GridMap map, int start, int goal)
+    {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        int[] path = search.findPath(start, goal);
+        event.end();
+        if (event.shouldCommit())
+        {
+            SearchMetrics metrics = SearchMetrics.of(algorithm, search, map, path);
+            event.algorithm = algorithm;
+            event.start = start;
+            event.goal = goal;
+            event.found = metrics.found;
+            event.expanded = metrics.expanded;
+            event.generated = metrics.generated;
+            event.reopened = metrics.reopened;
+            event.peakOpen = metrics.peakOpen;
+            event.heuristicEvaluations = metrics.heuristicEvaluations;
+            event.pathLength = metrics.pathLength;
+            event.pathCost = metrics.pathCost;
+            event.setupNanos = metrics.setupNanos;
+            event.searchNanos = metrics.searchNanos;
+            event.pathNanos = metrics.pathNanos;
+            event.commit();
+        }
+        return path;
+    }
+}
@@ -0,0 +1,31 @@
+package project_package;
+
+/**
+ * Receives the progress of a search as it happens. The UI uses it to paint
+ * the explored cells, headless callers simply do not attach one. Callbacks
+ * are made on the thread running the search.
+ */
+
+interface SearchListener
+{
+    /**
+     * Called when a cell is added to the open set or its F value improves.
+     * @param cell : index of the cell in the grid
+     */
+    void cellOpened(int cell);
+
+    /**
+     * Called when a cell is removed from the open set and expanded.
+     * @param cell : index of the cell in the grid
+     */
+    void cellClosed(int cell);
+
+    /**
+     * Called when Jump Point Search queues a jump point, instead of
+     * cellOpened.
+     * @param cell : index of the cell in the grid
+     */
+    default void jumpPoint(int cell)
+    {
+    }
+}
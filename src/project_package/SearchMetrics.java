@@ -0,0 +1,119 @@
+package project_package;
+
+import java.util.Locale;
+
+/**
+ * SearchMetrics is an immutable snapshot of the work done by one query: the
+ * counters of the search (see SearchCounters), the length and cost of the
+ * path it returned and the time spent in every phase. Snapshots are what the
+ * stats overlay displays and what a SearchEvent records.
+ */
+
+final class SearchMetrics
+{
+    private static final double SQRT2 = Math.sqrt(2);
+
+    final String algorithm;
+    // false while the search is still running
+    final boolean finished;
+    final boolean found;
+    final int expanded;
+    final int generated;
+    final int reopened;
+    final int peakOpen;
+    final int heuristicEvaluations;
+    // number of cells of the path, start and goal included, 0 without a path
+    final int pathLength;
+    final double pathCost;
+    final long setupNanos;
+    final long searchNanos;
+    final long pathNanos;
+
+    private SearchMetrics(String algorithm, boolean finished, int[] path, double pathCost, SearchCounters counters)
+    {
+        this.algorithm = algorithm;
+        this.finished = finished;
+        found = path != null;
+        expanded = counters.expanded;
+        generated = counters.generated;
+        reopened = counters.reopened;
+        peakOpen = counters.peakOpen;
+        heuristicEvaluations = counters.heuristicEvaluations;
+        pathLength = (path == null) ? 0 : path.length;
+        this.pathCost = pathCost;
+        setupNanos = counters.setupNanos;
+        searchNanos = counters.searchNanos;
+        pathNanos = counters.pathNanos;
+    }
+
+    /**
+     * Takes the snapshot of a finished query.
+     * @param algorithm : name of the algorithm that ran the query
+     * @param search : the search that ran it
+     * @param map : the map it ran on
+     * @param path : the path it returned, null if there is none
+     */
+    static SearchMetrics of(String algorithm, PathSearch search, GridMap map, int[] path)
+    {
+        return new SearchMetrics(algorithm, true, path, cost(map, path), search.counters());
+    }
+
+    /**
+     * Takes a snapshot of a query that is still running, its counters are
+     * read while the search thread updates them, so they are approximate.
+     */
+    static SearchMetrics live(String algorithm, PathSearch search)
+    {
+        return new SearchMetrics(algorithm, false, null, Double.POSITIVE_INFINITY, search.counters());
+    }
+
+    /**
+     * Returns the cost of a path with the move costs of SearchEngine, 0 for
+     * a single cell and infinity for no path.
+     */
+    static double cost(GridMap map, int[] path)
+    {
+        if (path == null)
+        {
+            return Double.POSITIVE_INFINITY;
+        }
+        double cost = 0;
+        for (int i = 1; i < path.length; i++)
+        {
+            boolean diagonal = map.x(path[i]) != map.x(path[i - 1]) && map.y(path[i]) != map.y(path[i - 1]);
+            cost += diagonal ? SQRT2 : 1;
+        }
+        return cost;
+    }
+
+    long totalNanos()
+    {
+        return setupNanos + searchNanos + pathNanos;
+    }
+
+    /**
+     * One line summary, e.g. for the stats overlay.
+     */
+    @Override
+    public String toString()
+    {
+        String outcome;
+        if (!finished)
+        {
+            outcome = "searching";
+        }
+        else if (found)
+        {
+            outcome = String.format(Locale.ROOT, "path %d cells, cost %.2f", pathLength, pathCost);
+        }
+        else
+        {
+            outcome = "no path";
+        }
+        return String.format(Locale.ROOT,
+                "%s: %s | expanded %,d  generated %,d  reopened %,d  peak open %,d  h evals %,d"
+                        + " | setup %.2f ms  search %.2f ms  path %.2f ms",
+                algorithm, outcome, expanded, generated, reopened, peakOpen, heuristicEvaluations,
+                setupNanos / 1e6, searchNanos / 1e6, pathNanos / 1e6);
+    }
+}
@@ -0,0 +1,131 @@
+package project_package;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * SearchPlayback replays the events published in an EventRing on the grid
+ * canvas. It runs on the FX thread and paints a configurable number of
+ * events per frame, so the speed of the animation no longer depends on the
+ * speed of the search. Once the DONE event is drained the finished callback
+ * is run.
+ * Every search starts a new epoch (see begin) and the events of older
+ * epochs, left in the ring by a search that was cancelled, are dropped
+ * without being painted.
+ */
+
+class SearchPlayback extends AnimationTimer
+{
+    private final EventRing ring;
+    private final GridCanvas canvas;
+    private volatile int eventsPerFrame;
+    private long[] batch;
+    private Runnable onFinished;
+    // epoch of the search being played back, guarded by this
+    private int epoch;
+    // true until the DONE event of the current epoch is played back
+    private boolean pending;
+
+    /**
+     * @param ring : the ring the search publishes its events into
+     * @param canvas : the canvas the events are painted on
+     * @param eventsPerFrame : number of events painted on every frame
+     */
+    SearchPlayback(EventRing ring, GridCanvas canvas, int eventsPerFrame)
+    {
+        this.ring = ring;
+        this.canvas = canvas;
+        setEventsPerFrame(eventsPerFrame);
+    }
+
+    void setEventsPerFrame(int eventsPerFrame)
+    {
+        this.eventsPerFrame = Math.max(1, eventsPerFrame);
+    }
+
+    void setOnFinished(Runnable onFinished)
+    {
+        this.onFinished = onFinished;
+    }
+
+    /**
+     * Starts the playback of a new search: the events published before are
+     * dropped and erase runs while no event is painted, so that it can clear
+     * the grid of the previous search. Called by the search thread before it
+     * publishes anything.
+     * @param erase : clears the grid, may be null
+     * @return the epoch the new search publishes its events with
+     */
+    synchronized int begin(Runnable erase)
+    {
+        epoch = (epoch + 1) & EventRing.EPOCH_MASK;
+        pending = true;
+        if (erase != null)
+        {
+            erase.run();
+        }
+        return epoch;
+    }
+
+    /**
+     * Drops the events of the current search, which was cancelled.
+     */
+    synchronized void abandon()
+    {
+        epoch = (epoch + 1) & EventRing.EPOCH_MASK;
+        pending = false;
+    }
+
+    /**
+     * Returns true while the events of the current search are being played
+     * back.
+     */
+    synchronized boolean isPending()
+    {
+        return pending;
+    }
+
+    @Override
+    public synchronized void handle(long now)
+    {
+        int max = eventsPerFrame;
+        if (batch == null || batch.length < max)
+        {
+            batch = new long[max];
+        }
+        // stale events do not count against the events of the frame
+        int n = ring.drain(batch, max, epoch);
+        for (int i = 0; i < n; i++)
+        {
+            play(batch[i]);
+        }
+    }
+
+    private void play(long event)
+    {
+        int cell = EventRing.cell(event);
+        switch (EventRing.type(event))
+        {
+            case EventRing.OPEN:
+                canvas.paint(cell, GridCanvas.OPEN);
+                break;
+            case EventRing.CLOSE:
+                canvas.paint(cell, GridCanvas.CLOSED);
+                break;
+            case EventRing.JUMP:
+                canvas.paint(cell, GridCanvas.JUMP);
+                break;
+            case EventRing.PATH:
+                canvas.paint(cell, GridCanvas.PATH);
+                break;
+            case EventRing.DONE:
+                pending = false;
+                if (onFinished != null)
+                {
+                    onFinished.run();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+}
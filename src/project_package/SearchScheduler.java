@@ -0,0 +1,316 @@
+package project_package;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SearchScheduler runs searches on a fixed pool of daemon threads, so the
+ * number of searches running at the same time never exceeds the size of the
+ * pool. Searches are submitted to lanes: a lane runs one search at a time
+ * and submitting to it cancels the search it is running, the new search
+ * starts as soon as the old one has stopped (two searches of a lane can thus
+ * share the same PathSearch objects). Independent lanes run side by side,
+ * e.g. one per algorithm being compared.
+ * Cancellation is cooperative: cancelling a search interrupts its thread
+ * and the searches check the interrupt flag every BATCH expansions (see
+ * checkpoint), throwing a CancellationException that ends the job. A
+ * cancelled search is therefore stopped within one batch of expansions and
+ * its partial result is never mistaken for "no path". Nothing has to wait
+ * for it to stop: what must not run alongside it (the next search, an edit
+ * of the map it reads) is chained on the future of its job instead, see
+ * Lane.submit and Lane.cancel. A job that fails completes that future
+ * exceptionally.
+ */
+
+class SearchScheduler implements AutoCloseable
+{
+    // expansions between two checks of the interrupt flag, a power of two
+    static final int BATCH = 256;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param threads : maximum number of searches running at the same time
+     */
+    SearchScheduler(int threads)
+    {
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r ->
+        {
+            Thread thread = new Thread(r, "search-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // idle threads are released, the scheduler costs nothing when unused
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Creates a new lane of searches.
+     */
+    Lane lane()
+    {
+        return new Lane();
+    }
+
+    /**
+     * Cancels every running search and releases the threads.
+     */
+    @Override
+    public void close()
+    {
+        executor.shutdownNow();
+    }
+
+    private void execute(Job job)
+    {
+        try
+        {
+            executor.execute(job);
+        }
+        catch (RejectedExecutionException e)
+        {
+            // the scheduler was closed, the job will never run
+            job.cancel();
+            job.finished.complete(null);
+        }
+    }
+
+    /**
+     * Called by the searches after every expansion, throws when the thread
+     * was asked to stop. Only one call in BATCH reads the interrupt flag.
+     * @param expansions : number of expansions of the search so far
+     * @throws CancellationException if the search was cancelled
+     */
+    static void checkpoint(int expansions)
+    {
+        if ((expansions & (BATCH - 1)) == 0)
+        {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Throws straight away when the thread was asked to stop, called between
+     * the phases of a search rather than after every expansion.
+     * @throws CancellationException if the search was cancelled
+     */
+    static void checkpoint()
+    {
+        if (Thread.currentThread().isInterrupted())
+        {
+            throw new CancellationException("Search cancelled");
+        }
+    }
+
+    /**
+     * The body of a search job, run on a thread of the scheduler.
+     */
+    interface SearchTask
+    {
+        void run(Job job);
+    }
+
+    /**
+     * A sequence of searches of which at most one runs at a time.
+     */
+    class Lane
+    {
+        private Job current;
+
+        /**
+         * Cancels the search running in the lane (if any) and schedules a
+         * new one to start once it has stopped.
+         * @param task : the search to run
+         * @return the job running the search
+         */
+        Job submit(SearchTask task)
+        {
+            return submit(task, null);
+        }
+
+        /**
+         * Cancels the search running in the lane (if any) and schedules a
+         * new one to start once it has stopped and after has completed,
+         * normally or not, e.g. once the edits of the map made meanwhile are
+         * applied.
+         * @param task : the search to run
+         * @param after : what the search waits for as well, may be null
+         * @return the job running the search
+         */
+        synchronized Job submit(SearchTask task, CompletableFuture<?> after)
+        {
+            Job previous = current;
+            Job job = new Job(task);
+            current = job;
+            if (previous != null)
+            {
+                previous.cancel();
+            }
+            CompletableFuture<?> ready = (previous == null) ? after : previous.finished;
+            if (previous != null && after != null)
+            {
+                ready = CompletableFuture.allOf(previous.finished, after);
+            }
+            if (ready == null)
+            {
+                execute(job);
+            }
+            else
+            {
+                ready.whenComplete((v, e) -> execute(job));
+            }
+            return job;
+        }
+
+        /**
+         * Cancels the search running in the lane, if any, without waiting
+         * for it.
+         * @return a future completed once the search has stopped, however
+         *         it ended
+         */
+        synchronized CompletableFuture<Void> cancel()
+        {
+            if (current == null)
+            {
+                return CompletableFuture.completedFuture(null);
+            }
+            current.cancel();
+            return current.finished.exceptionally(e -> null);
+        }
+
+        /**
+         * Cancels the search running in the lane (if any) and waits for it
+         * to stop. That takes one batch of expansions once it searches, but
+         * longer in a phase without checkpoints (building the tables of a
+         * heuristic, say), so the FX thread chains on cancel instead.
+         */
+        synchronized void stop()
+        {
+            if (current != null)
+            {
+                current.cancel();
+                current.finished.join();
+            }
+        }
+
+        /**
+         * Returns true while the last search submitted has not finished.
+         */
+        synchronized boolean isRunning()
+        {
+            return current != null && !current.isDone();
+        }
+    }
+
+    /**
+     * A search submitted to a lane.
+     */
+    static final class Job implements Runnable
+    {
+        private final SearchTask task;
+        private final CompletableFuture<Void> finished = new CompletableFuture<>();
+        private volatile boolean cancelled;
+        // thread running the job, guarded by this
+        private Thread runner;
+
+        private Job(SearchTask task)
+        {
+            this.task = task;
+        }
+
+        @Override
+        public void run()
+        {
+            Throwable failure = null;
+            try
+            {
+                if (!start())
+                {
+                    return;
+                }
+                task.run(this);
+            }
+            catch (CancellationException e)
+            {
+                // the search noticed it was cancelled
+            }
+            catch (Throwable e)
+            {
+                // reported through finished, the pool thread carries on; a
+                // cancelled search may also fail on the interrupt itself
+                // (a file channel closed by it, say), which is no failure
+                if (!cancelled)
+                {
+                    failure = e;
+                }
+            }
+            finally
+            {
+                stop();
+                if (failure == null)
+                {
+                    finished.complete(null);
+                }
+                else
+                {
+                    finished.completeExceptionally(failure);
+                }
+            }
+        }
+
+        private synchronized boolean start()
+        {
+            if (cancelled)
+            {
+                return false;
+            }
+            runner = Thread.currentThread();
+            return true;
+        }
+
+        private synchronized void stop()
+        {
+            runner = null;
+            // an interrupt must not leak into the next job of the thread
+            Thread.interrupted();
+        }
+
+        /**
+         * Asks the search to stop, it does so at its next checkpoint.
+         */
+        synchronized void cancel()
+        {
+            cancelled = true;
+            if (runner != null)
+            {
+                runner.interrupt();
+            }
+        }
+
+        boolean isCancelled()
+        {
+            return cancelled;
+        }
+
+        boolean isDone()
+        {
+            return finished.isDone();
+        }
+
+        /**
+         * Returns a future completed once the job has stopped, whether it
+         * ran to the end or was cancelled, and completed exceptionally with
+         * the failure of a search that threw anything else.
+         */
+        CompletableFuture<Void> finished()
+        {
+            return finished;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package project_package;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * SearchTrace is a search recorded by a TraceRecorder, read back from its
+ * file. The file is mapped and its events decoded once into two arrays (the
+ * cells and their EventRing types), so the trace can be played from any
+ * event, forward or backward, without running the search again. A trace
+ * whose recording was interrupted is read up to its last complete event.
+ */
+
+class SearchTrace
+{
+    // EventRing type of every type of the file
+    private static final int[] TYPES = {EventRing.OPEN, EventRing.CLOSE, EventRing.JUMP, EventRing.PATH};
+
+    private final int width;
+    private final int height;
+    private final int start;
+    private final int goal;
+    private final long checksum;
+    private final int[] cells;
+    private final byte[] types;
+
+    private SearchTrace(int width, int height, int start, int goal, long checksum, int[] cells, byte[] types)
+    {
+        this.width = width;
+        this.height = height;
+        this.start = start;
+        this.goal = goal;
+        this.checksum = checksum;
+        this.cells = cells;
+        this.types = types;
+    }
+
+    /**
+     * Reads a trace file.
+     * @param file : the file to read
+     * @throws IOException if the file cannot be read or is not a valid trace
+     */
+    static SearchTrace read(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long length = channel.size();
+            if (length < TraceRecorder.HEADER_SIZE)
+            {
+                throw new IOException(file + " is not a search trace");
+            }
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, length)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (bytes.getInt(0) != TraceRecorder.MAGIC)
+            {
+                throw new IOException(file + " is not a search trace");
+            }
+            int version = bytes.getShort(4);
+            if (version != TraceRecorder.VERSION)
+            {
+                throw new IOException(file + " has the unsupported format version " + version);
+            }
+            int width = bytes.getInt(8);
+            int height = bytes.getInt(12);
+            int start = bytes.getInt(16);
+            int goal = bytes.getInt(20);
+            long checksum = bytes.getLong(24);
+            long count = bytes.getLong(32);
+            if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE
+                    || count < 0 || count > Integer.MAX_VALUE)
+            {
+                throw new IOException(file + " has an invalid header");
+            }
+            int size = width * height;
+            if (start < 0 || start >= size || goal < 0 || goal >= size)
+            {
+                throw new IOException(file + " has an invalid header");
+            }
+            bytes.position(TraceRecorder.HEADER_SIZE);
+            // the count is 0 when the recording was interrupted
+            int[] cells = new int[(int) Math.max(1024, count)];
+            byte[] types = new byte[cells.length];
+            int[] moves = TraceRecorder.moves(height);
+            int lastClosed = start;
+            int previous = start;
+            int n = 0;
+            while (bytes.hasRemaining() && (count == 0 || n < count))
+            {
+                long value = 0;
+                int shift = 0;
+                byte b;
+                do
+                {
+                    if (!bytes.hasRemaining())
+                    {
+                        // the last event was cut short
+                        return trace(width, height, start, goal, checksum, cells, types, n);
+                    }
+                    b = bytes.get();
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                }
+                while (b < 0 && shift < 35);
+                int type = (int) value & 3;
+                int anchor = (type == TraceRecorder.OPEN || type == TraceRecorder.JUMP) ? lastClosed : previous;
+                int delta;
+                if ((value & TraceRecorder.NEIGHBOUR) != 0)
+                {
+                    delta = moves[(int) (value >>> 3) & 7];
+                }
+                else
+                {
+                    int zigzag = (int) (value >>> 3);
+                    delta = (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+                int cell = anchor + delta;
+                if (b < 0 || cell < 0 || cell >= size)
+                {
+                    throw new IOException(file + " is corrupt at event " + n);
+                }
+                if (n == cells.length)
+                {
+                    cells = Arrays.copyOf(cells, n * 2);
+                    types = Arrays.copyOf(types, n * 2);
+                }
+                cells[n] = cell;
+                types[n++] = (byte) TYPES[type];
+                previous = cell;
+                if (type == TraceRecorder.CLOSE)
+                {
+                    lastClosed = cell;
+                }
+            }
+            return trace(width, height, start, goal, checksum, cells, types, n);
+        }
+    }
+
+    private static SearchTrace trace(int width, int height, int start, int goal, long checksum,
+            int[] cells, byte[] types, int n)
+    {
+        return new SearchTrace(width, height, start, goal, checksum,
+                (n == cells.length) ? cells : Arrays.copyOf(cells, n),
+                (n == types.length) ? types : Arrays.copyOf(types, n));
+    }
+
+    int width()
+    {
+        return width;
+    }
+
+    int height()
+    {
+        return height;
+    }
+
+    /**
+     * Returns the starting cell of the query recorded.
+     */
+    int start()
+    {
+        return start;
+    }
+
+    /**
+     * Returns the target cell of the query recorded.
+     */
+    int goal()
+    {
+        return goal;
+    }
+
+    /**
+     * Returns the number of events in the trace.
+     */
+    int size()
+    {
+        return cells.length;
+    }
+
+    /**
+     * Returns the cell of an event.
+     * @param event : index of the event, from 0 to size() - 1
+     */
+    int cell(int event)
+    {
+        return cells[event];
+    }
+
+    /**
+     * Returns the type of an event, one of the event types of EventRing.
+     * @param event : index of the event, from 0 to size() - 1
+     */
+    int type(int event)
+    {
+        return types[event];
+    }
+
+    /**
+     * Returns true if the trace was recorded on a map with the same size
+     * and walls as the given one.
+     */
+    boolean matches(GridMap map)
+    {
+        return map.width() == width && map.height() == height && map.checksum() == checksum;
+    }
+}
@@ -1,9 +0,0 @@
-package project_package;
-
-class State {
-    boolean isRunning;
-    int foundDest;
-    State () {
-        isRunning = false;
-    }
-}
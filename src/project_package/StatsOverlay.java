@@ -0,0 +1,43 @@
+package project_package;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.control.Label;
+
+/**
+ * StatsOverlay shows the metrics of the running or last search (see
+ * A_Star.metrics) in a label. It runs on the FX thread and only refreshes
+ * the label a few times per second, a snapshot of the counters is all it
+ * takes from the search.
+ */
+
+class StatsOverlay extends AnimationTimer
+{
+    // time between two refreshes, 100 ms
+    private static final long PERIOD = 100_000_000L;
+
+    private final A_Star star;
+    private final Label label;
+    private long last;
+
+    /**
+     * @param star : the grid whose searches are displayed
+     * @param label : the label the metrics are written to
+     */
+    StatsOverlay(A_Star star, Label label)
+    {
+        this.star = star;
+        this.label = label;
+    }
+
+    @Override
+    public void handle(long now)
+    {
+        if (now - last < PERIOD)
+        {
+            return;
+        }
+        last = now;
+        SearchMetrics metrics = star.metrics();
+        label.setText((metrics == null) ? "No search yet" : metrics.toString());
+    }
+}
@@ -0,0 +1,211 @@
+package project_package;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * TracePlayback replays a recorded search (see SearchTrace) on the grid
+ * canvas, on the FX thread and without running the search. The trace can
+ * be played at any speed, from one event per second to millions, paused,
+ * and moved to any event: forward the events are painted, backward every
+ * event is undone by painting back the colour its cell had before it,
+ * computed once for the whole trace, so a seek costs the events between
+ * the two positions and never a replay from the start.
+ */
+
+class TracePlayback extends AnimationTimer
+{
+    private final SearchTrace trace;
+    private final GridCanvas canvas;
+    // colour code of the cell of every event before the event
+    private final byte[] before;
+    // number of events painted
+    private int position;
+    private boolean playing;
+    private double eventsPerSecond;
+    // events due but not painted yet, below one
+    private double budget;
+    private long last;
+    private Runnable onProgress;
+    private Runnable onClosed;
+
+    /**
+     * @param trace : the search to replay, on a map of the size of the grid
+     * @param canvas : the canvas the events are painted on, its cells
+     *                 painted by searches are expected to be erased
+     * @param eventsPerSecond : initial speed of the playback
+     */
+    TracePlayback(SearchTrace trace, GridCanvas canvas, double eventsPerSecond)
+    {
+        this.trace = trace;
+        this.canvas = canvas;
+        setEventsPerSecond(eventsPerSecond);
+        before = new byte[trace.size()];
+        byte[] codes = new byte[trace.width() * trace.height()];
+        for (int i = 0; i < before.length; i++)
+        {
+            int cell = trace.cell(i);
+            // the first event of a cell finds it as the canvas shows it, a
+            // wall if the walls changed since the recording
+            before[i] = (codes[cell] == GridCanvas.EMPTY) ? canvas.codeOf(cell) : codes[cell];
+            codes[cell] = code(trace.type(i));
+        }
+    }
+
+    /**
+     * Returns the colour code painted for an event type of EventRing.
+     */
+    private static byte code(int type)
+    {
+        switch (type)
+        {
+            case EventRing.OPEN:
+                return GridCanvas.OPEN;
+            case EventRing.CLOSE:
+                return GridCanvas.CLOSED;
+            case EventRing.JUMP:
+                return GridCanvas.JUMP;
+            default:
+                return GridCanvas.PATH;
+        }
+    }
+
+    void setEventsPerSecond(double eventsPerSecond)
+    {
+        this.eventsPerSecond = Math.max(1, eventsPerSecond);
+    }
+
+    /**
+     * Sets the callback run after every frame that moved the playback and
+     * after every seek, e.g. to move a slider.
+     */
+    void setOnProgress(Runnable onProgress)
+    {
+        this.onProgress = onProgress;
+    }
+
+    /**
+     * Sets the callback run once the playback is closed.
+     */
+    void setOnClosed(Runnable onClosed)
+    {
+        this.onClosed = onClosed;
+    }
+
+    /**
+     * Returns the number of events in the trace.
+     */
+    int size()
+    {
+        return trace.size();
+    }
+
+    /**
+     * Returns the number of events painted.
+     */
+    int position()
+    {
+        return position;
+    }
+
+    boolean isPlaying()
+    {
+        return playing;
+    }
+
+    /**
+     * Plays the trace from the current event, from the start if the end was
+     * reached.
+     */
+    void play()
+    {
+        if (position == trace.size())
+        {
+            seek(0);
+        }
+        playing = true;
+        last = 0;
+        budget = 0;
+    }
+
+    void pause()
+    {
+        playing = false;
+    }
+
+    /**
+     * Moves the playback to an event, the grid then shows the search as it
+     * was after the event before it.
+     * @param event : number of events to show, clamped to the trace
+     */
+    void seek(int event)
+    {
+        int target = Math.max(0, Math.min(trace.size(), event));
+        while (position < target)
+        {
+            paint(position, code(trace.type(position)));
+            position++;
+        }
+        while (position > target)
+        {
+            position--;
+            paint(position, before[position]);
+        }
+        if (onProgress != null)
+        {
+            onProgress.run();
+        }
+    }
+
+    private void paint(int event, byte code)
+    {
+        int cell = trace.cell(event);
+        // the start and target keep their colours
+        if (cell != trace.start() && cell != trace.goal())
+        {
+            canvas.paint(cell, code);
+        }
+    }
+
+    @Override
+    public void handle(long now)
+    {
+        if (!playing)
+        {
+            return;
+        }
+        if (last != 0)
+        {
+            budget += eventsPerSecond * (now - last) / 1e9;
+        }
+        last = now;
+        int n = (int) Math.min(budget, trace.size() - position);
+        budget -= n;
+        if (n > 0)
+        {
+            seek(position + n);
+        }
+        if (position == trace.size())
+        {
+            playing = false;
+            if (onProgress != null)
+            {
+                onProgress.run();
+            }
+        }
+    }
+
+    /**
+     * Stops the playback for good, the grid keeps the events painted.
+     */
+    void close()
+    {
+        playing = false;
+        stop();
+        if (onClosed != null)
+        {
+            Runnable closed = onClosed;
+            onClosed = null;
+            closed.run();
+        }
+    }
+}
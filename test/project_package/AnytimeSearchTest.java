@@ -0,0 +1,102 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the heuristics and the searches built on them: the admissible
+ * distances give shortest paths, weighted A star and the first ARA* path
+ * stay within their weight, ARA* given the time ends on a shortest path,
+ * and ARA* picked with the shortest path weight still starts above it.
+ */
+
+class AnytimeSearchTest
+{
+    @Test
+    void admissibleHeuristicsGiveShortestPaths()
+    {
+        GridMap map = MapGenerator.random(60, 40, 0.3, 1);
+        for (Heuristics heuristic : Heuristics.values())
+        {
+            if (heuristic.isAdmissible())
+            {
+                ReferencePaths.assertQueries(map, new SearchEngine(map, heuristic, 1), 25, 1, 1, heuristic.toString());
+            }
+        }
+        assertFalse(Heuristics.MANHATTAN.isAdmissible());
+        // every admissible estimate is at most the octile distance, the
+        // cost of the moves on an empty grid
+        for (int dx = 0; dx < 20; dx++)
+        {
+            for (int dy = 0; dy < 20; dy++)
+            {
+                for (Heuristics heuristic : Heuristics.values())
+                {
+                    if (heuristic.isAdmissible())
+                    {
+                        assertTrue(heuristic.estimate(dx, dy) <= Heuristics.OCTILE.estimate(dx, dy) + 1e-5f,
+                                heuristic + " " + dx + ", " + dy);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void weightedPathsStayWithinTheWeight()
+    {
+        for (long seed = 1; seed <= 3; seed++)
+        {
+            GridMap map = MapGenerator.random(60, 40, 0.3, seed);
+            for (float weight : new float[] {1.5f, 3})
+            {
+                ReferencePaths.assertQueries(map, new SearchEngine(map, Heuristics.OCTILE, weight), 25, seed, weight,
+                        "weighted A* " + weight + " seed " + seed);
+            }
+            // without time, only the first path of the largest weight
+            AnytimeSearch first = new AnytimeSearch(map, Heuristics.OCTILE, 3, 0.5f, 0);
+            ReferencePaths.assertQueries(map, first, 25, seed, 3, "first ARA* path seed " + seed);
+        }
+    }
+
+    @Test
+    void anytimePathsEndShortest()
+    {
+        for (long seed = 1; seed <= 3; seed++)
+        {
+            GridMap map = MapGenerator.random(60, 40, 0.3, seed);
+            AnytimeSearch search = new AnytimeSearch(map, Heuristics.OCTILE, 3, 0.5f, 60_000_000_000L);
+            ReferencePaths.assertQueries(map, search, 25, seed, 1, "ARA* seed " + seed);
+            GridMap maze = MapGenerator.maze(41, 31, seed);
+            AnytimeSearch mazeSearch = new AnytimeSearch(maze, Heuristics.OCTILE, 3, 0.5f, 60_000_000_000L);
+            for (int[] q : ReferencePaths.queries(maze, 10, seed))
+            {
+                double expected = ReferencePaths.distances(maze, q[0])[q[1]];
+                int[] path = mazeSearch.findPath(q[0], q[1]);
+                ReferencePaths.assertShortest(maze, q[0], q[1], path, expected, "ARA* maze seed " + seed);
+                assertEquals(1, mazeSearch.bound(), 0, "ARA* maze seed " + seed);
+                assertTrue(mazeSearch.iterations() >= 1);
+            }
+        }
+    }
+
+    @Test
+    void anytimeStartsAboveTheShortestPathWeight()
+    {
+        GridMap maze = MapGenerator.maze(41, 31, 1);
+        AnytimeSearch search = (AnytimeSearch) Algorithm.ANYTIME.create(maze, Heuristics.OCTILE, 1);
+        int[][] queries = ReferencePaths.queries(maze, 10, 1);
+        int iterations = 0;
+        for (int[] q : queries)
+        {
+            double expected = ReferencePaths.distances(maze, q[0])[q[1]];
+            ReferencePaths.assertShortest(maze, q[0], q[1], search.findPath(q[0], q[1]), expected, "ARA* maze");
+            iterations += search.iterations();
+        }
+        // started at 1 it would find a single path per query
+        assertTrue(iterations > queries.length, iterations + " paths for " + queries.length + " queries");
+    }
+}
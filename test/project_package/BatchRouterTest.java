@@ -0,0 +1,61 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a batch comes back in the order of its queries with shortest
+ * paths, and that the router keeps searching its snapshot when the map it
+ * was built from is edited.
+ */
+
+class BatchRouterTest
+{
+    @Test
+    void pathsComeBackInQueryOrder()
+    {
+        GridMap map = MapGenerator.random(60, 40, 0.3, 11);
+        List<BatchRouter.Query> queries = new ArrayList<>();
+        for (int[] q : ReferencePaths.queries(map, 300, 11))
+        {
+            queries.add(new BatchRouter.Query(q[0], q[1]));
+        }
+        try (BatchRouter router = new BatchRouter(map, Algorithm.A_STAR, 4))
+        {
+            int[][] paths = router.route(queries);
+            assertEquals(queries.size(), paths.length);
+            for (int i = 0; i < paths.length; i++)
+            {
+                BatchRouter.Query q = queries.get(i);
+                double expected = ReferencePaths.distances(map, q.start)[q.goal];
+                if (expected == Double.POSITIVE_INFINITY)
+                {
+                    assertNull(paths[i], "query " + i + " is unreachable");
+                }
+                else
+                {
+                    ReferencePaths.assertShortest(map, q.start, q.goal, paths[i], expected, "query " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void routesOnItsSnapshot()
+    {
+        GridMap map = MapGenerator.open(20, 20);
+        try (BatchRouter router = new BatchRouter(map, Algorithm.A_STAR, 2))
+        {
+            for (int y = 0; y < 20; y++)
+            {
+                map.setWall(map.index(10, y), true);
+            }
+            int[][] paths = router.route(List.of(new BatchRouter.Query(map.index(0, 0), map.index(19, 0))));
+            assertEquals(19, SearchMetrics.cost(router.map(), paths[0]), 1e-6);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the bidirectional search stops at a shortest path, with its
+ * two frontiers searched in turn or on two threads, and that it fails when
+ * the goal is walled off. Also checks that the parallel search runs its
+ * backward frontier on the same helper thread query after query, and that
+ * its counters add up both frontiers in an object of their own.
+ */
+
+class BidirectionalSearchTest
+{
+    @Test
+    void pathsAreShortest()
+    {
+        for (boolean parallel : new boolean[] {false, true})
+        {
+            for (long seed = 1; seed <= 4; seed++)
+            {
+                for (double density : new double[] {0.1, 0.3, 0.45})
+                {
+                    GridMap map = MapGenerator.random(60, 40, density, seed);
+                    ReferencePaths.assertQueries(map, new BidirectionalSearch(map, parallel), 25, seed, 1,
+                            "random " + density + " seed " + seed + " parallel " + parallel);
+                }
+                GridMap maze = MapGenerator.maze(41, 31, seed);
+                ReferencePaths.assertQueries(maze, new BidirectionalSearch(maze, parallel), 25, seed, 1,
+                        "maze seed " + seed + " parallel " + parallel);
+            }
+        }
+    }
+
+    @Test
+    void enclosedGoalIsUnreachable()
+    {
+        GridMap map = MapGenerator.open(30, 30);
+        for (int x = 10; x <= 14; x++)
+        {
+            for (int y = 10; y <= 14; y++)
+            {
+                map.setWall(map.index(x, y), x == 10 || x == 14 || y == 10 || y == 14);
+            }
+        }
+        for (boolean parallel : new boolean[] {false, true})
+        {
+            BidirectionalSearch search = new BidirectionalSearch(map, parallel);
+            ReferencePaths.assertQueries(map, search, 40, 5, 1, "enclosure parallel " + parallel);
+            assertNull(search.findPath(map.index(0, 0), map.index(12, 12)));
+            assertNull(search.findPath(map.index(12, 12), map.index(29, 29)));
+        }
+    }
+
+    @Test
+    void parallelQueriesShareOneHelper()
+    {
+        GridMap map = MapGenerator.random(60, 40, 0.25, 6);
+        BidirectionalSearch search = new BidirectionalSearch(map, true);
+        Thread caller = Thread.currentThread();
+        Set<Thread> helpers = ConcurrentHashMap.newKeySet();
+        AtomicInteger closed = new AtomicInteger();
+        search.setListener(new SearchListener()
+        {
+            @Override
+            public void cellOpened(int cell)
+            {
+            }
+
+            @Override
+            public void cellClosed(int cell)
+            {
+                closed.incrementAndGet();
+                if (Thread.currentThread() != caller)
+                {
+                    helpers.add(Thread.currentThread());
+                }
+            }
+        });
+        for (int[] q : ReferencePaths.queries(map, 30, 6))
+        {
+            closed.set(0);
+            search.findPath(q[0], q[1]);
+            SearchCounters counters = search.counters();
+            assertNotSame(counters, search.counters());
+            assertEquals(closed.get(), counters.expanded, "query " + q[0] + " -> " + q[1]);
+            assertEquals(counters.expanded, search.counters().expanded);
+        }
+        assertEquals(1, helpers.size(), helpers.toString());
+    }
+}
@@ -0,0 +1,114 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the word-at-a-time breadth first search against a plain one, cell
+ * by cell, on maps whose columns end anywhere in a word of the bitmap, and
+ * that a search keeps using the walls it was created with.
+ */
+
+class BitBfsTest
+{
+    // column heights around the word boundaries of the padded bitmap
+    private static final int[] HEIGHTS = {1, 2, 61, 62, 63, 64, 65, 126, 127, 130};
+
+    @Test
+    void distancesAreHopCounts()
+    {
+        for (int height : HEIGHTS)
+        {
+            for (double density : new double[] {0, 0.25, 0.45})
+            {
+                GridMap map = MapGenerator.random(23, height, density, height);
+                BitBfs bfs = new BitBfs(map);
+                int[] distance = new int[map.size()];
+                // one search reused for several sources
+                for (int[] q : ReferencePaths.queries(map, 3, height))
+                {
+                    int[] expected = hops(map, q[0]);
+                    int farthest = bfs.distances(q[0], distance);
+                    String name = "height " + height + " density " + density + " source " + q[0];
+                    assertArrayEquals(expected, distance, name);
+                    assertEquals(Arrays.stream(expected).max().getAsInt(), farthest, name);
+                }
+            }
+        }
+    }
+
+    @Test
+    void reachabilityMatchesTheDistances()
+    {
+        for (int height : HEIGHTS)
+        {
+            GridMap map = MapGenerator.random(31, height, 0.45, height + 1);
+            BitBfs bfs = new BitBfs(map);
+            Random rng = new Random(height);
+            for (int i = 0; i < 20; i++)
+            {
+                int start = rng.nextInt(map.size());
+                int goal = rng.nextInt(map.size());
+                boolean expected = !map.isWall(start) && hops(map, start)[goal] >= 0;
+                assertEquals(expected, bfs.isReachable(start, goal),
+                        "height " + height + " query " + start + " -> " + goal);
+            }
+        }
+    }
+
+    @Test
+    void wallsAreASnapshot()
+    {
+        GridMap map = MapGenerator.open(10, 70);
+        BitBfs bfs = new BitBfs(map);
+        for (int y = 0; y < 70; y++)
+        {
+            map.setWall(map.index(5, y), true);
+        }
+        assertTrue(bfs.isReachable(map.index(0, 0), map.index(9, 69)));
+        int[] distance = new int[map.size()];
+        // the new wall cell is still free for the search created before it
+        assertEquals(66, bfs.distances(map.index(5, 3), distance));
+        assertEquals(5, distance[map.index(0, 0)]);
+        assertFalse(new BitBfs(map).isReachable(map.index(0, 0), map.index(9, 69)));
+    }
+
+    /**
+     * Number of moves from the source to every cell, -1 for the cells that
+     * cannot be reached and walls.
+     */
+    private static int[] hops(GridMap map, int source)
+    {
+        int[] distance = new int[map.size()];
+        Arrays.fill(distance, -1);
+        if (map.isWall(source))
+        {
+            return distance;
+        }
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        distance[source] = 0;
+        queue.add(source);
+        while (!queue.isEmpty())
+        {
+            int cell = queue.poll();
+            for (int[] move : GridMap.SUCC)
+            {
+                int x = map.x(cell) + move[0];
+                int y = map.y(cell) + move[1];
+                if (map.isValid(x, y) && !map.isWall(x, y) && distance[map.index(x, y)] < 0)
+                {
+                    distance[map.index(x, y)] = distance[cell] + 1;
+                    queue.add(map.index(x, y));
+                }
+            }
+        }
+        return distance;
+    }
+}
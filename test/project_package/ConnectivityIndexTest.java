@@ -0,0 +1,145 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the components of the index are those a breadth first search
+ * finds, on a fresh map and while it follows wall edits that merge and split
+ * components, in small pieces or in pieces too large to split on the spot.
+ */
+
+class ConnectivityIndexTest
+{
+    @Test
+    void componentsMatchABreadthFirstSearch()
+    {
+        for (long seed = 1; seed <= 4; seed++)
+        {
+            for (double density : new double[] {0.2, 0.4, 0.6})
+            {
+                GridMap map = MapGenerator.random(50, 40, density, seed);
+                assertSameComponents(map, new ConnectivityIndex(map), "density " + density + " seed " + seed);
+            }
+        }
+    }
+
+    @Test
+    void componentsFollowWallEdits()
+    {
+        for (long seed = 1; seed <= 4; seed++)
+        {
+            // about the density where components keep merging and splitting
+            GridMap map = MapGenerator.random(40, 30, 0.4, seed);
+            ConnectivityIndex index = new ConnectivityIndex(map);
+            map.addListener(index);
+            Random rng = new Random(seed);
+            for (int edit = 0; edit < 400; edit++)
+            {
+                int cell = rng.nextInt(map.size());
+                map.setWall(cell, !map.isWall(cell));
+                if (edit % 10 == 0)
+                {
+                    assertSameComponents(map, index, "seed " + seed + " edit " + edit);
+                }
+            }
+            assertSameComponents(map, index, "seed " + seed + " last edit");
+        }
+    }
+
+    @Test
+    void largeSplitsAreRebuilt()
+    {
+        GridMap map = MapGenerator.open(200, 200);
+        ConnectivityIndex index = new ConnectivityIndex(map);
+        map.addListener(index);
+        int left = map.index(10, 100);
+        int right = map.index(190, 100);
+        // a wall across the grid, closed last: both halves are too large
+        // to be searched on the spot
+        for (int y = 0; y < 200; y++)
+        {
+            if (y != 100)
+            {
+                map.setWall(map.index(100, y), true);
+            }
+        }
+        assertTrue(index.isConnected(left, right));
+        map.setWall(map.index(100, 100), true);
+        assertFalse(index.isConnected(left, right));
+        assertSameComponents(map, index, "after the split");
+        map.setWall(map.index(100, 50), false);
+        assertTrue(index.isConnected(left, right));
+        assertFalse(index.isConnected(left, map.index(100, 100)));
+    }
+
+    /**
+     * Checks that two cells have the same id in the index if and only if a
+     * breadth first search links them, and that walls have none.
+     */
+    private static void assertSameComponents(GridMap map, ConnectivityIndex index, String name)
+    {
+        int[] reference = components(map);
+        Map<Integer, Integer> ids = new HashMap<>();
+        Map<Integer, Integer> references = new HashMap<>();
+        for (int cell = 0; cell < map.size(); cell++)
+        {
+            int id = index.component(cell);
+            int expected = reference[cell];
+            if (expected < 0)
+            {
+                assertEquals(ConnectivityIndex.NONE, id, name + ": wall " + cell + " has a component");
+                continue;
+            }
+            assertEquals(expected, (int) references.computeIfAbsent(id, k -> expected),
+                    name + ": cell " + cell + " joins another component");
+            assertEquals(id, (int) ids.computeIfAbsent(expected, k -> id),
+                    name + ": cell " + cell + " is split from its component");
+        }
+    }
+
+    /**
+     * Labels the components of the free cells with a breadth first search
+     * over the moves of GridMap.SUCC, -1 for walls.
+     */
+    private static int[] components(GridMap map)
+    {
+        int[] label = new int[map.size()];
+        Arrays.fill(label, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        int components = 0;
+        for (int seed = 0; seed < map.size(); seed++)
+        {
+            if (map.isWall(seed) || label[seed] >= 0)
+            {
+                continue;
+            }
+            label[seed] = components;
+            queue.add(seed);
+            while (!queue.isEmpty())
+            {
+                int cell = queue.poll();
+                for (int[] move : GridMap.SUCC)
+                {
+                    int x = map.x(cell) + move[0];
+                    int y = map.y(cell) + move[1];
+                    if (map.isValid(x, y) && !map.isWall(x, y) && label[map.index(x, y)] < 0)
+                    {
+                        label[map.index(x, y)] = components;
+                        queue.add(map.index(x, y));
+                    }
+                }
+            }
+            components++;
+        }
+        return label;
+    }
+}
@@ -0,0 +1,116 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that D* Lite keeps returning shortest paths while the walls change
+ * between its queries and the start moves, with the search tree repaired
+ * rather than rebuilt, and after a repair was cancelled half way.
+ */
+
+class DStarLiteSearchTest
+{
+    @Test
+    void pathsAreShortest()
+    {
+        for (long seed = 1; seed <= 4; seed++)
+        {
+            GridMap map = MapGenerator.random(60, 40, 0.3, seed);
+            ReferencePaths.assertQueries(map, new DStarLiteSearch(map), 25, seed, 1, "seed " + seed);
+        }
+    }
+
+    @Test
+    void pathsStayShortestAfterEdits()
+    {
+        for (long seed = 1; seed <= 4; seed++)
+        {
+            GridMap map = MapGenerator.random(60, 40, 0.25, seed);
+            DStarLiteSearch search = new DStarLiteSearch(map);
+            Random rng = new Random(seed);
+            int[] q = ReferencePaths.queries(map, 1, seed)[0];
+            int start = q[0];
+            int goal = q[1];
+            for (int round = 0; round < 40; round++)
+            {
+                // a few walls toggled, away from the start and the goal
+                for (int i = 0; i < 1 + rng.nextInt(8); i++)
+                {
+                    int cell = rng.nextInt(map.size());
+                    if (cell != start && cell != goal)
+                    {
+                        map.setWall(cell, !map.isWall(cell));
+                    }
+                }
+                if (round % 5 == 4)
+                {
+                    // the start moves along, the goal stays
+                    start = ReferencePaths.queries(map, 1, seed * 100 + round)[0][0];
+                }
+                if (round == 20)
+                {
+                    goal = ReferencePaths.queries(map, 1, seed * 100 + round)[0][1];
+                }
+                check(map, search, start, goal, "seed " + seed + " round " + round);
+            }
+        }
+    }
+
+    @Test
+    void cancelledRepairCarriesOn()
+    {
+        GridMap map = MapGenerator.random(120, 120, 0.2, 5);
+        DStarLiteSearch search = new DStarLiteSearch(map);
+        int[] q = ReferencePaths.queries(map, 1, 5)[0];
+        check(map, search, q[0], q[1], "first query");
+        Random rng = new Random(5);
+        int cancelled = 0;
+        for (int round = 0; round < 10; round++)
+        {
+            for (int i = 0; i < 200; i++)
+            {
+                int cell = rng.nextInt(map.size());
+                if (cell != q[0] && cell != q[1])
+                {
+                    map.setWall(cell, !map.isWall(cell));
+                }
+            }
+            // interrupted like a job of the scheduler, stops at the first
+            // checkpoint
+            Thread.currentThread().interrupt();
+            try
+            {
+                search.findPath(q[0], q[1]);
+            }
+            catch (CancellationException e)
+            {
+                cancelled++;
+            }
+            finally
+            {
+                Thread.interrupted();
+            }
+            check(map, search, q[0], q[1], "round " + round);
+        }
+        assertTrue(cancelled > 0, "no repair was long enough to be cancelled");
+    }
+
+    private static void check(GridMap map, DStarLiteSearch search, int start, int goal, String query)
+    {
+        double expected = ReferencePaths.distances(map, start)[goal];
+        int[] path = search.findPath(start, goal);
+        if (expected == Double.POSITIVE_INFINITY)
+        {
+            assertNull(path, query + ": found a path to an unreachable goal");
+        }
+        else
+        {
+            ReferencePaths.assertShortest(map, start, goal, path, expected, query);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the consumer gets the events of the producer in the order they
+ * were published while the ring wraps around many times, that the events of
+ * other epochs are dropped by the playback drain, and that a producer waiting
+ * on a full ring gives up when interrupted.
+ */
+
+class EventRingTest
+{
+    @Test
+    void consumerGetsTheEventsInOrder() throws Exception
+    {
+        // a small ring, the producer waits on it most of the time
+        EventRing ring = new EventRing(64);
+        int count = 500_000;
+        Thread producer = new Thread(() ->
+        {
+            for (int i = 0; i < count; i++)
+            {
+                ring.put(EventRing.event(EventRing.OPEN, 1, i));
+            }
+            ring.put(EventRing.event(EventRing.DONE, 1, 0));
+        }, "producer");
+        producer.start();
+        long[] out = new long[16];
+        int expected = 0;
+        boolean done = false;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!done && System.nanoTime() < deadline)
+        {
+            int n = ring.drain(out, out.length);
+            for (int i = 0; i < n; i++)
+            {
+                if (EventRing.type(out[i]) == EventRing.DONE)
+                {
+                    done = true;
+                    break;
+                }
+                assertEquals(EventRing.OPEN, EventRing.type(out[i]));
+                assertEquals(1, EventRing.epoch(out[i]));
+                assertEquals(expected++, EventRing.cell(out[i]));
+            }
+        }
+        producer.join(10_000);
+        assertTrue(done);
+        assertEquals(count, expected);
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    void slotsAreReusedAfterTheyAreDrained()
+    {
+        // rounded up to 4 slots
+        EventRing ring = new EventRing(3);
+        for (int i = 0; i < 4; i++)
+        {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+        long[] out = new long[8];
+        assertEquals(3, ring.drain(out, 3));
+        assertArrayEquals(new long[] {0, 1, 2}, Arrays.copyOf(out, 3));
+        for (int i = 4; i < 7; i++)
+        {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(7));
+        assertEquals(4, ring.drain(out, out.length));
+        assertArrayEquals(new long[] {3, 4, 5, 6}, Arrays.copyOf(out, 4));
+        assertTrue(ring.isEmpty());
+        assertEquals(0, ring.drain(out, out.length));
+    }
+
+    @Test
+    void staleEpochsAreDropped()
+    {
+        EventRing ring = new EventRing(16);
+        int current = EventRing.EPOCH_MASK;
+        // left behind by the cancelled search, then the epoch wraps around
+        ring.offer(EventRing.event(EventRing.OPEN, current - 1, 1));
+        ring.offer(EventRing.event(EventRing.CLOSE, current - 1, 1));
+        ring.offer(EventRing.event(EventRing.OPEN, current, 2));
+        ring.offer(EventRing.event(EventRing.OPEN, current - 1, 3));
+        ring.offer(EventRing.event(EventRing.CLOSE, current, 2));
+        ring.offer(EventRing.event(EventRing.OPEN, current + 1, 4));
+        ring.offer(EventRing.event(EventRing.PATH, current, 2));
+        long[] out = new long[8];
+        // the stale events do not count against the maximum
+        assertEquals(2, ring.drain(out, 2, current));
+        assertEquals(EventRing.event(EventRing.OPEN, current, 2), out[0]);
+        assertEquals(EventRing.event(EventRing.CLOSE, current, 2), out[1]);
+        assertFalse(ring.isEmpty());
+        assertEquals(1, ring.drain(out, out.length, current));
+        assertEquals(EventRing.event(EventRing.PATH, current, 2), out[0]);
+        assertTrue(ring.isEmpty());
+        // the next epoch after the wrap is 0
+        ring.offer(EventRing.event(EventRing.DONE, current + 1, 0));
+        assertEquals(0, ring.drain(out, out.length, current));
+        ring.offer(EventRing.event(EventRing.DONE, current + 1, 0));
+        assertEquals(1, ring.drain(out, out.length, (current + 1) & EventRing.EPOCH_MASK));
+        assertEquals(0, EventRing.epoch(out[0]));
+    }
+
+    @Test
+    void putGivesUpWhenInterruptedOnAFullRing() throws Exception
+    {
+        EventRing ring = new EventRing(4);
+        while (ring.offer(1))
+        {
+            // fills the ring
+        }
+        AtomicBoolean published = new AtomicBoolean(true);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Thread producer = new Thread(() ->
+        {
+            published.set(ring.put(2));
+            interrupted.set(Thread.currentThread().isInterrupted());
+        }, "producer");
+        producer.start();
+        // parked until the ring has room
+        while (producer.getState() != Thread.State.TIMED_WAITING)
+        {
+            Thread.onSpinWait();
+        }
+        producer.interrupt();
+        producer.join(10_000);
+        assertFalse(producer.isAlive());
+        assertFalse(published.get());
+        assertTrue(interrupted.get());
+        // the event was dropped
+        long[] out = new long[8];
+        assertEquals(4, ring.drain(out, out.length));
+        for (int i = 0; i < 4; i++)
+        {
+            assertEquals(1, out[i]);
+        }
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    void putWaitsForTheConsumer() throws Exception
+    {
+        EventRing ring = new EventRing(4);
+        while (ring.offer(1))
+        {
+            // fills the ring
+        }
+        AtomicBoolean published = new AtomicBoolean();
+        Thread producer = new Thread(() -> published.set(ring.put(2)), "producer");
+        producer.start();
+        while (producer.getState() != Thread.State.TIMED_WAITING)
+        {
+            Thread.onSpinWait();
+        }
+        long[] out = new long[1];
+        assertEquals(1, ring.drain(out, 1));
+        producer.join(10_000);
+        assertTrue(published.get());
+        out = new long[8];
+        assertEquals(4, ring.drain(out, out.length));
+        assertEquals(2, out[3]);
+    }
+}
@@ -0,0 +1,121 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the field of a goal holds the shortest distance of every cell
+ * and leads every start along a shortest path, and that it stays so when
+ * the field is repaired after wall edits, rebuilt after a bulk edit or after
+ * an update that was cancelled.
+ */
+
+class FlowFieldTest
+{
+    @Test
+    void fieldHoldsShortestDistances()
+    {
+        for (long seed = 1; seed <= 4; seed++)
+        {
+            GridMap map = MapGenerator.random(60, 40, 0.3, seed);
+            FlowField field = new FlowField(map);
+            for (int[] q : ReferencePaths.queries(map, 3, seed))
+            {
+                assertField(map, field, q[1], "seed " + seed + " goal " + q[1]);
+            }
+            ReferencePaths.assertQueries(map, field, 25, seed, 1, "seed " + seed);
+        }
+    }
+
+    @Test
+    void fieldIsRepairedAfterEdits()
+    {
+        for (long seed = 1; seed <= 4; seed++)
+        {
+            GridMap map = MapGenerator.random(60, 40, 0.25, seed);
+            FlowField field = new FlowField(map);
+            int goal = ReferencePaths.queries(map, 1, seed)[0][1];
+            Random rng = new Random(seed);
+            for (int round = 0; round < 20; round++)
+            {
+                // a few walls toggled at a time, many in the last rounds
+                int edits = (round < 15) ? 1 + rng.nextInt(6) : 400;
+                for (int i = 0; i < edits; i++)
+                {
+                    int cell = rng.nextInt(map.size());
+                    if (cell != goal)
+                    {
+                        map.setWall(cell, !map.isWall(cell));
+                    }
+                }
+                assertField(map, field, goal, "seed " + seed + " round " + round);
+            }
+        }
+    }
+
+    @Test
+    void cancelledUpdateCarriesOn()
+    {
+        GridMap map = MapGenerator.random(150, 150, 0.2, 3);
+        FlowField field = new FlowField(map);
+        int[][] goals = ReferencePaths.queries(map, 4, 3);
+        int cancelled = 0;
+        for (int[] q : goals)
+        {
+            // interrupted like a job of the scheduler, stops at the first
+            // checkpoint
+            Thread.currentThread().interrupt();
+            try
+            {
+                field.update(q[1]);
+            }
+            catch (CancellationException e)
+            {
+                cancelled++;
+            }
+            finally
+            {
+                Thread.interrupted();
+            }
+            assertField(map, field, q[1], "goal " + q[1]);
+        }
+        assertTrue(cancelled > 0, "no update was long enough to be cancelled");
+    }
+
+    /**
+     * Builds or repairs the field of a goal, then checks the distance of
+     * every cell and the path from a few of them.
+     */
+    private static void assertField(GridMap map, FlowField field, int goal, String name)
+    {
+        field.update(goal);
+        double[] expected = ReferencePaths.distances(map, goal);
+        for (int cell = 0; cell < map.size(); cell++)
+        {
+            if (map.isWall(cell))
+            {
+                continue;
+            }
+            // unreachable cells are infinite in both
+            double tolerance = (expected[cell] == Double.POSITIVE_INFINITY) ? 0 : 1e-4 * Math.max(1, expected[cell]);
+            assertEquals(expected[cell], field.distance(cell), tolerance, name + " cell " + cell);
+        }
+        for (int[] q : ReferencePaths.queries(map, 10, goal))
+        {
+            int[] path = field.findPath(q[0], goal);
+            if (expected[q[0]] == Double.POSITIVE_INFINITY)
+            {
+                assertNull(path, name + " start " + q[0]);
+            }
+            else
+            {
+                ReferencePaths.assertShortest(map, q[0], goal, path, expected[q[0]], name + " start " + q[0]);
+            }
+        }
+    }
+}
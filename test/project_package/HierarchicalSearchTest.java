@@ -0,0 +1,99 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks HPA*: its paths are valid and near-optimal, cells close to each
+ * other across a cluster border are linked directly, and the abstraction
+ * rebuilt after wall edits answers like one built from scratch.
+ */
+
+class HierarchicalSearchTest
+{
+    // HPA* paths may be longer than the shortest ones, by at most this
+    private static final double BOUND = 1.5;
+
+    @Test
+    void pathsAreNearOptimal()
+    {
+        double total = 0;
+        double shortest = 0;
+        for (long seed = 1; seed <= 10; seed++)
+        {
+            GridMap map = MapGenerator.random(45, 30, 0.25, seed);
+            HierarchicalSearch search = new HierarchicalSearch(map, HierarchicalSearch.DEFAULT_CLUSTER_SIZE);
+            ReferencePaths.assertQueries(map, search, 50, seed, BOUND, "seed " + seed);
+            for (int[] q : ReferencePaths.queries(map, 50, seed))
+            {
+                double expected = ReferencePaths.distances(map, q[0])[q[1]];
+                if (expected != Double.POSITIVE_INFINITY)
+                {
+                    total += SearchMetrics.cost(map, search.findPath(q[0], q[1]));
+                    shortest += expected;
+                }
+            }
+        }
+        assertTrue(total <= 1.05 * shortest, "paths are " + (total / shortest - 1) * 100 + "% too long");
+    }
+
+    @Test
+    void closeCellsAreLinkedDirectly()
+    {
+        GridMap map = MapGenerator.open(64, 64);
+        // a wall along the cluster border, but for an entrance far away
+        for (int y = 0; y < 60; y++)
+        {
+            map.setWall(map.index(15, y), y < 20 || y > 22);
+        }
+        HierarchicalSearch search = new HierarchicalSearch(map, 16);
+        for (int y = 20; y <= 22; y++)
+        {
+            int[] across = search.findPath(map.index(15, y), map.index(16, y));
+            assertEquals(1, SearchMetrics.cost(map, across), 1e-6);
+        }
+        int[] corner = search.findPath(map.index(31, 32), map.index(32, 31));
+        assertEquals(SearchEngine.SQRT2, SearchMetrics.cost(map, corner), 1e-6);
+        // without walls the shortest path between cells of the same or
+        // neighbouring clusters stays in them, HPA* must find it
+        GridMap open = MapGenerator.open(64, 64);
+        HierarchicalSearch openSearch = new HierarchicalSearch(open, 16);
+        for (int[] q : ReferencePaths.queries(open, 1000, 1))
+        {
+            if (Math.abs(open.x(q[0]) / 16 - open.x(q[1]) / 16) <= 1
+                    && Math.abs(open.y(q[0]) / 16 - open.y(q[1]) / 16) <= 1)
+            {
+                double expected = ReferencePaths.distances(open, q[0])[q[1]];
+                ReferencePaths.assertShortest(open, q[0], q[1], openSearch.findPath(q[0], q[1]), expected,
+                        "query " + q[0] + " -> " + q[1]);
+            }
+        }
+    }
+
+    @Test
+    void incrementalRebuildMatchesAFreshBuild()
+    {
+        GridMap map = MapGenerator.random(70, 50, 0.2, 3);
+        HierarchicalSearch incremental = new HierarchicalSearch(map, 16);
+        Random rng = new Random(3);
+        for (int round = 0; round < 10; round++)
+        {
+            for (int i = 0; i < 30; i++)
+            {
+                int cell = rng.nextInt(map.size());
+                map.setWall(cell, !map.isWall(cell));
+            }
+            HierarchicalSearch fresh = new HierarchicalSearch(map.copy(), 16);
+            for (int[] q : ReferencePaths.queries(map, 20, round))
+            {
+                int[] a = incremental.findPath(q[0], q[1]);
+                int[] b = fresh.findPath(q[0], q[1]);
+                assertEquals(SearchMetrics.cost(map, b), SearchMetrics.cost(map, a), 1e-4,
+                        "round " + round + " query " + q[0] + " -> " + q[1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package project_package;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that Jump Point Search returns paths of the cost of the shortest
+ * ones, on the maps where it prunes the most (open fields) and the least
+ * (mazes, dense random walls), and that its weighted mode keeps its bound.
+ */
+
+class JumpPointSearchTest
+{
+    @Test
+    void pathsAreShortest()
+    {
+        for (long seed = 1; seed <= 4; seed++)
+        {
+            for (double density : new double[] {0.05, 0.25, 0.4})
+            {
+                GridMap map = MapGenerator.random(64, 48, density, seed);
+                ReferencePaths.assertQueries(map, new JumpPointSearch(map), 25, seed, 1,
+                        "random " + density + " seed " + seed);
+            }
+            GridMap maze = MapGenerator.maze(41, 41, seed);
+            ReferencePaths.assertQueries(maze, new JumpPointSearch(maze), 25, seed, 1, "maze seed " + seed);
+        }
+        GridMap open = MapGenerator.open(50, 50);
+        ReferencePaths.assertQueries(open, new JumpPointSearch(open), 25, 1, 1, "open");
+        GridMap column = MapGenerator.random(1, 60, 0.05, 2);
+        ReferencePaths.assertQueries(column, new JumpPointSearch(column), 10, 2, 1, "column");
+        GridMap row = MapGenerator.random(60, 1, 0.05, 3);
+        ReferencePaths.assertQueries(row, new JumpPointSearch(row), 10, 3, 1, "row");
+    }
+
+    @Test
+    void weightedPathsStayWithinTheWeight()
+    {
+        for (long seed = 1; seed <= 4; seed++)
+        {
+            GridMap map = MapGenerator.random(64, 48, 0.25, seed);
+            ReferencePaths.assertQueries(map, new JumpPointSearch(map, Heuristics.OCTILE, 1.5f), 25, seed, 1.5,
+                    "weighted seed " + seed);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that the landmark (ALT) estimates never exceed the shortest
+ * distances, before and after wall edits, that A star keeps returning
+ * shortest paths with them, that stale tables are only used while walls
+ * were only added and a cancelled build keeps the old ones, that saved
+ * tables are only loaded for the walls they were built on, and that maps
+ * too large for the tables are rejected.
+ */
+
+class LandmarkHeuristicTest
+{
+    @TempDir
+    Path dir;
+
+    @Test
+    void estimatesAreAdmissible()
+    {
+        for (long seed = 1; seed <= 3; seed++)
+        {
+            GridMap map = MapGenerator.random(60, 40, 0.3, seed);
+            LandmarkHeuristic alt = LandmarkHeuristic.build(map, LandmarkHeuristic.DEFAULT_COUNT);
+            assertAdmissible(map, alt, seed, "seed " + seed);
+            Random rng = new Random(seed);
+            for (int i = 0; i < 100; i++)
+            {
+                int cell = rng.nextInt(map.size());
+                map.setWall(cell, !map.isWall(cell));
+            }
+            // stale tables, walls were cleared: octile until prepared
+            assertAdmissible(map, alt, seed + 100, "seed " + seed + " after edits");
+            alt.prepare();
+            assertTrue(alt.isPrepared());
+            assertAdmissible(map, alt, seed + 200, "seed " + seed + " prepared after edits");
+        }
+    }
+
+    @Test
+    void staleTablesAreUsedUntilAWallIsCleared()
+    {
+        GridMap map = MapGenerator.random(60, 40, 0.3, 4);
+        LandmarkHeuristic alt = LandmarkHeuristic.build(map, LandmarkHeuristic.DEFAULT_COUNT);
+        int[][] queries = ReferencePaths.queries(map, 50, 4);
+        float[] before = estimates(map, alt, queries);
+        assertTrue(differsFromOctile(map, queries, before), "the tables never beat the octile distance");
+        // walls added elsewhere: the stale tables still give lower bounds
+        Random rng = new Random(4);
+        int added = 0;
+        while (added < 50)
+        {
+            int cell = rng.nextInt(map.size());
+            if (!map.isWall(cell) && !isQueried(queries, cell))
+            {
+                map.setWall(cell, true);
+                added++;
+            }
+        }
+        assertFalse(alt.isPrepared());
+        assertArrayEquals(before, estimates(map, alt, queries));
+        assertAdmissible(map, alt, 4, "walls added");
+        // a wall cleared: distances may have shrunk, octile only
+        int wall = 0;
+        while (!map.isWall(wall))
+        {
+            wall++;
+        }
+        map.setWall(wall, false);
+        assertFalse(differsFromOctile(map, queries, estimates(map, alt, queries)));
+        alt.prepare();
+        assertTrue(differsFromOctile(map, queries, estimates(map, alt, queries)));
+        assertAdmissible(map, alt, 5, "prepared again");
+    }
+
+    @Test
+    void cancelledBuildLeavesTheTables()
+    {
+        GridMap map = MapGenerator.random(200, 200, 0.3, 5);
+        LandmarkHeuristic alt = LandmarkHeuristic.build(map, LandmarkHeuristic.DEFAULT_COUNT);
+        int[][] queries = ReferencePaths.queries(map, 50, 5);
+        map.setWall(queries[0][0], true);
+        float[] stale = estimates(map, alt, queries);
+        // interrupted like a job of the scheduler
+        Thread.currentThread().interrupt();
+        try
+        {
+            assertThrows(CancellationException.class, alt::prepare);
+        }
+        finally
+        {
+            Thread.interrupted();
+        }
+        assertFalse(alt.isPrepared());
+        assertArrayEquals(stale, estimates(map, alt, queries));
+        alt.prepare();
+        assertTrue(alt.isPrepared());
+        assertAdmissible(map, alt, 5, "prepared after a cancelled build");
+    }
+
+    @Test
+    void pathsAreShortest()
+    {
+        for (long seed = 1; seed <= 3; seed++)
+        {
+            GridMap map = MapGenerator.random(60, 40, 0.3, seed);
+            LandmarkHeuristic alt = LandmarkHeuristic.build(map, LandmarkHeuristic.DEFAULT_COUNT);
+            ReferencePaths.assertQueries(map, new SearchEngine(map, alt, 1), 25, seed, 1, "random seed " + seed);
+            GridMap maze = MapGenerator.maze(41, 31, seed);
+            LandmarkHeuristic mazeAlt = LandmarkHeuristic.build(maze, LandmarkHeuristic.DEFAULT_COUNT);
+            ReferencePaths.assertQueries(maze, new SearchEngine(maze, mazeAlt, 1), 25, seed, 1, "maze seed " + seed);
+        }
+    }
+
+    @Test
+    void savedTablesOnlyLoadForTheirWalls() throws IOException
+    {
+        // tables of more than a megabyte, read in several chunks
+        GridMap map = MapGenerator.random(400, 400, 0.25, 7);
+        Path file = dir.resolve("map" + MapFile.EXTENSION + LandmarkHeuristic.EXTENSION);
+        LandmarkHeuristic built = LandmarkHeuristic.build(map, 4);
+        built.save(file);
+        FileTime old = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(file, old);
+
+        // the same walls: loaded, the file is left as it is
+        LandmarkHeuristic loaded = new LandmarkHeuristic(map.copy(), 4, file);
+        loaded.prepare();
+        assertEquals(old, Files.getLastModifiedTime(file));
+        assertArrayEquals(built.landmarks(), loaded.landmarks());
+        for (int[] q : ReferencePaths.queries(map, 50, 7))
+        {
+            assertEquals(built.estimate(q[0], q[1], 0, 0), loaded.estimate(q[0], q[1], 0, 0), 0);
+        }
+
+        // other walls or another number of landmarks: built and saved again
+        GridMap edited = map.copy();
+        edited.setWall(0, !edited.isWall(0));
+        new LandmarkHeuristic(edited, 4, file).prepare();
+        assertNotEquals(old, Files.getLastModifiedTime(file));
+        Files.setLastModifiedTime(file, old);
+        new LandmarkHeuristic(edited, 3, file).prepare();
+        assertNotEquals(old, Files.getLastModifiedTime(file));
+    }
+
+    @Test
+    void tablesTooLargeForAnArrayAreRejected()
+    {
+        GridMap map = new GridMap(300, 300);
+        assertTrue(LandmarkHeuristic.fits(map, 20000));
+        assertFalse(LandmarkHeuristic.fits(map, 30000));
+        assertThrows(IllegalArgumentException.class, () -> new LandmarkHeuristic(map, 30000, null));
+    }
+
+    private static float[] estimates(GridMap map, LandmarkHeuristic alt, int[][] queries)
+    {
+        float[] estimates = new float[queries.length];
+        for (int i = 0; i < queries.length; i++)
+        {
+            int a = queries[i][0];
+            int b = queries[i][1];
+            estimates[i] = alt.estimate(a, b, Math.abs(map.x(a) - map.x(b)), Math.abs(map.y(a) - map.y(b)));
+        }
+        return estimates;
+    }
+
+    private static boolean differsFromOctile(GridMap map, int[][] queries, float[] estimates)
+    {
+        for (int i = 0; i < queries.length; i++)
+        {
+            int a = queries[i][0];
+            int b = queries[i][1];
+            if (estimates[i] != Heuristics.OCTILE.estimate(Math.abs(map.x(a) - map.x(b)), Math.abs(map.y(a) - map.y(b))))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isQueried(int[][] queries, int cell)
+    {
+        for (int[] q : queries)
+        {
+            if (q[0] == cell || q[1] == cell)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void assertAdmissible(GridMap map, LandmarkHeuristic alt, long seed, String name)
+    {
+        for (int[] q : ReferencePaths.queries(map, 20, seed))
+        {
+            double[] distances = ReferencePaths.distances(map, q[1]);
+            for (int cell = 0; cell < map.size(); cell++)
+            {
+                if (distances[cell] != Double.POSITIVE_INFINITY)
+                {
+                    float estimate = alt.estimate(cell, q[1], Math.abs(map.x(cell) - map.x(q[1])),
+                            Math.abs(map.y(cell) - map.y(q[1])));
+                    assertTrue(estimate <= distances[cell] + 1e-4 * Math.max(1, distances[cell]),
+                            name + ": estimate " + estimate + " from " + cell + " to " + q[1] + " exceeds "
+                                    + distances[cell]);
+                }
+            }
+        }
+    }
+}
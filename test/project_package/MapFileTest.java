@@ -0,0 +1,117 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that maps survive a save and a load, with and without their cost
+ * layer, that a loaded map can be saved over the file it was mapped from,
+ * and that Moving AI maps and broken files are read as they should be.
+ */
+
+class MapFileTest
+{
+    @TempDir
+    Path dir;
+
+    @Test
+    void mapsRoundTrip() throws IOException
+    {
+        GridMap map = MapGenerator.random(37, 23, 0.3, 1);
+        Path file = dir.resolve("random" + MapFile.EXTENSION);
+        MapFile.write(map, file);
+        GridMap loaded = MapFile.read(file);
+        assertSameMap(map, loaded);
+        assertFalse(loaded.hasCosts());
+
+        ByteBuffer costs = ByteBuffer.allocate(map.size());
+        new Random(1).nextBytes(costs.array());
+        GridMap weighted = new GridMap(map.width(), map.height(), map.copy().walls(), costs);
+        MapFile.write(weighted, file);
+        loaded = MapFile.read(file);
+        assertSameMap(weighted, loaded);
+        for (int cell = 0; cell < map.size(); cell++)
+        {
+            assertEquals(weighted.cost(cell), loaded.cost(cell), "cost of cell " + cell);
+        }
+    }
+
+    @Test
+    void loadedMapCanBeSavedOverItsFile() throws IOException
+    {
+        GridMap map = MapGenerator.random(1024, 1024, 0.3, 2);
+        Path file = dir.resolve("large" + MapFile.EXTENSION);
+        MapFile.write(map, file);
+        GridMap loaded = MapFile.read(file);
+        // saved untouched, still backed by the file, then after an edit
+        MapFile.write(loaded, file);
+        assertSameMap(map, MapFile.read(file));
+        assertSameMap(map, loaded);
+        loaded.setWall(0, !loaded.isWall(0));
+        MapFile.write(loaded, file);
+        assertSameMap(loaded, MapFile.read(file));
+        try (Stream<Path> files = Files.list(dir))
+        {
+            assertEquals(List.of(file), files.toList(), "temporary files left behind");
+        }
+    }
+
+    @Test
+    void movingAiMapsAreImported() throws IOException
+    {
+        Path file = dir.resolve("small" + MovingAiMap.EXTENSION);
+        Files.writeString(file, "type octile\nheight 3\nwidth 4\nmap\n.@T.\nG.S.\nWW..\n");
+        GridMap map = MapFile.open(file);
+        assertEquals(4, map.width());
+        assertEquals(3, map.height());
+        String[] rows = {".##.", "....", "##.."};
+        for (int y = 0; y < 3; y++)
+        {
+            for (int x = 0; x < 4; x++)
+            {
+                assertEquals(rows[y].charAt(x) == '#', map.isWall(x, y), "cell " + x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    void brokenFilesAreRejected() throws IOException
+    {
+        Path file = dir.resolve("broken" + MapFile.EXTENSION);
+        MapFile.write(MapGenerator.random(40, 40, 0.3, 3), file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 8));
+        assertTrue(assertThrows(IOException.class, () -> MapFile.read(file)).getMessage().contains("truncated"));
+        bytes[0] = 'X';
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> MapFile.read(file));
+        Path text = dir.resolve("text" + MovingAiMap.EXTENSION);
+        Files.writeString(text, "type octile\nheight 3\nwidth 4\nmap\n....\n");
+        assertThrows(IOException.class, () -> MapFile.open(text));
+    }
+
+    private static void assertSameMap(GridMap expected, GridMap actual)
+    {
+        assertEquals(expected.width(), actual.width());
+        assertEquals(expected.height(), actual.height());
+        long[] a = new long[GridMap.words(expected.size())];
+        long[] b = new long[a.length];
+        expected.walls().get(a);
+        actual.walls().get(b);
+        assertArrayEquals(a, b);
+    }
+}
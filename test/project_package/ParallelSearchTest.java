@@ -0,0 +1,58 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the parallel search returns paths of the cost of the shortest
+ * ones although its workers do not expand in F order, with one worker or
+ * several, and that it fails when the goal is walled off.
+ */
+
+class ParallelSearchTest
+{
+    @Test
+    void pathsAreShortest()
+    {
+        for (int threads : new int[] {1, 2, 4})
+        {
+            for (long seed = 1; seed <= 3; seed++)
+            {
+                for (double density : new double[] {0.1, 0.3, 0.45})
+                {
+                    GridMap map = MapGenerator.random(80, 60, density, seed);
+                    ReferencePaths.assertQueries(map, new ParallelSearch(map, Heuristics.OCTILE, 1, threads), 20,
+                            seed, 1, "random " + density + " seed " + seed + " threads " + threads);
+                }
+                GridMap maze = MapGenerator.maze(41, 41, seed);
+                ReferencePaths.assertQueries(maze, new ParallelSearch(maze, Heuristics.OCTILE, 1, threads), 20,
+                        seed, 1, "maze seed " + seed + " threads " + threads);
+            }
+        }
+    }
+
+    @Test
+    void weightedPathsStayWithinTheWeight()
+    {
+        GridMap map = MapGenerator.random(80, 60, 0.25, 4);
+        ReferencePaths.assertQueries(map, new ParallelSearch(map, Heuristics.OCTILE, 2, 4), 20, 4, 2, "weighted");
+    }
+
+    @Test
+    void enclosedGoalIsUnreachable()
+    {
+        GridMap map = MapGenerator.open(40, 40);
+        for (int x = 10; x <= 14; x++)
+        {
+            for (int y = 10; y <= 14; y++)
+            {
+                map.setWall(map.index(x, y), x == 10 || x == 14 || y == 10 || y == 14);
+            }
+        }
+        ParallelSearch search = new ParallelSearch(map, Heuristics.OCTILE, 1, 3);
+        assertNull(search.findPath(map.index(0, 0), map.index(12, 12)));
+        assertNull(search.findPath(map.index(12, 12), map.index(39, 39)));
+        ReferencePaths.assertQueries(map, search, 20, 6, 1, "enclosure");
+    }
+}
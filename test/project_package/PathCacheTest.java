@@ -0,0 +1,96 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the cache answers repeated queries without searching, that the
+ * paths it returns stay shortest while walls are set and cleared, and that
+ * it evicts the least recently used query once full.
+ */
+
+class PathCacheTest
+{
+    @Test
+    void repeatedQueriesAreHits()
+    {
+        GridMap map = MapGenerator.random(50, 50, 0.25, 1);
+        PathCache cache = new PathCache(new SearchEngine(map), map, PathCache.DEFAULT_CAPACITY);
+        int[][] queries = ReferencePaths.queries(map, 20, 1);
+        int[][] paths = new int[queries.length][];
+        for (int i = 0; i < queries.length; i++)
+        {
+            paths[i] = cache.findPath(queries[i][0], queries[i][1]);
+        }
+        for (int i = 0; i < queries.length; i++)
+        {
+            assertArrayEquals(paths[i], cache.findPath(queries[i][0], queries[i][1]), "query " + i);
+        }
+        assertEquals(queries.length, cache.misses());
+        assertEquals(queries.length, cache.hits());
+    }
+
+    @Test
+    void pathsStayShortestAfterEdits()
+    {
+        for (long seed = 1; seed <= 4; seed++)
+        {
+            GridMap map = MapGenerator.random(40, 30, 0.3, seed);
+            PathCache cache = new PathCache(new SearchEngine(map), map, PathCache.DEFAULT_CAPACITY);
+            int[][] queries = ReferencePaths.queries(map, 15, seed);
+            Random rng = new Random(seed);
+            for (int round = 0; round < 30; round++)
+            {
+                for (int i = 0; i < 1 + rng.nextInt(3); i++)
+                {
+                    int cell = rng.nextInt(map.size());
+                    map.setWall(cell, !map.isWall(cell));
+                }
+                for (int[] q : queries)
+                {
+                    String name = "seed " + seed + " round " + round + " query " + q[0] + " -> " + q[1];
+                    double expected = ReferencePaths.distances(map, q[0])[q[1]];
+                    int[] path = cache.findPath(q[0], q[1]);
+                    if (expected == Double.POSITIVE_INFINITY)
+                    {
+                        assertNull(path, name);
+                    }
+                    else
+                    {
+                        ReferencePaths.assertShortest(map, q[0], q[1], path, expected, name);
+                    }
+                }
+            }
+            // most of the queries are kept across an edit, or the cache
+            // would be of no use on a map being edited
+            assertTrue(cache.hits() > cache.misses(), "seed " + seed + ": " + cache.hits() + " hits, "
+                    + cache.misses() + " misses");
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedQueryIsEvicted()
+    {
+        GridMap map = MapGenerator.open(20, 20);
+        PathCache cache = new PathCache(new SearchEngine(map), map, 2);
+        int a = map.index(0, 0);
+        int b = map.index(19, 19);
+        int c = map.index(5, 15);
+        cache.findPath(a, b);
+        cache.findPath(b, c);
+        cache.findPath(a, b);
+        cache.findPath(c, a);
+        assertEquals(1, cache.evictions());
+        assertEquals(2, cache.size());
+        // a -> b was used last, b -> c went
+        cache.findPath(a, b);
+        assertEquals(2, cache.hits());
+        cache.findPath(b, c);
+        assertEquals(4, cache.misses());
+    }
+}
@@ -0,0 +1,223 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the replies of the server to a pipelined stream of requests, in
+ * whatever order they come back: shortest paths, none for a goal walled
+ * off, errors for malformed requests, and all of them written out by the
+ * time serve returns. Also checks that a client is answered when it sends
+ * far more requests than the workers can queue, that connections beyond
+ * the limit wait for one to end, and that the load generator measures a
+ * running server.
+ */
+
+class PathServerTest
+{
+    @Test
+    void pipelinedRequestsAreAllAnswered() throws IOException
+    {
+        GridMap map = MapGenerator.random(120, 80, 0.3, 1);
+        int[][] queries = ReferencePaths.queries(map, 200, 1);
+        int wall = 0;
+        while (!map.isWall(wall))
+        {
+            wall++;
+        }
+        StringBuilder requests = new StringBuilder();
+        for (int i = 0; i < queries.length; i++)
+        {
+            requests.append(line("q" + i, map, queries[i][0], queries[i][1]));
+            if (i % 50 == 0)
+            {
+                requests.append("\n");
+            }
+        }
+        requests.append("short 1 2\n");
+        requests.append("letters a b c d\n");
+        requests.append("outside -1 0 3 3\n");
+        requests.append(line("wall", map, queries[0][0], wall));
+        Map<String, String> replies;
+        try (PathServer server = new PathServer(map, Algorithm.A_STAR, 4, true))
+        {
+            replies = serve(server, requests.toString(), queries.length + 4);
+        }
+        for (int i = 0; i < queries.length; i++)
+        {
+            String[] tokens = replies.get("q" + i).split(" ");
+            double expected = ReferencePaths.distances(map, queries[i][0])[queries[i][1]];
+            String name = "query " + i;
+            if (expected == Double.POSITIVE_INFINITY)
+            {
+                assertEquals("none", tokens[0], name);
+                continue;
+            }
+            // the cost, then the cells
+            assertEquals(expected, Double.parseDouble(tokens[0]), 1e-3 * Math.max(1, expected), name);
+            int[] path = new int[(tokens.length - 1) / 2];
+            for (int k = 0; k < path.length; k++)
+            {
+                path[k] = map.index(Integer.parseInt(tokens[1 + 2 * k]), Integer.parseInt(tokens[2 + 2 * k]));
+            }
+            ReferencePaths.assertShortest(map, queries[i][0], queries[i][1], path, expected, name);
+        }
+        assertEquals("error expected: id sx sy gx gy", replies.get("short"));
+        assertEquals("error coordinates must be integers", replies.get("letters"));
+        assertEquals("error outside the map", replies.get("outside"));
+        assertEquals("none", replies.get("wall"));
+    }
+
+    @Test
+    void costsOnlyWithoutPaths() throws IOException
+    {
+        GridMap map = MapGenerator.open(30, 20);
+        Map<String, String> replies;
+        try (PathServer server = new PathServer(map, Algorithm.JUMP_POINT, 2, false))
+        {
+            replies = serve(server, "diagonal 0 0 19 19\nstraight 0 0 29 0\n", 2);
+        }
+        assertEquals(String.format(Locale.ROOT, "%.3f 20", 19 * SearchEngine.SQRT2),
+                replies.get("diagonal"));
+        assertEquals("29.000 30", replies.get("straight"));
+    }
+
+    @Test
+    void clientWaitsForRoomInTheQueue() throws IOException
+    {
+        // far more requests than the queue of a single worker holds
+        GridMap map = MapGenerator.random(60, 40, 0.25, 2);
+        int[][] queries = ReferencePaths.queries(map, 2000, 2);
+        StringBuilder requests = new StringBuilder();
+        for (int i = 0; i < queries.length; i++)
+        {
+            requests.append(line(String.valueOf(i), map, queries[i][0], queries[i][1]));
+        }
+        try (PathServer server = new PathServer(map, Algorithm.A_STAR, 1, false))
+        {
+            Map<String, String> replies = serve(server, requests.toString(), queries.length);
+            for (int i = 0; i < queries.length; i++)
+            {
+                assertNotNull(replies.get(String.valueOf(i)), "query " + i);
+            }
+        }
+    }
+
+    @Test
+    void connectionsBeyondTheLimitWait() throws Exception
+    {
+        GridMap map = MapGenerator.open(20, 20);
+        try (PathServer server = new PathServer(map, Algorithm.A_STAR, 2, false);
+             ServerSocket socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress()))
+        {
+            Thread listener = listen(server, socket, 1);
+            try (Socket first = connect(socket); Socket second = connect(socket))
+            {
+                assertEquals("a 19.000 20", ask(first, "a 0 0 19 0"));
+                // not read while the first connection is open
+                second.setSoTimeout(300);
+                assertThrows(SocketTimeoutException.class, () -> ask(second, "b 0 0 0 19"));
+                first.shutdownOutput();
+                second.setSoTimeout(10_000);
+                assertEquals("b 19.000 20", new BufferedReader(new InputStreamReader(second.getInputStream(),
+                        StandardCharsets.US_ASCII)).readLine());
+            }
+            socket.close();
+            listener.join(10_000);
+        }
+    }
+
+    @Test
+    void loadGeneratorMeasuresTheServer() throws Exception
+    {
+        GridMap map = MapGenerator.random(80, 60, 0.25, 3);
+        try (PathServer server = new PathServer(map, Algorithm.A_STAR, 2, true);
+             ServerSocket socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress()))
+        {
+            Thread listener = listen(server, socket, PathServer.DEFAULT_CLIENTS);
+            String report = LoadGenerator.measure(socket.getInetAddress().getHostAddress(), socket.getLocalPort(),
+                    map, 3, 8, 1000, 200, 3);
+            assertTrue(report.startsWith("1000 requests over 3 connections, 8 in flight each"), report);
+            assertTrue(report.endsWith("errors 0"), report);
+            socket.close();
+            listener.join(10_000);
+        }
+    }
+
+    /**
+     * Serves the requests from a byte stream and returns the replies by id,
+     * as written by the time serve returns.
+     */
+    private static Map<String, String> serve(PathServer server, String requests, int count) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        server.serve(new ByteArrayInputStream(requests.getBytes(StandardCharsets.US_ASCII)), out);
+        Map<String, String> replies = new HashMap<>();
+        for (String reply : out.toString(StandardCharsets.US_ASCII).split("\n"))
+        {
+            int space = reply.indexOf(' ');
+            assertNull(replies.put(reply.substring(0, space), reply.substring(space + 1)), reply);
+        }
+        assertEquals(count, replies.size());
+        return replies;
+    }
+
+    private static String line(String id, GridMap map, int start, int goal)
+    {
+        return id + " " + map.x(start) + " " + map.y(start) + " " + map.x(goal) + " " + map.y(goal) + "\n";
+    }
+
+    private static Thread listen(PathServer server, ServerSocket socket, int clients)
+    {
+        Thread listener = new Thread(() ->
+        {
+            try
+            {
+                server.listen(socket, clients);
+            }
+            catch (IOException e)
+            {
+                // the socket was closed, the test is over
+            }
+        }, "listener");
+        listener.setDaemon(true);
+        listener.start();
+        return listener;
+    }
+
+    private static Socket connect(ServerSocket socket) throws IOException
+    {
+        return new Socket(socket.getInetAddress(), socket.getLocalPort());
+    }
+
+    /**
+     * Sends one request and reads one reply.
+     */
+    private static String ask(Socket socket, String request) throws IOException
+    {
+        OutputStream out = socket.getOutputStream();
+        out.write((request + "\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))
+                .readLine();
+    }
+}
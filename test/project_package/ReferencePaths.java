@@ -0,0 +1,168 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * ReferencePaths holds what the tests check the searches against: a plain
+ * Dijkstra over the moves of GridMap.SUCC (1 for a straight move, sqrt(2)
+ * for a diagonal one) computed in doubles with a java.util.PriorityQueue,
+ * so it shares no code with the searches, and the checks of a returned
+ * path.
+ */
+
+final class ReferencePaths
+{
+    private ReferencePaths()
+    {
+    }
+
+    /**
+     * Returns the cost of the shortest path from a cell to every cell of the
+     * map, infinity for the walls and the cells that cannot be reached.
+     * @param source : index of the cell the paths start from
+     */
+    static double[] distances(GridMap map, int source)
+    {
+        double[] distance = new double[map.size()];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        if (map.isWall(source))
+        {
+            return distance;
+        }
+        distance[source] = 0;
+        PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+        queue.add(new double[] {0, source});
+        while (!queue.isEmpty())
+        {
+            double[] entry = queue.poll();
+            int cell = (int) entry[1];
+            if (entry[0] > distance[cell])
+            {
+                continue;
+            }
+            int x = map.x(cell);
+            int y = map.y(cell);
+            for (int[] s : GridMap.SUCC)
+            {
+                int nx = x + s[0];
+                int ny = y + s[1];
+                if (!map.isValid(nx, ny) || map.isWall(map.index(nx, ny)))
+                {
+                    continue;
+                }
+                int next = map.index(nx, ny);
+                double d = entry[0] + ((s[0] == 0 || s[1] == 0) ? 1 : Math.sqrt(2));
+                if (d < distance[next])
+                {
+                    distance[next] = d;
+                    queue.add(new double[] {d, next});
+                }
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * Returns pairs of free cells {start, goal} drawn at random, the map
+     * must have a free cell.
+     */
+    static int[][] queries(GridMap map, int count, long seed)
+    {
+        Random rng = new Random(seed);
+        int[][] queries = new int[count][];
+        for (int i = 0; i < count; i++)
+        {
+            queries[i] = new int[] {freeCell(map, rng), freeCell(map, rng)};
+        }
+        return queries;
+    }
+
+    private static int freeCell(GridMap map, Random rng)
+    {
+        int cell;
+        do
+        {
+            cell = rng.nextInt(map.size());
+        }
+        while (map.isWall(cell));
+        return cell;
+    }
+
+    /**
+     * Checks that a path links start to goal through free cells, one move
+     * of GridMap.SUCC at a time, and costs the expected amount (the float
+     * G values of the searches are allowed their rounding).
+     * @param expected : the cost of the shortest path, or an upper bound
+     *                   when the search is only near-optimal
+     * @param factor : how much longer than expected the path may be, 1 for
+     *                 a shortest path
+     */
+    static void assertPath(GridMap map, int start, int goal, int[] path, double expected, double factor,
+            String query)
+    {
+        assertNotNull(path, query + ": no path found");
+        assertEquals(start, path[0], query + ": the path does not begin at the start");
+        assertEquals(goal, path[path.length - 1], query + ": the path does not end at the goal");
+        for (int i = 0; i < path.length; i++)
+        {
+            assertFalse(map.isWall(path[i]), query + ": the path goes through a wall");
+            if (i > 0)
+            {
+                int dx = Math.abs(map.x(path[i]) - map.x(path[i - 1]));
+                int dy = Math.abs(map.y(path[i]) - map.y(path[i - 1]));
+                assertTrue(dx <= 1 && dy <= 1 && dx + dy > 0, query + ": the path jumps at step " + i);
+            }
+        }
+        double cost = SearchMetrics.cost(map, path);
+        double tolerance = 1e-4 * Math.max(1, expected);
+        if (factor == 1)
+        {
+            assertEquals(expected, cost, tolerance, query + ": the path is not the shortest");
+        }
+        else
+        {
+            assertTrue(cost <= expected * factor + tolerance,
+                    query + ": the path costs " + cost + ", more than " + factor + " x " + expected);
+        }
+    }
+
+    /**
+     * Checks a path against the shortest one.
+     */
+    static void assertShortest(GridMap map, int start, int goal, int[] path, double expected, String query)
+    {
+        assertPath(map, start, goal, path, expected, 1, query);
+    }
+
+    /**
+     * Runs random queries with a search and checks every path against the
+     * shortest one, and that the unreachable goals return null.
+     * @param factor : how much longer than the shortest the paths may be
+     * @param name : names the map in the failure messages
+     */
+    static void assertQueries(GridMap map, PathSearch search, int count, long seed, double factor, String name)
+    {
+        for (int[] q : queries(map, count, seed))
+        {
+            String query = name + " query " + q[0] + " -> " + q[1];
+            double expected = distances(map, q[0])[q[1]];
+            int[] path = search.findPath(q[0], q[1]);
+            if (expected == Double.POSITIVE_INFINITY)
+            {
+                assertNull(path, query + ": found a path to an unreachable goal");
+            }
+            else
+            {
+                assertPath(map, q[0], q[1], path, expected, factor, query);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the generation stamps of the context: a cell is reached, then
+ * closed, within a search and unvisited again in the next one, including
+ * when the generation counter wraps around and the stamps are reset.
+ */
+
+class SearchContextTest
+{
+    @Test
+    void stampsTellReachedFromClosed()
+    {
+        for (boolean shared : new boolean[] {false, true})
+        {
+            SearchContext context = new SearchContext(10, shared);
+            context.next();
+            assertUnvisited(context, 1);
+            context.setG(1, 5);
+            context.setParent(1, 0);
+            assertTrue(context.isReached(1));
+            assertFalse(context.isClosed(1));
+            context.close(1);
+            assertTrue(context.isReached(1));
+            assertTrue(context.isClosed(1));
+            // a better G value found later leaves the cell closed
+            context.setG(1, 4);
+            assertTrue(context.isClosed(1));
+            assertEquals(4, context.g(1));
+            assertEquals(0, context.parent(1));
+            context.setG(2, 7);
+            assertEquals(7, context.g(2));
+            assertFalse(context.isClosed(2));
+            context.next();
+            for (int cell = 0; cell < context.size(); cell++)
+            {
+                assertUnvisited(context, cell);
+            }
+        }
+    }
+
+    @Test
+    void oldStampsAreUnvisitedAcrossTheWrapAround()
+    {
+        for (boolean shared : new boolean[] {false, true})
+        {
+            SearchContext context = new SearchContext(10, shared);
+            context.setGeneration(Integer.MAX_VALUE - 9);
+            for (int search = 0; search < 8; search++)
+            {
+                String name = "search " + search + (shared ? " shared" : "");
+                context.next();
+                for (int cell = 0; cell < context.size(); cell++)
+                {
+                    assertUnvisited(context, cell);
+                }
+                // stamps of the last generations before the wrap, one cell
+                // reached and one closed by every search
+                int reached = search % context.size();
+                int closed = (search + 1) % context.size();
+                context.setG(reached, search);
+                context.setG(closed, search);
+                context.close(closed);
+                assertTrue(context.isReached(reached), name);
+                assertFalse(context.isClosed(reached), name);
+                assertTrue(context.isClosed(closed), name);
+                assertEquals(search, context.g(reached), name);
+            }
+        }
+    }
+
+    private static void assertUnvisited(SearchContext context, int cell)
+    {
+        assertFalse(context.isReached(cell), "cell " + cell);
+        assertFalse(context.isClosed(cell), "cell " + cell);
+        assertEquals(Float.POSITIVE_INFINITY, context.g(cell), "cell " + cell);
+    }
+}
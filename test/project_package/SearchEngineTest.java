@@ -0,0 +1,100 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the A star engine and its open set: every path it returns on
+ * random grids costs what a plain Dijkstra finds, and it fails exactly when
+ * the goal cannot be reached.
+ */
+
+class SearchEngineTest
+{
+    // width, height and wall density of the grids searched
+    private static final double[][] GRIDS = {
+        {45, 30, 0.25}, {64, 64, 0.1}, {64, 64, 0.35}, {1, 50, 0.1}, {100, 7, 0.2}, {80, 60, 0.4}};
+
+    @Test
+    void pathCostsMatchDijkstraOnRandomGrids()
+    {
+        for (int g = 0; g < GRIDS.length; g++)
+        {
+            for (long seed = 1; seed <= 5; seed++)
+            {
+                GridMap map = MapGenerator.random((int) GRIDS[g][0], (int) GRIDS[g][1], GRIDS[g][2], seed);
+                SearchEngine engine = new SearchEngine(map);
+                for (int[] q : ReferencePaths.queries(map, 20, seed))
+                {
+                    String query = "grid " + g + " seed " + seed + " query " + q[0] + " -> " + q[1];
+                    double expected = ReferencePaths.distances(map, q[0])[q[1]];
+                    int[] path = engine.findPath(q[0], q[1]);
+                    if (expected == Double.POSITIVE_INFINITY)
+                    {
+                        assertNull(path, query + ": found a path to an unreachable goal");
+                    }
+                    else
+                    {
+                        ReferencePaths.assertShortest(map, q[0], q[1], path, expected, query);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void wallsAndSameCellQueries()
+    {
+        GridMap map = MapGenerator.open(10, 10);
+        map.setWall(map.index(5, 5), true);
+        SearchEngine engine = new SearchEngine(map);
+        assertNull(engine.findPath(map.index(5, 5), map.index(0, 0)));
+        assertNull(engine.findPath(map.index(0, 0), map.index(5, 5)));
+        int[] path = engine.findPath(map.index(2, 3), map.index(2, 3));
+        assertEquals(1, path.length);
+    }
+
+    @Test
+    void openSetPopsByFThenH()
+    {
+        Random rng = new Random(7);
+        int n = 2000;
+        OpenSet open = new BinaryHeapOpenSet(n);
+        double[] f = new double[n];
+        double[] h = new double[n];
+        for (int i = 0; i < 5 * n; i++)
+        {
+            // integer keys make ties on F common
+            int cell = rng.nextInt(n);
+            if (!open.contains(cell) || rng.nextBoolean())
+            {
+                f[cell] = rng.nextInt(50);
+                h[cell] = rng.nextInt(10);
+                open.push(cell, f[cell], h[cell]);
+            }
+            else
+            {
+                open.remove(cell);
+            }
+        }
+        assertFalse(open.isEmpty());
+        double lastF = -1;
+        double lastH = -1;
+        int count = open.size();
+        for (int i = 0; i < count; i++)
+        {
+            int cell = open.pop();
+            assertTrue(f[cell] > lastF || (f[cell] == lastF && h[cell] >= lastH),
+                    "cell " + cell + " popped out of order");
+            lastF = f[cell];
+            lastH = h[cell];
+            assertFalse(open.contains(cell));
+        }
+        assertTrue(open.isEmpty());
+    }
+}
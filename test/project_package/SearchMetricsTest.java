@@ -0,0 +1,133 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the counters of A star on maps small enough to follow the search by
+ * hand: a corridor, the diagonal of an open field, a detour that makes an
+ * inconsistent heuristic reopen a cell and a goal walled off, then the cost
+ * of paths.
+ */
+
+class SearchMetricsTest
+{
+    @Test
+    void corridorCounters()
+    {
+        GridMap map = MapGenerator.open(5, 1);
+        SearchEngine engine = new SearchEngine(map);
+        int[] path = engine.findPath(map.index(0, 0), map.index(4, 0));
+        SearchMetrics metrics = SearchMetrics.of("A*", engine, map, path);
+        // every cell but the goal is expanded, each one opens the next
+        assertCounters(metrics, 4, 5, 0, 1, 5);
+        assertTrue(metrics.found);
+        assertEquals(5, metrics.pathLength);
+        assertEquals(4, metrics.pathCost, 1e-9);
+    }
+
+    @Test
+    void openFieldCounters()
+    {
+        GridMap map = MapGenerator.open(5, 5);
+        SearchEngine engine = new SearchEngine(map);
+        int[] path = engine.findPath(map.index(0, 0), map.index(4, 4));
+        SearchMetrics metrics = SearchMetrics.of("A*", engine, map, path);
+        // only the cells of the diagonal have the cost of the path as F, the
+        // start opens 3 cells and the 3 next cells of the diagonal 5 new
+        // ones each, none of which is expanded
+        assertCounters(metrics, 4, 19, 0, 15, 19);
+        assertTrue(metrics.found);
+        assertEquals(5, metrics.pathLength);
+        assertEquals(4 * Math.sqrt(2), metrics.pathCost, 1e-9);
+        assertEquals(metrics.pathCost, SearchMetrics.cost(map, path), 0);
+    }
+
+    @Test
+    void closedCellIsReopened()
+    {
+        GridMap map = MapGenerator.open(4, 2);
+        int detour = map.index(1, 0);
+        // admissible, but only (1, 0) gets an estimate, so the search first
+        // closes (2, 0) through (1, 1)
+        Heuristic heuristic = new Heuristic()
+        {
+            @Override
+            public float estimate(int dx, int dy)
+            {
+                return 0;
+            }
+
+            @Override
+            public float estimate(int cell, int goal, int dx, int dy)
+            {
+                return (cell == detour) ? 2 : 0;
+            }
+
+            @Override
+            public boolean isAdmissible()
+            {
+                return true;
+            }
+
+            @Override
+            public boolean isConsistent()
+            {
+                return false;
+            }
+        };
+        SearchEngine engine = new SearchEngine(map, heuristic, 1);
+        int[] path = engine.findPath(map.index(0, 0), map.index(3, 0));
+        SearchMetrics metrics = SearchMetrics.of("A*", engine, map, path);
+        // (2, 0) is expanded twice; besides the 8 cells, (2, 0) once more
+        // and both cells of the last column are estimated again when their
+        // path improves through it
+        assertCounters(metrics, 7, 8, 1, 4, 11);
+        assertTrue(metrics.found);
+        assertEquals(4, metrics.pathLength);
+        assertEquals(3, metrics.pathCost, 1e-9);
+    }
+
+    @Test
+    void unreachableGoal()
+    {
+        GridMap map = MapGenerator.open(5, 3);
+        for (int y = 0; y < 3; y++)
+        {
+            map.setWall(map.index(2, y), true);
+        }
+        SearchEngine engine = new SearchEngine(map);
+        int[] path = engine.findPath(map.index(0, 1), map.index(4, 1));
+        SearchMetrics metrics = SearchMetrics.of("A*", engine, map, path);
+        // the 6 cells left of the wall
+        assertCounters(metrics, 6, 6, 0, 5, 6);
+        assertFalse(metrics.found);
+        assertTrue(metrics.finished);
+        assertEquals(0, metrics.pathLength);
+        assertEquals(Double.POSITIVE_INFINITY, metrics.pathCost);
+        assertTrue(metrics.toString().contains("no path"), metrics.toString());
+    }
+
+    @Test
+    void pathCosts()
+    {
+        GridMap map = MapGenerator.open(10, 10);
+        assertEquals(Double.POSITIVE_INFINITY, SearchMetrics.cost(map, null));
+        assertEquals(0, SearchMetrics.cost(map, new int[] {map.index(3, 3)}));
+        int[] path = {map.index(0, 0), map.index(1, 1), map.index(2, 1), map.index(2, 2), map.index(1, 3)};
+        assertEquals(2 + 2 * Math.sqrt(2), SearchMetrics.cost(map, path), 1e-9);
+    }
+
+    private static void assertCounters(SearchMetrics metrics, int expanded, int generated, int reopened,
+            int peakOpen, int heuristicEvaluations)
+    {
+        assertEquals(expanded, metrics.expanded, "expanded");
+        assertEquals(generated, metrics.generated, "generated");
+        assertEquals(reopened, metrics.reopened, "reopened");
+        assertEquals(peakOpen, metrics.peakOpen, "peak open");
+        assertEquals(heuristicEvaluations, metrics.heuristicEvaluations, "heuristic evaluations");
+    }
+}
@@ -0,0 +1,225 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a lane runs one job at a time: a submit pre-empts the running
+ * job and skips those cancelled before they started, a stopped lane has no
+ * job left running, a failure is reported through the future of its job,
+ * and the interrupt of a cancelled job reaches neither what is chained on
+ * its future nor the next job.
+ */
+
+class SearchSchedulerTest
+{
+    @Test
+    void submitPreemptsTheRunningJob() throws Exception
+    {
+        try (SearchScheduler scheduler = new SearchScheduler(2))
+        {
+            SearchScheduler.Lane lane = scheduler.lane();
+            List<String> order = new CopyOnWriteArrayList<>();
+            CountDownLatch started = new CountDownLatch(1);
+            SearchScheduler.Job first = lane.submit(job ->
+            {
+                started.countDown();
+                loop("first", order);
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            SearchScheduler.Job second = lane.submit(job -> order.add("second"));
+            await(second);
+            assertTrue(first.isCancelled());
+            assertTrue(first.isDone());
+            assertFalse(second.isCancelled());
+            // the second job started once the first had stopped
+            assertEquals(List.of("first stopped", "second"), order);
+        }
+    }
+
+    @Test
+    void cancelledJobsAreSkipped() throws Exception
+    {
+        try (SearchScheduler scheduler = new SearchScheduler(2))
+        {
+            SearchScheduler.Lane lane = scheduler.lane();
+            List<String> order = new CopyOnWriteArrayList<>();
+            CountDownLatch started = new CountDownLatch(1);
+            lane.submit(job ->
+            {
+                started.countDown();
+                loop("first", order);
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            SearchScheduler.Job[] skipped = new SearchScheduler.Job[5];
+            for (int i = 0; i < skipped.length; i++)
+            {
+                String name = "skipped " + i;
+                skipped[i] = lane.submit(job -> order.add(name));
+            }
+            SearchScheduler.Job last = lane.submit(job -> order.add("last"));
+            await(last);
+            for (SearchScheduler.Job job : skipped)
+            {
+                assertTrue(job.isCancelled());
+                assertTrue(job.isDone());
+            }
+            assertEquals(List.of("first stopped", "last"), order);
+            assertFalse(lane.isRunning());
+        }
+    }
+
+    @Test
+    void stopReturnsOnceTheJobHasStopped() throws Exception
+    {
+        try (SearchScheduler scheduler = new SearchScheduler(1))
+        {
+            SearchScheduler.Lane lane = scheduler.lane();
+            List<String> order = new CopyOnWriteArrayList<>();
+            CountDownLatch started = new CountDownLatch(1);
+            SearchScheduler.Job job = lane.submit(j ->
+            {
+                started.countDown();
+                loop("job", order);
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            lane.stop();
+            assertTrue(job.isDone());
+            assertEquals(List.of("job stopped"), order);
+            assertFalse(lane.isRunning());
+            // nothing left to stop
+            lane.stop();
+            assertTrue(lane.cancel().isDone());
+        }
+    }
+
+    @Test
+    void jobsWaitForWhatTheyAreSubmittedAfter() throws Exception
+    {
+        try (SearchScheduler scheduler = new SearchScheduler(2))
+        {
+            SearchScheduler.Lane lane = scheduler.lane();
+            CompletableFuture<Void> edit = new CompletableFuture<>();
+            AtomicBoolean ran = new AtomicBoolean();
+            SearchScheduler.Job job = lane.submit(j -> ran.set(edit.isDone()), edit);
+            Thread.sleep(50);
+            assertFalse(job.isDone());
+            // a failed edit holds nothing up either
+            edit.completeExceptionally(new IllegalStateException("edit failed"));
+            await(job);
+            assertTrue(ran.get());
+        }
+    }
+
+    @Test
+    void closedSchedulerCompletesTheJobs() throws Exception
+    {
+        AtomicBoolean ran = new AtomicBoolean();
+        SearchScheduler scheduler = new SearchScheduler(1);
+        SearchScheduler.Lane lane = scheduler.lane();
+        CountDownLatch started = new CountDownLatch(1);
+        SearchScheduler.Job running = lane.submit(job ->
+        {
+            started.countDown();
+            loop("running", new CopyOnWriteArrayList<>());
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        // chained on the running job, rejected once it stops
+        SearchScheduler.Job chained = lane.submit(job -> ran.set(true));
+        scheduler.close();
+        await(running);
+        await(chained);
+        SearchScheduler.Job rejected = lane.submit(job -> ran.set(true));
+        await(rejected);
+        assertTrue(chained.isCancelled());
+        assertTrue(rejected.isCancelled());
+        assertFalse(ran.get());
+    }
+
+    @Test
+    void interruptDoesNotLeakIntoTheNextJob() throws Exception
+    {
+        try (SearchScheduler scheduler = new SearchScheduler(1))
+        {
+            SearchScheduler.Lane lane = scheduler.lane();
+            SearchScheduler.Lane other = scheduler.lane();
+            for (int i = 0; i < 20; i++)
+            {
+                // cancelled while running but never reaches a checkpoint,
+                // held until the callback is chained on its future
+                CompletableFuture<Void> gate = new CompletableFuture<>();
+                SearchScheduler.Job cancelled = lane.submit(SearchScheduler.Job::cancel, gate);
+                AtomicBoolean chained = new AtomicBoolean(true);
+                // runs on the thread of the job as it completes, like an edit
+                CompletableFuture<Void> after = cancelled.finished()
+                        .thenRun(() -> chained.set(Thread.currentThread().isInterrupted()));
+                gate.complete(null);
+                after.get(10, TimeUnit.SECONDS);
+                assertTrue(cancelled.isCancelled());
+                assertFalse(chained.get(), "round " + i);
+                // the next job of the only thread, on either lane
+                AtomicBoolean interrupted = new AtomicBoolean(true);
+                await((i % 2 == 0 ? lane : other).submit(job -> interrupted.set(Thread.currentThread().isInterrupted())));
+                assertFalse(interrupted.get(), "round " + i);
+            }
+        }
+    }
+
+    @Test
+    void failureCompletesTheJobExceptionally() throws Exception
+    {
+        try (SearchScheduler scheduler = new SearchScheduler(1))
+        {
+            SearchScheduler.Lane lane = scheduler.lane();
+            SearchScheduler.Job failed = lane.submit(job ->
+            {
+                throw new IllegalStateException("broken search");
+            });
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> failed.finished().get(10, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            // the lane and its thread carry on
+            AtomicBoolean ran = new AtomicBoolean();
+            await(lane.submit(job -> ran.set(true)));
+            assertTrue(ran.get());
+            assertFalse(lane.isRunning());
+        }
+    }
+
+    /**
+     * Expands forever like a search until the job is cancelled, then
+     * records that it stopped.
+     */
+    private static void loop(String name, List<String> order)
+    {
+        try
+        {
+            for (int expansions = 1; ; expansions++)
+            {
+                SearchScheduler.checkpoint(expansions);
+                Thread.onSpinWait();
+            }
+        }
+        finally
+        {
+            order.add(name + " stopped");
+        }
+    }
+
+    private static void await(SearchScheduler.Job job) throws Exception
+    {
+        job.finished().get(10, TimeUnit.SECONDS);
+    }
+}
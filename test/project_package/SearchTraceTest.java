@@ -0,0 +1,170 @@
+package project_package;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a recorded search reads back as the events it made, in order,
+ * on maps of any shape and with jump points, that a trace cut short is read
+ * up to its last complete event, and that a trace only matches the walls it
+ * was recorded on.
+ */
+
+class SearchTraceTest
+{
+    @TempDir
+    Path dir;
+
+    @Test
+    void tracesRoundTrip() throws IOException
+    {
+        GridMap[] maps = {MapGenerator.random(80, 60, 0.3, 1), MapGenerator.maze(41, 41, 2),
+            MapGenerator.random(1, 50, 0.05, 3), MapGenerator.random(50, 2, 0.05, 4)};
+        for (GridMap map : maps)
+        {
+            for (PathSearch search : new PathSearch[] {new SearchEngine(map), new JumpPointSearch(map)})
+            {
+                for (int[] q : ReferencePaths.queries(map, 5, map.size()))
+                {
+                    String query = map.width() + "x" + map.height() + " " + search.getClass().getSimpleName()
+                            + " " + q[0] + " -> " + q[1];
+                    Recorded recorded = record(map, search, q[0], q[1]);
+                    SearchTrace trace = SearchTrace.read(recorded.file);
+                    assertEquals(q[0], trace.start(), query);
+                    assertEquals(q[1], trace.goal(), query);
+                    assertEquals(recorded.count, trace.size(), query);
+                    for (int i = 0; i < recorded.count; i++)
+                    {
+                        assertEquals(recorded.cells[i], trace.cell(i), query + " event " + i);
+                        assertEquals(recorded.types[i], trace.type(i), query + " event " + i);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void interruptedTraceIsReadUpToItsLastEvent() throws IOException
+    {
+        GridMap map = MapGenerator.random(200, 200, 0.2, 5);
+        int[] q = ReferencePaths.queries(map, 1, 5)[0];
+        Recorded recorded = record(map, new SearchEngine(map), q[0], q[1]);
+        byte[] bytes = Files.readAllBytes(recorded.file);
+        // a recording that never got closed: no event count, events cut
+        // anywhere, possibly in the middle of one
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putLong(32, 0);
+        int previous = -1;
+        for (int length = TraceRecorder.HEADER_SIZE; length <= bytes.length; length += 997)
+        {
+            Path cut = dir.resolve("cut" + TraceRecorder.EXTENSION);
+            Files.write(cut, Arrays.copyOf(bytes, length));
+            SearchTrace trace = SearchTrace.read(cut);
+            assertTrue(trace.size() >= previous && trace.size() <= recorded.count, "cut at " + length);
+            for (int i = 0; i < trace.size(); i++)
+            {
+                assertEquals(recorded.cells[i], trace.cell(i), "cut at " + length + " event " + i);
+            }
+            previous = trace.size();
+        }
+        Path header = dir.resolve("header" + TraceRecorder.EXTENSION);
+        Files.write(header, Arrays.copyOf(bytes, TraceRecorder.HEADER_SIZE - 1));
+        assertThrows(IOException.class, () -> SearchTrace.read(header));
+    }
+
+    @Test
+    void traceMatchesTheWallsItWasRecordedOn() throws IOException
+    {
+        GridMap map = MapGenerator.random(64, 64, 0.25, 6);
+        int[] q = ReferencePaths.queries(map, 1, 6)[0];
+        SearchTrace trace = SearchTrace.read(record(map, new SearchEngine(map), q[0], q[1]).file);
+        assertTrue(trace.matches(map));
+        assertTrue(trace.matches(map.copy()));
+        int cell = q[0] == 0 ? 1 : 0;
+        map.setWall(cell, !map.isWall(cell));
+        assertFalse(trace.matches(map));
+        map.setWall(cell, !map.isWall(cell));
+        assertTrue(trace.matches(map));
+        assertFalse(trace.matches(MapGenerator.random(64, 32, 0.25, 6)));
+    }
+
+    /**
+     * Runs a query with a recorder attached and keeps the events it saw.
+     */
+    private Recorded record(GridMap map, PathSearch search, int start, int goal) throws IOException
+    {
+        Recorded recorded = new Recorded(dir.resolve("trace" + TraceRecorder.EXTENSION));
+        try (TraceRecorder recorder = new TraceRecorder(recorded.file, map, start, goal))
+        {
+            recorder.setListener(recorded);
+            search.setListener(recorder);
+            int[] path = search.findPath(start, goal);
+            if (path != null)
+            {
+                recorder.path(path);
+                for (int cell : path)
+                {
+                    recorded.add(cell, EventRing.PATH);
+                }
+            }
+            assertEquals(recorded.count, recorder.events());
+        }
+        finally
+        {
+            search.setListener(null);
+        }
+        return recorded;
+    }
+
+    private static final class Recorded implements SearchListener
+    {
+        final Path file;
+        int[] cells = new int[1024];
+        int[] types = new int[1024];
+        int count;
+
+        Recorded(Path file)
+        {
+            this.file = file;
+        }
+
+        @Override
+        public void cellOpened(int cell)
+        {
+            add(cell, EventRing.OPEN);
+        }
+
+        @Override
+        public void cellClosed(int cell)
+        {
+            add(cell, EventRing.CLOSE);
+        }
+
+        @Override
+        public void jumpPoint(int cell)
+        {
+            add(cell, EventRing.JUMP);
+        }
+
+        void add(int cell, int type)
+        {
+            if (count == cells.length)
+            {
+                cells = Arrays.copyOf(cells, count * 2);
+                types = Arrays.copyOf(types, count * 2);
+            }
+            cells[count] = cell;
+            types[count++] = type;
+        }
+    }
+}